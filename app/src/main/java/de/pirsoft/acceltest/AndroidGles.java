@@ -0,0 +1,358 @@
+package de.pirsoft.acceltest;
+
+import android.annotation.TargetApi;
+import android.graphics.Bitmap;
+import android.opengl.GLES20;
+import android.opengl.GLES30;
+import android.opengl.GLUtils;
+import android.os.Build;
+
+import java.nio.Buffer;
+
+/** Gles on top of the static android.opengl bindings. */
+class AndroidGles implements Gles {
+	/**
+	 * Whether the current context can do GLES30 vertex array objects. Needs
+	 * a current context.
+	 */
+	@Override
+	public boolean hasVertexArrayObjects() {
+		return isGles3();
+	}
+
+	/** Whether the GLES30 calls of Gles can be used. Needs a current context. */
+	@Override
+	public boolean isGles3() {
+		if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN_MR2)
+			return false;
+		String version = GLES20.glGetString(GLES20.GL_VERSION);
+		return version != null && version.startsWith("OpenGL ES 3");
+	}
+
+	/** GPU timer queries, needs the GLES30 query calls and EXT_disjoint_timer_query. */
+	@Override
+	public boolean hasTimerQueries() {
+		if (!isGles3())
+			return false;
+		String extensions = GLES20.glGetString(GLES20.GL_EXTENSIONS);
+		return extensions != null && extensions.contains("GL_EXT_disjoint_timer_query");
+	}
+
+	@Override
+	public void glActiveTexture(int texture) {
+		GLES20.glActiveTexture(texture);
+	}
+
+	@Override
+	public void glAttachShader(int program, int shader) {
+		GLES20.glAttachShader(program, shader);
+	}
+
+	@Override
+	public void glBindBuffer(int target, int buffer) {
+		GLES20.glBindBuffer(target, buffer);
+	}
+
+	@Override
+	public void glBindFramebuffer(int target, int framebuffer) {
+		GLES20.glBindFramebuffer(target, framebuffer);
+	}
+
+	@Override
+	public void glBindRenderbuffer(int target, int renderbuffer) {
+		GLES20.glBindRenderbuffer(target, renderbuffer);
+	}
+
+	@Override
+	public void glBindTexture(int target, int texture) {
+		GLES20.glBindTexture(target, texture);
+	}
+
+	@Override
+	public void glBlendFunc(int sfactor, int dfactor) {
+		GLES20.glBlendFunc(sfactor, dfactor);
+	}
+
+	@Override
+	public void glBufferData(int target, int size, Buffer data, int usage) {
+		GLES20.glBufferData(target, size, data, usage);
+	}
+
+	@Override
+	public void glBufferSubData(int target, int offset, int size, Buffer data) {
+		GLES20.glBufferSubData(target, offset, size, data);
+	}
+
+	@Override
+	public int glCheckFramebufferStatus(int target) {
+		return GLES20.glCheckFramebufferStatus(target);
+	}
+
+	@Override
+	public void glClear(int mask) {
+		GLES20.glClear(mask);
+	}
+
+	@Override
+	public void glClearColor(float red, float green, float blue, float alpha) {
+		GLES20.glClearColor(red, green, blue, alpha);
+	}
+
+	@Override
+	public void glClearDepthf(float depth) {
+		GLES20.glClearDepthf(depth);
+	}
+
+	@Override
+	public void glCompileShader(int shader) {
+		GLES20.glCompileShader(shader);
+	}
+
+	@Override
+	public int glCreateProgram() {
+		return GLES20.glCreateProgram();
+	}
+
+	@Override
+	public int glCreateShader(int type) {
+		return GLES20.glCreateShader(type);
+	}
+
+	@Override
+	public void glCullFace(int mode) {
+		GLES20.glCullFace(mode);
+	}
+
+	@Override
+	public void glDeleteBuffers(int n, int[] buffers, int offset) {
+		GLES20.glDeleteBuffers(n, buffers, offset);
+	}
+
+	@Override
+	public void glDeleteFramebuffers(int n, int[] framebuffers, int offset) {
+		GLES20.glDeleteFramebuffers(n, framebuffers, offset);
+	}
+
+	@Override
+	public void glDeleteProgram(int program) {
+		GLES20.glDeleteProgram(program);
+	}
+
+	@Override
+	public void glDeleteRenderbuffers(int n, int[] renderbuffers, int offset) {
+		GLES20.glDeleteRenderbuffers(n, renderbuffers, offset);
+	}
+
+	@Override
+	public void glDeleteShader(int shader) {
+		GLES20.glDeleteShader(shader);
+	}
+
+	@Override
+	public void glDeleteTextures(int n, int[] textures, int offset) {
+		GLES20.glDeleteTextures(n, textures, offset);
+	}
+
+	@Override
+	public void glDepthFunc(int func) {
+		GLES20.glDepthFunc(func);
+	}
+
+	@Override
+	public void glDepthMask(boolean flag) {
+		GLES20.glDepthMask(flag);
+	}
+
+	@Override
+	public void glDisable(int cap) {
+		GLES20.glDisable(cap);
+	}
+
+	@Override
+	public void glDisableVertexAttribArray(int index) {
+		GLES20.glDisableVertexAttribArray(index);
+	}
+
+	@Override
+	public void glDrawArrays(int mode, int first, int count) {
+		GLES20.glDrawArrays(mode, first, count);
+	}
+
+	@Override
+	public void glDrawElements(int mode, int count, int type, int offset) {
+		GLES20.glDrawElements(mode, count, type, offset);
+	}
+
+	@Override
+	public void glEnable(int cap) {
+		GLES20.glEnable(cap);
+	}
+
+	@Override
+	public void glEnableVertexAttribArray(int index) {
+		GLES20.glEnableVertexAttribArray(index);
+	}
+
+	@Override
+	public void glFramebufferRenderbuffer(int target, int attachment, int renderbuffertarget, int renderbuffer) {
+		GLES20.glFramebufferRenderbuffer(target, attachment, renderbuffertarget, renderbuffer);
+	}
+
+	@Override
+	public void glFramebufferTexture2D(int target, int attachment, int textarget, int texture, int level) {
+		GLES20.glFramebufferTexture2D(target, attachment, textarget, texture, level);
+	}
+
+	@Override
+	public void glFrontFace(int mode) {
+		GLES20.glFrontFace(mode);
+	}
+
+	@Override
+	public void glGenBuffers(int n, int[] buffers, int offset) {
+		GLES20.glGenBuffers(n, buffers, offset);
+	}
+
+	@Override
+	public void glGenFramebuffers(int n, int[] framebuffers, int offset) {
+		GLES20.glGenFramebuffers(n, framebuffers, offset);
+	}
+
+	@Override
+	public void glGenRenderbuffers(int n, int[] renderbuffers, int offset) {
+		GLES20.glGenRenderbuffers(n, renderbuffers, offset);
+	}
+
+	@Override
+	public void glGenTextures(int n, int[] textures, int offset) {
+		GLES20.glGenTextures(n, textures, offset);
+	}
+
+	@Override
+	public int glGetAttribLocation(int program, String name) {
+		return GLES20.glGetAttribLocation(program, name);
+	}
+
+	@Override
+	public void glGetIntegerv(int pname, int[] params, int offset) {
+		GLES20.glGetIntegerv(pname, params, offset);
+	}
+
+	@Override
+	public String glGetString(int name) {
+		return GLES20.glGetString(name);
+	}
+
+	@Override
+	public int glGetUniformLocation(int program, String name) {
+		return GLES20.glGetUniformLocation(program, name);
+	}
+
+	@Override
+	public void glLinkProgram(int program) {
+		GLES20.glLinkProgram(program);
+	}
+
+	@Override
+	public void glRenderbufferStorage(int target, int internalformat, int width, int height) {
+		GLES20.glRenderbufferStorage(target, internalformat, width, height);
+	}
+
+	@Override
+	public void glShaderSource(int shader, String string) {
+		GLES20.glShaderSource(shader, string);
+	}
+
+	@Override
+	public void glTexImage2D(int target, int level, int internalformat, int width, int height, int border, int format, int type, Buffer pixels) {
+		GLES20.glTexImage2D(target, level, internalformat, width, height, border, format, type, pixels);
+	}
+
+	@Override
+	public void glTexParameteri(int target, int pname, int param) {
+		GLES20.glTexParameteri(target, pname, param);
+	}
+
+	@Override
+	public void texImage2D(int target, int level, Bitmap bitmap) {
+		GLUtils.texImage2D(target, level, bitmap, 0);
+	}
+
+	@Override
+	public void glUniform1i(int location, int x) {
+		GLES20.glUniform1i(location, x);
+	}
+
+	@Override
+	public void glUniform4f(int location, float x, float y, float z, float w) {
+		GLES20.glUniform4f(location, x, y, z, w);
+	}
+
+	@Override
+	public void glUniformMatrix4fv(int location, int count, boolean transpose, float[] value, int offset) {
+		GLES20.glUniformMatrix4fv(location, count, transpose, value, offset);
+	}
+
+	@Override
+	public void glUseProgram(int program) {
+		GLES20.glUseProgram(program);
+	}
+
+	@Override
+	public void glVertexAttribPointer(int indx, int size, int type, boolean normalized, int stride, int offset) {
+		GLES20.glVertexAttribPointer(indx, size, type, normalized, stride, offset);
+	}
+
+	@Override
+	public void glViewport(int x, int y, int width, int height) {
+		GLES20.glViewport(x, y, width, height);
+	}
+
+	@TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+	@Override
+	public void glBindVertexArray(int array) {
+		GLES30.glBindVertexArray(array);
+	}
+
+	@TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+	@Override
+	public void glGenVertexArrays(int n, int[] arrays, int offset) {
+		GLES30.glGenVertexArrays(n, arrays, offset);
+	}
+
+	@TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+	@Override
+	public void glBeginQuery(int target, int id) {
+		GLES30.glBeginQuery(target, id);
+	}
+
+	@TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+	@Override
+	public void glDeleteQueries(int n, int[] ids, int offset) {
+		GLES30.glDeleteQueries(n, ids, offset);
+	}
+
+	@TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+	@Override
+	public void glEndQuery(int target) {
+		GLES30.glEndQuery(target);
+	}
+
+	@TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+	@Override
+	public void glGenQueries(int n, int[] ids, int offset) {
+		GLES30.glGenQueries(n, ids, offset);
+	}
+
+	@TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+	@Override
+	public void glGetQueryObjectuiv(int id, int pname, int[] params, int offset) {
+		GLES30.glGetQueryObjectuiv(id, pname, params, offset);
+	}
+
+	@TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+	@Override
+	public void glInvalidateFramebuffer(int target, int numAttachments, int[] attachments, int offset) {
+		GLES30.glInvalidateFramebuffer(target, numAttachments, attachments, offset);
+	}
+}
@@ -0,0 +1,125 @@
+package de.pirsoft.acceltest;
+
+import android.hardware.Sensor;
+
+/**
+ * The ball on a spring: takes the latest acceleration and rotation samples
+ * and integrates the ball position.
+ *
+ * Plain java, allocation free. Not thread safe, samples and steps are
+ * expected on the same thread.
+ */
+class BallSimulation implements SampleSink {
+	private static final float SPRING_CONSTANT = 400.f;
+	private static final float MASS = 10.f;
+	private static final float FRICTION = 0.7f;
+	/**
+	 * Rotate each acceleration sample with the rotation at its own
+	 * timestamp, see RotationAligner. Off: with the latest rotation.
+	 */
+	private static final boolean ALIGN_TIMESTAMPS = true;
+
+	/** Floats of getState(): position, speed, rotation vector, acceleration. */
+	static final int STATE_FLOATS = 12;
+
+	private final float[] mRotation = new float[3];
+	private final float[] mAcceleration = new float[4];
+
+	private final float[] mForce = new float[4];
+	private final float[] mSpeed = {0.f, 0.f, 0.f, 0.f};
+	private final float[] mPosition = {0.f, 0.f, 0.f, 0.f};
+	private final RotationAligner mAligner = new RotationAligner();
+
+	@Override
+	public void onSample(int sensorType, long timestamp, float[] values) {
+		if (sensorType == Sensor.TYPE_ACCELEROMETER) {
+			System.arraycopy(values, 0, mAcceleration,
+				0, 3);
+			mAcceleration[3] = 0.f;//direction vector: fourth component is 0.
+			if (ALIGN_TIMESTAMPS)
+				mAligner.addAcceleration(timestamp, values);
+		} else if (sensorType == Sensor.TYPE_ROTATION_VECTOR) {
+			System.arraycopy(values, 0, mRotation,
+				0, mRotation.length);
+			if (ALIGN_TIMESTAMPS)
+				mAligner.addRotation(timestamp, values);
+		}
+	}
+
+	/**
+	 * Advances the simulation and computes the ball transform.
+	 *
+	 * @param deltatime milliseconds since the last step
+	 * @param transform receives the 4x4 ball transform
+	 */
+	void step(long deltatime, float[] transform) {
+		//okay, so now do the maths. first, we fetch the rotation matrix.
+		Mat4.setRotationFromVector(transform, mRotation);
+
+		//now see that we rotate the acceleration vector to match, and use it
+		//to translate the ball around. for rotation matrices, inverting is transposing.
+		//the aligner did that already, with the rotation from when it was sampled
+		if (!ALIGN_TIMESTAMPS || !mAligner.getWorldAcceleration(mForce))
+			Mat4.multiplyTransposedMV(mForce, transform, mAcceleration);
+		//mForce is the force vector in the local earth surface coordinate system.
+		//in rest, points upwards. This is the force^Wacceleration we apply at our
+		// spring, so there is an equal and opposite force^Wacceleration at the
+		// ball, i.E. -mForce
+
+		//force by spring: distance*springconstant, which is -position*springconstant
+		//the mass converts the acceleration into a force: F=m*a
+		//F_spring = -position*springconstant
+		//F_external = -mForce*mass
+		//F_speed = -speed * friction
+		//F_ball = F_spring + F_external + F_speed
+		//a_ball = F_ball / mass
+		//so, everything pulled together:
+		//a_ball = -position * springconstant / mass - mForce + speed * friction / mass
+
+		for(int i = 0; i < 3; i++) {
+			float a = -mPosition[i]* (SPRING_CONSTANT / MASS) - mForce[i]
+				- mSpeed[i] * FRICTION;
+			mSpeed[i] += a * deltatime * 0.001f;
+
+			mPosition[i] += mSpeed[i] * deltatime * 0.001f;
+		}
+
+		Mat4.translateM(transform, mPosition[0], mPosition[1], mPosition[2]);
+	}
+
+	/**
+	 * Ball transform for a later time: the given rotation, and the position
+	 * moved along the current speed. Leaves the simulation state alone.
+	 *
+	 * @param rotation       rotation quaternion x, y, z, w, see PosePredictor
+	 * @param horizonSeconds how far ahead of the last step
+	 * @param transform      receives the 4x4 ball transform
+	 */
+	void predictTransform(float[] rotation, float horizonSeconds, float[] transform) {
+		Mat4.setRotationFromVector(transform, rotation);
+		Mat4.translateM(transform,
+			mPosition[0] + mSpeed[0] * horizonSeconds,
+			mPosition[1] + mSpeed[1] * horizonSeconds,
+			mPosition[2] + mSpeed[2] * horizonSeconds);
+	}
+
+	/**
+	 * What a new simulation needs to continue where this one is: the ball
+	 * position and speed, and the last samples, so until new ones arrive it
+	 * neither faces the default way nor springs back without gravity.
+	 */
+	void getState(float[] state) {
+		System.arraycopy(mPosition, 0, state, 0, 3);
+		System.arraycopy(mSpeed, 0, state, 3, 3);
+		System.arraycopy(mRotation, 0, state, 6, 3);
+		System.arraycopy(mAcceleration, 0, state, 9, 3);
+	}
+
+	/** Before any samples, see getState(). */
+	void setState(float[] state) {
+		System.arraycopy(state, 0, mPosition, 0, 3);
+		System.arraycopy(state, 3, mSpeed, 0, 3);
+		System.arraycopy(state, 6, mRotation, 0, 3);
+		System.arraycopy(state, 9, mAcceleration, 0, 3);
+	}
+}
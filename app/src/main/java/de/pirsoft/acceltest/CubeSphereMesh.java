@@ -0,0 +1,746 @@
+package de.pirsoft.acceltest;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+import java.util.Arrays;
+
+/**
+ * Vertices and triangle strip indexes of the navball, a subdivided cube
+ * projected onto the unit sphere.
+ *
+ * Comes in two layouts: with s,t for the cross shaped 2D texture, which
+ * needs separate vertices along the seams, or positions only, shared
+ * between faces, for a cube map sampled by direction.
+ *
+ * For the cube map there is also a subdivided icosahedron, see
+ * forIcosphere(). Its triangles are much closer to equal in size than the
+ * ones of the projected cube, which get small towards the cube corners, so
+ * it reaches the same maxSilhouetteError() with fewer triangles.
+ *
+ * No GL calls, so it can be built on any thread ahead of the GL context.
+ */
+class CubeSphereMesh {
+	//x,y,z(position coordinates),  s,t(texture coordinates)
+	static final int FLOATSTRIDE = 5;
+	//x,y,z only
+	static final int CUBEMAP_FLOATSTRIDE = 3;
+	/** FLOATSTRIDE or CUBEMAP_FLOATSTRIDE */
+	final int stride;
+	float floatAttribs[];
+	short drawOrder[];
+	//direct copies of the arrays above, ready for glBufferData
+	final FloatBuffer floatBuffer;
+	final ShortBuffer drawListBuffer;
+
+	/** Mesh with texture coordinates for the 2D navball texture. */
+	CubeSphereMesh(int subdivide) {
+		this(subdivide, LAYOUT_TEXTURE_2D);
+	}
+
+	/** Mesh with positions only, see genSharedVertices(). */
+	static CubeSphereMesh forCubeMap(int subdivide) {
+		return new CubeSphereMesh(subdivide, LAYOUT_CUBE_MAP);
+	}
+
+	/**
+	 * Icosahedron with every edge cut into frequency parts, positions only
+	 * like forCubeMap(), see genIcosphere().
+	 */
+	static CubeSphereMesh forIcosphere(int frequency) {
+		return new CubeSphereMesh(frequency, LAYOUT_ICOSPHERE);
+	}
+
+	private static final int LAYOUT_TEXTURE_2D = 0;
+	private static final int LAYOUT_CUBE_MAP = 1;
+	private static final int LAYOUT_ICOSPHERE = 2;
+
+	private CubeSphereMesh(int subdivide, int layout) {
+		if (layout == LAYOUT_ICOSPHERE) {
+			stride = CUBEMAP_FLOATSTRIDE;
+			genIcosphere(subdivide);
+		} else if (layout == LAYOUT_CUBE_MAP) {
+			stride = CUBEMAP_FLOATSTRIDE;
+			genSharedVertices(subdivide);
+		} else {
+			stride = FLOATSTRIDE;
+			genVerticesAndIndexes(subdivide);
+		}
+
+		// initialize vertex byte buffer for shape coordinates
+		ByteBuffer bb = ByteBuffer.allocateDirect(
+			// (# of coordinate values * 4 bytes per float)
+			floatAttribs.length * 4);
+		bb.order(ByteOrder.nativeOrder());
+		floatBuffer = bb.asFloatBuffer();
+		floatBuffer.put(floatAttribs);
+		floatBuffer.position(0);
+
+		// initialize byte buffer for the draw list
+		ByteBuffer dlb = ByteBuffer.allocateDirect(
+			// (# of coordinate values * 2 bytes per short)
+			drawOrder.length * 2);
+		dlb.order(ByteOrder.nativeOrder());
+		drawListBuffer = dlb.asShortBuffer();
+		drawListBuffer.put(drawOrder);
+		drawListBuffer.position(0);
+	}
+
+	private void genVerticesAndIndexes(int subdivide) {
+		/* Plan: base is a cube, corners at sqrt(1/3),sqrt(1/3),sqrt(1/3), then subdivided along the edges.
+		 * Then, all vertices get normalized, so they have a distance of 1 from the
+		 * center. Due to normalisation, we can also use 1,1,1 as corners.
+		 *
+		 * The Texture is a classic cube map:
+		 *         +------+
+		 *         | 0 1 0|
+		 *         |      |
+		 *  +------+------+------+------+
+		 *  |-1 0 0| 0 0 1| 1 0 0|0 0 -1|
+		 *  |      |      |      |      |
+		 *  +------+------+------+------+
+		 *         |0 -1 0|
+		 *         |      |
+		 *         +------+
+		 *
+		 * we use quad strips.
+		 *
+		 * vertex numbering:
+		 * we start with the eight corners, 14 when mapped onto the texture:
+		 *         0      1
+		 *
+		 *
+		 *  2      3      4      5      6
+		 *
+		 *
+		 *  7      8      9     10     11
+		 *
+		 *
+		 *        12     13
+		 *
+		 *  Then, the 12 edges, 19 when mapped onto the texture:
+		 *         +-----------------------------------------------------------------------------------+
+		 *         |                                                                                   |
+		 *         |                    0-  14+n*0..13+n*1  -1                                         |
+		 *         |                    |                    |                                         |
+		 *         |              14+n*1..13+n*2       14+n*2..13+n*3                                  |
+		 *         |                    |                    |                                         |
+		 *         2-  14+n*3..13+n*4  -3-  14+n*4..13+n*5  -4-  14+n*5..13+n*6  -5-  14+n*6..13+n*7  -6
+		 *         |                    |                    |                    |                    |
+		 *  14+n*7..13+n*8        14+n*8..13+n*9       14+n*9..13+n*10     14+n*10..13+n*11     14+n*11..13+n*12
+		 *         |                    |                    |                    |                    |
+		 *         7- 14+n*12..13+n*13 -8- 14+n*13..13+n*14 -9- 14+n*14..13+n*15 10- 14+n*15..13+n*16 11
+		 *         |                    |                    |                                         |
+		 *         |             14+n*16..13+n*17    14+n*17..13+n*18                                  |
+		 *         |                    |                    |                                         |
+		 *         |                    12 14+n*18..13+n*19 13                                         |
+                         *         |                                                                                   |
+                         *         +-----------------------------------------------------------------------------------+
+		 *
+		 *  And finally, 6 faces, indexed, with starting point:
+		 *      *  *
+		 *       `-
+		 *        0
+		 *   *  *  *  *  *
+		 *    `- `- `- `-
+		 *     1  2  3  4
+		 *   *  *  *  *  *
+		 *       `-
+		 *        5
+		 *      *  *
+		 *
+		 *  Each face is filled linewise:
+		 *
+		 *     14+n*19+f*n*n+y*n+x
+		 *
+		 * So, for the 6 Faces(looking from outside), we have:
+		 * Face#|CW corner coord|CW corners|CW tex coord|CW edge start|CW edge end
+		 *  0   | -1  1 -1      | 0        | 1/4 1/8    | 14+n*0      | 13+n*1
+		 *      |  1  1 -1      | 1        | 2/4 1/8    | 14+n*2      | 13+n*3
+		 *      |  1  1  1      | 4        | 2/4 3/8    | 13+n*5      | 14+n*4
+		 *      | -1  1  1      | 3        | 1/4 3/8    | 13+n*2      | 14+n*1
+		 * -----+---------------+----------+------------+-------------+-----------
+		 *  1   | -1  1 -1      | 2        | 0/4 3/8    | 14+n*3      | 13+n*4
+		 *      | -1  1  1      | 3        | 1/4 3/8    | 14+n*8      | 13+n*9
+		 *      | -1 -1  1      | 8        | 1/4 5/8    | 13+n*13     | 14+n*12
+		 *      | -1 -1 -1      | 7        | 0/4 5/8    | 13+n*8      | 14+n*7
+		 * -----+---------------+----------+------------+-------------+-----------
+		 *  2   | -1  1  1      | 3        | 1/4 3/8    | 14+n*4      | 13+n*5
+		 *      |  1  1  1      | 4        | 2/4 3/8    | 14+n*9      | 13+n*10
+		 *      |  1 -1  1      | 9        | 2/4 5/8    | 13+n*14     | 14+n*13
+		 *      | -1 -1  1      | 8        | 1/4 5/8    | 13+n*9      | 14+n*8
+		 * -----+---------------+----------+------------+-------------+-----------
+		 *  3   |  1  1  1      | 4        | 2/4 3/8    | 14+n*5      | 13+n*6
+		 *      |  1  1 -1      | 5        | 3/4 3/8    | 14+n*10     | 13+n*11
+		 *      |  1 -1 -1      | 10       | 3/4 5/8    | 13+n*15     | 14+n*14
+		 *      |  1 -1  1      | 9        | 2/4 5/8    | 13+n*10     | 14+n*9
+		 * -----+---------------+----------+------------+-------------+-----------
+		 *  4   |  1  1 -1      | 5        | 3/4 3/8    | 14+n*6      | 13+n*7
+		 *      | -1  1 -1      | 6        | 4/4 3/8    | 14+n*11     | 13+n*12
+		 *      | -1 -1 -1      | 11       | 4/4 5/8    | 13+n*16     | 14+n*15
+		 *      |  1 -1 -1      | 10       | 3/4 5/8    | 13+n*11     | 14+n*10
+		 * -----+---------------+----------+------------+-------------+-----------
+		 *  5   | -1 -1  1      | 8        | 1/4 5/8    | 14+n*13     | 13+n*14
+		 *      |  1 -1  1      | 9        | 2/4 5/8    | 14+n*17     | 13+n*18
+		 *      |  1 -1 -1      | 13       | 2/4 7/8    | 13+n*19     | 14+n*18
+		 *      | -1 -1 -1      | 12       | 1/4 7/8    | 13+n*17     | 14+n*16
+		 *
+		 *  Plus the inner vertex indexes as above.
+		 *  Need to also generate the draw commands for these.
+		 *
+		 *  For the 19 Edges:
+		 * Edge#|corner coord|corners|tex coord|edge idx
+		 *  0   | -1  1 -1   | 0     | 1/4 1/8 | 14+n*0
+		 *      |  1  1 -1   | 1     | 2/4 1/8 | 13+n*1
+		 * -----+------------+-------+---------+---------
+		 * -----+------------+-------+---------+---------
+		 *  1   | -1  1 -1   | 0     | 1/4 1/8 | 14+n*1
+		 *      | -1  1  1   | 3     | 1/4 3/8 | 13+n*2
+		 * -----+------------+-------+---------+---------
+		 *  2   |  1  1 -1   | 1     | 2/4 1/8 | 14+n*2
+		 *      |  1  1  1   | 4     | 2/4 3/8 | 13+n*3
+		 * -----+------------+-------+---------+---------
+		 * -----+------------+-------+---------+---------
+		 *  3   | -1  1 -1   | 2     | 0/4 3/8 | 14+n*3
+		 *      | -1  1  1   | 3     | 1/4 3/8 | 13+n*4
+		 * -----+------------+-------+---------+---------
+		 *  4   | -1  1  1   | 3     | 1/4 3/8 | 14+n*4
+		 *      |  1  1  1   | 4     | 2/4 3/8 | 13+n*5
+		 * -----+------------+-------+---------+---------
+		 *  5   |  1  1  1   | 4     | 2/4 3/8 | 14+n*5
+		 *      |  1  1 -1   | 5     | 3/4 3/8 | 13+n*6
+		 * -----+------------+-------+---------+---------
+		 *  6   |  1  1 -1   | 5     | 3/4 3/8 | 14+n*6
+		 *      | -1  1 -1   | 6     | 4/4 3/8 | 13+n*7
+		 * -----+------------+-------+---------+---------
+		 * -----+------------+-------+---------+---------
+		 *  7   | -1  1 -1   | 2     | 0/4 3/8 | 14+n*7
+		 *      | -1 -1 -1   | 7     | 0/4 5/8 | 13+n*8
+		 * -----+------------+-------+---------+---------
+		 *  8   | -1  1  1   | 3     | 1/4 3/8 | 14+n*8
+		 *      | -1 -1  1   | 8     | 1/4 5/8 | 13+n*9
+		 * -----+------------+-------+---------+---------
+		 *  9   |  1  1  1   | 4     | 2/4 3/8 | 14+n*9
+		 *      |  1 -1  1   | 9     | 2/4 5/8 | 13+n*10
+		 * -----+------------+-------+---------+---------
+		 *  10  |  1  1 -1   | 5     | 3/4 3/8 | 14+n*10
+		 *      |  1 -1 -1   | 10    | 3/4 5/8 | 13+n*11
+		 * -----+------------+-------+---------+---------
+		 *  11  | -1  1 -1   | 6     | 4/4 3/8 | 14+n*11
+		 *      | -1 -1 -1   | 11    | 4/4 5/8 | 13+n*12
+		 * -----+------------+-------+---------+---------
+		 * -----+------------+-------+---------+---------
+		 *  12  | -1 -1 -1   | 7     | 0/4 5/8 | 14+n*12
+		 *      | -1 -1  1   | 8     | 1/4 5/8 | 13+n*13
+		 * -----+------------+-------+---------+---------
+		 *  13  | -1 -1  1   | 8     | 1/4 5/8 | 14+n*13
+		 *      |  1 -1  1   | 9     | 2/4 5/8 | 13+n*14
+		 * -----+------------+-------+---------+---------
+		 *  14  |  1 -1  1   | 9     | 2/4 5/8 | 14+n*14
+		 *      |  1 -1 -1   | 10    | 3/4 5/8 | 13+n*15
+		 * -----+------------+-------+---------+---------
+		 *  15  |  1 -1 -1   | 10    | 3/4 5/8 | 14+n*15
+		 *      | -1 -1 -1   | 11    | 4/4 5/8 | 13+n*16
+		 * -----+------------+-------+---------+---------
+		 * -----+------------+-------+---------+---------
+		 *  16  | -1 -1  1   | 8     | 1/4 5/8 | 14+n*16
+		 *      | -1 -1 -1   | 12    | 1/4 7/8 | 13+n*17
+		 * -----+------------+-------+---------+---------
+		 *  17  |  1 -1  1   | 9     | 2/4 5/8 | 14+n*17
+		 *      |  1 -1 -1   | 13    | 2/4 7/8 | 13+n*18
+		 * -----+------------+-------+---------+---------
+		 * -----+------------+-------+---------+---------
+		 *  18  | -1 -1 -1   | 12    | 1/4 7/8 | 14+n*18
+		 *      |  1 -1 -1   | 13    | 2/4 7/8 | 13+n*19
+		 */
+
+		floatAttribs = new float[(14 + subdivide*19 + subdivide*subdivide * 6)*FLOATSTRIDE];
+		// 14 Corners vertices:
+		//       Idx|corner coord|tex coord
+		genVertex( 0, -1,  1, -1, 1.f/4, 1.f/8);
+		genVertex( 1,  1,  1, -1, 2.f/4, 1.f/8);
+		genVertex( 2, -1,  1, -1, 0.f/4, 3.f/8);
+		genVertex( 3, -1,  1,  1, 1.f/4, 3.f/8);
+		genVertex( 4,  1,  1,  1, 2.f/4, 3.f/8);
+		genVertex( 5,  1,  1, -1, 3.f/4, 3.f/8);
+		genVertex( 6, -1,  1, -1, 4.f/4, 3.f/8);
+		genVertex( 7, -1, -1, -1, 0.f/4, 5.f/8);
+		genVertex( 8, -1, -1,  1, 1.f/4, 5.f/8);
+		genVertex( 9,  1, -1,  1, 2.f/4, 5.f/8);
+		genVertex(10,  1, -1, -1, 3.f/4, 5.f/8);
+		genVertex(11, -1, -1, -1, 4.f/4, 5.f/8);
+		genVertex(12, -1, -1, -1, 1.f/4, 7.f/8);
+		genVertex(13,  1, -1, -1, 2.f/4, 7.f/8);
+
+		// 19 Edges:
+		//  |corner coord|tex coord|edge idx         |Edge#|corner
+		genEdge(-1, 1,-1, 1.f/4, 1.f/8, 14+subdivide*0,  //#0  | 0
+			 1, 1,-1, 2.f/4, 1.f/8, 13+subdivide*1); //    | 1
+
+		genEdge(-1, 1,-1, 1.f/4, 1.f/8, 14+subdivide*1,  //#1  | 0
+			-1, 1, 1, 1.f/4, 3.f/8, 13+subdivide*2); //    | 3
+		genEdge( 1, 1,-1, 2.f/4, 1.f/8, 14+subdivide*2,  //#2  | 1
+			 1, 1, 1, 2.f/4, 3.f/8, 13+subdivide*3); //    | 4
+
+		genEdge(-1, 1,-1, 0.f/4, 3.f/8, 14+subdivide*3,  //#3  | 2
+			-1, 1, 1, 1.f/4, 3.f/8, 13+subdivide*4); //    | 3
+		genEdge(-1, 1, 1, 1.f/4, 3.f/8, 14+subdivide*4,  //#4  | 3
+			 1, 1, 1, 2.f/4, 3.f/8, 13+subdivide*5); //    | 4
+		genEdge( 1, 1, 1, 2.f/4, 3.f/8, 14+subdivide*5,  //#5  | 4
+			 1, 1,-1, 3.f/4, 3.f/8, 13+subdivide*6); //    | 5
+		genEdge( 1, 1,-1, 3.f/4, 3.f/8, 14+subdivide*6,  //#6  | 5
+			-1, 1,-1, 4.f/4, 3.f/8, 13+subdivide*7); //    | 6
+
+		genEdge(-1, 1,-1, 0.f/4, 3.f/8, 14+subdivide*7,  //#7  | 2
+			-1,-1,-1, 0.f/4, 5.f/8, 13+subdivide*8); //    | 7
+		genEdge(-1, 1, 1, 1.f/4, 3.f/8, 14+subdivide*8,  //#8  | 3
+			-1,-1, 1, 1.f/4, 5.f/8, 13+subdivide*9); //    | 8
+		genEdge( 1, 1, 1, 2.f/4, 3.f/8, 14+subdivide*9,  //#9  | 4
+			 1,-1, 1, 2.f/4, 5.f/8, 13+subdivide*10);//    | 9
+		genEdge( 1, 1,-1, 3.f/4, 3.f/8, 14+subdivide*10, //#10 | 5
+			 1,-1,-1, 3.f/4, 5.f/8, 13+subdivide*11);//    | 10
+		genEdge(-1, 1,-1, 4.f/4, 3.f/8, 14+subdivide*11, //#11 | 6
+			-1,-1,-1, 4.f/4, 5.f/8, 13+subdivide*12);//    | 11
+
+		genEdge(-1,-1,-1, 0.f/4, 5.f/8, 14+subdivide*12, //#12 | 7
+			-1,-1, 1, 1.f/4, 5.f/8, 13+subdivide*13);//    | 8
+		genEdge(-1,-1, 1, 1.f/4, 5.f/8, 14+subdivide*13, //#13 | 8
+			 1,-1, 1, 2.f/4, 5.f/8, 13+subdivide*14);//    | 9
+		genEdge( 1,-1, 1, 2.f/4, 5.f/8, 14+subdivide*14, //#14 | 9
+			 1,-1,-1, 3.f/4, 5.f/8, 13+subdivide*15);//    | 10
+		genEdge( 1,-1,-1, 3.f/4, 5.f/8, 14+subdivide*15, //#15 | 10
+			-1,-1,-1, 4.f/4, 5.f/8, 13+subdivide*16);//    | 11
+
+		genEdge(-1,-1, 1, 1.f/4, 5.f/8, 14+subdivide*16, //#16 | 8
+			-1,-1,-1, 1.f/4, 7.f/8, 13+subdivide*17);//    | 12
+		genEdge( 1,-1, 1, 2.f/4, 5.f/8, 14+subdivide*17, //#17 | 9
+			 1,-1,-1, 2.f/4, 7.f/8, 13+subdivide*18);//    | 13
+
+		genEdge(-1,-1,-1, 1.f/4, 7.f/8, 14+subdivide*18, //#18 | 12
+			 1,-1,-1, 2.f/4, 7.f/8, 13+subdivide*19);//    | 13
+
+		int faceidxcnt = 6+8*subdivide+2*subdivide*subdivide;
+		drawOrder = new short[faceidxcnt*6-2];
+		// So, for the 6 Faces(looking from outside), we have:
+		// CW corner coord|-idx|CW tex coord|CW edge start  |CW edge end    |Face#
+		genFace(subdivide, 14+subdivide*19+    0*subdivide*subdivide, 0,    //#0
+			-1, 1,-1,  0,   1.f/4,1.f/8, 14+subdivide*0, 13+subdivide*1,
+			 1, 1,-1,  1,   2.f/4,1.f/8, 14+subdivide*2, 13+subdivide*3,
+			 1, 1, 1,  4,   2.f/4,3.f/8, 13+subdivide*5, 14+subdivide*4,
+			-1, 1, 1,  3,   1.f/4,3.f/8, 13+subdivide*2, 14+subdivide*1);
+		genFace(subdivide, 14+subdivide*19+    1*subdivide*subdivide, faceidxcnt-1,    //#1
+			-1, 1,-1,  2,   0.f/4,3.f/8, 14+subdivide*3, 13+subdivide*4,
+			-1, 1, 1,  3,   1.f/4,3.f/8, 14+subdivide*8, 13+subdivide*9,
+			-1,-1, 1,  8,   1.f/4,5.f/8, 13+subdivide*13,14+subdivide*12,
+			-1,-1,-1,  7,   0.f/4,5.f/8, 13+subdivide*8, 14+subdivide*7);
+		genFace(subdivide, 14+subdivide*19+    2*subdivide*subdivide, 2*faceidxcnt-1,    //#2
+			-1, 1, 1,  3,   1.f/4,3.f/8, 14+subdivide*4, 13+subdivide*5,
+			 1, 1, 1,  4,   2.f/4,3.f/8, 14+subdivide*9, 13+subdivide*10,
+			 1,-1, 1,  9,   2.f/4,5.f/8, 13+subdivide*14,14+subdivide*13,
+			-1,-1, 1,  8,   1.f/4,5.f/8, 13+subdivide*9, 14+subdivide*8);
+		genFace(subdivide, 14+subdivide*19+    3*subdivide*subdivide, 3*faceidxcnt-1,    //#3
+			 1, 1, 1,  4,   2.f/4,3.f/8, 14+subdivide*5, 13+subdivide*6,
+			 1, 1,-1,  5,   3.f/4,3.f/8, 14+subdivide*10,13+subdivide*11,
+			 1,-1,-1,  10,  3.f/4,5.f/8, 13+subdivide*15,14+subdivide*14,
+			 1,-1, 1,  9,   2.f/4,5.f/8, 13+subdivide*10,14+subdivide*9);
+		genFace(subdivide, 14+subdivide*19+    4*subdivide*subdivide, 4*faceidxcnt-1,    //#4
+			 1, 1,-1,  5,   3.f/4,3.f/8, 14+subdivide*6, 13+subdivide*7,
+			-1, 1,-1,  6,   4.f/4,3.f/8, 14+subdivide*11,13+subdivide*12,
+			-1,-1,-1,  11,  4.f/4,5.f/8, 13+subdivide*16,14+subdivide*15,
+			 1,-1,-1,  10,  3.f/4,5.f/8, 13+subdivide*11,14+subdivide*10);
+		genFace(subdivide, 14+subdivide*19+    5*subdivide*subdivide, 5*faceidxcnt-1,   //#5
+			-1,-1, 1,  8,   1.f/4,5.f/8, 14+subdivide*13,13+subdivide*14,
+			 1,-1, 1,  9,   2.f/4,5.f/8, 14+subdivide*17,13+subdivide*18,
+			 1,-1,-1,  13,  2.f/4,7.f/8, 13+subdivide*19,14+subdivide*18,
+			-1,-1,-1,  12,  1.f/4,7.f/8, 13+subdivide*17,14+subdivide*16);
+	}
+
+	//efidx and elidx are the first and last index on the edge, i.E. excluding the corner vertice.
+	//strippos is 1 for first, 0 for some middle strip, -1 for last. determines whether
+	//the first or last index must be duplicated.
+	private void genFace(int subdivide, int firstfloatarrayidx, int drawOrderPos,
+	                     float x1, float y1, float z1, int cidx1, float s1, float t1, int efidx1, int elidx1,
+	                     float x2, float y2, float z2, int cidx2, float s2, float t2, int efidx2, int elidx2,
+	                     float x3, float y3, float z3, int cidx3, float s3, float t3, int efidx3, int elidx3,
+	                     float x4, float y4, float z4, int cidx4, float s4, float t4, int efidx4, int elidx4) {
+		//generate the inner vertices
+		//firstfloatarrayidx+y*subdivide+x
+		//this assumes a linear face, so coordinates x3,y3,z3,s3,t3 are going to be ignored.
+		float dx_x = (x2-x1) / (subdivide+1);
+		float dx_y = (x4-x1) / (subdivide+1);
+		float dy_x = (y2-y1) / (subdivide+1);
+		float dy_y = (y4-y1) / (subdivide+1);
+		float dz_x = (z2-z1) / (subdivide+1);
+		float dz_y = (z4-z1) / (subdivide+1);
+		float ds_x = (s2-s1) / (subdivide+1);
+		float ds_y = (s4-s1) / (subdivide+1);
+		float dt_x = (t2-t1) / (subdivide+1);
+		float dt_y = (t4-t1) / (subdivide+1);
+		for(int y = 0; y < subdivide; y++) {
+			for(int x = 0; x < subdivide; x++) {
+				genVertex(firstfloatarrayidx+y*subdivide+x,
+					x1+(x+1)*dx_x+(y+1)*dx_y,
+					y1+(x+1)*dy_x+(y+1)*dy_y,
+					z1+(x+1)*dz_x+(y+1)*dz_y,
+					s1+(x+1)*ds_x+(y+1)*ds_y,
+					t1+(x+1)*dt_x+(y+1)*dt_y);
+			}
+		}
+
+		int estep1 = efidx1 < elidx1 ? 1 : -1;
+		int estep2 = efidx2 < elidx2 ? 1 : -1;
+		int estep3 = efidx3 < elidx3 ? 1 : -1;
+		int estep4 = efidx4 < elidx4 ? 1 : -1;
+		/* Using a single tri strip. front face is CCW
+		 *     0-2-4
+		 *     |/|/|...
+		 *     1-3-5
+		 *     triangles here are: 0 1 2, 2 1 3, 2 3 4, 4 3 5, ...
+		 *
+		 *     skipping to next row or similar:
+		 *     a-c-d-e
+		 *     |/|/|/|
+		 *     b-d-e-f
+		 *
+		 *     this means, the last index of the previous strip is duplicated,
+		 *     and then, the first index of the next strip is duplicated.
+		 */
+		//first row: uses cidx1,  efidx1..elidx1,            cidx2,
+		//                elidx4, first ..first+subdivide-1, efidx2
+		if (subdivide == 0) {
+			if (drawOrderPos != 0) {
+				//duplicate the first vertex to complete the skip
+				drawOrder[drawOrderPos++] = (short)cidx1;
+			}
+			drawOrder[drawOrderPos + 0] = (short) cidx1;
+			drawOrder[drawOrderPos + 1] = (short) cidx4;
+			drawOrder[drawOrderPos + 2] = (short) cidx2;
+			drawOrder[drawOrderPos + 3] = (short) cidx3;
+			if (drawOrder.length > drawOrderPos + 4) {
+				//duplicate the last vertex for skipping, if needed.
+				drawOrder[drawOrderPos + 4] = (short) cidx3;
+			}
+		} else {
+			if (drawOrderPos != 0) {
+				//duplicate the first vertex to complete the skip
+				drawOrder[drawOrderPos++] = (short)cidx1;
+			}
+			drawOrder[drawOrderPos + 0] = (short) cidx1;
+			drawOrder[drawOrderPos + 1] = (short) elidx4;
+			for (short x = 0; x < subdivide; x++) {
+				drawOrder[drawOrderPos + 2 + x * 2] = (short) (efidx1 + estep1 * x);
+				drawOrder[drawOrderPos + 3 + x * 2] = (short) (firstfloatarrayidx + x);
+			}
+			drawOrder[drawOrderPos + 2 + subdivide * 2] = (short) cidx2;
+			drawOrder[drawOrderPos + 3 + subdivide * 2] = (short) efidx2;
+			drawOrder[drawOrderPos + 4 + subdivide * 2] = (short) efidx2;//duplicate for next row
+
+			//middle row y=0..subdivide-2:
+			//                elidx4-estep4*y     first+subdivide*y     .. first+subdivide*(y+1)-1 efidx2+estep2*y
+			//                elidx4-estep4*(y+1) first+subdivide*(y+1) .. first+subdivide*(y+2)-1 efidx2+estep2*(y+1)
+			for (int y = 0; y < subdivide - 1; y++) {
+				drawOrder[drawOrderPos - 1 + (6 + subdivide * 2) * (y + 1)] = (short) (elidx4 - estep4 * (y + 0));//duplicate first index
+				drawOrder[drawOrderPos + 0 + (6 + subdivide * 2) * (y + 1)] = (short) (elidx4 - estep4 * (y + 0));
+				drawOrder[drawOrderPos + 1 + (6 + subdivide * 2) * (y + 1)] = (short) (elidx4 - estep4 * (y + 1));
+				for (int x = 0; x < subdivide; x++) {
+					drawOrder[drawOrderPos + 2 + x * 2 + (6 + subdivide * 2) * (y + 1)] = (short) (firstfloatarrayidx + subdivide * (y + 0) + x);
+					drawOrder[drawOrderPos + 3 + x * 2 + (6 + subdivide * 2) * (y + 1)] = (short) (firstfloatarrayidx + subdivide * (y + 1) + x);
+				}
+				drawOrder[drawOrderPos + 2 + 2 * subdivide + (6 + subdivide * 2) * (y + 1)] = (short) (efidx2 + estep2 * (y + 0));
+				drawOrder[drawOrderPos + 3 + 2 * subdivide + (6 + subdivide * 2) * (y + 1)] = (short) (efidx2 + estep2 * (y + 1));
+				drawOrder[drawOrderPos + 4 + 2 * subdivide + (6 + subdivide * 2) * (y + 1)] = (short) (efidx2 + estep2 * (y + 1));
+			}
+
+			//last row:
+			//                elidx4-estep4*(subdivide-1) first+subdivide*(subdivide-1) .. first+subdivide*subdivide-1 efidx2+estep2*(subdivide-1)
+			//                cidx4                       elidx3                        .. efidx3                      cidx3
+			drawOrder[drawOrderPos - 1 + 6 * subdivide + subdivide * 2 * subdivide] = (short) efidx4;//duplicate first index
+			drawOrder[drawOrderPos + 0 + 6 * subdivide + subdivide * 2 * subdivide] = (short) efidx4;
+			drawOrder[drawOrderPos + 1 + 6 * subdivide + subdivide * 2 * subdivide] = (short) cidx4;
+			for (int x = 0; x < subdivide; x++) {
+				drawOrder[drawOrderPos + 2 + x * 2 + 6 * subdivide + 2 * subdivide * subdivide] = (short) (firstfloatarrayidx + subdivide * (subdivide - 1) + x);
+				drawOrder[drawOrderPos + 3 + x * 2 + 6 * subdivide + 2 * subdivide * subdivide] = (short) (elidx3 - estep3 * x);
+			}
+			drawOrder[drawOrderPos + 2 + 8 * subdivide + 2 * subdivide * subdivide] = (short) elidx2;
+			drawOrder[drawOrderPos + 3 + 8 * subdivide + 2 * subdivide * subdivide] = (short) cidx3;
+			if (drawOrder.length > drawOrderPos + 4 + 8 * subdivide + 2 * subdivide * subdivide) {
+				//duplicate the last vertex for skipping, if needed.
+				drawOrder[drawOrderPos + 4 + 8 * subdivide + 2 * subdivide * subdivide] = (short) cidx3;
+			}
+		}
+	}
+
+	//idx1 and idx2 are the first resp last index _on the edge_, i.E. away from the
+	//corner vertices.
+	private void genEdge(float x1, float y1, float z1, float s1, float t1, int idx1,
+	                     float x2, float y2, float z2, float s2, float t2, int idx2) {
+		int subedgecount = idx2-idx1+(1+2-1);
+		float dx = (x2-x1)/subedgecount;
+		float dy = (y2-y1)/subedgecount;
+		float dz = (z2-z1)/subedgecount;
+		float ds = (s2-s1)/subedgecount;
+		float dt = (t2-t1)/subedgecount;
+		float x = x1+dx;
+		float y = y1+dy;
+		float z = z1+dz;
+		float s = s1+ds;
+		float t = t1+dt;
+		for(int idx = idx1; idx <= idx2; idx++) {
+			genVertex(idx, x,y,z,s,t);
+			x += dx;
+			y += dy;
+			z += dz;
+			s += ds;
+			t += dt;
+		}
+	}
+
+	private void genVertex(int idx, float x, float y, float z, float s, float t) {
+		float d = (float)java.lang.Math.sqrt(x*x+y*y+z*z);
+		floatAttribs[idx*FLOATSTRIDE+0] = x/d;
+		floatAttribs[idx*FLOATSTRIDE+1] = y/d;
+		floatAttribs[idx*FLOATSTRIDE+2] = z/d;
+		floatAttribs[idx*FLOATSTRIDE+3] = s;
+		floatAttribs[idx*FLOATSTRIDE+4] = t;
+	}
+
+	/*
+	 * The six faces for genSharedVertices(): outward axis, then the axes
+	 * along a strip (u) and across strips (v), with u x v pointing inwards so
+	 * the strips come out CCW seen from outside.
+	 */
+	private static final int[][] FACES = {
+		// normal      u           v
+		{ 1, 0, 0,    0, 0, 1,    0, 1, 0 },
+		{-1, 0, 0,    0, 1, 0,    0, 0, 1 },
+		{ 0, 1, 0,    1, 0, 0,    0, 0, 1 },
+		{ 0,-1, 0,    0, 0, 1,    1, 0, 0 },
+		{ 0, 0, 1,    0, 1, 0,    1, 0, 0 },
+		{ 0, 0,-1,    1, 0, 0,    0, 1, 0 },
+	};
+
+	/**
+	 * Same sphere, but every vertex exists once: the cube surface is a
+	 * lattice of (subdivide+2)^3 - subdivide^3 points, each face indexes into
+	 * it, so the 8 corners and 12 edges are shared between faces.
+	 * Each face is a row of strips joined by degenerate triangles, like in
+	 * genFace().
+	 */
+	private void genSharedVertices(int subdivide) {
+		int n = subdivide + 2;
+		int[] lattice = new int[n * n * n];
+		Arrays.fill(lattice, -1);
+		floatAttribs = new float[(n * n * n - subdivide * subdivide * subdivide) * CUBEMAP_FLOATSTRIDE];
+		int rows = 6 * (n - 1);
+		drawOrder = new short[rows * 2 * n + 2 * (rows - 1)];
+		int vertexCount = 0;
+		int pos = 0;
+		int[] p = new int[3];
+		for (int[] face : FACES) {
+			for (int b = 0; b < n - 1; b++) {
+				for (int a = 0; a < n; a++) {
+					for (int row = 0; row < 2; row++) {
+						for (int axis = 0; axis < 3; axis++) {
+							//lattice coordinate: the face side, then a along u and b along v
+							p[axis] = (face[axis] > 0 ? n - 1 : 0) + face[3 + axis] * a + face[6 + axis] * (b + row);
+						}
+						int key = (p[0] * n + p[1]) * n + p[2];
+						if (lattice[key] < 0) {
+							genPosition(vertexCount, p, n - 1);
+							lattice[key] = vertexCount++;
+						}
+						if (pos > 0 && a == 0 && row == 0) {
+							//join to the previous strip: duplicate its last and our first index
+							drawOrder[pos] = drawOrder[pos - 1];
+							drawOrder[pos + 1] = (short) lattice[key];
+							pos += 2;
+						}
+						drawOrder[pos++] = (short) lattice[key];
+					}
+				}
+			}
+		}
+	}
+
+	private void genPosition(int idx, int[] p, int steps) {
+		float x = -1 + 2.f * p[0] / steps;
+		float y = -1 + 2.f * p[1] / steps;
+		float z = -1 + 2.f * p[2] / steps;
+		float d = (float)java.lang.Math.sqrt(x*x+y*y+z*z);
+		floatAttribs[idx*CUBEMAP_FLOATSTRIDE+0] = x/d;
+		floatAttribs[idx*CUBEMAP_FLOATSTRIDE+1] = y/d;
+		floatAttribs[idx*CUBEMAP_FLOATSTRIDE+2] = z/d;
+	}
+
+	private static final float PHI = (float) ((1 + Math.sqrt(5)) / 2);
+	private static final float[] ICOSAHEDRON_CORNERS = {
+		-1, PHI, 0,    1, PHI, 0,    -1, -PHI, 0,    1, -PHI, 0,
+		0, -1, PHI,    0, 1, PHI,    0, -1, -PHI,    0, 1, -PHI,
+		PHI, 0, -1,    PHI, 0, 1,    -PHI, 0, -1,    -PHI, 0, 1,
+	};
+	//counter clockwise seen from outside
+	private static final int[] ICOSAHEDRON_FACES = {
+		0, 11, 5,    0, 5, 1,    0, 1, 7,    0, 7, 10,    0, 10, 11,
+		1, 5, 9,     5, 11, 4,   11, 10, 2,  10, 7, 6,    7, 1, 8,
+		3, 9, 4,     3, 4, 2,    3, 2, 6,    3, 6, 8,     3, 8, 9,
+		4, 9, 5,     2, 4, 11,   6, 2, 10,   8, 6, 7,     9, 8, 1,
+	};
+
+	/**
+	 * Every face of the icosahedron becomes a triangular lattice of
+	 * frequency^2 triangles, projected onto the sphere. The 12 corners and
+	 * the points on the 30 edges are shared between faces, 10 f^2 + 2
+	 * vertices in all.
+	 *
+	 * A face is drawn as one strip per lattice row, from the AB edge towards
+	 * C, each strip walking from B to A. Strips are joined by degenerate
+	 * triangles, with an extra one where needed to keep every strip starting
+	 * on an even index, the winding depends on it.
+	 */
+	private void genIcosphere(int frequency) {
+		int n = frequency;
+		floatAttribs = new float[(10 * n * n + 2) * CUBEMAP_FLOATSTRIDE];
+		//strips, their joins, at most 3 indexes each
+		short[] order = new short[20 * n * (2 * n + 4)];
+		boolean[] placed = new boolean[10 * n * n + 2];
+		//edge between corners a < b at a * 12 + b, its points follow the corners
+		int[] edges = new int[12 * 12];
+		Arrays.fill(edges, -1);
+		int edgeCount = 0;
+		int nextVertex = 12 + 30 * (n - 1);
+		int[] lattice = new int[(n + 1) * (n + 1)];
+		int pos = 0;
+
+		for (int f = 0; f < 20; f++) {
+			int a = ICOSAHEDRON_FACES[f * 3];
+			int b = ICOSAHEDRON_FACES[f * 3 + 1];
+			int c = ICOSAHEDRON_FACES[f * 3 + 2];
+			//lattice point i along AB, j along AC
+			for (int j = 0; j <= n; j++) {
+				for (int i = 0; i + j <= n; i++) {
+					int id;
+					if (i == 0 && j == 0)
+						id = a;
+					else if (i == n)
+						id = b;
+					else if (j == n)
+						id = c;
+					else if (j == 0 || i == 0 || i + j == n) {
+						int from = j == 0 || i == 0 ? a : b;
+						int to = j == 0 ? b : c;
+						int k = j == 0 ? i : j;
+						int key = Math.min(from, to) * 12 + Math.max(from, to);
+						if (edges[key] < 0)
+							edges[key] = edgeCount++;
+						//points are numbered from the lower corner
+						id = 12 + edges[key] * (n - 1) + (from < to ? k : n - k) - 1;
+					} else {
+						id = nextVertex++;
+					}
+					lattice[j * (n + 1) + i] = id;
+					if (!placed[id]) {
+						placed[id] = true;
+						genIcospherePosition(id, a, b, c, i, j, n);
+					}
+				}
+			}
+			for (int j = 0; j < n; j++) {
+				int lower = j * (n + 1);
+				int upper = lower + n + 1;
+				int first = lattice[lower + n - j];
+				if (pos > 0) {
+					order[pos] = order[pos - 1];
+					pos++;
+					//the strip itself has to start on an even index
+					if ((pos & 1) == 0) {
+						order[pos] = order[pos - 1];
+						pos++;
+					}
+					order[pos++] = (short) first;
+				}
+				order[pos++] = (short) first;
+				for (int i = n - j - 1; i >= 0; i--) {
+					order[pos++] = (short) lattice[upper + i];
+					order[pos++] = (short) lattice[lower + i];
+				}
+			}
+		}
+		drawOrder = Arrays.copyOf(order, pos);
+	}
+
+	private void genIcospherePosition(int idx, int a, int b, int c, int i, int j, int n) {
+		float[] corners = ICOSAHEDRON_CORNERS;
+		float wa = (float) (n - i - j) / n;
+		float wb = (float) i / n;
+		float wc = (float) j / n;
+		float x = wa * corners[a * 3] + wb * corners[b * 3] + wc * corners[c * 3];
+		float y = wa * corners[a * 3 + 1] + wb * corners[b * 3 + 1] + wc * corners[c * 3 + 1];
+		float z = wa * corners[a * 3 + 2] + wb * corners[b * 3 + 2] + wc * corners[c * 3 + 2];
+		float d = (float) Math.sqrt(x * x + y * y + z * z);
+		floatAttribs[idx * CUBEMAP_FLOATSTRIDE] = x / d;
+		floatAttribs[idx * CUBEMAP_FLOATSTRIDE + 1] = y / d;
+		floatAttribs[idx * CUBEMAP_FLOATSTRIDE + 2] = z / d;
+	}
+
+	/** Triangles drawn, without the degenerate ones joining strips. */
+	int triangleCount() {
+		int triangles = 0;
+		for (int i = 0; i + 2 < drawOrder.length; i++) {
+			short a = drawOrder[i], b = drawOrder[i + 1], c = drawOrder[i + 2];
+			if (a != b && b != c && a != c)
+				triangles++;
+		}
+		return triangles;
+	}
+
+	/**
+	 * Largest distance from the unit sphere to the mesh, 1 minus the
+	 * distance of the mesh point closest to the center. This is how far the
+	 * silhouette of a triangle falls short of the round outline.
+	 */
+	double maxSilhouetteError() {
+		double error = 0;
+		float[] v = floatAttribs;
+		for (int i = 0; i + 2 < drawOrder.length; i++) {
+			int a = drawOrder[i], b = drawOrder[i + 1], c = drawOrder[i + 2];
+			if (a == b || b == c || a == c)
+				continue;
+			error = Math.max(error, 1 - distanceToTriangle(v, a * stride, b * stride, c * stride));
+		}
+		return error;
+	}
+
+	/** Distance from the origin to the triangle of the vertices at a, b, c. */
+	private static double distanceToTriangle(float[] v, int a, int b, int c) {
+		double ux = v[b] - v[a], uy = v[b + 1] - v[a + 1], uz = v[b + 2] - v[a + 2];
+		double wx = v[c] - v[a], wy = v[c + 1] - v[a + 1], wz = v[c + 2] - v[a + 2];
+		double nx = uy * wz - uz * wy;
+		double ny = uz * wx - ux * wz;
+		double nz = ux * wy - uy * wx;
+		double nn = nx * nx + ny * ny + nz * nz;
+		//the origin projected onto the plane, inside if on the inner side of all edges
+		double t = (nx * v[a] + ny * v[a + 1] + nz * v[a + 2]) / nn;
+		double px = nx * t, py = ny * t, pz = nz * t;
+		if (inside(v, a, b, px, py, pz, nx, ny, nz) && inside(v, b, c, px, py, pz, nx, ny, nz)
+			&& inside(v, c, a, px, py, pz, nx, ny, nz))
+			return Math.abs(t) * Math.sqrt(nn);
+		return Math.min(distanceToSegment(v, a, b),
+			Math.min(distanceToSegment(v, b, c), distanceToSegment(v, c, a)));
+	}
+
+	private static boolean inside(float[] v, int a, int b, double px, double py, double pz,
+		double nx, double ny, double nz) {
+		double ex = v[b] - v[a], ey = v[b + 1] - v[a + 1], ez = v[b + 2] - v[a + 2];
+		double qx = px - v[a], qy = py - v[a + 1], qz = pz - v[a + 2];
+		return (ey * qz - ez * qy) * nx + (ez * qx - ex * qz) * ny + (ex * qy - ey * qx) * nz >= 0;
+	}
+
+	private static double distanceToSegment(float[] v, int a, int b) {
+		double ex = v[b] - v[a], ey = v[b + 1] - v[a + 1], ez = v[b + 2] - v[a + 2];
+		double u = -(v[a] * ex + v[a + 1] * ey + v[a + 2] * ez) / (ex * ex + ey * ey + ez * ez);
+		u = Math.max(0, Math.min(1, u));
+		double x = v[a] + u * ex, y = v[a + 1] + u * ey, z = v[a + 2] + u * ez;
+		return Math.sqrt(x * x + y * y + z * z);
+	}
+}
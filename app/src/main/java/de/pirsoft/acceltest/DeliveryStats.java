@@ -0,0 +1,196 @@
+package de.pirsoft.acceltest;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * How one sensor delivered its samples during one run: the rate it really
+ * had, how regular the sample timestamps were, samples missing in gaps,
+ * timestamps that did not go forward, and how long events took from their
+ * timestamp to the callback.
+ *
+ * Keeps up to capacity intervals and delays, counts go on beyond that.
+ * Percentiles are exact, sorted on request. Intervals are between
+ * timestamps that went forward, a sample from the past is only counted.
+ * Not thread safe, no allocations after construction.
+ */
+class DeliveryStats {
+	/** An interval this many times the median one is a gap. */
+	static final double GAP_FACTOR = 1.5;
+
+	private final int mCapacity;
+	private final long[] mIntervals;
+	private final long[] mDelays;
+	private final long[] mSorted;
+	private final long[] mSortedDelays;
+	private final long[] mDeviations;
+	private boolean mSortedValid;
+
+	private long mCount;
+	private int mStoredIntervals;
+	private int mStoredDelays;
+	private long mFirst;
+	//latest timestamp so far
+	private long mLast;
+	private long mBackwards;
+	private long mDuplicates;
+
+	DeliveryStats(int capacity) {
+		mCapacity = capacity;
+		mIntervals = new long[capacity];
+		mDelays = new long[capacity];
+		mSorted = new long[capacity];
+		mSortedDelays = new long[capacity];
+		mDeviations = new long[capacity];
+		reset();
+	}
+
+	void reset() {
+		mCount = 0;
+		mFirst = 0;
+		mLast = 0;
+		mStoredIntervals = 0;
+		mStoredDelays = 0;
+		mBackwards = 0;
+		mDuplicates = 0;
+		mSortedValid = false;
+	}
+
+	/**
+	 * @param timestamp   of the event, on the elapsedRealtimeNanos() clock
+	 * @param receiveTime elapsedRealtimeNanos() in the callback
+	 */
+	void onSample(long timestamp, long receiveTime) {
+		mSortedValid = false;
+		if (mStoredDelays < mCapacity)
+			mDelays[mStoredDelays++] = receiveTime - timestamp;
+		if (mCount++ == 0) {
+			mFirst = timestamp;
+			mLast = timestamp;
+			return;
+		}
+		if (timestamp < mLast) {
+			mBackwards++;
+		} else if (timestamp == mLast) {
+			mDuplicates++;
+		} else {
+			if (mStoredIntervals < mCapacity)
+				mIntervals[mStoredIntervals++] = timestamp - mLast;
+			mLast = timestamp;
+		}
+	}
+
+	long getCount() {
+		return mCount;
+	}
+
+	/** Samples per second of sensor time, NaN below two distinct timestamps. */
+	double getRate() {
+		return mLast > mFirst ? (mCount - 1) * 1e9 / (mLast - mFirst) : Double.NaN;
+	}
+
+	long getBackwards() {
+		return mBackwards;
+	}
+
+	long getDuplicates() {
+		return mDuplicates;
+	}
+
+	private void sort() {
+		if (mSortedValid)
+			return;
+		System.arraycopy(mIntervals, 0, mSorted, 0, mStoredIntervals);
+		Arrays.sort(mSorted, 0, mStoredIntervals);
+		System.arraycopy(mDelays, 0, mSortedDelays, 0, mStoredDelays);
+		Arrays.sort(mSortedDelays, 0, mStoredDelays);
+		long median = percentile(mSorted, mStoredIntervals, 0.5);
+		for (int i = 0; i < mStoredIntervals; i++)
+			mDeviations[i] = Math.abs(mIntervals[i] - median);
+		Arrays.sort(mDeviations, 0, mStoredIntervals);
+		mSortedValid = true;
+	}
+
+	/** Nearest rank, -1 without values. */
+	private static long percentile(long[] sorted, int count, double fraction) {
+		if (count == 0)
+			return -1;
+		int rank = (int) Math.ceil(fraction * count);
+		return sorted[Math.min(count, Math.max(1, rank)) - 1];
+	}
+
+	/** Nanoseconds between samples, -1 without intervals. */
+	long getIntervalPercentile(double fraction) {
+		sort();
+		return percentile(mSorted, mStoredIntervals, fraction);
+	}
+
+	/** Nanoseconds an interval is off the median one, -1 without intervals. */
+	long getJitterPercentile(double fraction) {
+		sort();
+		return percentile(mDeviations, mStoredIntervals, fraction);
+	}
+
+	/** Nanoseconds from the timestamp to the callback, -1 without samples. */
+	long getDelayPercentile(double fraction) {
+		sort();
+		return percentile(mSortedDelays, mStoredDelays, fraction);
+	}
+
+	/** Intervals of more than GAP_FACTOR times the median. */
+	int getGaps() {
+		long median = getIntervalPercentile(0.5);
+		int gaps = 0;
+		for (int i = 0; i < mStoredIntervals; i++)
+			if (mIntervals[i] > GAP_FACTOR * median)
+				gaps++;
+		return gaps;
+	}
+
+	/** Samples the gaps should have had at the median interval. */
+	long getMissing() {
+		long median = getIntervalPercentile(0.5);
+		long missing = 0;
+		for (int i = 0; i < mStoredIntervals; i++)
+			if (mIntervals[i] > GAP_FACTOR * median)
+				missing += Math.round((double) mIntervals[i] / median) - 1;
+		return missing;
+	}
+
+	/**
+	 * One line of key=value pairs, times in microseconds:
+	 *
+	 *   n=1000 rate_hz=199.9 interval_us=4990/5000/5012/9998 jitter_us=3/41
+	 *   gaps=1 missing=1 backwards=0 duplicates=0 delay_us=812/1650/4100
+	 *
+	 * interval is p1/p50/p99/max, jitter the deviation from the median as
+	 * p50/p99, delay p50/p99/max.
+	 */
+	void appendReport(StringBuilder out) {
+		sort();
+		out.append("n=").append(mCount)
+			.append(" rate_hz=").append(String.format(Locale.US, "%.1f", getRate()))
+			.append(" interval_us=");
+		appendUs(out, mSorted, mStoredIntervals, 0.01, 0.5, 0.99, 1);
+		out.append(" jitter_us=");
+		appendUs(out, mDeviations, mStoredIntervals, 0.5, 0.99);
+		out.append(" gaps=").append(getGaps())
+			.append(" missing=").append(getMissing())
+			.append(" backwards=").append(mBackwards)
+			.append(" duplicates=").append(mDuplicates)
+			.append(" delay_us=");
+		appendUs(out, mSortedDelays, mStoredDelays, 0.5, 0.99, 1);
+	}
+
+	//delays may be negative if a sensor stamps on another clock, so no -1 for missing values here
+	private static void appendUs(StringBuilder out, long[] sorted, int count, double... fractions) {
+		for (int i = 0; i < fractions.length; i++) {
+			if (i > 0)
+				out.append('/');
+			if (count == 0)
+				out.append('-');
+			else
+				out.append(percentile(sorted, count, fractions[i]) / 1000);
+		}
+	}
+}
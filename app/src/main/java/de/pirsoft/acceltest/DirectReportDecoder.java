@@ -0,0 +1,122 @@
+package de.pirsoft.acceltest;
+
+import java.io.IOException;
+
+/**
+ * Decodes the report ring a sensor direct channel writes into shared memory.
+ *
+ * Every report is 104 bytes, in native (little endian) byte order:
+ *   offset  0: int32   size of the report, always 104
+ *   offset  4: int32   report token, identifies the sensor
+ *   offset  8: int32   sensor type
+ *   offset 12: uint32  atomic counter, starts at 1 and increments per report
+ *   offset 16: int64   timestamp, same base as SensorEvent.timestamp
+ *   offset 24: float   values[16]
+ *   offset 88: int32   reserved[4]
+ *
+ * The writer fills the ring slot by slot and wraps around at the end. We
+ * follow it by remembering which slot and which counter value come next;
+ * a slot with a lower counter has not been written yet.
+ *
+ * Plain java, so it can be tested against a stand-in writer on the JVM.
+ */
+final class DirectReportDecoder {
+	static final int REPORT_SIZE = 104;
+	static final int VALUE_COUNT = 16;
+
+	private static final int OFFSET_SIZE = 0;
+	private static final int OFFSET_TOKEN = 4;
+	private static final int OFFSET_TYPE = 8;
+	private static final int OFFSET_COUNTER = 12;
+	private static final int OFFSET_TIMESTAMP = 16;
+	private static final int OFFSET_VALUES = 24;
+
+	/** Where the reports come from, i.E. a MemoryFile or a plain array in tests. */
+	interface RingSource {
+		void read(int offset, byte[] dst, int count) throws IOException;
+	}
+
+	private final int mSlots;
+	private final byte[] mReport = new byte[REPORT_SIZE];
+	private final float[] mValues = new float[VALUE_COUNT];
+	private int mSlot = 0;
+	private int mExpectedCounter = 1;
+	private long mDecoded = 0;
+	private long mLost = 0;
+
+	DirectReportDecoder(int ringSize) {
+		if (ringSize < REPORT_SIZE)
+			throw new IllegalArgumentException("ring smaller than one report");
+		mSlots = ringSize / REPORT_SIZE;
+	}
+
+	/**
+	 * Hands all reports written since the last call to the sink.
+	 *
+	 * @return number of reports decoded
+	 */
+	int poll(RingSource source, SampleSink sink) throws IOException {
+		int count = 0;
+		int skipped = 0;
+		//never walk more than once around the ring, the writer may be lapping us
+		while (count < mSlots && skipped < mSlots) {
+			source.read(mSlot * REPORT_SIZE, mReport, REPORT_SIZE);
+			int counter = readInt(mReport, OFFSET_COUNTER);
+			int ahead = counter - mExpectedCounter;
+			if (counter == 0 || ahead < 0)
+				break;//not written yet
+			if (readInt(mReport, OFFSET_SIZE) != REPORT_SIZE)
+				break;
+			if (ahead > 0) {
+				//the writer lapped us. the oldest report it may have left is
+				//the one a ring earlier than this, in the next slot
+				int oldest = counter - mSlots + 1;
+				mLost += oldest - mExpectedCounter;
+				mExpectedCounter = oldest == 0 ? 1 : oldest;
+				mSlot++;
+				if (mSlot == mSlots)
+					mSlot = 0;
+				skipped++;
+				continue;
+			}
+			for (int i = 0; i < VALUE_COUNT; i++)
+				mValues[i] = Float.intBitsToFloat(readInt(mReport, OFFSET_VALUES + i * 4));
+			sink.onSample(readInt(mReport, OFFSET_TYPE), readLong(mReport, OFFSET_TIMESTAMP), mValues);
+
+			mExpectedCounter++;
+			if (mExpectedCounter == 0)
+				mExpectedCounter = 1;//counter skips 0 on wrap
+			mSlot++;
+			if (mSlot == mSlots)
+				mSlot = 0;
+			count++;
+		}
+		mDecoded += count;
+		return count;
+	}
+
+	/** Report token of the report last read, mostly useful for debugging. */
+	int lastToken() {
+		return readInt(mReport, OFFSET_TOKEN);
+	}
+
+	long decodedCount() {
+		return mDecoded;
+	}
+
+	/** Reports overwritten by the writer before we got to them. */
+	long lostCount() {
+		return mLost;
+	}
+
+	private static int readInt(byte[] b, int off) {
+		return (b[off] & 0xff)
+			| (b[off + 1] & 0xff) << 8
+			| (b[off + 2] & 0xff) << 16
+			| (b[off + 3] & 0xff) << 24;
+	}
+
+	private static long readLong(byte[] b, int off) {
+		return (readInt(b, off) & 0xffffffffL) | ((long) readInt(b, off + 4) << 32);
+	}
+}
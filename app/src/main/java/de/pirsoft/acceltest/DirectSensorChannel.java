@@ -0,0 +1,93 @@
+package de.pirsoft.acceltest;
+
+import android.annotation.TargetApi;
+import android.hardware.Sensor;
+import android.hardware.SensorDirectChannel;
+import android.hardware.SensorManager;
+import android.os.Build;
+import android.os.MemoryFile;
+
+import java.io.IOException;
+
+/**
+ * Sensor delivery through a SensorDirectChannel backed by a MemoryFile.
+ *
+ * The sensor HAL writes reports straight into the shared memory ring, there
+ * are no per-event callbacks through the Looper. Whoever owns the channel
+ * has to poll() it regularly, often enough that the ring does not overflow.
+ */
+@TargetApi(Build.VERSION_CODES.O)
+class DirectSensorChannel {
+	private final MemoryFile mMemoryFile;
+	private final SensorDirectChannel mChannel;
+	private final DirectReportDecoder mDecoder;
+	private final DirectReportDecoder.RingSource mSource = new DirectReportDecoder.RingSource() {
+		@Override
+		public void read(int offset, byte[] dst, int count) throws IOException {
+			mMemoryFile.readBytes(dst, offset, 0, count);
+		}
+	};
+
+	static boolean isSupported(Sensor sensor) {
+		return Build.VERSION.SDK_INT >= Build.VERSION_CODES.O
+			&& sensor != null
+			&& sensor.isDirectChannelTypeSupported(SensorDirectChannel.TYPE_MEMORY_FILE)
+			&& sensor.getHighestDirectReportRateLevel() > SensorDirectChannel.RATE_STOP;
+	}
+
+	/**
+	 * @param reportCount ring size in reports. Must hold everything that
+	 *                    arrives between two polls.
+	 */
+	DirectSensorChannel(SensorManager sensorManager, int reportCount) throws IOException {
+		int size = reportCount * DirectReportDecoder.REPORT_SIZE;
+		mMemoryFile = new MemoryFile("sensor_direct", size);
+		SensorDirectChannel channel;
+		try {
+			channel = sensorManager.createDirectChannel(mMemoryFile);
+		} catch (RuntimeException e) {
+			mMemoryFile.close();
+			throw new IOException("cannot create direct channel", e);
+		}
+		if (channel == null) {
+			mMemoryFile.close();
+			throw new IOException("cannot create direct channel");
+		}
+		mChannel = channel;
+		mDecoder = new DirectReportDecoder(size);
+	}
+
+	/**
+	 * Starts reporting of the sensor at the given RATE_* level, or the
+	 * highest level the sensor supports if that is lower.
+	 *
+	 * @return false if the sensor could not be configured
+	 */
+	boolean configure(Sensor sensor, int rateLevel) {
+		int rate = Math.min(rateLevel, sensor.getHighestDirectReportRateLevel());
+		return mChannel.configure(sensor, rate) > 0;
+	}
+
+	/**
+	 * Hands all reports since the last poll to the sink. Must be called from
+	 * a single thread.
+	 *
+	 * @return number of reports handed over
+	 */
+	int poll(SampleSink sink) {
+		try {
+			return mDecoder.poll(mSource, sink);
+		} catch (IOException e) {
+			return 0;
+		}
+	}
+
+	long lostCount() {
+		return mDecoder.lostCount();
+	}
+
+	void close() {
+		mChannel.close();
+		mMemoryFile.close();
+	}
+}
@@ -0,0 +1,91 @@
+package de.pirsoft.acceltest;
+
+/**
+ * Bounded log of detected events, for one writer and one reader thread,
+ * without locks. The writer never waits: when the reader falls behind, the
+ * oldest entries are overwritten and counted as lost.
+ *
+ * Entries live in parallel primitive arrays. The writer fills a slot and
+ * then publishes the new count through a volatile, the reader copies the
+ * entries out and checks the count again to drop any slot the writer got
+ * to in the meantime.
+ */
+class EventLog {
+	private final int mCapacity;
+	private final int[] mTypes;
+	private final long[] mTimes;
+	private final float[] mPeaks;
+	private final long[] mDurations;
+	//entries ever written, only the writer stores it
+	private volatile long mWritten = 0;
+
+	//reader side
+	private long mRead = 0;
+	private long mLost = 0;
+	//stored between copy and check: a volatile load alone lets the plain
+	//loads before it move past it (ARM ldar), a volatile store does not
+	private volatile long mFence = 0;
+
+	/** @param capacity entries kept for a reader that falls behind */
+	EventLog(int capacity) {
+		// one spare slot for the writer to fill while the reader copies the rest
+		mCapacity = capacity + 1;
+		mTypes = new int[mCapacity];
+		mTimes = new long[mCapacity];
+		mPeaks = new float[mCapacity];
+		mDurations = new long[mCapacity];
+	}
+
+	/** Writer thread only. */
+	void add(int type, long timestamp, float peak, long duration) {
+		long n = mWritten;
+		int slot = (int) (n % mCapacity);
+		mTypes[slot] = type;
+		mTimes[slot] = timestamp;
+		mPeaks[slot] = peak;
+		mDurations[slot] = duration;
+		mWritten = n + 1;
+	}
+
+	/** Entries ever written, any thread. */
+	long getWritten() {
+		return mWritten;
+	}
+
+	/**
+	 * Reader thread only: copies the entries written since the last call,
+	 * oldest first, into the given arrays.
+	 *
+	 * @return number of entries copied, at most the array length
+	 */
+	int read(int[] types, long[] times, float[] peaks, long[] durations) {
+		long written = mWritten;
+		long first = Math.max(mRead, written - mCapacity + 1);
+		int count = (int) Math.min(written - first, types.length);
+		for (int i = 0; i < count; i++) {
+			int slot = (int) ((first + i) % mCapacity);
+			types[i] = mTypes[slot];
+			times[i] = mTimes[slot];
+			peaks[i] = mPeaks[slot];
+			durations[i] = mDurations[slot];
+		}
+		// entries at or below this index may have been overwritten while copying
+		mFence = first;
+		long overwritten = mWritten - mCapacity;
+		int skip = (int) Math.max(0, Math.min(count, overwritten + 1 - first));
+		if (skip > 0) {
+			System.arraycopy(types, skip, types, 0, count - skip);
+			System.arraycopy(times, skip, times, 0, count - skip);
+			System.arraycopy(peaks, skip, peaks, 0, count - skip);
+			System.arraycopy(durations, skip, durations, 0, count - skip);
+		}
+		mLost += first - mRead + skip;
+		mRead = first + count;
+		return count - skip;
+	}
+
+	/** Entries overwritten before the reader got to them, reader thread only. */
+	long getLost() {
+		return mLost;
+	}
+}
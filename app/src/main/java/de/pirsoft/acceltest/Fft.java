@@ -0,0 +1,64 @@
+package de.pirsoft.acceltest;
+
+/**
+ * In place radix-2 complex FFT of a fixed power of two size.
+ *
+ * Twiddle factors and the bit reversal permutation are computed once in
+ * the constructor, transform() itself does not allocate.
+ */
+class Fft {
+	final int size;
+	//cos and sin of 2*pi*k/size for k < size/2
+	private final float[] mCos;
+	private final float[] mSin;
+	private final int[] mBitReverse;
+
+	Fft(int size) {
+		if (size < 2 || (size & (size - 1)) != 0)
+			throw new IllegalArgumentException("FFT size must be a power of two: " + size);
+		this.size = size;
+		mCos = new float[size / 2];
+		mSin = new float[size / 2];
+		for (int k = 0; k < size / 2; k++) {
+			double a = 2 * Math.PI * k / size;
+			mCos[k] = (float) Math.cos(a);
+			mSin[k] = (float) Math.sin(a);
+		}
+		int bits = Integer.numberOfTrailingZeros(size);
+		mBitReverse = new int[size];
+		for (int i = 0; i < size; i++)
+			mBitReverse[i] = Integer.reverse(i) >>> (32 - bits);
+	}
+
+	/** Forward transform, X[k] = sum x[n] * e^(-2*pi*i*k*n/size). */
+	void transform(float[] re, float[] im) {
+		int n = size;
+		for (int i = 0; i < n; i++) {
+			int j = mBitReverse[i];
+			if (j > i) {
+				float t = re[i];
+				re[i] = re[j];
+				re[j] = t;
+				t = im[i];
+				im[i] = im[j];
+				im[j] = t;
+			}
+		}
+		for (int half = 1, step = n / 2; half < n; half <<= 1, step >>= 1) {
+			for (int start = 0; start < n; start += 2 * half) {
+				for (int k = 0, t = 0; k < half; k++, t += step) {
+					float wr = mCos[t];
+					float wi = -mSin[t];
+					int a = start + k;
+					int b = a + half;
+					float br = re[b] * wr - im[b] * wi;
+					float bi = re[b] * wi + im[b] * wr;
+					re[b] = re[a] - br;
+					im[b] = im[a] - bi;
+					re[a] += br;
+					im[a] += bi;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,270 @@
+package de.pirsoft.acceltest;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.opengl.GLES20;
+
+import java.util.ArrayList;
+
+/**
+ * Owns the buffers, textures and programs that have to survive a context
+ * loss. Each is registered with a small recipe to make it again (mesh
+ * parameters, resource ids, shader sources) and at most one prepared CPU
+ * copy of its contents, which is dropped as soon as it is uploaded. After
+ * that the data only lives on the GPU.
+ *
+ * createAll() builds everything registered in one pass, call it from every
+ * onSurfaceCreated(). The names of a lost context are simply forgotten.
+ */
+class GlResources {
+	/** Vertex and index buffer of a CubeSphereMesh. */
+	static final class Mesh {
+		/** subdivide, or the frequency of an icosphere */
+		final int subdivide;
+		final boolean cubeMap;
+		final boolean icosphere;
+		/** CubeSphereMesh.FLOATSTRIDE or CUBEMAP_FLOATSTRIDE */
+		final int stride;
+		private CubeSphereMesh mPending;
+		int vertexBuffer;
+		int indexBuffer;
+		int indexCount;
+
+		private Mesh(int subdivide, boolean cubeMap, boolean icosphere, CubeSphereMesh built) {
+			this.subdivide = subdivide;
+			this.cubeMap = cubeMap;
+			this.icosphere = icosphere;
+			stride = cubeMap ? CubeSphereMesh.CUBEMAP_FLOATSTRIDE : CubeSphereMesh.FLOATSTRIDE;
+			mPending = built;
+		}
+
+		private CubeSphereMesh build() {
+			if (icosphere)
+				return CubeSphereMesh.forIcosphere(subdivide);
+			return cubeMap ? CubeSphereMesh.forCubeMap(subdivide) : new CubeSphereMesh(subdivide);
+		}
+	}
+
+	/** GL_TEXTURE_2D from one drawable or GL_TEXTURE_CUBE_MAP from six. */
+	static final class Texture {
+		final int target;
+		private final int[] mResourceIds;
+		private Bitmap[] mPending;
+		int name;
+
+		private Texture(int target, int[] resourceIds, Bitmap[] decoded) {
+			this.target = target;
+			mResourceIds = resourceIds;
+			mPending = decoded;
+		}
+	}
+
+	static final class Program {
+		private final String mVertexSource;
+		private final String mFragmentSource;
+		private int mVertexShader;
+		private int mFragmentShader;
+		int name;
+
+		private Program(String vertexSource, String fragmentSource) {
+			mVertexSource = vertexSource;
+			mFragmentSource = fragmentSource;
+		}
+	}
+
+	private final Resources mResources;
+	private final ArrayList<Mesh> mMeshes = new ArrayList<>();
+	private final ArrayList<Texture> mTextures = new ArrayList<>();
+	private final ArrayList<Program> mPrograms = new ArrayList<>();
+	private int mPasses = 0;
+	private long mCreateTime = 0;
+	private long mGpuBytes = 0;
+	private StartupPhases mPhases;
+
+	/** @param resources where texture recipes decode from, null for empty textures */
+	GlResources(Resources resources) {
+		mResources = resources;
+	}
+
+	/** Records uploads and shader compiles of the first createAll(), may be left unset. */
+	void setStartupPhases(StartupPhases phases) {
+		mPhases = phases;
+	}
+
+	/** @param built the mesh if already built, uploaded and dropped by the next createAll() */
+	Mesh addMesh(int subdivide, boolean cubeMap, CubeSphereMesh built) {
+		Mesh mesh = new Mesh(subdivide, cubeMap, false, built);
+		mMeshes.add(mesh);
+		return mesh;
+	}
+
+	/** Like addMesh(), for CubeSphereMesh.forIcosphere(), which is always for a cube map. */
+	Mesh addIcosphere(int frequency, CubeSphereMesh built) {
+		Mesh mesh = new Mesh(frequency, true, true, built);
+		mMeshes.add(mesh);
+		return mesh;
+	}
+
+	/**
+	 * @param resourceIds one drawable for GL_TEXTURE_2D, six in GL face order
+	 *                    (+X, -X, +Y, -Y, +Z, -Z) for GL_TEXTURE_CUBE_MAP
+	 * @param decoded     decode(resourceIds) if already done, recycled by
+	 *                    the next createAll()
+	 */
+	Texture addTexture(int target, int[] resourceIds, Bitmap[] decoded) {
+		Texture texture = new Texture(target, resourceIds, decoded);
+		mTextures.add(texture);
+		return texture;
+	}
+
+	Program addProgram(String vertexSource, String fragmentSource) {
+		Program program = new Program(vertexSource, fragmentSource);
+		mPrograms.add(program);
+		return program;
+	}
+
+	/**
+	 * Unscaled bitmaps, as createAll() expects them for a texture recipe.
+	 * None without resources, headless the textures stay empty.
+	 */
+	static Bitmap[] decode(Resources resources, int[] resourceIds) {
+		if (resources == null)
+			return new Bitmap[0];
+		BitmapFactory.Options options = new BitmapFactory.Options();
+		options.inScaled = false;
+		Bitmap[] bitmaps = new Bitmap[resourceIds.length];
+		for (int i = 0; i < bitmaps.length; i++)
+			bitmaps[i] = BitmapFactory.decodeResource(resources, resourceIds[i], options);
+		return bitmaps;
+	}
+
+	/**
+	 * Creates every registered object in the current context. Uses the
+	 * prepared copies where there still are some, otherwise follows the
+	 * recipes. Names are generated with one call per kind and all shaders
+	 * are compiled before the first link, so the driver can overlap the work.
+	 */
+	void createAll(Gles gl) {
+		long start = System.nanoTime();
+		long gpuBytes = 0;
+		int[] names = new int[Math.max(2 * mMeshes.size(), mTextures.size())];
+
+		if (mPhases != null)
+			mPhases.begin(StartupPhases.BUFFER_UPLOAD);
+		if (!mMeshes.isEmpty())
+			gl.glGenBuffers(2 * mMeshes.size(), names, 0);
+		for (int i = 0; i < mMeshes.size(); i++) {
+			Mesh mesh = mMeshes.get(i);
+			CubeSphereMesh data = mesh.mPending != null ? mesh.mPending : mesh.build();
+			mesh.mPending = null;
+			mesh.vertexBuffer = names[2 * i];
+			mesh.indexBuffer = names[2 * i + 1];
+			mesh.indexCount = data.drawListBuffer.capacity();
+
+			gl.glBindBuffer(GLES20.GL_ARRAY_BUFFER, mesh.vertexBuffer);
+			gl.glBufferData(GLES20.GL_ARRAY_BUFFER,
+				data.floatBuffer.capacity() * 4, data.floatBuffer, GLES20.GL_STATIC_DRAW);
+			gl.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, mesh.indexBuffer);
+			gl.glBufferData(GLES20.GL_ELEMENT_ARRAY_BUFFER,
+				data.drawListBuffer.capacity() * 2, data.drawListBuffer, GLES20.GL_STATIC_DRAW);
+			gpuBytes += data.floatBuffer.capacity() * 4 + data.drawListBuffer.capacity() * 2;
+		}
+		gl.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+		gl.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 0);
+		if (mPhases != null) {
+			mPhases.end(StartupPhases.BUFFER_UPLOAD);
+			mPhases.begin(StartupPhases.TEXTURE_UPLOAD);
+		}
+
+		if (!mTextures.isEmpty())
+			gl.glGenTextures(mTextures.size(), names, 0);
+		for (int i = 0; i < mTextures.size(); i++) {
+			Texture texture = mTextures.get(i);
+			Bitmap[] bitmaps = texture.mPending != null ? texture.mPending : decode(mResources, texture.mResourceIds);
+			texture.mPending = null;
+			texture.name = names[i];
+
+			gl.glBindTexture(texture.target, texture.name);
+			gl.glTexParameteri(texture.target, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
+			gl.glTexParameteri(texture.target, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
+			if (texture.target == GLES20.GL_TEXTURE_CUBE_MAP) {
+				// no seamless filtering on GLES2, at least keep the edges from wrapping around
+				gl.glTexParameteri(texture.target, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
+				gl.glTexParameteri(texture.target, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
+				for (int face = 0; face < bitmaps.length; face++)
+					gl.texImage2D(GLES20.GL_TEXTURE_CUBE_MAP_POSITIVE_X + face, 0, bitmaps[face]);
+			} else if (bitmaps.length > 0) {
+				gl.texImage2D(texture.target, 0, bitmaps[0]);
+			}
+			for (Bitmap bitmap : bitmaps) {
+				gpuBytes += bitmap.getByteCount();
+				bitmap.recycle();
+			}
+		}
+		if (!mTextures.isEmpty())
+			gl.glBindTexture(GLES20.GL_TEXTURE_2D, 0);
+		if (mPhases != null) {
+			mPhases.end(StartupPhases.TEXTURE_UPLOAD);
+			mPhases.begin(StartupPhases.SHADER_COMPILE);
+		}
+
+		for (Program program : mPrograms) {
+			program.mVertexShader = compile(gl, GLES20.GL_VERTEX_SHADER, program.mVertexSource);
+			program.mFragmentShader = compile(gl, GLES20.GL_FRAGMENT_SHADER, program.mFragmentSource);
+		}
+		for (Program program : mPrograms) {
+			program.name = gl.glCreateProgram();
+			gl.glAttachShader(program.name, program.mVertexShader);
+			gl.glAttachShader(program.name, program.mFragmentShader);
+			gl.glLinkProgram(program.name);
+			// attached shaders stay alive until the program goes
+			gl.glDeleteShader(program.mVertexShader);
+			gl.glDeleteShader(program.mFragmentShader);
+		}
+		if (mPhases != null)
+			mPhases.end(StartupPhases.SHADER_COMPILE);
+
+		mGpuBytes = gpuBytes;
+		mPasses++;
+		mCreateTime = System.nanoTime() - start;
+	}
+
+	private static int compile(Gles gl, int type, String source) {
+		int shader = gl.glCreateShader(type);
+		gl.glShaderSource(shader, source);
+		gl.glCompileShader(shader);
+		return shader;
+	}
+
+	/** Prepared copies not uploaded yet, native and heap counted once each. */
+	long getCpuBytes() {
+		long bytes = 0;
+		for (Mesh mesh : mMeshes) {
+			CubeSphereMesh data = mesh.mPending;
+			if (data != null)
+				bytes += (data.floatAttribs.length * 4 + data.drawOrder.length * 2) * 2;
+		}
+		for (Texture texture : mTextures) {
+			if (texture.mPending != null)
+				for (Bitmap bitmap : texture.mPending)
+					bytes += bitmap.getByteCount();
+		}
+		return bytes;
+	}
+
+	/** Buffer and texel bytes uploaded by the last createAll(). */
+	long getGpuBytes() {
+		return mGpuBytes;
+	}
+
+	/** Duration of the last createAll() in ns. */
+	long getCreateTime() {
+		return mCreateTime;
+	}
+
+	/** Number of createAll() calls, so more than one means a context was lost. */
+	int getPasses() {
+		return mPasses;
+	}
+}
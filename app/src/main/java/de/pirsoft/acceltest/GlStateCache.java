@@ -0,0 +1,653 @@
+package de.pirsoft.acceltest;
+
+import android.graphics.Bitmap;
+import android.opengl.GLES20;
+
+import java.nio.Buffer;
+
+/**
+ * Gles filter that drops calls which would not change the GL state, and
+ * counts the calls that do reach the driver.
+ *
+ * Tracks program, buffer, framebuffer, vertex array and texture bindings, vertex
+ * attribute setup, a few capabilities, blend function, viewport and
+ * glUniform1i values.
+ * All GL calls must go through the cache, otherwise the tracked state goes
+ * stale. After the context was (re)created call invalidate(). Deleting
+ * objects through the cache forgets their bindings.
+ */
+class GlStateCache implements Gles {
+	private static final int UNKNOWN = -1;
+	private static final int MAX_ATTRIBS = 16;
+	private static final int MAX_TEXTURE_UNITS = 8;
+	private static final int MAX_CAPS = 8;
+	private static final int MAX_UNIFORMS = 16;
+
+	private final Gles mGl;
+
+	private int mProgram;
+	private int mArrayBuffer;
+	private int mElementBuffer;
+	private int mVertexArray;
+	private int mFramebuffer;
+	private int mActiveTexture;
+	//bound texture per unit, for GL_TEXTURE_2D and GL_TEXTURE_CUBE_MAP
+	private final int[] mTexture2D = new int[MAX_TEXTURE_UNITS];
+	private final int[] mTextureCube = new int[MAX_TEXTURE_UNITS];
+
+	//vertex attributes, part of the vertex array object state
+	private final int[] mAttribEnabled = new int[MAX_ATTRIBS];
+	private final int[] mAttribSize = new int[MAX_ATTRIBS];
+	private final int[] mAttribType = new int[MAX_ATTRIBS];
+	private final boolean[] mAttribNormalized = new boolean[MAX_ATTRIBS];
+	private final int[] mAttribStride = new int[MAX_ATTRIBS];
+	private final int[] mAttribOffset = new int[MAX_ATTRIBS];
+	private final int[] mAttribBuffer = new int[MAX_ATTRIBS];
+
+	private final int[] mCap = new int[MAX_CAPS];
+	private final int[] mCapEnabled = new int[MAX_CAPS];
+	private int mCapCount;
+
+	private final int[] mUniformProgram = new int[MAX_UNIFORMS];
+	private final int[] mUniformLocation = new int[MAX_UNIFORMS];
+	private final int[] mUniformValue = new int[MAX_UNIFORMS];
+	private int mUniformCount;
+
+	private int mBlendSrc;
+	private int mBlendDst;
+	private final int[] mViewport = new int[4];
+	private final float[] mClearColor = new float[4];
+	private boolean mClearColorKnown;
+
+	private int mIssued;
+	private int mSkipped;
+
+	GlStateCache(Gles gl) {
+		mGl = gl;
+		invalidate();
+	}
+
+	/** Forgets all tracked state, the next call of every kind reaches the driver. */
+	void invalidate() {
+		mProgram = UNKNOWN;
+		mArrayBuffer = UNKNOWN;
+		mVertexArray = UNKNOWN;
+		mFramebuffer = UNKNOWN;
+		mActiveTexture = UNKNOWN;
+		for (int i = 0; i < MAX_TEXTURE_UNITS; i++) {
+			mTexture2D[i] = UNKNOWN;
+			mTextureCube[i] = UNKNOWN;
+		}
+		invalidateVertexArrayState();
+		mCapCount = 0;
+		mUniformCount = 0;
+		mBlendSrc = UNKNOWN;
+		mViewport[2] = UNKNOWN;
+		mClearColorKnown = false;
+	}
+
+	private void invalidateVertexArrayState() {
+		mElementBuffer = UNKNOWN;
+		for (int i = 0; i < MAX_ATTRIBS; i++) {
+			mAttribEnabled[i] = UNKNOWN;
+			mAttribBuffer[i] = UNKNOWN;
+		}
+	}
+
+	@Override
+	public boolean isGles3() {
+		return mGl.isGles3();
+	}
+
+	@Override
+	public boolean hasVertexArrayObjects() {
+		return mGl.hasVertexArrayObjects();
+	}
+
+	@Override
+	public boolean hasTimerQueries() {
+		return mGl.hasTimerQueries();
+	}
+
+	/** Calls passed on to the driver since the last resetCounters(). */
+	int issuedCalls() {
+		return mIssued;
+	}
+
+	/** Calls dropped as redundant since the last resetCounters(). */
+	int skippedCalls() {
+		return mSkipped;
+	}
+
+	void resetCounters() {
+		mIssued = 0;
+		mSkipped = 0;
+	}
+
+	private boolean skip(boolean redundant) {
+		if (redundant)
+			mSkipped++;
+		else
+			mIssued++;
+		return redundant;
+	}
+
+	@Override
+	public void glActiveTexture(int texture) {
+		if (skip(texture == mActiveTexture))
+			return;
+		mActiveTexture = texture;
+		mGl.glActiveTexture(texture);
+	}
+
+	@Override
+	public void glAttachShader(int program, int shader) {
+		skip(false);
+		mGl.glAttachShader(program, shader);
+	}
+
+	@Override
+	public void glBindBuffer(int target, int buffer) {
+		if (target == GLES20.GL_ARRAY_BUFFER) {
+			if (skip(buffer == mArrayBuffer))
+				return;
+			mArrayBuffer = buffer;
+		} else if (target == GLES20.GL_ELEMENT_ARRAY_BUFFER) {
+			if (skip(buffer == mElementBuffer))
+				return;
+			mElementBuffer = buffer;
+		} else {
+			skip(false);
+		}
+		mGl.glBindBuffer(target, buffer);
+	}
+
+	@Override
+	public void glBindFramebuffer(int target, int framebuffer) {
+		if (target == GLES20.GL_FRAMEBUFFER) {
+			if (skip(framebuffer == mFramebuffer))
+				return;
+			mFramebuffer = framebuffer;
+		} else {
+			skip(false);
+		}
+		mGl.glBindFramebuffer(target, framebuffer);
+	}
+
+	@Override
+	public void glBindRenderbuffer(int target, int renderbuffer) {
+		skip(false);
+		mGl.glBindRenderbuffer(target, renderbuffer);
+	}
+
+	@Override
+	public void glBindTexture(int target, int texture) {
+		int unit = mActiveTexture == UNKNOWN ? -1 : mActiveTexture - GLES20.GL_TEXTURE0;
+		int[] bound = null;
+		if (unit >= 0 && unit < MAX_TEXTURE_UNITS) {
+			if (target == GLES20.GL_TEXTURE_2D)
+				bound = mTexture2D;
+			else if (target == GLES20.GL_TEXTURE_CUBE_MAP)
+				bound = mTextureCube;
+		}
+		if (bound != null) {
+			if (skip(bound[unit] == texture))
+				return;
+			bound[unit] = texture;
+		} else {
+			skip(false);
+		}
+		mGl.glBindTexture(target, texture);
+	}
+
+	@Override
+	public void glBlendFunc(int sfactor, int dfactor) {
+		if (skip(mBlendSrc == sfactor && mBlendDst == dfactor))
+			return;
+		mBlendSrc = sfactor;
+		mBlendDst = dfactor;
+		mGl.glBlendFunc(sfactor, dfactor);
+	}
+
+	@Override
+	public void glBufferData(int target, int size, Buffer data, int usage) {
+		skip(false);
+		mGl.glBufferData(target, size, data, usage);
+	}
+
+	@Override
+	public void glBufferSubData(int target, int offset, int size, Buffer data) {
+		skip(false);
+		mGl.glBufferSubData(target, offset, size, data);
+	}
+
+	@Override
+	public int glCheckFramebufferStatus(int target) {
+		skip(false);
+		return mGl.glCheckFramebufferStatus(target);
+	}
+
+	@Override
+	public void glClear(int mask) {
+		skip(false);
+		mGl.glClear(mask);
+	}
+
+	@Override
+	public void glClearColor(float red, float green, float blue, float alpha) {
+		if (skip(mClearColorKnown && mClearColor[0] == red && mClearColor[1] == green
+			&& mClearColor[2] == blue && mClearColor[3] == alpha))
+			return;
+		mClearColor[0] = red;
+		mClearColor[1] = green;
+		mClearColor[2] = blue;
+		mClearColor[3] = alpha;
+		mClearColorKnown = true;
+		mGl.glClearColor(red, green, blue, alpha);
+	}
+
+	@Override
+	public void glClearDepthf(float depth) {
+		skip(false);
+		mGl.glClearDepthf(depth);
+	}
+
+	@Override
+	public void glCompileShader(int shader) {
+		skip(false);
+		mGl.glCompileShader(shader);
+	}
+
+	@Override
+	public int glCreateProgram() {
+		skip(false);
+		return mGl.glCreateProgram();
+	}
+
+	@Override
+	public int glCreateShader(int type) {
+		skip(false);
+		return mGl.glCreateShader(type);
+	}
+
+	@Override
+	public void glCullFace(int mode) {
+		skip(false);
+		mGl.glCullFace(mode);
+	}
+
+	private static boolean contains(int[] names, int offset, int n, int name) {
+		for (int i = 0; i < n; i++) {
+			if (names[offset + i] == name)
+				return true;
+		}
+		return false;
+	}
+
+	@Override
+	public void glDeleteBuffers(int n, int[] buffers, int offset) {
+		skip(false);
+		if (contains(buffers, offset, n, mArrayBuffer))
+			mArrayBuffer = UNKNOWN;
+		//also unbound from the vertex attributes, and the name may come back
+		invalidateVertexArrayState();
+		mGl.glDeleteBuffers(n, buffers, offset);
+	}
+
+	@Override
+	public void glDeleteFramebuffers(int n, int[] framebuffers, int offset) {
+		skip(false);
+		if (contains(framebuffers, offset, n, mFramebuffer))
+			mFramebuffer = UNKNOWN;
+		mGl.glDeleteFramebuffers(n, framebuffers, offset);
+	}
+
+	@Override
+	public void glDeleteProgram(int program) {
+		skip(false);
+		if (program == mProgram)
+			mProgram = UNKNOWN;
+		//the name may be reused by a program with different uniforms
+		int j = 0;
+		for (int i = 0; i < mUniformCount; i++) {
+			if (mUniformProgram[i] == program)
+				continue;
+			mUniformProgram[j] = mUniformProgram[i];
+			mUniformLocation[j] = mUniformLocation[i];
+			mUniformValue[j] = mUniformValue[i];
+			j++;
+		}
+		mUniformCount = j;
+		mGl.glDeleteProgram(program);
+	}
+
+	@Override
+	public void glDeleteRenderbuffers(int n, int[] renderbuffers, int offset) {
+		skip(false);
+		mGl.glDeleteRenderbuffers(n, renderbuffers, offset);
+	}
+
+	@Override
+	public void glDeleteShader(int shader) {
+		skip(false);
+		mGl.glDeleteShader(shader);
+	}
+
+	@Override
+	public void glDeleteTextures(int n, int[] textures, int offset) {
+		skip(false);
+		for (int i = 0; i < MAX_TEXTURE_UNITS; i++) {
+			if (contains(textures, offset, n, mTexture2D[i]))
+				mTexture2D[i] = UNKNOWN;
+			if (contains(textures, offset, n, mTextureCube[i]))
+				mTextureCube[i] = UNKNOWN;
+		}
+		mGl.glDeleteTextures(n, textures, offset);
+	}
+
+	@Override
+	public void glDepthFunc(int func) {
+		skip(false);
+		mGl.glDepthFunc(func);
+	}
+
+	@Override
+	public void glDepthMask(boolean flag) {
+		skip(false);
+		mGl.glDepthMask(flag);
+	}
+
+	private int capIndex(int cap) {
+		for (int i = 0; i < mCapCount; i++) {
+			if (mCap[i] == cap)
+				return i;
+		}
+		if (mCapCount == MAX_CAPS)
+			return -1;
+		mCap[mCapCount] = cap;
+		mCapEnabled[mCapCount] = UNKNOWN;
+		return mCapCount++;
+	}
+
+	private boolean setCap(int cap, int enabled) {
+		int i = capIndex(cap);
+		if (i < 0)
+			return skip(false);
+		if (skip(mCapEnabled[i] == enabled))
+			return true;
+		mCapEnabled[i] = enabled;
+		return false;
+	}
+
+	@Override
+	public void glDisable(int cap) {
+		if (!setCap(cap, 0))
+			mGl.glDisable(cap);
+	}
+
+	@Override
+	public void glEnable(int cap) {
+		if (!setCap(cap, 1))
+			mGl.glEnable(cap);
+	}
+
+	@Override
+	public void glDisableVertexAttribArray(int index) {
+		if (index >= 0 && index < MAX_ATTRIBS) {
+			if (skip(mAttribEnabled[index] == 0))
+				return;
+			mAttribEnabled[index] = 0;
+		} else {
+			skip(false);
+		}
+		mGl.glDisableVertexAttribArray(index);
+	}
+
+	@Override
+	public void glEnableVertexAttribArray(int index) {
+		if (index >= 0 && index < MAX_ATTRIBS) {
+			if (skip(mAttribEnabled[index] == 1))
+				return;
+			mAttribEnabled[index] = 1;
+		} else {
+			skip(false);
+		}
+		mGl.glEnableVertexAttribArray(index);
+	}
+
+	@Override
+	public void glDrawArrays(int mode, int first, int count) {
+		skip(false);
+		mGl.glDrawArrays(mode, first, count);
+	}
+
+	@Override
+	public void glDrawElements(int mode, int count, int type, int offset) {
+		skip(false);
+		mGl.glDrawElements(mode, count, type, offset);
+	}
+
+	@Override
+	public void glFramebufferRenderbuffer(int target, int attachment, int renderbuffertarget, int renderbuffer) {
+		skip(false);
+		mGl.glFramebufferRenderbuffer(target, attachment, renderbuffertarget, renderbuffer);
+	}
+
+	@Override
+	public void glFramebufferTexture2D(int target, int attachment, int textarget, int texture, int level) {
+		skip(false);
+		mGl.glFramebufferTexture2D(target, attachment, textarget, texture, level);
+	}
+
+	@Override
+	public void glFrontFace(int mode) {
+		skip(false);
+		mGl.glFrontFace(mode);
+	}
+
+	@Override
+	public void glGenBuffers(int n, int[] buffers, int offset) {
+		skip(false);
+		mGl.glGenBuffers(n, buffers, offset);
+	}
+
+	@Override
+	public void glGenFramebuffers(int n, int[] framebuffers, int offset) {
+		skip(false);
+		mGl.glGenFramebuffers(n, framebuffers, offset);
+	}
+
+	@Override
+	public void glGenRenderbuffers(int n, int[] renderbuffers, int offset) {
+		skip(false);
+		mGl.glGenRenderbuffers(n, renderbuffers, offset);
+	}
+
+	@Override
+	public void glGenTextures(int n, int[] textures, int offset) {
+		skip(false);
+		mGl.glGenTextures(n, textures, offset);
+	}
+
+	@Override
+	public int glGetAttribLocation(int program, String name) {
+		skip(false);
+		return mGl.glGetAttribLocation(program, name);
+	}
+
+	@Override
+	public void glGetIntegerv(int pname, int[] params, int offset) {
+		skip(false);
+		mGl.glGetIntegerv(pname, params, offset);
+	}
+
+	@Override
+	public String glGetString(int name) {
+		skip(false);
+		return mGl.glGetString(name);
+	}
+
+	@Override
+	public int glGetUniformLocation(int program, String name) {
+		skip(false);
+		return mGl.glGetUniformLocation(program, name);
+	}
+
+	@Override
+	public void glLinkProgram(int program) {
+		skip(false);
+		mGl.glLinkProgram(program);
+	}
+
+	@Override
+	public void glRenderbufferStorage(int target, int internalformat, int width, int height) {
+		skip(false);
+		mGl.glRenderbufferStorage(target, internalformat, width, height);
+	}
+
+	@Override
+	public void glShaderSource(int shader, String string) {
+		skip(false);
+		mGl.glShaderSource(shader, string);
+	}
+
+	@Override
+	public void glTexImage2D(int target, int level, int internalformat, int width, int height, int border, int format, int type, Buffer pixels) {
+		skip(false);
+		mGl.glTexImage2D(target, level, internalformat, width, height, border, format, type, pixels);
+	}
+
+	@Override
+	public void texImage2D(int target, int level, Bitmap bitmap) {
+		skip(false);
+		mGl.texImage2D(target, level, bitmap);
+	}
+
+	@Override
+	public void glTexParameteri(int target, int pname, int param) {
+		skip(false);
+		mGl.glTexParameteri(target, pname, param);
+	}
+
+	@Override
+	public void glUniform1i(int location, int x) {
+		int i = 0;
+		while (i < mUniformCount && (mUniformProgram[i] != mProgram || mUniformLocation[i] != location))
+			i++;
+		if (mProgram != UNKNOWN && i < MAX_UNIFORMS) {
+			if (skip(i < mUniformCount && mUniformValue[i] == x))
+				return;
+			if (i == mUniformCount) {
+				mUniformProgram[i] = mProgram;
+				mUniformLocation[i] = location;
+				mUniformCount++;
+			}
+			mUniformValue[i] = x;
+		} else {
+			skip(false);
+		}
+		mGl.glUniform1i(location, x);
+	}
+
+	@Override
+	public void glUniform4f(int location, float x, float y, float z, float w) {
+		skip(false);
+		mGl.glUniform4f(location, x, y, z, w);
+	}
+
+	@Override
+	public void glUniformMatrix4fv(int location, int count, boolean transpose, float[] value, int offset) {
+		skip(false);
+		mGl.glUniformMatrix4fv(location, count, transpose, value, offset);
+	}
+
+	@Override
+	public void glUseProgram(int program) {
+		if (skip(program == mProgram))
+			return;
+		mProgram = program;
+		mGl.glUseProgram(program);
+	}
+
+	@Override
+	public void glVertexAttribPointer(int indx, int size, int type, boolean normalized, int stride, int offset) {
+		if (indx >= 0 && indx < MAX_ATTRIBS && mArrayBuffer != UNKNOWN) {
+			if (skip(mAttribBuffer[indx] == mArrayBuffer && mAttribSize[indx] == size
+				&& mAttribType[indx] == type && mAttribNormalized[indx] == normalized
+				&& mAttribStride[indx] == stride && mAttribOffset[indx] == offset))
+				return;
+			mAttribBuffer[indx] = mArrayBuffer;
+			mAttribSize[indx] = size;
+			mAttribType[indx] = type;
+			mAttribNormalized[indx] = normalized;
+			mAttribStride[indx] = stride;
+			mAttribOffset[indx] = offset;
+		} else {
+			skip(false);
+		}
+		mGl.glVertexAttribPointer(indx, size, type, normalized, stride, offset);
+	}
+
+	@Override
+	public void glViewport(int x, int y, int width, int height) {
+		if (skip(mViewport[0] == x && mViewport[1] == y && mViewport[2] == width && mViewport[3] == height))
+			return;
+		mViewport[0] = x;
+		mViewport[1] = y;
+		mViewport[2] = width;
+		mViewport[3] = height;
+		mGl.glViewport(x, y, width, height);
+	}
+
+	@Override
+	public void glBindVertexArray(int array) {
+		if (skip(array == mVertexArray))
+			return;
+		mVertexArray = array;
+		//element buffer and attributes belong to the vertex array object
+		invalidateVertexArrayState();
+		mGl.glBindVertexArray(array);
+	}
+
+	@Override
+	public void glGenVertexArrays(int n, int[] arrays, int offset) {
+		skip(false);
+		mGl.glGenVertexArrays(n, arrays, offset);
+	}
+
+	@Override
+	public void glBeginQuery(int target, int id) {
+		skip(false);
+		mGl.glBeginQuery(target, id);
+	}
+
+	@Override
+	public void glDeleteQueries(int n, int[] ids, int offset) {
+		skip(false);
+		mGl.glDeleteQueries(n, ids, offset);
+	}
+
+	@Override
+	public void glEndQuery(int target) {
+		skip(false);
+		mGl.glEndQuery(target);
+	}
+
+	@Override
+	public void glGenQueries(int n, int[] ids, int offset) {
+		skip(false);
+		mGl.glGenQueries(n, ids, offset);
+	}
+
+	@Override
+	public void glGetQueryObjectuiv(int id, int pname, int[] params, int offset) {
+		skip(false);
+		mGl.glGetQueryObjectuiv(id, pname, params, offset);
+	}
+
+	@Override
+	public void glInvalidateFramebuffer(int target, int numAttachments, int[] attachments, int offset) {
+		skip(false);
+		mGl.glInvalidateFramebuffer(target, numAttachments, attachments, offset);
+	}
+}
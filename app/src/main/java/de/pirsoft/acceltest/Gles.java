@@ -0,0 +1,88 @@
+package de.pirsoft.acceltest;
+
+import android.graphics.Bitmap;
+
+import java.nio.Buffer;
+
+/**
+ * The OpenGL ES calls the renderer uses, so they can be filtered
+ * (GlStateCache) or replaced by a stub, like RecordingGles for running the
+ * render path on a plain JVM. Signatures follow GLES20/GLES30.
+ */
+interface Gles {
+	// what the current context supports
+	boolean isGles3();
+	boolean hasVertexArrayObjects();
+	boolean hasTimerQueries();
+
+	void glActiveTexture(int texture);
+	void glAttachShader(int program, int shader);
+	void glBindBuffer(int target, int buffer);
+	void glBindFramebuffer(int target, int framebuffer);
+	void glBindRenderbuffer(int target, int renderbuffer);
+	void glBindTexture(int target, int texture);
+	void glBlendFunc(int sfactor, int dfactor);
+	void glBufferData(int target, int size, Buffer data, int usage);
+	void glBufferSubData(int target, int offset, int size, Buffer data);
+	int glCheckFramebufferStatus(int target);
+	void glClear(int mask);
+	void glClearColor(float red, float green, float blue, float alpha);
+	void glClearDepthf(float depth);
+	void glCompileShader(int shader);
+	int glCreateProgram();
+	int glCreateShader(int type);
+	void glCullFace(int mode);
+	void glDeleteBuffers(int n, int[] buffers, int offset);
+	void glDeleteFramebuffers(int n, int[] framebuffers, int offset);
+	void glDeleteProgram(int program);
+	void glDeleteRenderbuffers(int n, int[] renderbuffers, int offset);
+	void glDeleteShader(int shader);
+	void glDeleteTextures(int n, int[] textures, int offset);
+	void glDepthFunc(int func);
+	void glDepthMask(boolean flag);
+	void glDisable(int cap);
+	void glDisableVertexAttribArray(int index);
+	void glDrawArrays(int mode, int first, int count);
+	void glDrawElements(int mode, int count, int type, int offset);
+	void glEnable(int cap);
+	void glEnableVertexAttribArray(int index);
+	void glFramebufferRenderbuffer(int target, int attachment, int renderbuffertarget, int renderbuffer);
+	void glFramebufferTexture2D(int target, int attachment, int textarget, int texture, int level);
+	void glFrontFace(int mode);
+	void glGenBuffers(int n, int[] buffers, int offset);
+	void glGenFramebuffers(int n, int[] framebuffers, int offset);
+	void glGenRenderbuffers(int n, int[] renderbuffers, int offset);
+	void glGenTextures(int n, int[] textures, int offset);
+	int glGetAttribLocation(int program, String name);
+	void glGetIntegerv(int pname, int[] params, int offset);
+	String glGetString(int name);
+	int glGetUniformLocation(int program, String name);
+	void glLinkProgram(int program);
+	void glRenderbufferStorage(int target, int internalformat, int width, int height);
+	void glShaderSource(int shader, String string);
+	void glTexImage2D(int target, int level, int internalformat, int width, int height, int border, int format, int type, Buffer pixels);
+	void glTexParameteri(int target, int pname, int param);
+	void glUniform1i(int location, int x);
+	void glUniform4f(int location, float x, float y, float z, float w);
+	void glUniformMatrix4fv(int location, int count, boolean transpose, float[] value, int offset);
+	void glUseProgram(int program);
+	void glVertexAttribPointer(int indx, int size, int type, boolean normalized, int stride, int offset);
+	void glViewport(int x, int y, int width, int height);
+
+	// GLUtils.texImage2D, format and size come from the bitmap
+	void texImage2D(int target, int level, Bitmap bitmap);
+
+	// GLES30, only valid if the context supports vertex array objects
+	void glBindVertexArray(int array);
+	void glGenVertexArrays(int n, int[] arrays, int offset);
+
+	// GLES30 queries, only valid on GLES3 contexts
+	void glBeginQuery(int target, int id);
+	void glDeleteQueries(int n, int[] ids, int offset);
+	void glEndQuery(int target);
+	void glGenQueries(int n, int[] ids, int offset);
+	void glGetQueryObjectuiv(int id, int pname, int[] params, int offset);
+
+	// GLES30, tells a tiler which attachments need not be stored
+	void glInvalidateFramebuffer(int target, int numAttachments, int[] attachments, int offset);
+}
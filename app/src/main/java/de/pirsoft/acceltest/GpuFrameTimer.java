@@ -0,0 +1,80 @@
+package de.pirsoft.acceltest;
+
+import android.opengl.GLES30;
+
+/**
+ * Measures GPU time per frame with EXT_disjoint_timer_query.
+ *
+ * Results arrive a few frames late, so a small ring of queries is kept in
+ * flight and the oldest one is polled each frame. Results from intervals
+ * where the GPU reported a disjoint event (frequency change, context loss)
+ * are dropped.
+ */
+class GpuFrameTimer {
+	// from EXT_disjoint_timer_query, not in the android GLES30 bindings
+	private static final int GL_TIME_ELAPSED_EXT = 0x88BF;
+	private static final int GL_GPU_DISJOINT_EXT = 0x8FBB;
+	private static final int QUERIES = 4;
+
+	private final Gles mGl;
+	private final int[] mQueries = new int[QUERIES];
+	private final int[] mResult = new int[1];
+	private int mHead = 0;
+	private int mPending = 0;
+	private boolean mRunning = false;
+
+	/** Needs a current context that passed Gles.hasTimerQueries(). */
+	GpuFrameTimer(Gles gl) {
+		mGl = gl;
+		mGl.glGenQueries(QUERIES, mQueries, 0);
+		// reading the flag clears it
+		mGl.glGetIntegerv(GL_GPU_DISJOINT_EXT, mResult, 0);
+	}
+
+	/** Starts timing, unless all queries are still waiting for results. */
+	void begin() {
+		if (mPending == QUERIES)
+			return;
+		mGl.glBeginQuery(GL_TIME_ELAPSED_EXT, mQueries[(mHead + mPending) % QUERIES]);
+		mRunning = true;
+	}
+
+	void end() {
+		if (!mRunning)
+			return;
+		mGl.glEndQuery(GL_TIME_ELAPSED_EXT);
+		mRunning = false;
+		mPending++;
+	}
+
+	/**
+	 * Fetches the oldest finished measurement.
+	 *
+	 * @return GPU time in ns, or -1 if nothing usable is available yet
+	 */
+	long poll() {
+		if (mPending == 0)
+			return -1;
+		int query = mQueries[mHead];
+		mGl.glGetQueryObjectuiv(query, GLES30.GL_QUERY_RESULT_AVAILABLE, mResult, 0);
+		if (mResult[0] == 0)
+			return -1;
+		mGl.glGetQueryObjectuiv(query, GLES30.GL_QUERY_RESULT, mResult, 0);
+		long time = mResult[0] & 0xffffffffL;
+		mHead = (mHead + 1) % QUERIES;
+		mPending--;
+		mGl.glGetIntegerv(GL_GPU_DISJOINT_EXT, mResult, 0);
+		if (mResult[0] != 0) {
+			// everything in flight is suspect as well
+			mHead = (mHead + mPending) % QUERIES;
+			mPending = 0;
+			return -1;
+		}
+		return time;
+	}
+
+	void release() {
+		mGl.glDeleteQueries(QUERIES, mQueries, 0);
+		mPending = 0;
+	}
+}
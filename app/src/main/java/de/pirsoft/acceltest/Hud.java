@@ -0,0 +1,190 @@
+package de.pirsoft.acceltest;
+
+import android.opengl.GLES20;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+/**
+ * Draws a HudText in the top left corner of the surface, below whatever
+ * covers its top edge, from the glyph atlas made by tools/GlyphAtlas.java:
+ * all glyphs of a frame go into one stream vertex buffer and out with one
+ * draw call.
+ *
+ * The atlas is a 16 x 8 grid of equal cells, character c in column c % 16,
+ * row c / 16, so there are no metrics to load.
+ */
+class Hud {
+	static final int COLUMNS = 16;
+	static final int ROWS = 8;
+	//cell width / height, see tools/GlyphAtlas.java
+	private static final float CELL_ASPECT = 0.5f;
+	static final int MAX_GLYPHS = 256;
+	//x, y, s, t, two triangles per glyph
+	private static final int FLOATS_PER_VERTEX = 4;
+	private static final int VERTICES_PER_GLYPH = 6;
+
+	private static final String vertexShaderCode =
+		"attribute vec4 aPosition;" +
+			"varying vec2 vTexCoord;" +
+			"void main() {" +
+			"  gl_Position = vec4(aPosition.xy, 0.0, 1.0);" +
+			"  vTexCoord = aPosition.zw;" +
+			"}";
+
+	// the atlas has premultiplied alpha
+	private static final String fragmentShaderCode =
+		"precision mediump float;" +
+			"uniform sampler2D uTexture;" +
+			"varying vec2 vTexCoord;" +
+			"void main() {" +
+			"  gl_FragColor = texture2D(uTexture, vTexCoord);" +
+			"}";
+
+	private final Gles mGl;
+	private final boolean mDepth;
+	private final int mProgram;
+	private final int mTexture;
+	private final int maPositionHandle;
+	private final int muTextureHandle;
+	private final int[] vtxbo = new int[1];
+	private final int[] vao = new int[1];
+	private final float[] mVertices = new float[MAX_GLYPHS * VERTICES_PER_GLYPH * FLOATS_PER_VERTEX];
+	private final FloatBuffer mVertexBuffer = ByteBuffer.allocateDirect(mVertices.length * 4)
+		.order(ByteOrder.nativeOrder()).asFloatBuffer();
+
+	static GlResources.Texture addTexture(GlResources resources) {
+		return resources.addTexture(GLES20.GL_TEXTURE_2D, new int[] { R.drawable.glyphs }, null);
+	}
+
+	static GlResources.Program addProgram(GlResources resources) {
+		return resources.addProgram(vertexShaderCode, fragmentShaderCode);
+	}
+
+	/**
+	 * Needs the resources created in the current context.
+	 *
+	 * @param withDepth            whether the depth test is on and has to be
+	 *                             suspended while drawing
+	 * @param useVertexArrayObject whether GLES30 vertex array objects can be used
+	 */
+	Hud(Gles gl, GlResources.Texture atlas, GlResources.Program program, boolean withDepth,
+		boolean useVertexArrayObject) {
+		mGl = gl;
+		mDepth = withDepth;
+		mProgram = program.name;
+		mTexture = atlas.name;
+		maPositionHandle = mGl.glGetAttribLocation(mProgram, "aPosition");
+		muTextureHandle = mGl.glGetUniformLocation(mProgram, "uTexture");
+
+		mGl.glGenBuffers(1, vtxbo, 0);
+		if (useVertexArrayObject) {
+			mGl.glGenVertexArrays(1, vao, 0);
+			mGl.glBindVertexArray(vao[0]);
+			bindAttributes();
+			mGl.glBindVertexArray(0);
+		}
+	}
+
+	private void bindAttributes() {
+		mGl.glBindBuffer(GLES20.GL_ARRAY_BUFFER, vtxbo[0]);
+		mGl.glVertexAttribPointer(maPositionHandle, FLOATS_PER_VERTEX, GLES20.GL_FLOAT, false,
+			FLOATS_PER_VERTEX * 4, 0);
+		mGl.glEnableVertexAttribArray(maPositionHandle);
+	}
+
+	/**
+	 * Lays out the text, '\n' starts a new line, and draws it over whatever
+	 * is in the default framebuffer.
+	 *
+	 * @param inset       pixels at the top of the surface to keep clear
+	 * @param glyphHeight line height in pixels
+	 */
+	void draw(HudText text, int surfaceWidth, int surfaceHeight, float inset, float glyphHeight) {
+		int glyphs = layout(text, surfaceWidth, surfaceHeight, inset, glyphHeight);
+		if (glyphs == 0)
+			return;
+		int floats = glyphs * VERTICES_PER_GLYPH * FLOATS_PER_VERTEX;
+		mVertexBuffer.clear();
+		mVertexBuffer.put(mVertices, 0, floats).position(0);
+
+		mGl.glUseProgram(mProgram);
+		if (vao[0] != 0) {
+			mGl.glBindVertexArray(vao[0]);
+			mGl.glBindBuffer(GLES20.GL_ARRAY_BUFFER, vtxbo[0]);
+		} else {
+			bindAttributes();
+		}
+		// a fresh store every frame, the driver does not have to wait for the last draw
+		mGl.glBufferData(GLES20.GL_ARRAY_BUFFER, floats * 4, mVertexBuffer, GLES20.GL_STREAM_DRAW);
+		mGl.glActiveTexture(GLES20.GL_TEXTURE0);
+		mGl.glBindTexture(GLES20.GL_TEXTURE_2D, mTexture);
+		mGl.glUniform1i(muTextureHandle, 0);
+
+		if (mDepth)
+			mGl.glDisable(GLES20.GL_DEPTH_TEST);
+		mGl.glEnable(GLES20.GL_BLEND);
+		mGl.glBlendFunc(GLES20.GL_ONE, GLES20.GL_ONE_MINUS_SRC_ALPHA);
+		mGl.glDrawArrays(GLES20.GL_TRIANGLES, 0, glyphs * VERTICES_PER_GLYPH);
+		mGl.glDisable(GLES20.GL_BLEND);
+		if (mDepth)
+			mGl.glEnable(GLES20.GL_DEPTH_TEST);
+	}
+
+	/** Fills mVertices, returns the number of glyphs. */
+	int layout(HudText text, int surfaceWidth, int surfaceHeight, float inset, float glyphHeight) {
+		float width = glyphHeight * CELL_ASPECT;
+		//pixels to normalized device coordinates
+		float sx = 2.0f / surfaceWidth;
+		float sy = 2.0f / surfaceHeight;
+		float margin = glyphHeight * 0.5f;
+		float x = margin;
+		float y = inset + margin;
+		int glyphs = 0;
+		float[] v = mVertices;
+		for (int i = 0; i < text.length() && glyphs < MAX_GLYPHS; i++) {
+			char c = text.charAt(i);
+			if (c == '\n') {
+				x = margin;
+				y += glyphHeight;
+				continue;
+			}
+			if (c > ' ' && c < COLUMNS * ROWS) {
+				float left = x * sx - 1;
+				float right = (x + width) * sx - 1;
+				float top = 1 - y * sy;
+				float bottom = 1 - (y + glyphHeight) * sy;
+				float s0 = (float) (c % COLUMNS) / COLUMNS;
+				float s1 = (float) (c % COLUMNS + 1) / COLUMNS;
+				//bitmap rows go down, t = 0 is the top of the atlas
+				float t0 = (float) (c / COLUMNS) / ROWS;
+				float t1 = (float) (c / COLUMNS + 1) / ROWS;
+				int o = glyphs * VERTICES_PER_GLYPH * FLOATS_PER_VERTEX;
+				//counter clockwise, survives back-face culling
+				o = vertex(v, o, left, bottom, s0, t1);
+				o = vertex(v, o, right, bottom, s1, t1);
+				o = vertex(v, o, left, top, s0, t0);
+				o = vertex(v, o, right, bottom, s1, t1);
+				o = vertex(v, o, right, top, s1, t0);
+				vertex(v, o, left, top, s0, t0);
+				glyphs++;
+			}
+			x += width;
+		}
+		return glyphs;
+	}
+
+	private static int vertex(float[] v, int o, float x, float y, float s, float t) {
+		v[o] = x;
+		v[o + 1] = y;
+		v[o + 2] = s;
+		v[o + 3] = t;
+		return o + 4;
+	}
+
+	/** Vertices written by the last layout(), for tests. */
+	float[] getVertices() {
+		return mVertices;
+	}
+}
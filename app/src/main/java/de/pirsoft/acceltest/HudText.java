@@ -0,0 +1,85 @@
+package de.pirsoft.acceltest;
+
+/**
+ * Text for the Hud, formatted straight from primitives into a reused char
+ * buffer, so updating it every frame does not allocate. Text beyond the
+ * capacity is dropped.
+ */
+class HudText {
+	private final char[] mChars;
+	private int mLength = 0;
+	//digits of a number, least significant first
+	private final char[] mDigits = new char[20];
+
+	HudText(int capacity) {
+		mChars = new char[capacity];
+	}
+
+	HudText clear() {
+		mLength = 0;
+		return this;
+	}
+
+	int length() {
+		return mLength;
+	}
+
+	char charAt(int index) {
+		return mChars[index];
+	}
+
+	HudText append(char c) {
+		if (mLength < mChars.length)
+			mChars[mLength++] = c;
+		return this;
+	}
+
+	HudText append(String s) {
+		for (int i = 0; i < s.length(); i++)
+			append(s.charAt(i));
+		return this;
+	}
+
+	HudText append(long value) {
+		if (value < 0) {
+			append('-');
+			//negating Long.MIN_VALUE overflows, its digits come out negative
+			if (value == Long.MIN_VALUE)
+				return append("9223372036854775808");
+			value = -value;
+		}
+		int n = 0;
+		do {
+			mDigits[n++] = (char) ('0' + value % 10);
+			value /= 10;
+		} while (value != 0);
+		while (n > 0)
+			append(mDigits[--n]);
+		return this;
+	}
+
+	/** Fixed point, rounded to the given number of decimals, "-" if not finite. */
+	HudText append(float value, int decimals) {
+		if (Float.isNaN(value) || Float.isInfinite(value))
+			return append('-');
+		long scale = 1;
+		for (int i = 0; i < decimals; i++)
+			scale *= 10;
+		long fixed = Math.round(Math.abs((double) value) * scale);
+		if (value < 0 && fixed != 0)
+			append('-');
+		append(fixed / scale);
+		if (decimals > 0) {
+			append('.');
+			long fraction = fixed % scale;
+			for (long digit = scale / 10; digit > 0; digit /= 10)
+				append((char) ('0' + fraction / digit % 10));
+		}
+		return this;
+	}
+
+	@Override
+	public String toString() {
+		return new String(mChars, 0, mLength);
+	}
+}
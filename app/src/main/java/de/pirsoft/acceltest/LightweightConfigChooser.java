@@ -0,0 +1,75 @@
+package de.pirsoft.acceltest;
+
+import android.opengl.GLSurfaceView;
+
+import javax.microedition.khronos.egl.EGL10;
+import javax.microedition.khronos.egl.EGLConfig;
+import javax.microedition.khronos.egl.EGLDisplay;
+
+/**
+ * Picks an ES2 capable config with RGB565 or RGB888, without alpha, depth,
+ * stencil or multisampling.
+ *
+ * eglChooseConfig treats the sizes as minimums and sorts deeper color
+ * first, so the candidates are checked for an exact match here. If there is
+ * none, the one with the fewest extra bits wins.
+ */
+class LightweightConfigChooser implements GLSurfaceView.EGLConfigChooser {
+	private static final int EGL_OPENGL_ES2_BIT = 4;
+
+	private final int mRedSize;
+	private final int mGreenSize;
+	private final int mBlueSize;
+	private final int[] mValue = new int[1];
+
+	/** @param rgb888 true for 8 bits per channel, false for RGB565 */
+	LightweightConfigChooser(boolean rgb888) {
+		mRedSize = rgb888 ? 8 : 5;
+		mGreenSize = rgb888 ? 8 : 6;
+		mBlueSize = rgb888 ? 8 : 5;
+	}
+
+	@Override
+	public EGLConfig chooseConfig(EGL10 egl, EGLDisplay display) {
+		int[] attribs = {
+			EGL10.EGL_RED_SIZE, mRedSize,
+			EGL10.EGL_GREEN_SIZE, mGreenSize,
+			EGL10.EGL_BLUE_SIZE, mBlueSize,
+			EGL10.EGL_DEPTH_SIZE, 0,
+			EGL10.EGL_STENCIL_SIZE, 0,
+			EGL10.EGL_RENDERABLE_TYPE, EGL_OPENGL_ES2_BIT,
+			EGL10.EGL_NONE
+		};
+		int[] count = new int[1];
+		if (!egl.eglChooseConfig(display, attribs, null, 0, count) || count[0] <= 0)
+			throw new IllegalArgumentException("No ES2 config with RGB" + mRedSize + mGreenSize + mBlueSize);
+		EGLConfig[] configs = new EGLConfig[count[0]];
+		egl.eglChooseConfig(display, attribs, configs, configs.length, count);
+
+		EGLConfig best = null;
+		int bestExtra = Integer.MAX_VALUE;
+		for (int i = 0; i < count[0]; i++) {
+			EGLConfig config = configs[i];
+			int extra = attrib(egl, display, config, EGL10.EGL_RED_SIZE) - mRedSize
+				+ attrib(egl, display, config, EGL10.EGL_GREEN_SIZE) - mGreenSize
+				+ attrib(egl, display, config, EGL10.EGL_BLUE_SIZE) - mBlueSize
+				+ attrib(egl, display, config, EGL10.EGL_ALPHA_SIZE)
+				+ attrib(egl, display, config, EGL10.EGL_DEPTH_SIZE)
+				+ attrib(egl, display, config, EGL10.EGL_STENCIL_SIZE)
+				+ attrib(egl, display, config, EGL10.EGL_SAMPLES);
+			if (extra < bestExtra) {
+				best = config;
+				bestExtra = extra;
+				if (extra == 0)
+					break;
+			}
+		}
+		return best;
+	}
+
+	private int attrib(EGL10 egl, EGLDisplay display, EGLConfig config, int attribute) {
+		if (egl.eglGetConfigAttrib(display, config, attribute, mValue))
+			return mValue[0];
+		return 0;
+	}
+}
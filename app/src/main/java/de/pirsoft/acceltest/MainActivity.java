@@ -1,19 +1,25 @@
 package de.pirsoft.acceltest;
 
 import android.annotation.SuppressLint;
+import android.annotation.TargetApi;
 import android.content.Context;
+import android.content.SharedPreferences;
 import android.graphics.Point;
 import android.hardware.Sensor;
+import android.hardware.SensorDirectChannel;
 import android.hardware.SensorEvent;
 import android.hardware.SensorEventListener;
 import android.hardware.SensorManager;
 import android.hardware.display.DisplayManager;
-import android.opengl.Matrix;
+import android.os.Build;
 import android.os.Bundle;
 import android.os.Handler;
+import android.os.Process;
 import android.os.SystemClock;
+import android.os.Trace;
 import android.support.v7.app.ActionBar;
 import android.support.v7.app.AppCompatActivity;
+import android.util.Log;
 import android.view.Display;
 import android.view.Gravity;
 import android.view.MotionEvent;
@@ -21,6 +27,12 @@ import android.view.View;
 import android.view.ViewGroup;
 import android.widget.FrameLayout;
 import android.widget.LinearLayout;
+import android.widget.TextView;
+
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Locale;
 
 /**
  * An example full-screen activity that shows and hides the system UI (i.e.
@@ -47,8 +59,87 @@ public class MainActivity extends AppCompatActivity {
 
 	private static final int SIM_INTERVAL = 15;
 
+	/**
+	 * Opt-in: on API 26 and later, receive the sensors through a
+	 * SensorDirectChannel polled by mSimRunnable instead of listener callbacks.
+	 */
+	private static final boolean USE_DIRECT_CHANNEL = false;
+	private static final int DIRECT_CHANNEL_RATE = SensorDirectChannel.RATE_FAST;
+	private static final int DIRECT_CHANNEL_REPORTS = 256;
+
+	/**
+	 * Extrapolate the drawn pose to the expected display time, using the
+	 * gyroscope. Needs a gyroscope, otherwise the last pose is drawn.
+	 */
+	private static final boolean USE_PREDICTION = true;
+
+	/**
+	 * Live vibration spectrum of the accelerometer, which then runs at the
+	 * highest rate the device reports.
+	 */
+	private static final boolean SHOW_SPECTRUM = true;
+	private static final int SPECTRUM_SIZE = 1024;
+	private static final int SPECTRUM_HOP = SPECTRUM_SIZE / 4;
+	private static final int SPECTRUM_AVERAGES = 8;
+
+	/** Shock, jerk and free fall events found in the raw accelerometer samples. */
+	private static final boolean DETECT_EVENTS = true;
+	private static final int EVENT_LOG_SIZE = 64;
+	private static final int SHOWN_EVENTS = 5;
+
+	/**
+	 * Hand the sim poses to the renderer, and whoever else subscribes,
+	 * through a broadcast ring instead of setTransform().
+	 */
+	private static final boolean BROADCAST_POSES = true;
+	private static final int POSE_RING_SIZE = 64;
+
+	/**
+	 * Opt-in: stream samples and poses to desktop tools while started, see
+	 * StreamServer, "adb forward tcp:STREAM_PORT tcp:STREAM_PORT" to connect.
+	 * Any app on the device could connect to the port, so debugging only:
+	 * the INTERNET permission is in the debug manifest, release builds
+	 * cannot open the socket.
+	 */
+	private static final boolean STREAM_DATA = false;
+	private static final int STREAM_PORT = 8947;
+
+	/**
+	 * Oscilloscope of the accelerometer axes under the navball, min/max of
+	 * each screen column so short spikes stay visible.
+	 */
+	private static final boolean SHOW_SCOPE = true;
+	private static final int SCOPE_COLUMNS = 1024;
+	private static final long SCOPE_SECONDS = 10;
+
+	/**
+	 * Measure how every streaming sensor delivers at every rate, see
+	 * SensorDeliveryAnalyzer, instead of registering the sensors the navball
+	 * uses, which would speed up what is measured. Takes several minutes,
+	 * the report goes to the log and "adb shell dumpsys activity
+	 * de.pirsoft.acceltest".
+	 */
+	private static final boolean ANALYZE_DELIVERY = false;
+
+	/**
+	 * Sensors stay registered this long after onStop(), so coming back
+	 * quickly neither restarts them nor waits for their first samples.
+	 */
+	private static final long SENSOR_LINGER_MS = 3000;
+	//BallSimulation state across process restarts
+	private static final String SIMULATION_PREFERENCES = "simulation";
+
+	/**
+	 * Cold start phases of this process, from the first onCreate() to the
+	 * first frame, also as android.os.Trace sections. Logged once complete
+	 * and in "adb shell dumpsys activity de.pirsoft.acceltest".
+	 */
+	private static StartupPhases sStartup;
+
 	private LinearLayout mControlsView;
 	private MyGLSurfaceView mGLView;
+	private SpectrumView mSpectrumView;
+	private TextView mEventText;
 
 	private final Handler mHideHandler = new Handler();
 	private final Runnable mHidePart2Runnable = new Runnable() {
@@ -102,18 +193,47 @@ public class MainActivity extends AppCompatActivity {
 	};
 
 	private SensorManager mSensorManager;
+	private SensorDeliveryAnalyzer mDeliveryAnalyzer;
 	private DisplayManager mDisplayManager;
 
 	@Override
 	protected void onCreate(Bundle savedInstanceState) {
+		if (sStartup == null)
+			sStartup = createStartupPhases();
+		sStartup.begin(StartupPhases.ACTIVITY_CREATE);
 		super.onCreate(savedInstanceState);
 
+		// start building the navball before the view hierarchy and the GL
+		// context exist, the GL thread then only uploads
+		NavballAssets assets = NavballAssets.preload(getResources(), sStartup);
+
+		sStartup.begin(StartupPhases.CONTENT_VIEW);
 		setContentView(R.layout.activity_main);
+		sStartup.end(StartupPhases.CONTENT_VIEW);
 
 		mVisible = true;
 		mControlsView = (LinearLayout)findViewById(R.id.fullscreen_content_controls);
 		mGLView = (MyGLSurfaceView)findViewById(R.id.fullscreen_content);
-
+		mGLView.setAssets(assets);
+		mGLView.setStartupPhases(sStartup);
+		if (SHOW_SCOPE)
+			mGLView.setScope(mScopeHistory);
+		if (BROADCAST_POSES)
+			mGLView.setPoses(mPoses.subscribe(PoseRing.POLICY_SAMPLE));
+		if (STREAM_DATA)
+			mStreamServer = new StreamServer(STREAM_PORT,
+				BROADCAST_POSES ? mPoses.subscribe(PoseRing.POLICY_DROP_OLDEST) : null);
+		mSpectrumView = (SpectrumView)findViewById(R.id.spectrum);
+		if (SHOW_SPECTRUM) {
+			mSpectrumView.setAnalyzer(mSpectrum);
+			//the spectrum covers the top of the surface
+			mGLView.setHudTop(mSpectrumView.getLayoutParams().height);
+		} else {
+			mSpectrumView.setVisibility(View.GONE);
+		}
+		mEventText = (TextView)findViewById(R.id.event_text);
+		if (!DETECT_EVENTS)
+			mEventText.setVisibility(View.GONE);
 
 		// Set up the user interaction to manually show or hide the system UI.
 		mGLView.setOnClickListener(new View.OnClickListener() {
@@ -129,6 +249,7 @@ public class MainActivity extends AppCompatActivity {
 		findViewById(R.id.dummy_button).setOnTouchListener(mDelayHideTouchListener);
 
 		mSensorManager = (SensorManager)getSystemService(Context.SENSOR_SERVICE);
+		restoreSimulation();
 		/*
 		List<Sensor> sensors = sensorManager.getSensorList(Sensor.TYPE_ALL);
 		StringBuilder textbuilder = new StringBuilder();
@@ -178,6 +299,38 @@ public class MainActivity extends AppCompatActivity {
 		 */
 		//mContentView.setText(textbuilder.toString());
 		mDisplayManager = (DisplayManager) getSystemService(Context.DISPLAY_SERVICE);
+		sStartup.end(StartupPhases.ACTIVITY_CREATE);
+	}
+
+	/** Counts from the process start where the platform knows it. */
+	private static StartupPhases createStartupPhases() {
+		// uptimeMillis() and nanoTime() both run on CLOCK_MONOTONIC
+		StartupPhases phases = new StartupPhases(Build.VERSION.SDK_INT >= Build.VERSION_CODES.N
+			? Process.getStartUptimeMillis() * 1000000L : System.nanoTime());
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2)
+			phases.setTracer(new StartupPhases.Tracer() {
+				@TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+				@Override
+				public void beginSection(String name) {
+					Trace.beginSection(name);
+				}
+
+				@TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+				@Override
+				public void endSection() {
+					Trace.endSection();
+				}
+			});
+		return phases;
+	}
+
+	@Override
+	public void dump(String prefix, FileDescriptor fd, PrintWriter writer, String[] args) {
+		super.dump(prefix, fd, writer, args);
+		if (sStartup != null)
+			writer.print(sStartup.report(prefix));
+		if (mDeliveryAnalyzer != null)
+			writer.print(prefix + mDeliveryAnalyzer.getReport().replace("\n", "\n" + prefix));
 	}
 
 	private void toggle() {
@@ -228,20 +381,97 @@ public class MainActivity extends AppCompatActivity {
 	}
 
 	private final Handler mSimHandler = new Handler();
-	private final float mRotation[] = new float[3];
-	private final float mAcceleration[] = new float[4];
+	private final BallSimulation mSimulation = new BallSimulation();
+	private final PosePredictor mPredictor = new PosePredictor();
+	private final SpectrumAnalyzer mSpectrum = new SpectrumAnalyzer(SPECTRUM_SIZE, SPECTRUM_HOP,
+		SpectrumAnalyzer.WINDOW_HANN, SPECTRUM_AVERAGES);
+	private final EventLog mEventLog = new EventLog(EVENT_LOG_SIZE);
+	private final ShockDetector mShockDetector = new ShockDetector(mEventLog);
+	private final PoseRing mPoses = new PoseRing(POSE_RING_SIZE);
+	private StreamServer mStreamServer;
+	private final ScopeHistory mScopeHistory = new ScopeHistory(Sensor.TYPE_ACCELEROMETER, SCOPE_COLUMNS,
+		SCOPE_SECONDS * 1000000000L / SCOPE_COLUMNS);
+
+	//all sensor samples, from listener or direct channel
+	private final SampleSink mSensorSink = new SampleSink() {
+		@Override
+		public void onSample(int sensorType, long timestamp, float[] values) {
+			mSimulation.onSample(sensorType, timestamp, values);
+			mPredictor.onSample(sensorType, timestamp, values);
+			if (SHOW_SPECTRUM)
+				mSpectrum.onSample(sensorType, timestamp, values);
+			if (DETECT_EVENTS)
+				mShockDetector.onSample(sensorType, timestamp, values);
+			if (STREAM_DATA)
+				mStreamServer.onSample(sensorType, timestamp, values);
+			if (SHOW_SCOPE)
+				mScopeHistory.onSample(sensorType, timestamp, values);
+			if (sensorType == Sensor.TYPE_ACCELEROMETER) {
+				mAccelerometerSamples++;
+				mGForce = (float) Math.sqrt(values[0] * values[0] + values[1] * values[1]
+					+ values[2] * values[2]) / SensorManager.STANDARD_GRAVITY;
+			}
+		}
+	};
+
+	//for the HUD: accelerometer samples since mRateStart, latest magnitude
+	private int mAccelerometerSamples = 0;
+	private long mRateStart = 0;
+	private float mSampleRate = 0;
+	private float mGForce = 0;
+
+	//reader side of mEventLog, the newest SHOWN_EVENTS lines are displayed
+	private final int[] mEventTypes = new int[EVENT_LOG_SIZE];
+	private final long[] mEventTimes = new long[EVENT_LOG_SIZE];
+	private final float[] mEventPeaks = new float[EVENT_LOG_SIZE];
+	private final long[] mEventDurations = new long[EVENT_LOG_SIZE];
+	private final String[] mEventLines = new String[SHOWN_EVENTS];
+	private int mEventLineCount = 0;
+	private long mShownEvents = 0;
+
+	/** Shows new events, only formats anything if there are some. */
+	private void updateEventText() {
+		if (mEventLog.getWritten() == mShownEvents)
+			return;
+		mShownEvents = mEventLog.getWritten();
+		int count = mEventLog.read(mEventTypes, mEventTimes, mEventPeaks, mEventDurations);
+		for (int i = Math.max(0, count - SHOWN_EVENTS); i < count; i++) {
+			System.arraycopy(mEventLines, 1, mEventLines, 0, SHOWN_EVENTS - 1);
+			mEventLines[SHOWN_EVENTS - 1] = formatEvent(mEventTypes[i], mEventTimes[i],
+				mEventPeaks[i], mEventDurations[i]);
+			mEventLineCount = Math.min(SHOWN_EVENTS, mEventLineCount + 1);
+		}
+		StringBuilder text = new StringBuilder();
+		for (int i = SHOWN_EVENTS - mEventLineCount; i < SHOWN_EVENTS; i++)
+			text.append(mEventLines[i]).append('\n');
+		if (mEventLog.getLost() > 0)
+			text.append(mEventLog.getLost()).append(" lost");
+		mEventText.setText(text);
+	}
+
+	private static String formatEvent(int type, long timestamp, float peak, long duration) {
+		String what;
+		switch (type) {
+			case ShockDetector.EVENT_SHOCK:
+				what = String.format(Locale.US, "shock %.1fg", peak / SensorManager.STANDARD_GRAVITY);
+				break;
+			case ShockDetector.EVENT_JERK:
+				what = String.format(Locale.US, "jerk %.0fm/s^3", peak);
+				break;
+			case ShockDetector.EVENT_FREE_FALL:
+				what = String.format(Locale.US, "free fall %.2fg", peak / SensorManager.STANDARD_GRAVITY);
+				break;
+			default:
+				what = "event " + type;
+		}
+		return String.format(Locale.US, "%.3fs %s, %dms", timestamp * 1e-9, what, duration / 1000000);
+	}
 
 	private long lastSimTime = 0;
 
 	private final Runnable mSimRunnable = new Runnable() {
-		private final float[] scr1 = new float[16];
-		private final float[] scr2 = new float[16];
-		private final float[] scr3 = new float[16];
-		private final float[] speed = {0.f,0.f,0.f,0.f};
-		private final float[] position = {0.f,0.f,0.f,0.f};
-		private final float springconstant = 400.f;
-		private final float mass = 10.f;
-		private final float friction = 0.7f;
+		private final float[] transform = new float[16];
+		private final float[] rotation = new float[4];
 
 		@SuppressLint("InlinedApi")
 		@Override
@@ -253,65 +483,53 @@ public class MainActivity extends AppCompatActivity {
 			if (deltatime > 10000)
 				deltatime = 0;
 			lastSimTime = time;
+			if (mDirectChannel != null)
+				mDirectChannel.poll(mSensorSink);
 			//schedule next loop
 			if (2*SIM_INTERVAL - deltatime > 0)
 				mSimHandler.postDelayed(mSimRunnable, 2*SIM_INTERVAL - deltatime);
 			else
 				mSimHandler.postDelayed(mSimRunnable, 0);
 
-			//okay, so now do the maths. first, we fetch the rotation matrix.
-			SensorManager.getRotationMatrixFromVector(scr1, mRotation);
-			//for rotation matrices, inverting is transposing
-			scr3[0]  = scr1[0]; scr3[1]  = scr1[4]; scr3[2]  = scr1[8];  scr3[3]  = scr1[12];
-			scr3[4]  = scr1[1]; scr3[5]  = scr1[5]; scr3[6]  = scr1[9];  scr3[7]  = scr1[13];
-			scr3[8]  = scr1[2]; scr3[9]  = scr1[6]; scr3[10] = scr1[10]; scr3[11] = scr1[14];
-			scr3[12] = scr1[3]; scr3[13] = scr1[7]; scr3[14] = scr1[11]; scr3[15] = scr1[15];
-
-			//now see that we rotate the acceleration vector to match, and use it
-			//to translate the ball around
-			Matrix.multiplyMV(scr2, 0, scr3, 0, mAcceleration, 0);
-			//scr2 is the force vector in the local earth surface coordinate system.
-			//in rest, points upwards. This is the force^Wacceleration we apply at our
-			// spring, so there is an equal and opposite force^Wacceleration at the
-			// ball, i.E. -scr2
-
-			//force by spring: distance*springconstant, which is -position*springconstant
-			//the mass converts the acceleration into a force: F=m*a
-			//F_spring = -position*springconstant
-			//F_external = -scr2*mass
-			//F_speed = -speed * friction
-			//F_ball = F_spring + F_external + F_speed
-			//a_ball = F_ball / mass
-			//so, everything pulled together:
-			//a_ball = -position * springconstant / mass - scr2 + speed * friction / mass
-
-			for(int i = 0; i < 3; i++) {
-				float a = -position[i]* (springconstant / mass) - scr2[i]
-					- speed[i] * friction;
-				speed[i] += a * deltatime * 0.001f;
-
-				position[i] += speed[i] * deltatime * 0.001f;
-			}
+			mSimulation.step(deltatime, transform);
 
-			Matrix.translateM(scr1, 0, position[0], position[1], position[2]);
+			if (USE_PREDICTION) {
+				long latency = mGLView.takeLatency();
+				if (latency > 0)
+					mPredictor.addLatency(latency);
+				long horizon = mPredictor.getLatency();
+				if (mPredictor.predictRotation(SystemClock.elapsedRealtimeNanos() + horizon, rotation))
+					mSimulation.predictTransform(rotation, horizon * 1e-9f, transform);
+			}
 
-			mGLView.setTransform(scr1);
+			//the sim must not wait, a stalled blocking subscriber loses this pose
+			if (BROADCAST_POSES)
+				mPoses.tryPublish(SystemClock.elapsedRealtimeNanos(), transform);
+			else
+				mGLView.setTransform(transform);
 			mGLView.requestRender();
+			if (SHOW_SPECTRUM)
+				mSpectrumView.update();
+			if (DETECT_EVENTS)
+				updateEventText();
+
+			if (time - mRateStart >= 1000) {
+				if (mRateStart != 0)
+					mSampleRate = mAccelerometerSamples * 1000.0f / (time - mRateStart);
+				mAccelerometerSamples = 0;
+				mRateStart = time;
+			}
+			mGLView.setSensorMetrics(mSampleRate, mGForce);
 		}
 	};
 
+	private DirectSensorChannel mDirectChannel;
+
 	private SensorEventListener mSensorEventListener = new SensorEventListener() {
 
 		@Override
 		public void onSensorChanged(SensorEvent event) {
-			if (event.sensor.getType() == Sensor.TYPE_ACCELEROMETER) {
-				System.arraycopy(event.values, 0, mAcceleration,
-					0, 3);
-				mAcceleration[3] = 0.f;//direction vector: fourth component is 0.
-			} else if (event.sensor.getType() == Sensor.TYPE_ROTATION_VECTOR) {
-				System.arraycopy(event.values, 0, mRotation,
-					0, mRotation.length);
-			}
+			mSensorSink.onSample(event.sensor.getType(), event.timestamp, event.values);
 		}
 
 		@Override
@@ -320,6 +538,8 @@ public class MainActivity extends AppCompatActivity {
 	};
 
 	private DisplayManager.DisplayListener mDisplayListener = new DisplayManager.DisplayListener() {
+		private final Point size = new Point();
+
 		@Override
 		public void onDisplayAdded(int displayId) {
 		}
@@ -328,7 +548,6 @@ public class MainActivity extends AppCompatActivity {
 		public void onDisplayChanged(int displayId) {
 			Display d = mGLView.getDisplay();
 			mGLView.updateScreenRotation(d);
-			Point size = new Point();
 			d.getSize(size);
 			if(size.x > size.y) {
 				//landscape
@@ -358,29 +577,126 @@ public class MainActivity extends AppCompatActivity {
 	@Override
 	protected void onStart() {
 		super.onStart();
-
-	        mSensorManager.registerListener(mSensorEventListener,
-		        mSensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER),
-                        SensorManager.SENSOR_DELAY_GAME, SensorManager.SENSOR_DELAY_GAME);
-		mSensorManager.registerListener(mSensorEventListener,
-			mSensorManager.getDefaultSensor(Sensor.TYPE_ROTATION_VECTOR),
-			SensorManager.SENSOR_DELAY_GAME, SensorManager.SENSOR_DELAY_GAME);
+		mGLView.onResume();
+
+		mSimHandler.removeCallbacks(mUnregisterSensors);
+		if (ANALYZE_DELIVERY) {
+			if (mDeliveryAnalyzer == null)
+				mDeliveryAnalyzer = new SensorDeliveryAnalyzer(mSensorManager);
+			mDeliveryAnalyzer.start();
+		} else if (!mSensorsRegistered) {
+			registerSensors();
+			mSensorsRegistered = true;
+		}
 
                 mDisplayManager.registerDisplayListener(mDisplayListener, null);
 
+		if (STREAM_DATA) {
+			try {
+				mStreamServer.start();
+			} catch (IOException e) {
+				Log.w("MainActivity", "no streaming: " + e);
+			}
+		}
+
 		// Trigger the initial hide() shortly after the activity has been
 		// shown again, to briefly remind the user that UI controls
 		// are available.
 		lastSimTime = 0;
+		mRateStart = 0;
 		delayedHide(100);
-		mSimHandler.postDelayed(mSimRunnable, SIM_INTERVAL);
+		// the first step has no time to advance, it draws the state we stopped in right away
+		mSimHandler.post(mSimRunnable);
+	}
+
+	private boolean mSensorsRegistered = false;
+
+	private final Runnable mUnregisterSensors = new Runnable() {
+		@Override
+		public void run() {
+			mSensorManager.unregisterListener(mSensorEventListener);
+			if (mDirectChannel != null) {
+				mDirectChannel.close();
+				mDirectChannel = null;
+			}
+			mSensorsRegistered = false;
+		}
+	};
+
+	private void restoreSimulation() {
+		SharedPreferences preferences = getSharedPreferences(SIMULATION_PREFERENCES, Context.MODE_PRIVATE);
+		if (!preferences.contains("state0"))
+			return;
+		float[] state = new float[BallSimulation.STATE_FLOATS];
+		for (int i = 0; i < state.length; i++)
+			state[i] = preferences.getFloat("state" + i, 0);
+		mSimulation.setState(state);
+	}
+
+	private void saveSimulation() {
+		float[] state = new float[BallSimulation.STATE_FLOATS];
+		mSimulation.getState(state);
+		SharedPreferences.Editor editor = getSharedPreferences(SIMULATION_PREFERENCES, Context.MODE_PRIVATE).edit();
+		for (int i = 0; i < state.length; i++)
+			editor.putFloat("state" + i, state[i]);
+		editor.apply();
+	}
+
+	/** The sensors the navball and the overlays use. */
+	private void registerSensors() {
+		Sensor accelerometer = mSensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER);
+		registerSensor(accelerometer,
+			SHOW_SPECTRUM ? accelerometer.getMinDelay() : SensorManager.SENSOR_DELAY_GAME);
+		registerSensor(mSensorManager.getDefaultSensor(Sensor.TYPE_ROTATION_VECTOR),
+			SensorManager.SENSOR_DELAY_GAME);
+		if (USE_PREDICTION) {
+			Sensor gyroscope = mSensorManager.getDefaultSensor(Sensor.TYPE_GYROSCOPE);
+			if (gyroscope != null)
+				registerSensor(gyroscope, SensorManager.SENSOR_DELAY_GAME);
+			// the frame waits about one refresh for scanout after rendering
+			Display display = getWindowManager().getDefaultDisplay();
+			mPredictor.setDisplayDelay((long) (1e9 / display.getRefreshRate()));
+		}
+	}
+
+	/**
+	 * Uses the direct channel for the sensor if enabled and supported, falls
+	 * back to listener callbacks otherwise.
+	 *
+	 * @param samplingPeriod for the listener, a SENSOR_DELAY_ constant or
+	 *                       microseconds
+	 */
+	private void registerSensor(Sensor sensor, int samplingPeriod) {
+		if (USE_DIRECT_CHANNEL && DirectSensorChannel.isSupported(sensor)) {
+			if (mDirectChannel == null) {
+				try {
+					mDirectChannel = new DirectSensorChannel(mSensorManager, DIRECT_CHANNEL_REPORTS);
+				} catch (IOException e) {
+					mDirectChannel = null;
+				}
+			}
+			if (mDirectChannel != null && mDirectChannel.configure(sensor, DIRECT_CHANNEL_RATE))
+				return;
+		}
+		mSensorManager.registerListener(mSensorEventListener, sensor,
+			samplingPeriod, SensorManager.SENSOR_DELAY_GAME);
 	}
 
 	@Override
 	protected void onStop() {
 		super.onStop();
 		mSimHandler.removeCallbacks(mSimRunnable);
-		mSensorManager.unregisterListener(mSensorEventListener);
+		mGLView.onPause();
+		if (mSensorsRegistered)
+			mSimHandler.postDelayed(mUnregisterSensors, SENSOR_LINGER_MS);
+		if (mDeliveryAnalyzer != null)
+			mDeliveryAnalyzer.stop();
+		saveSimulation();
 		mDisplayManager.unregisterDisplayListener(mDisplayListener);
+		if (STREAM_DATA) {
+			mStreamServer.stop();
+			Log.i("MainActivity", "streamed " + mStreamServer.getSent() + " samples, "
+				+ mStreamServer.getDropped() + " dropped");
+		}
 	}
 }
@@ -0,0 +1,184 @@
+package de.pirsoft.acceltest;
+
+/**
+ * The few 4x4 matrix operations the hot paths need, column major like
+ * android.opengl.Matrix, but usable on a plain JVM and allocation free.
+ */
+final class Mat4 {
+	private Mat4() {
+	}
+
+	static void setIdentityM(float[] m) {
+		for (int i = 0; i < 16; i++)
+			m[i] = 0.f;
+		m[0] = m[5] = m[10] = m[15] = 1.f;
+	}
+
+	/** result = lhs * rhs. result must not be lhs or rhs. */
+	static void multiplyMM(float[] result, float[] lhs, float[] rhs) {
+		for (int j = 0; j < 4; j++) {
+			float r0 = rhs[4 * j];
+			float r1 = rhs[4 * j + 1];
+			float r2 = rhs[4 * j + 2];
+			float r3 = rhs[4 * j + 3];
+			for (int i = 0; i < 4; i++) {
+				result[4 * j + i] = lhs[i] * r0 + lhs[4 + i] * r1
+					+ lhs[8 + i] * r2 + lhs[12 + i] * r3;
+			}
+		}
+	}
+
+	/** result = lhs * v, for 4 component vectors. result must not be v. */
+	static void multiplyMV(float[] result, float[] lhs, float[] v) {
+		for (int i = 0; i < 4; i++) {
+			result[i] = lhs[i] * v[0] + lhs[4 + i] * v[1]
+				+ lhs[8 + i] * v[2] + lhs[12 + i] * v[3];
+		}
+	}
+
+	/** result = transpose(lhs) * v, for 4 component vectors. result must not be v. */
+	static void multiplyTransposedMV(float[] result, float[] lhs, float[] v) {
+		for (int i = 0; i < 4; i++) {
+			result[i] = lhs[4 * i] * v[0] + lhs[4 * i + 1] * v[1]
+				+ lhs[4 * i + 2] * v[2] + lhs[4 * i + 3] * v[3];
+		}
+	}
+
+	/** m = m * translation(x, y, z) */
+	static void translateM(float[] m, float x, float y, float z) {
+		for (int i = 0; i < 4; i++)
+			m[12 + i] += m[i] * x + m[4 + i] * y + m[8 + i] * z;
+	}
+
+	/** Perspective projection, same as Matrix.frustumM. */
+	static void frustumM(float[] m, float left, float right, float bottom, float top, float near, float far) {
+		float rWidth = 1.0f / (right - left);
+		float rHeight = 1.0f / (top - bottom);
+		float rDepth = 1.0f / (near - far);
+		for (int i = 0; i < 16; i++)
+			m[i] = 0.f;
+		m[0] = 2.0f * (near * rWidth);
+		m[5] = 2.0f * (near * rHeight);
+		m[8] = (right + left) * rWidth;
+		m[9] = (top + bottom) * rHeight;
+		m[10] = (far + near) * rDepth;
+		m[11] = -1.0f;
+		m[14] = 2.0f * (far * near * rDepth);
+	}
+
+	/** View matrix of a camera at eye looking at center, same as Matrix.setLookAtM. */
+	static void setLookAtM(float[] m, float eyeX, float eyeY, float eyeZ,
+		float centerX, float centerY, float centerZ, float upX, float upY, float upZ) {
+		float fx = centerX - eyeX;
+		float fy = centerY - eyeY;
+		float fz = centerZ - eyeZ;
+		float rlf = 1.0f / (float) Math.sqrt(fx * fx + fy * fy + fz * fz);
+		fx *= rlf;
+		fy *= rlf;
+		fz *= rlf;
+		//s = f x up
+		float sx = fy * upZ - fz * upY;
+		float sy = fz * upX - fx * upZ;
+		float sz = fx * upY - fy * upX;
+		float rls = 1.0f / (float) Math.sqrt(sx * sx + sy * sy + sz * sz);
+		sx *= rls;
+		sy *= rls;
+		sz *= rls;
+		//u = s x f
+		float ux = sy * fz - sz * fy;
+		float uy = sz * fx - sx * fz;
+		float uz = sx * fy - sy * fx;
+		m[0] = sx;
+		m[1] = ux;
+		m[2] = -fx;
+		m[3] = 0.f;
+		m[4] = sy;
+		m[5] = uy;
+		m[6] = -fy;
+		m[7] = 0.f;
+		m[8] = sz;
+		m[9] = uz;
+		m[10] = -fz;
+		m[11] = 0.f;
+		m[12] = m[13] = m[14] = 0.f;
+		m[15] = 1.f;
+		translateM(m, -eyeX, -eyeY, -eyeZ);
+	}
+
+	/** Rotation by a degrees around the axis x, y, z, same as Matrix.setRotateM. */
+	static void setRotateM(float[] m, float a, float x, float y, float z) {
+		m[3] = m[7] = m[11] = 0.f;
+		m[12] = m[13] = m[14] = 0.f;
+		m[15] = 1.f;
+		double rad = Math.toRadians(a);
+		float s = (float) Math.sin(rad);
+		float c = (float) Math.cos(rad);
+		float len = (float) Math.sqrt(x * x + y * y + z * z);
+		if (len != 1.f) {
+			x /= len;
+			y /= len;
+			z /= len;
+		}
+		float nc = 1.f - c;
+		float xy = x * y;
+		float yz = y * z;
+		float zx = z * x;
+		float xs = x * s;
+		float ys = y * s;
+		float zs = z * s;
+		m[0] = x * x * nc + c;
+		m[4] = xy * nc - zs;
+		m[8] = zx * nc + ys;
+		m[1] = xy * nc + zs;
+		m[5] = y * y * nc + c;
+		m[9] = yz * nc - xs;
+		m[2] = zx * nc - ys;
+		m[6] = yz * nc + xs;
+		m[10] = z * z * nc + c;
+	}
+
+	/**
+	 * Same as SensorManager.getRotationMatrixFromVector for a 16 element
+	 * matrix: rotation vector x, y, z (and optionally w) to a matrix that,
+	 * read row major, transforms device coordinates to world coordinates.
+	 */
+	static void setRotationFromVector(float[] r, float[] rotationVector) {
+		float q1 = rotationVector[0];
+		float q2 = rotationVector[1];
+		float q3 = rotationVector[2];
+		float q0;
+		if (rotationVector.length >= 4) {
+			q0 = rotationVector[3];
+		} else {
+			q0 = 1 - q1 * q1 - q2 * q2 - q3 * q3;
+			q0 = q0 > 0 ? (float) Math.sqrt(q0) : 0;
+		}
+		float sq_q1 = 2 * q1 * q1;
+		float sq_q2 = 2 * q2 * q2;
+		float sq_q3 = 2 * q3 * q3;
+		float q1_q2 = 2 * q1 * q2;
+		float q3_q0 = 2 * q3 * q0;
+		float q1_q3 = 2 * q1 * q3;
+		float q2_q0 = 2 * q2 * q0;
+		float q2_q3 = 2 * q2 * q3;
+		float q1_q0 = 2 * q1 * q0;
+
+		r[0] = 1 - sq_q2 - sq_q3;
+		r[1] = q1_q2 - q3_q0;
+		r[2] = q1_q3 + q2_q0;
+		r[3] = 0.0f;
+
+		r[4] = q1_q2 + q3_q0;
+		r[5] = 1 - sq_q1 - sq_q3;
+		r[6] = q2_q3 - q1_q0;
+		r[7] = 0.0f;
+
+		r[8] = q1_q3 - q2_q0;
+		r[9] = q2_q3 + q1_q0;
+		r[10] = 1 - sq_q1 - sq_q2;
+		r[11] = 0.0f;
+
+		r[12] = r[13] = r[14] = 0.0f;
+		r[15] = 1.0f;
+	}
+}
@@ -7,36 +7,57 @@ import android.util.AttributeSet;
 import android.view.Display;
 
 public class MyGLSurfaceView extends GLSurfaceView {
+	/**
+	 * Render without depth buffer into a minimal RGB surface, relying on
+	 * back-face culling of the convex navball instead.
+	 */
+	private static final boolean LIGHTWEIGHT = true;
+	/** Color depth of the lightweight surface, RGB565 otherwise. */
+	private static final boolean LIGHTWEIGHT_RGB888 = true;
+
 	private final MyGLRenderer mRenderer;
+	private final TimedContextFactory mContextFactory = new TimedContextFactory();
 
 	public MyGLSurfaceView(Context context){
 		super(context);
 
-		// Create an OpenGL ES 2.0 context
+		// Create an OpenGL ES 2.0 context, timed for the startup report
 		setEGLContextClientVersion(2);
+		setEGLContextFactory(mContextFactory);
+		if (LIGHTWEIGHT)
+			setEGLConfigChooser(new LightweightConfigChooser(LIGHTWEIGHT_RGB888));
 
-		mRenderer = new MyGLRenderer(context);
+		mRenderer = new MyGLRenderer(context, LIGHTWEIGHT);
 
 		// Set the Renderer for drawing on the GLSurfaceView
 		setRenderer(mRenderer);
 
 		// Render the view only when there is a change in the drawing data
 		setRenderMode(GLSurfaceView.RENDERMODE_WHEN_DIRTY);
+
+		// resume with the uploaded resources, onSurfaceCreated() only follows a real context loss
+		setPreserveEGLContextOnPause(true);
 	}
 
 	public MyGLSurfaceView(Context context, AttributeSet attrs) {
 		super(context, attrs);
 
-		// Create an OpenGL ES 2.0 context
+		// Create an OpenGL ES 2.0 context, timed for the startup report
 		setEGLContextClientVersion(2);
+		setEGLContextFactory(mContextFactory);
+		if (LIGHTWEIGHT)
+			setEGLConfigChooser(new LightweightConfigChooser(LIGHTWEIGHT_RGB888));
 
-		mRenderer = new MyGLRenderer(context);
+		mRenderer = new MyGLRenderer(context, LIGHTWEIGHT);
 
 		// Set the Renderer for drawing on the GLSurfaceView
 		setRenderer(mRenderer);
 
 		// Render the view only when there is a change in the drawing data
 		setRenderMode(GLSurfaceView.RENDERMODE_WHEN_DIRTY);
+
+		// resume with the uploaded resources, onSurfaceCreated() only follows a real context loss
+		setPreserveEGLContextOnPause(true);
 	}
 
 	private final float TOUCH_SCALE_FACTOR = 180.0f / 320;
@@ -79,9 +100,45 @@ public class MyGLSurfaceView extends GLSurfaceView {
 		return true;
 	}*/
 
+	/** Hands over assets that are already loading, call before the view is attached. */
+	public void setAssets(NavballAssets assets) {
+		mRenderer.setAssets(assets);
+	}
+
+	/** Records context creation and the GL thread part of startup, call before the view is attached. */
+	public void setStartupPhases(StartupPhases phases) {
+		mContextFactory.setStartupPhases(phases);
+		mRenderer.setStartupPhases(phases);
+	}
+
+	/** See MyGLRenderer.setScope(). */
+	public void setScope(ScopeHistory history) {
+		mRenderer.setScope(history);
+	}
+
+	/** See MyGLRenderer.setPoses(). */
+	public void setPoses(PoseRing.Subscriber poses) {
+		mRenderer.setPoses(poses);
+	}
+
+	/** See MyGLRenderer.setHudTop(). */
+	public void setHudTop(int pixels) {
+		mRenderer.setHudTop(pixels);
+	}
+
 	public void setTransform(float[] matrix) {
 		mRenderer.setTransform(matrix);
 	}
+
+	/** See MyGLRenderer.setSensorMetrics(). */
+	public void setSensorMetrics(float sampleRate, float gForce) {
+		mRenderer.setSensorMetrics(sampleRate, gForce);
+	}
+
+	/** See MyGLRenderer.takeLatency(). */
+	public long takeLatency() {
+		return mRenderer.takeLatency();
+	}
 	@Override
 	protected void onAttachedToWindow() {
                 super.onAttachedToWindow();
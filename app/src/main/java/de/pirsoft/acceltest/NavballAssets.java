@@ -0,0 +1,140 @@
+package de.pirsoft.acceltest;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.opengl.GLES20;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Builds the navball mesh and decodes its texture in the background, so the
+ * GL thread only has to upload them once the context exists. Registered
+ * with GlResources, which drops them after the upload and rebuilds from
+ * the same parameters after a context loss.
+ *
+ * Whoever needs a result first and finds its task not yet started runs it
+ * on the calling thread, so waiting never takes longer than doing it.
+ */
+class NavballAssets {
+	/** Off: build everything when the GL thread asks for it, as before. */
+	private static final boolean PRELOAD = true;
+	/**
+	 * Cube map with a shared vertex mesh instead of the cross shaped 2D
+	 * texture. The faces come from tools/CubeMapSlicer.java.
+	 */
+	private static final boolean CUBE_MAP = true;
+	private static final int SUBDIVIDE = 10;
+	/**
+	 * Subdivided icosahedron instead of the cube, needs CUBE_MAP. Frequency 6
+	 * has a smaller silhouette error than the cube at SUBDIVIDE 10, with
+	 * half the vertices and triangles, see SphereMeshComparison.
+	 */
+	private static final boolean ICOSPHERE = true;
+	private static final int ICOSPHERE_FREQUENCY = 6;
+	//GL face order: +X, -X, +Y, -Y, +Z, -Z
+	private static final int[] CUBE_MAP_FACES = {
+		R.drawable.navball_px, R.drawable.navball_nx,
+		R.drawable.navball_py, R.drawable.navball_ny,
+		R.drawable.navball_pz, R.drawable.navball_nz,
+	};
+
+	private final Resources mResources;
+	private final StartupPhases mPhases;
+	private FutureTask<CubeSphereMesh> mMesh;
+	private FutureTask<Bitmap[]> mTexture;
+
+	private NavballAssets(Resources resources, StartupPhases phases) {
+		mResources = resources;
+		mPhases = phases;
+		mMesh = new FutureTask<>(new Callable<CubeSphereMesh>() {
+			@Override
+			public CubeSphereMesh call() {
+				mPhases.begin(StartupPhases.MESH_BUILD);
+				try {
+					if (CUBE_MAP && ICOSPHERE)
+						return CubeSphereMesh.forIcosphere(ICOSPHERE_FREQUENCY);
+					return CUBE_MAP ? CubeSphereMesh.forCubeMap(SUBDIVIDE) : new CubeSphereMesh(SUBDIVIDE);
+				} finally {
+					mPhases.end(StartupPhases.MESH_BUILD);
+				}
+			}
+		});
+		mTexture = new FutureTask<>(new Callable<Bitmap[]>() {
+			@Override
+			public Bitmap[] call() {
+				mPhases.begin(StartupPhases.TEXTURE_DECODE);
+				try {
+					return decodeTexture();
+				} finally {
+					mPhases.end(StartupPhases.TEXTURE_DECODE);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Starts loading, call as early as possible, i.E. in Activity.onCreate.
+	 *
+	 * @param phases records building and decoding, on whichever thread does it
+	 */
+	static NavballAssets preload(Resources resources, StartupPhases phases) {
+		NavballAssets assets = new NavballAssets(resources, phases);
+		if (PRELOAD) {
+			ExecutorService executor = Executors.newFixedThreadPool(2);
+			executor.execute(assets.mMesh);
+			executor.execute(assets.mTexture);
+			// threads go away once both tasks are done
+			executor.shutdown();
+		}
+		return assets;
+	}
+
+	private static int[] textureIds() {
+		return CUBE_MAP ? CUBE_MAP_FACES : new int[] { R.drawable.navball };
+	}
+
+	private Bitmap[] decodeTexture() {
+		return GlResources.decode(mResources, textureIds());
+	}
+
+	private static <T> T await(FutureTask<T> task) {
+		// no-op if the executor already picked it up
+		task.run();
+		boolean interrupted = false;
+		try {
+			while (true) {
+				try {
+					return task.get();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		} catch (ExecutionException e) {
+			throw new RuntimeException("Loading navball assets failed", e.getCause());
+		} finally {
+			if (interrupted)
+				Thread.currentThread().interrupt();
+		}
+	}
+
+	/** Registers the mesh, handing over the preloaded one. Once only. */
+	GlResources.Mesh addMesh(GlResources resources) {
+		GlResources.Mesh mesh = CUBE_MAP && ICOSPHERE
+			? resources.addIcosphere(ICOSPHERE_FREQUENCY, await(mMesh))
+			: resources.addMesh(SUBDIVIDE, CUBE_MAP, await(mMesh));
+		mMesh = null;
+		return mesh;
+	}
+
+	/** Registers the texture, handing over the preloaded bitmaps. Once only. */
+	GlResources.Texture addTexture(GlResources resources) {
+		GlResources.Texture texture = resources.addTexture(
+			CUBE_MAP ? GLES20.GL_TEXTURE_CUBE_MAP : GLES20.GL_TEXTURE_2D, textureIds(), await(mTexture));
+		mTexture = null;
+		return texture;
+	}
+}
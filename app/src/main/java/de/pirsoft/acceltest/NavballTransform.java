@@ -0,0 +1,55 @@
+package de.pirsoft.acceltest;
+
+import android.view.Surface;
+
+/**
+ * Turns the simulated ball transform into the model matrix of the navball,
+ * taking the screen rotation into account.
+ *
+ * Plain java, allocation free. setTransform() and getMvp() are called from
+ * different threads, like the renderer did before, a torn matrix only
+ * shows for a single frame.
+ */
+class NavballTransform {
+	//screen rotation, indexed by Surface.ROTATION_*
+	private final float[][] mScreenRotation = new float[4][16];
+	//rotate to get the correct ball orientation. we could bake this into the spheres coordinates.
+	private final float[] mBallOrientation = new float[16];
+	private final float[] mScratch = new float[16];
+	private final float[] mScratch2 = new float[16];
+	private final float[] mModelMatrix = {1f, 0f, 0f, 0f, 0f, 1f, 0f, 0f, 0f, 0f, 1f, 0f, 0f, 0f, 0f, 1f};
+	private int mRotation = Surface.ROTATION_0;
+
+	NavballTransform() {
+		Mat4.setIdentityM(mScreenRotation[Surface.ROTATION_0]);
+		Mat4.setRotateM(mScreenRotation[Surface.ROTATION_90], 90f, 0, 0, 1);
+		Mat4.setRotateM(mScreenRotation[Surface.ROTATION_180], 180f, 0, 0, 1);
+		Mat4.setRotateM(mScreenRotation[Surface.ROTATION_270], 270f, 0, 0, 1);
+
+		float[] a = new float[16];
+		float[] b = new float[16];
+		Mat4.setRotateM(a, 180f, 0, 0, 1);
+		Mat4.setRotateM(b, 90f, 1, 0, 0);
+		Mat4.multiplyMM(mBallOrientation, a, b);
+	}
+
+	void setScreenRotation(int rotation) {
+		mRotation = rotation;
+	}
+
+	void setTransform(float[] matrix) {
+		/* View coordinate system: X right, Y up, Z to viewer
+		   Ball coordinate system: X 90°, Y up, Z 0°
+		   Sensor coordinate system: X right, Y up, Z to viewer(out of the display)
+		 */
+		//rotate for screen orientation, then for "world" rotation
+		Mat4.multiplyMM(mScratch, mScreenRotation[mRotation & 3], matrix);
+		Mat4.multiplyMM(mScratch2, mScratch, mBallOrientation);
+		System.arraycopy(mScratch2, 0, mModelMatrix, 0, mModelMatrix.length);
+	}
+
+	/** out = viewProjection * model */
+	void getMvp(float[] viewProjection, float[] out) {
+		Mat4.multiplyMM(out, viewProjection, mModelMatrix);
+	}
+}
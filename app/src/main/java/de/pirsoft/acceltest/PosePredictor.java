@@ -0,0 +1,132 @@
+package de.pirsoft.acceltest;
+
+import android.hardware.Sensor;
+
+/**
+ * Extrapolates the device rotation to the time the frame reaches the
+ * display, using the last rotation vector and the gyroscope rate:
+ * q(t + h) = q(t) * exp(0.5 * w * h), w being the body rate.
+ *
+ * The horizon is a smoothed average of the measured pipeline latency plus a
+ * fixed display delay.
+ *
+ * Plain java, allocation free. Not thread safe, samples, latency and
+ * predictions are expected on the same thread.
+ */
+class PosePredictor implements SampleSink {
+	private static final double LATENCY_SMOOTHING = 0.05;
+	/** Predicting further than this does more harm than good. */
+	static final long MAX_HORIZON_NS = 100000000L;
+	/** A rate this much older than the rotation is not trusted. */
+	private static final long MAX_RATE_AGE_NS = 50000000L;
+
+	//x, y, z, w
+	private final float[] mRotation = new float[4];
+	private long mRotationTime = -1;
+	private final float[] mRate = new float[3];
+	private long mRateTime = -1;
+
+	private double mLatency = 0;
+	private boolean mLatencyKnown = false;
+	private long mDisplayDelay = 0;
+
+	@Override
+	public void onSample(int sensorType, long timestamp, float[] values) {
+		if (sensorType == Sensor.TYPE_ROTATION_VECTOR) {
+			float x = values[0];
+			float y = values[1];
+			float z = values[2];
+			float w;
+			if (values.length >= 4) {
+				w = values[3];
+			} else {
+				w = 1 - x * x - y * y - z * z;
+				w = w > 0 ? (float) Math.sqrt(w) : 0;
+			}
+			mRotation[0] = x;
+			mRotation[1] = y;
+			mRotation[2] = z;
+			mRotation[3] = w;
+			mRotationTime = timestamp;
+		} else if (sensorType == Sensor.TYPE_GYROSCOPE) {
+			System.arraycopy(values, 0, mRate, 0, 3);
+			mRateTime = timestamp;
+		}
+	}
+
+	/** Time between handing a pose to the renderer and the frame being done with it. */
+	void addLatency(long latencyNs) {
+		if (!mLatencyKnown) {
+			mLatency = latencyNs;
+			mLatencyKnown = true;
+		} else {
+			mLatency += LATENCY_SMOOTHING * (latencyNs - mLatency);
+		}
+	}
+
+	/** Added to the measured latency, i.E. one refresh period for scanout. */
+	void setDisplayDelay(long delayNs) {
+		mDisplayDelay = delayNs;
+	}
+
+	/** Expected time from now until the pose shows on the display. */
+	long getLatency() {
+		return (long) mLatency + mDisplayDelay;
+	}
+
+	/** Timestamp of the last rotation sample, -1 if there was none. */
+	long getRotationTime() {
+		return mRotationTime;
+	}
+
+	/**
+	 * Rotation expected at targetTime, as quaternion x, y, z, w.
+	 *
+	 * Without a usable gyroscope rate the last rotation is returned as is.
+	 * The horizon is clamped to [0, MAX_HORIZON_NS].
+	 *
+	 * @return false if there was no rotation sample yet
+	 */
+	boolean predictRotation(long targetTime, float[] out) {
+		if (mRotationTime < 0)
+			return false;
+		long horizon = targetTime - mRotationTime;
+		if (horizon < 0)
+			horizon = 0;
+		else if (horizon > MAX_HORIZON_NS)
+			horizon = MAX_HORIZON_NS;
+		if (mRateTime < 0 || mRotationTime - mRateTime > MAX_RATE_AGE_NS || horizon == 0) {
+			System.arraycopy(mRotation, 0, out, 0, 4);
+			return true;
+		}
+
+		float h = horizon * 1e-9f;
+		float wx = mRate[0];
+		float wy = mRate[1];
+		float wz = mRate[2];
+		float rate = (float) Math.sqrt(wx * wx + wy * wy + wz * wz);
+		float half = 0.5f * rate * h;
+		//exp of the pure quaternion 0.5*w*h, sin(x)/x taken as 1 for tiny angles
+		float s = rate > 1e-6f ? (float) Math.sin(half) / rate : 0.5f * h;
+		float dx = wx * s;
+		float dy = wy * s;
+		float dz = wz * s;
+		float dw = (float) Math.cos(half);
+
+		float qx = mRotation[0];
+		float qy = mRotation[1];
+		float qz = mRotation[2];
+		float qw = mRotation[3];
+		//body rate, so the increment multiplies from the right
+		float x = qw * dx + qx * dw + qy * dz - qz * dy;
+		float y = qw * dy - qx * dz + qy * dw + qz * dx;
+		float z = qw * dz + qx * dy - qy * dx + qz * dw;
+		float w = qw * dw - qx * dx - qy * dy - qz * dz;
+		float n = (float) Math.sqrt(x * x + y * y + z * z + w * w);
+		out[0] = x / n;
+		out[1] = y / n;
+		out[2] = z / n;
+		out[3] = w / n;
+		return true;
+	}
+}
@@ -0,0 +1,178 @@
+package de.pirsoft.acceltest;
+
+/**
+ * Broadcasts pose records, a timestamp and a 4x4 transform, from one
+ * producer thread to any number of subscribers, Disruptor style: a
+ * preallocated ring of primitive slots, a volatile published count and one
+ * read cursor per subscriber. Publishing takes no locks and allocates
+ * nothing.
+ *
+ * Every subscriber picks what happens when it falls behind:
+ *
+ * - POLICY_BLOCK: never misses a record, the producer cannot publish while
+ *   this subscriber is a full ring behind, see tryPublish()
+ * - POLICY_DROP_OLDEST: records it did not read in time are overwritten,
+ *   it continues with the oldest one still there
+ * - POLICY_SAMPLE: only ever reads the newest record
+ *
+ * Non blocking subscribers copy a slot and then check that the producer
+ * did not get to it in the meantime, like EventLog, and retry if it did.
+ * Subscribe before the producer starts, each subscriber is read by one
+ * thread.
+ */
+class PoseRing {
+	static final int POLICY_BLOCK = 0;
+	static final int POLICY_DROP_OLDEST = 1;
+	static final int POLICY_SAMPLE = 2;
+	static final int FLOATS = 16;
+
+	private final int mCapacity;
+	private final int mMask;
+	private final long[] mTimes;
+	private final float[] mData;
+	//records ever published, only the producer stores it
+	private volatile long mPublished = 0;
+
+	private Subscriber[] mSubscribers = new Subscriber[0];
+	private Subscriber[] mBlocking = new Subscriber[0];
+	//lowest cursor of the blocking subscribers when last looked at
+	private long mGate = 0;
+	private long mStalls = 0;
+
+	/** @param capacity records, a power of two */
+	PoseRing(int capacity) {
+		if (capacity < 2 || (capacity & (capacity - 1)) != 0)
+			throw new IllegalArgumentException("capacity must be a power of two: " + capacity);
+		mCapacity = capacity;
+		mMask = capacity - 1;
+		mTimes = new long[capacity];
+		mData = new float[capacity * FLOATS];
+	}
+
+	/** Starts at the next published record. */
+	Subscriber subscribe(int policy) {
+		Subscriber s = new Subscriber(policy, mPublished);
+		mSubscribers = append(mSubscribers, s);
+		if (policy == POLICY_BLOCK) {
+			mBlocking = append(mBlocking, s);
+			mGate = Math.min(mGate, s.mNext);
+		}
+		return s;
+	}
+
+	private static Subscriber[] append(Subscriber[] array, Subscriber s) {
+		Subscriber[] grown = new Subscriber[array.length + 1];
+		System.arraycopy(array, 0, grown, 0, array.length);
+		grown[array.length] = s;
+		return grown;
+	}
+
+	/**
+	 * Producer thread only.
+	 *
+	 * @return false, and nothing is published, while a blocking subscriber
+	 * is a full ring behind
+	 */
+	boolean tryPublish(long time, float[] transform) {
+		long seq = mPublished;
+		//the slot still holds seq - capacity, every blocking subscriber must be past it
+		if (seq - mCapacity >= mGate) {
+			long gate = seq;
+			for (Subscriber s : mBlocking)
+				gate = Math.min(gate, s.mNext);
+			mGate = gate;
+			if (seq - mCapacity >= gate) {
+				mStalls++;
+				return false;
+			}
+		}
+		int slot = (int) (seq & mMask);
+		mTimes[slot] = time;
+		System.arraycopy(transform, 0, mData, slot * FLOATS, FLOATS);
+		mPublished = seq + 1;
+		return true;
+	}
+
+	/** Producer thread only, waits while a blocking subscriber is a full ring behind. */
+	void publish(long time, float[] transform) {
+		while (!tryPublish(time, transform))
+			Thread.yield();
+	}
+
+	/** Records ever published, any thread. */
+	long getPublished() {
+		return mPublished;
+	}
+
+	/** Failed tryPublish() calls, producer thread only. */
+	long getStalls() {
+		return mStalls;
+	}
+
+	final class Subscriber {
+		private final int mPolicy;
+		//next sequence to read, the producer reads it for blocking subscribers
+		private volatile long mNext;
+		private long mTime = 0;
+		private long mDropped = 0;
+		private long mMaxLag = 0;
+		//keeps the slot copy before the mPublished re-check, see EventLog
+		private volatile long mFence = 0;
+
+		private Subscriber(int policy, long next) {
+			mPolicy = policy;
+			mNext = next;
+		}
+
+		/**
+		 * Copies the next record according to the policy.
+		 *
+		 * @return false if there is nothing new
+		 */
+		boolean poll(float[] transform) {
+			long next = mNext;
+			while (true) {
+				long published = mPublished;
+				if (next >= published)
+					return false;
+				long seq = next;
+				if (mPolicy == POLICY_SAMPLE)
+					seq = published - 1;
+				else if (mPolicy == POLICY_DROP_OLDEST)
+					//the slot of seq - capacity may be being written right now
+					seq = Math.max(seq, published - mCapacity + 1);
+				int slot = (int) (seq & mMask);
+				long time = mTimes[slot];
+				System.arraycopy(mData, slot * FLOATS, transform, 0, FLOATS);
+				mFence = seq;
+				if (mPolicy != POLICY_BLOCK && mPublished - mCapacity >= seq)
+					continue;//overwritten while copying
+				mMaxLag = Math.max(mMaxLag, published - next);
+				mDropped += seq - next;
+				mTime = time;
+				mNext = seq + 1;
+				return true;
+			}
+		}
+
+		/** Timestamp of the record of the last successful poll(). */
+		long getTime() {
+			return mTime;
+		}
+
+		/** Published records not read yet, any thread. */
+		long getLag() {
+			return mPublished - mNext;
+		}
+
+		/** Largest lag seen by poll(). */
+		long getMaxLag() {
+			return mMaxLag;
+		}
+
+		/** Records skipped by the policy, never for POLICY_BLOCK. */
+		long getDropped() {
+			return mDropped;
+		}
+	}
+}
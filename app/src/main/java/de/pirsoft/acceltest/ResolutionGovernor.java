@@ -0,0 +1,105 @@
+package de.pirsoft.acceltest;
+
+/**
+ * Picks the render resolution scale from measured frame times.
+ *
+ * Frame times are smoothed, and the scale only changes after the load has
+ * been out of band for a while: quickly downwards when over budget, slowly
+ * upwards when well under budget. In between nothing changes, so noise
+ * around the budget does not make the resolution oscillate.
+ *
+ * Plain java, so it can be tested against synthetic frame time traces.
+ */
+class ResolutionGovernor {
+	/** Smoothing factor of the exponential moving average. */
+	private static final double SMOOTHING = 0.1;
+	/** Above this fraction of the budget we are too slow. */
+	private static final double HIGH_LOAD = 1.0;
+	/** Below this fraction of the budget we can afford more pixels. */
+	private static final double LOW_LOAD = 0.65;
+	/** Frames over budget before scaling down. */
+	private static final int DOWN_FRAMES = 5;
+	/** Frames under LOW_LOAD before scaling up. */
+	private static final int UP_FRAMES = 60;
+
+	private final long mBudgetNs;
+	private final float mMinScale;
+	private final float mMaxScale;
+	private final float mStep;
+
+	private float mScale;
+	private double mSmoothed = -1;
+	private int mOver = 0;
+	private int mUnder = 0;
+
+	/**
+	 * @param budgetNs frame time to stay below
+	 * @param minScale smallest scale, i.E. 0.5 for half the resolution per axis
+	 * @param maxScale largest scale, usually 1
+	 * @param step     scale granularity, avoids reallocating for tiny changes
+	 */
+	ResolutionGovernor(long budgetNs, float minScale, float maxScale, float step) {
+		mBudgetNs = budgetNs;
+		mMinScale = minScale;
+		mMaxScale = maxScale;
+		mStep = step;
+		mScale = maxScale;
+	}
+
+	float getScale() {
+		return mScale;
+	}
+
+	/** Smoothed frame time in ns, -1 before the first sample. */
+	double getSmoothedFrameTime() {
+		return mSmoothed;
+	}
+
+	/**
+	 * Feeds the measured time of the last frame.
+	 *
+	 * @return true if the scale changed
+	 */
+	boolean addFrameTime(long frameTimeNs) {
+		if (mSmoothed < 0)
+			mSmoothed = frameTimeNs;
+		else
+			mSmoothed += SMOOTHING * (frameTimeNs - mSmoothed);
+		double load = mSmoothed / mBudgetNs;
+		if (load > HIGH_LOAD) {
+			mOver++;
+			mUnder = 0;
+		} else if (load < LOW_LOAD) {
+			mUnder++;
+			mOver = 0;
+		} else {
+			mOver = 0;
+			mUnder = 0;
+		}
+
+		float scale = mScale;
+		if (mOver >= DOWN_FRAMES && mScale > mMinScale) {
+			//fill cost goes with the pixel count, i.E. the square of the scale.
+			//aim for the middle of the band, but at least one step down.
+			double wanted = mScale * Math.sqrt((HIGH_LOAD + LOW_LOAD) / 2 / load);
+			scale = Math.min(quantize(wanted), mScale - mStep);
+		} else if (mUnder >= UP_FRAMES && mScale < mMaxScale) {
+			scale = Math.round((mScale + mStep) / mStep) * mStep;
+		}
+		scale = Math.max(mMinScale, Math.min(mMaxScale, scale));
+		if (scale == mScale)
+			return false;
+
+		//expect the new frame time to follow the pixel count
+		double ratio = (double) scale / mScale;
+		mSmoothed *= ratio * ratio;
+		mScale = scale;
+		mOver = 0;
+		mUnder = 0;
+		return true;
+	}
+
+	private float quantize(double scale) {
+		return (float) (Math.floor(scale / mStep + 1e-3) * mStep);
+	}
+}
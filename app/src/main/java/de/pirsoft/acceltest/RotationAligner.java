@@ -0,0 +1,178 @@
+package de.pirsoft.acceltest;
+
+/**
+ * Turns accelerometer samples into the world frame using the rotation at
+ * the sample's own timestamp, instead of whatever rotation came in last.
+ *
+ * The rotation is slerped between the two rotation vector samples around
+ * the accelerometer timestamp. An accelerometer sample newer than the last
+ * rotation waits for the next one, at most MAX_WAIT_NS or PENDING samples,
+ * then it is rotated with the newest rotation as is.
+ *
+ * Both streams are kept in short primitive rings. Plain java, allocation
+ * free. Not thread safe, samples and reads are expected on the same thread.
+ */
+class RotationAligner {
+	private static final int HISTORY = 8;
+	private static final int PENDING = 32;
+	static final long MAX_WAIT_NS = 40000000L;
+	//below this angle between two rotations plain nlerp is exact enough
+	private static final float NLERP_DOT = 0.9995f;
+
+	//rotation ring, x, y, z, w
+	private final long[] mRotationTimes = new long[HISTORY];
+	private final float[] mRotations = new float[HISTORY * 4];
+	private int mRotationHead = 0;
+	private int mRotationCount = 0;
+
+	//accelerometer samples waiting for a later rotation
+	private final long[] mPendingTimes = new long[PENDING];
+	private final float[] mPending = new float[PENDING * 3];
+	private int mPendingHead = 0;
+	private int mPendingCount = 0;
+
+	private final float[] mQuaternion = new float[4];
+	private final float[] mMatrix = new float[16];
+	private final float[] mDevice = new float[4];
+	private final float[] mWorld = new float[4];
+	private long mWorldTime = -1;
+
+	/** Rotation vector sample, x, y, z and optionally w. */
+	void addRotation(long timestamp, float[] values) {
+		int slot = (mRotationHead + mRotationCount) % HISTORY;
+		if (mRotationCount == HISTORY)
+			mRotationHead = (mRotationHead + 1) % HISTORY;
+		else
+			mRotationCount++;
+		float x = values[0];
+		float y = values[1];
+		float z = values[2];
+		float w;
+		if (values.length >= 4) {
+			w = values[3];
+		} else {
+			w = 1 - x * x - y * y - z * z;
+			w = w > 0 ? (float) Math.sqrt(w) : 0;
+		}
+		mRotationTimes[slot] = timestamp;
+		mRotations[slot * 4] = x;
+		mRotations[slot * 4 + 1] = y;
+		mRotations[slot * 4 + 2] = z;
+		mRotations[slot * 4 + 3] = w;
+
+		while (mPendingCount > 0 && mPendingTimes[mPendingHead] <= timestamp)
+			alignPending();
+	}
+
+	/** Accelerometer sample in the device frame. */
+	void addAcceleration(long timestamp, float[] values) {
+		if (mRotationCount == 0)
+			return;
+		if (mPendingCount == PENDING)
+			alignPending();
+		int slot = (mPendingHead + mPendingCount) % PENDING;
+		mPendingTimes[slot] = timestamp;
+		mPending[slot * 3] = values[0];
+		mPending[slot * 3 + 1] = values[1];
+		mPending[slot * 3 + 2] = values[2];
+		mPendingCount++;
+
+		//covered by the rotations already, or waited long enough
+		while (mPendingCount > 0 && (mPendingTimes[mPendingHead] <= newestRotationTime()
+			|| timestamp - mPendingTimes[mPendingHead] > MAX_WAIT_NS))
+			alignPending();
+	}
+
+	private long newestRotationTime() {
+		return mRotationTimes[(mRotationHead + mRotationCount - 1) % HISTORY];
+	}
+
+	private void alignPending() {
+		int slot = mPendingHead;
+		long time = mPendingTimes[slot];
+		mPendingHead = (mPendingHead + 1) % PENDING;
+		mPendingCount--;
+
+		rotationAt(time, mQuaternion);
+		Mat4.setRotationFromVector(mMatrix, mQuaternion);
+		mDevice[0] = mPending[slot * 3];
+		mDevice[1] = mPending[slot * 3 + 1];
+		mDevice[2] = mPending[slot * 3 + 2];
+		mDevice[3] = 0.f;
+		Mat4.multiplyTransposedMV(mWorld, mMatrix, mDevice);
+		mWorldTime = time;
+	}
+
+	/**
+	 * Rotation at the given time, slerped between the rotations around it,
+	 * clamped to the oldest and newest one. Needs at least one rotation.
+	 */
+	void rotationAt(long time, float[] out) {
+		int newest = (mRotationHead + mRotationCount - 1) % HISTORY;
+		if (time >= mRotationTimes[newest]) {
+			System.arraycopy(mRotations, newest * 4, out, 0, 4);
+			return;
+		}
+		//walk back to the last rotation not after time
+		int later = newest;
+		for (int i = mRotationCount - 2; i >= 0; i--) {
+			int earlier = (mRotationHead + i) % HISTORY;
+			long t0 = mRotationTimes[earlier];
+			if (t0 <= time) {
+				float alpha = (float) (time - t0) / (mRotationTimes[later] - t0);
+				slerp(mRotations, earlier * 4, later * 4, alpha, out);
+				return;
+			}
+			later = earlier;
+		}
+		System.arraycopy(mRotations, mRotationHead * 4, out, 0, 4);
+	}
+
+	private static void slerp(float[] q, int a, int b, float alpha, float[] out) {
+		float dot = q[a] * q[b] + q[a + 1] * q[b + 1] + q[a + 2] * q[b + 2] + q[a + 3] * q[b + 3];
+		//q and -q are the same rotation, take the short way
+		float sign = 1.f;
+		if (dot < 0) {
+			dot = -dot;
+			sign = -1.f;
+		}
+		float wa;
+		float wb;
+		if (dot > NLERP_DOT) {
+			wa = 1 - alpha;
+			wb = alpha;
+		} else {
+			float theta = (float) Math.acos(dot);
+			float s = (float) Math.sin(theta);
+			wa = (float) Math.sin((1 - alpha) * theta) / s;
+			wb = (float) Math.sin(alpha * theta) / s;
+		}
+		wb *= sign;
+		float x = wa * q[a] + wb * q[b];
+		float y = wa * q[a + 1] + wb * q[b + 1];
+		float z = wa * q[a + 2] + wb * q[b + 2];
+		float w = wa * q[a + 3] + wb * q[b + 3];
+		float n = (float) Math.sqrt(x * x + y * y + z * z + w * w);
+		out[0] = x / n;
+		out[1] = y / n;
+		out[2] = z / n;
+		out[3] = w / n;
+	}
+
+	/**
+	 * World frame acceleration of the newest aligned sample.
+	 *
+	 * @return false if no sample was aligned yet
+	 */
+	boolean getWorldAcceleration(float[] out) {
+		if (mWorldTime < 0)
+			return false;
+		System.arraycopy(mWorld, 0, out, 0, 4);
+		return true;
+	}
+
+	/** Timestamp of the newest aligned sample, -1 if none. */
+	long getWorldTime() {
+		return mWorldTime;
+	}
+}
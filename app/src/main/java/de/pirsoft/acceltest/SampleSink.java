@@ -0,0 +1,15 @@
+package de.pirsoft.acceltest;
+
+/**
+ * Receives sensor samples, independent of the way they were delivered
+ * (SensorEventListener callbacks, direct channel reports, trace files, ...).
+ */
+interface SampleSink {
+	/**
+	 * @param sensorType one of the Sensor.TYPE_* constants
+	 * @param timestamp  sample time in nanoseconds, same base as SensorEvent.timestamp
+	 * @param values     sample values. The array is reused by the caller and is
+	 *                   only valid for the duration of the call.
+	 */
+	void onSample(int sensorType, long timestamp, float[] values);
+}
@@ -0,0 +1,189 @@
+package de.pirsoft.acceltest;
+
+import android.opengl.GLES20;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+/**
+ * Offscreen render target with color texture and optional depth buffer,
+ * plus a fullscreen quad that upsamples it onto the surface.
+ *
+ * Lets the scene render at a fraction of the surface resolution, the
+ * upsampling uses linear filtering.
+ */
+class ScaledFramebuffer {
+	private static final String vertexShaderCode =
+		"attribute vec2 aPosition;" +
+			"varying vec2 vTexCoord;" +
+			"void main() {" +
+			"  gl_Position = vec4(aPosition, 0.0, 1.0);" +
+			"  vTexCoord = aPosition * 0.5 + 0.5;" +
+			"}";
+
+	private static final String fragmentShaderCode =
+		"precision mediump float;" +
+			"uniform sampler2D uTexture;" +
+			"varying vec2 vTexCoord;" +
+			"void main() {" +
+			"  gl_FragColor = texture2D(uTexture, vTexCoord);" +
+			"}";
+
+	private static final float[] QUAD = { -1, -1, 1, -1, -1, 1, 1, 1 };
+
+	private final Gles mGl;
+	private final int mProgram;
+	private final int maPositionHandle;
+	private final int muTextureHandle;
+	private final int[] quadbo = new int[1];
+	private final int[] vao = new int[1];
+	private final int[] fbo = new int[1];
+	private final int[] colorTex = new int[1];
+	private final int[] depthRb = new int[1];
+	private final boolean mDepth;
+	private final boolean mInvalidate;
+	private final int[] mDepthAttachment = { GLES20.GL_DEPTH_ATTACHMENT };
+	private int mWidth = 0;
+	private int mHeight = 0;
+
+	private int loadShader(int type, String shaderCode) {
+		int shader = mGl.glCreateShader(type);
+		mGl.glShaderSource(shader, shaderCode);
+		mGl.glCompileShader(shader);
+		return shader;
+	}
+
+	/**
+	 * @param withDepth            attach a depth buffer
+	 * @param useVertexArrayObject whether GLES30 vertex array objects can be used
+	 * @param gles3                whether GLES30 framebuffer invalidation can be used
+	 */
+	ScaledFramebuffer(Gles gl, boolean withDepth, boolean useVertexArrayObject, boolean gles3) {
+		mGl = gl;
+		mDepth = withDepth;
+		mInvalidate = gles3;
+
+		FloatBuffer quad = ByteBuffer.allocateDirect(QUAD.length * 4)
+			.order(ByteOrder.nativeOrder()).asFloatBuffer();
+		quad.put(QUAD).position(0);
+		mGl.glGenBuffers(1, quadbo, 0);
+		mGl.glBindBuffer(GLES20.GL_ARRAY_BUFFER, quadbo[0]);
+		mGl.glBufferData(GLES20.GL_ARRAY_BUFFER, QUAD.length * 4, quad, GLES20.GL_STATIC_DRAW);
+		mGl.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+
+		int vertexShader = loadShader(GLES20.GL_VERTEX_SHADER, vertexShaderCode);
+		int fragmentShader = loadShader(GLES20.GL_FRAGMENT_SHADER, fragmentShaderCode);
+		mProgram = mGl.glCreateProgram();
+		mGl.glAttachShader(mProgram, vertexShader);
+		mGl.glAttachShader(mProgram, fragmentShader);
+		mGl.glLinkProgram(mProgram);
+		mGl.glDeleteShader(vertexShader);
+		mGl.glDeleteShader(fragmentShader);
+		maPositionHandle = mGl.glGetAttribLocation(mProgram, "aPosition");
+		muTextureHandle = mGl.glGetUniformLocation(mProgram, "uTexture");
+
+		if (useVertexArrayObject) {
+			mGl.glGenVertexArrays(1, vao, 0);
+			mGl.glBindVertexArray(vao[0]);
+			bindAttributes();
+			mGl.glBindVertexArray(0);
+		}
+	}
+
+	private void bindAttributes() {
+		mGl.glBindBuffer(GLES20.GL_ARRAY_BUFFER, quadbo[0]);
+		mGl.glVertexAttribPointer(maPositionHandle, 2, GLES20.GL_FLOAT, false, 2 * 4, 0);
+		mGl.glEnableVertexAttribArray(maPositionHandle);
+	}
+
+	int getWidth() {
+		return mWidth;
+	}
+
+	int getHeight() {
+		return mHeight;
+	}
+
+	/** (Re)allocates the render target, does nothing if the size did not change. */
+	void resize(int width, int height) {
+		if (width == mWidth && height == mHeight)
+			return;
+		release();
+		mWidth = width;
+		mHeight = height;
+
+		mGl.glGenTextures(1, colorTex, 0);
+		mGl.glActiveTexture(GLES20.GL_TEXTURE0);
+		mGl.glBindTexture(GLES20.GL_TEXTURE_2D, colorTex[0]);
+		mGl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
+		mGl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
+		// npot textures in GLES20 need clamping
+		mGl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
+		mGl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
+		mGl.glTexImage2D(GLES20.GL_TEXTURE_2D, 0, GLES20.GL_RGBA, width, height, 0,
+			GLES20.GL_RGBA, GLES20.GL_UNSIGNED_BYTE, null);
+
+		if (mDepth) {
+			mGl.glGenRenderbuffers(1, depthRb, 0);
+			mGl.glBindRenderbuffer(GLES20.GL_RENDERBUFFER, depthRb[0]);
+			mGl.glRenderbufferStorage(GLES20.GL_RENDERBUFFER, GLES20.GL_DEPTH_COMPONENT16, width, height);
+		}
+
+		mGl.glGenFramebuffers(1, fbo, 0);
+		mGl.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, fbo[0]);
+		mGl.glFramebufferTexture2D(GLES20.GL_FRAMEBUFFER, GLES20.GL_COLOR_ATTACHMENT0,
+			GLES20.GL_TEXTURE_2D, colorTex[0], 0);
+		if (mDepth) {
+			mGl.glFramebufferRenderbuffer(GLES20.GL_FRAMEBUFFER, GLES20.GL_DEPTH_ATTACHMENT,
+				GLES20.GL_RENDERBUFFER, depthRb[0]);
+		}
+		int status = mGl.glCheckFramebufferStatus(GLES20.GL_FRAMEBUFFER);
+		mGl.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, 0);
+		if (status != GLES20.GL_FRAMEBUFFER_COMPLETE)
+			throw new RuntimeException("Scaled framebuffer incomplete: 0x" + Integer.toHexString(status));
+	}
+
+	/** Directs rendering into the offscreen target. */
+	void bind() {
+		mGl.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, fbo[0]);
+		mGl.glViewport(0, 0, mWidth, mHeight);
+	}
+
+	/** Draws the offscreen target over the whole surface. */
+	void blitTo(int surfaceWidth, int surfaceHeight) {
+		// depth is not needed past this point, keep a tiler from storing it
+		if (mDepth && mInvalidate)
+			mGl.glInvalidateFramebuffer(GLES20.GL_FRAMEBUFFER, 1, mDepthAttachment, 0);
+		mGl.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, 0);
+		mGl.glViewport(0, 0, surfaceWidth, surfaceHeight);
+		// the quad covers everything, no need to clear or depth test
+		if (mDepth)
+			mGl.glDisable(GLES20.GL_DEPTH_TEST);
+
+		mGl.glUseProgram(mProgram);
+		if (vao[0] != 0)
+			mGl.glBindVertexArray(vao[0]);
+		else
+			bindAttributes();
+		mGl.glActiveTexture(GLES20.GL_TEXTURE0);
+		mGl.glBindTexture(GLES20.GL_TEXTURE_2D, colorTex[0]);
+		mGl.glUniform1i(muTextureHandle, 0);
+		mGl.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 4);
+
+		if (mDepth)
+			mGl.glEnable(GLES20.GL_DEPTH_TEST);
+	}
+
+	/** Frees the render target, the quad and program stay for later use. */
+	void release() {
+		if (mWidth == 0)
+			return;
+		mGl.glDeleteFramebuffers(1, fbo, 0);
+		if (mDepth)
+			mGl.glDeleteRenderbuffers(1, depthRb, 0);
+		mGl.glDeleteTextures(1, colorTex, 0);
+		mWidth = 0;
+		mHeight = 0;
+	}
+}
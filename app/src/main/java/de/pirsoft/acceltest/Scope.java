@@ -0,0 +1,202 @@
+package de.pirsoft.acceltest;
+
+import android.opengl.GLES20;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+/**
+ * Oscilloscope of a ScopeHistory along the bottom of the surface, one line
+ * per axis, the newest column at the right edge.
+ *
+ * The vertex buffer is a ring in the same slots as the history, column n
+ * in slot n % columns, so a frame only uploads the columns that completed
+ * since the last one, with glBufferSubData() into a store allocated once.
+ * Where the ring wraps the lines are drawn in two pieces, one more slot at
+ * the end repeats slot 0 so they join.
+ */
+class Scope {
+	/** Values beyond this are clipped, in m/s^2. */
+	static final float RANGE = 2 * 9.80665f;
+	//slot, x, y, z; the minimum and then the maximum vertex per column
+	private static final int FLOATS_PER_VERTEX = 4;
+	private static final int COLUMN_VERTICES = 2;
+	private static final int COLUMN_FLOATS = COLUMN_VERTICES * FLOATS_PER_VERTEX;
+	private static final int COLUMN_BYTES = COLUMN_FLOATS * 4;
+
+	// uRect maps slot and value to x and y, uAxis picks the value and its color
+	private static final String vertexShaderCode =
+		"uniform vec4 uRect;" +
+			"uniform vec4 uAxis;" +
+			"attribute vec4 aColumn;" +
+			"varying vec4 vColor;" +
+			"void main() {" +
+			"  float value = clamp(dot(aColumn.yzw, uAxis.xyz), -uAxis.w, uAxis.w);" +
+			"  gl_Position = vec4(aColumn.x * uRect.x + uRect.y, value * uRect.z + uRect.w, 0.0, 1.0);" +
+			"  vColor = vec4(0.25 + 0.75 * uAxis.xyz, 1.0);" +
+			"}";
+
+	private static final String fragmentShaderCode =
+		"precision mediump float;" +
+			"varying vec4 vColor;" +
+			"void main() {" +
+			"  gl_FragColor = vColor;" +
+			"}";
+
+	private final Gles mGl;
+	private final ScopeHistory mHistory;
+	private final boolean mDepth;
+	private final int mColumns;
+	private final int mProgram;
+	private final int maColumnHandle;
+	private final int muRectHandle;
+	private final int muAxisHandle;
+	private final int[] vtxbo = new int[1];
+	private final int[] vao = new int[1];
+	private final float[] mRead;
+	//same layout as the buffer object, only the ranges just written are uploaded
+	private final float[] mVertices;
+	private final FloatBuffer mVertexBuffer;
+	private long mUploaded;
+
+	static GlResources.Program addProgram(GlResources resources) {
+		return resources.addProgram(vertexShaderCode, fragmentShaderCode);
+	}
+
+	/**
+	 * Needs the program created in the current context. Uploads the whole
+	 * history again with the first draw().
+	 *
+	 * @param history              read on the GL thread only
+	 * @param withDepth            whether the depth test is on and has to be
+	 *                             suspended while drawing
+	 * @param useVertexArrayObject whether GLES30 vertex array objects can be used
+	 */
+	Scope(Gles gl, ScopeHistory history, GlResources.Program program, boolean withDepth,
+		boolean useVertexArrayObject) {
+		mGl = gl;
+		mHistory = history;
+		mDepth = withDepth;
+		mColumns = history.getColumns();
+		mProgram = program.name;
+		maColumnHandle = mGl.glGetAttribLocation(mProgram, "aColumn");
+		muRectHandle = mGl.glGetUniformLocation(mProgram, "uRect");
+		muAxisHandle = mGl.glGetUniformLocation(mProgram, "uAxis");
+		mRead = new float[mColumns * ScopeHistory.COLUMN_FLOATS];
+		mVertices = new float[(mColumns + 1) * COLUMN_FLOATS];
+		mVertexBuffer = ByteBuffer.allocateDirect(mVertices.length * 4)
+			.order(ByteOrder.nativeOrder()).asFloatBuffer();
+		mHistory.rewind();
+
+		mGl.glGenBuffers(1, vtxbo, 0);
+		mGl.glBindBuffer(GLES20.GL_ARRAY_BUFFER, vtxbo[0]);
+		mGl.glBufferData(GLES20.GL_ARRAY_BUFFER, mVertices.length * 4, null, GLES20.GL_DYNAMIC_DRAW);
+		if (useVertexArrayObject) {
+			mGl.glGenVertexArrays(1, vao, 0);
+			mGl.glBindVertexArray(vao[0]);
+			bindAttributes();
+			mGl.glBindVertexArray(0);
+		}
+	}
+
+	private void bindAttributes() {
+		mGl.glBindBuffer(GLES20.GL_ARRAY_BUFFER, vtxbo[0]);
+		mGl.glVertexAttribPointer(maColumnHandle, FLOATS_PER_VERTEX, GLES20.GL_FLOAT, false,
+			FLOATS_PER_VERTEX * 4, 0);
+		mGl.glEnableVertexAttribArray(maColumnHandle);
+	}
+
+	/** Uploads what is new in the history and draws it over whatever is in the default framebuffer. */
+	void draw(int surfaceWidth, int surfaceHeight) {
+		mGl.glUseProgram(mProgram);
+		if (vao[0] != 0) {
+			mGl.glBindVertexArray(vao[0]);
+			mGl.glBindBuffer(GLES20.GL_ARRAY_BUFFER, vtxbo[0]);
+		} else {
+			bindAttributes();
+		}
+		upload();
+		long end = mHistory.getReadEnd();
+		if (end == 0)
+			return;
+
+		//bottom fifth of the surface, as far as it fits the columns
+		float margin = Math.max(8.0f, surfaceHeight / 60.0f);
+		float width = Math.min(surfaceWidth - 2 * margin, (float) mColumns);
+		float height = surfaceHeight / 5.0f;
+		float xScale = 2.0f / surfaceWidth * width / (mColumns - 1);
+		float left = (surfaceWidth - width) / surfaceWidth - 1;
+		float yScale = height / surfaceHeight / RANGE;
+		float centerY = (margin + height / 2) * 2.0f / surfaceHeight - 1;
+		//the oldest column is at position 0, the newest at mColumns - 1
+		int head = (int) (end % mColumns);
+
+		if (mDepth)
+			mGl.glDisable(GLES20.GL_DEPTH_TEST);
+		if (end > mColumns) {
+			//oldest part up to the end of the ring, and the copy of slot 0 if that comes next
+			mGl.glUniform4f(muRectHandle, xScale, left - head * xScale, yScale, centerY);
+			drawAxes(head, head > 0 ? mColumns + 1 - head : mColumns);
+		}
+		if (head > 0 || end <= mColumns) {
+			int count = end <= mColumns ? (int) end : head;
+			mGl.glUniform4f(muRectHandle, xScale, left + (mColumns - count) * xScale, yScale, centerY);
+			drawAxes(0, count);
+		}
+		if (mDepth)
+			mGl.glEnable(GLES20.GL_DEPTH_TEST);
+	}
+
+	private void drawAxes(int firstSlot, int slots) {
+		for (int a = 0; a < ScopeHistory.AXES; a++) {
+			mGl.glUniform4f(muAxisHandle, a == 0 ? 1 : 0, a == 1 ? 1 : 0, a == 2 ? 1 : 0, RANGE);
+			mGl.glDrawArrays(GLES20.GL_LINE_STRIP, firstSlot * COLUMN_VERTICES, slots * COLUMN_VERTICES);
+		}
+	}
+
+	/** The columns completed since the last frame into their slots, at most two ranges and the copy of slot 0. */
+	private void upload() {
+		int count = mHistory.read(mRead);
+		if (count == 0)
+			return;
+		int firstSlot = (int) ((mHistory.getReadEnd() - count) % mColumns);
+		for (int i = 0; i < count; i++)
+			column(i, (firstSlot + i) % mColumns);
+
+		int tail = Math.min(count, mColumns - firstSlot);
+		subData(firstSlot, tail);
+		if (tail < count)
+			subData(0, count - tail);
+		//slot 0 was written, so is its copy behind the last slot
+		if (firstSlot == 0 || tail < count) {
+			System.arraycopy(mVertices, 0, mVertices, mColumns * COLUMN_FLOATS, COLUMN_FLOATS);
+			mVertices[mColumns * COLUMN_FLOATS] = mColumns;
+			mVertices[mColumns * COLUMN_FLOATS + FLOATS_PER_VERTEX] = mColumns;
+			subData(mColumns, 1);
+		}
+	}
+
+	/** Minimum and maximum vertex of read column i into a slot. */
+	private void column(int i, int slot) {
+		int o = slot * COLUMN_FLOATS;
+		int r = i * ScopeHistory.COLUMN_FLOATS;
+		mVertices[o] = slot;
+		System.arraycopy(mRead, r, mVertices, o + 1, ScopeHistory.AXES);
+		mVertices[o + FLOATS_PER_VERTEX] = slot;
+		System.arraycopy(mRead, r + ScopeHistory.AXES, mVertices, o + FLOATS_PER_VERTEX + 1, ScopeHistory.AXES);
+	}
+
+	private void subData(int slot, int slots) {
+		int o = slot * COLUMN_FLOATS;
+		mVertexBuffer.position(o);
+		mVertexBuffer.put(mVertices, o, slots * COLUMN_FLOATS).position(o);
+		mGl.glBufferSubData(GLES20.GL_ARRAY_BUFFER, slot * COLUMN_BYTES, slots * COLUMN_BYTES, mVertexBuffer);
+		mUploaded += slots * COLUMN_BYTES;
+	}
+
+	/** Bytes handed to glBufferSubData() so far, for tests. */
+	long getUploadedBytes() {
+		return mUploaded;
+	}
+}
@@ -0,0 +1,141 @@
+package de.pirsoft.acceltest;
+
+/**
+ * History of one 3-axis sensor for the oscilloscope, already reduced to
+ * screen resolution: time is cut into columns of equal length and each
+ * column keeps only the minimum and maximum per axis, so a spike shows up
+ * however many samples fall into its column. Columns a sample gap skipped
+ * repeat the last sample.
+ *
+ * For one writer and one reader thread without locks, like EventLog: the
+ * writer fills a slot and publishes the column count through a volatile,
+ * the reader copies and then checks that the writer did not get to the
+ * slots in the meantime.
+ */
+class ScopeHistory implements SampleSink {
+	static final int AXES = 3;
+	/** Per column: minimum x, y, z, then maximum x, y, z. */
+	static final int COLUMN_FLOATS = 2 * AXES;
+
+	private final int mSensorType;
+	private final int mColumns;
+	private final long mColumnNs;
+	//one spare slot for the writer to fill while the reader copies the rest
+	private final int mCapacity;
+	private final float[] mData;
+	//columns ever completed, only the writer stores it
+	private volatile long mWritten = 0;
+
+	//writer side, the column still collecting samples
+	private long mColumn = Long.MIN_VALUE;
+	private final float[] mCurrent = new float[COLUMN_FLOATS];
+	private final float[] mLast = new float[AXES];
+
+	//reader side
+	private long mRead = 0;
+	//orders the column copy before the mWritten re-check, see EventLog
+	private volatile long mFence = 0;
+
+	/**
+	 * @param columns  columns kept, the pixel width of the plot
+	 * @param columnNs time per column, columns * columnNs is the window shown
+	 */
+	ScopeHistory(int sensorType, int columns, long columnNs) {
+		mSensorType = sensorType;
+		mColumns = columns;
+		mColumnNs = columnNs;
+		mCapacity = columns + 1;
+		mData = new float[mCapacity * COLUMN_FLOATS];
+	}
+
+	int getColumns() {
+		return mColumns;
+	}
+
+	/** Writer thread only. */
+	@Override
+	public void onSample(int sensorType, long timestamp, float[] values) {
+		if (sensorType != mSensorType)
+			return;
+		long column = timestamp / mColumnNs;
+		if (column != mColumn) {
+			if (mColumn != Long.MIN_VALUE && column > mColumn) {
+				publish(mCurrent);
+				//fill a gap, never more than what is kept anyway
+				long skipped = Math.min(column - mColumn - 1, mColumns);
+				for (long i = 0; i < skipped; i++)
+					publishLast();
+			}
+			//a clock going back just starts over at the new column
+			mColumn = column;
+			for (int a = 0; a < AXES; a++) {
+				mCurrent[a] = values[a];
+				mCurrent[AXES + a] = values[a];
+			}
+		} else {
+			for (int a = 0; a < AXES; a++) {
+				mCurrent[a] = Math.min(mCurrent[a], values[a]);
+				mCurrent[AXES + a] = Math.max(mCurrent[AXES + a], values[a]);
+			}
+		}
+		for (int a = 0; a < AXES; a++)
+			mLast[a] = values[a];
+	}
+
+	private void publish(float[] column) {
+		long n = mWritten;
+		System.arraycopy(column, 0, mData, (int) (n % mCapacity) * COLUMN_FLOATS, COLUMN_FLOATS);
+		mWritten = n + 1;
+	}
+
+	private void publishLast() {
+		long n = mWritten;
+		int o = (int) (n % mCapacity) * COLUMN_FLOATS;
+		for (int a = 0; a < AXES; a++) {
+			mData[o + a] = mLast[a];
+			mData[o + AXES + a] = mLast[a];
+		}
+		mWritten = n + 1;
+	}
+
+	/** Columns ever completed, any thread. */
+	long getWritten() {
+		return mWritten;
+	}
+
+	/**
+	 * Reader thread only: copies the columns completed since the last call,
+	 * oldest first, COLUMN_FLOATS each. If there are more than fit into out
+	 * or than are kept, only the newest are copied.
+	 *
+	 * @return number of columns copied, the last one is getReadEnd() - 1
+	 */
+	int read(float[] out) {
+		int max = Math.min(mColumns, out.length / COLUMN_FLOATS);
+		while (true) {
+			long written = mWritten;
+			long first = Math.max(mRead, written - max);
+			int count = (int) (written - first);
+			for (int i = 0; i < count; i++) {
+				int slot = (int) ((first + i) % mCapacity);
+				System.arraycopy(mData, slot * COLUMN_FLOATS, out, i * COLUMN_FLOATS, COLUMN_FLOATS);
+			}
+			//the writer may have lapped the oldest copied slots
+			mFence = first;
+			if (mWritten - mCapacity >= first)
+				continue;
+			mRead = written;
+			return count;
+		}
+	}
+
+	/** Sequence number after the last column read(). */
+	long getReadEnd() {
+		return mRead;
+	}
+
+	/** Reader thread only: the next read() returns all columns still kept again. */
+	void rewind() {
+		mRead = 0;
+	}
+}
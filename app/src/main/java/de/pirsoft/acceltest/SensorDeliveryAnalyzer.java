@@ -0,0 +1,189 @@
+package de.pirsoft.acceltest;
+
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.hardware.SensorEventListener;
+import android.hardware.SensorManager;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Registers every streaming sensor of the device at every rate in turn and
+ * measures how it is really delivered, see DeliveryStats. One line per
+ * sensor and rate goes to the log and into getReport():
+ *
+ *   delivery type=1 sensor=BMI160_Accelerometer rate=game requested_us=20000 n=... rate_hz=...
+ *
+ * The callbacks come on a thread of their own, so the delay does not
+ * include waiting for the UI thread. Other registrations of the same
+ * sensor, in this process or another, can make it deliver faster than
+ * requested, which is then what gets reported.
+ */
+class SensorDeliveryAnalyzer {
+	private static final String TAG = "SensorDelivery";
+	//SENSOR_DELAY_ constants, then explicit periods in microseconds
+	private static final int[] RATES = {
+		SensorManager.SENSOR_DELAY_NORMAL, SensorManager.SENSOR_DELAY_UI, SensorManager.SENSOR_DELAY_GAME,
+		SensorManager.SENSOR_DELAY_FASTEST, 10000, 5000, 2500,
+	};
+	private static final String[] RATE_NAMES = { "normal", "ui", "game", "fastest" };
+	//the periods SensorManager uses for the constants, 0 is the sensor minimum
+	private static final int[] RATE_PERIODS = { 200000, 66667, 20000, 0 };
+	//samples before this are dropped, the sensor may still be switching rates
+	private static final long SETTLE_MS = 500;
+	private static final long RUN_MS = 4000;
+	//a 4s run at 1kHz
+	private static final int CAPACITY = 4096;
+
+	private final SensorManager mSensorManager;
+	private final List<Sensor> mSensors = new ArrayList<>();
+	private final DeliveryStats mStats = new DeliveryStats(CAPACITY);
+	private final StringBuilder mLines = new StringBuilder();
+	private volatile String mReport = "";
+	private HandlerThread mThread;
+	private Handler mHandler;
+	//run in progress, sensor * RATES.length + rate; these, mStats and mLines are for the handler thread
+	private int mRun = -1;
+	private boolean mSettled;
+
+	private final SensorEventListener mListener = new SensorEventListener() {
+		@Override
+		public void onSensorChanged(SensorEvent event) {
+			long receiveTime = SystemClock.elapsedRealtimeNanos();
+			if (mSettled)
+				mStats.onSample(event.timestamp, receiveTime);
+		}
+
+		@Override
+		public void onAccuracyChanged(Sensor sensor, int accuracy) {
+		}
+	};
+
+	SensorDeliveryAnalyzer(SensorManager sensorManager) {
+		mSensorManager = sensorManager;
+		for (Sensor sensor : sensorManager.getSensorList(Sensor.TYPE_ALL)) {
+			//on change and one shot sensors have no rate to measure
+			if (sensor.getMinDelay() > 0)
+				mSensors.add(sensor);
+		}
+	}
+
+	/** Starts over with the first sensor, takes SETTLE_MS plus RUN_MS for each run. Main thread. */
+	void start() {
+		stop();
+		mReport = "";
+		mThread = new HandlerThread(TAG);
+		mThread.start();
+		mHandler = new Handler(mThread.getLooper());
+		mRun = -1;
+		mHandler.post(mNextRun);
+	}
+
+	/**
+	 * Unregisters, the report keeps the runs that completed. Main thread,
+	 * returns once the handler thread is gone, so a start() right after
+	 * does not share the listener and run state with it.
+	 */
+	void stop() {
+		if (mThread == null)
+			return;
+		mHandler.removeCallbacks(mNextRun);
+		mHandler.removeCallbacks(mSettle);
+		//after a run that may just be registering, the delayed ones it posts are dropped by the quit
+		mHandler.post(mUnregister);
+		mThread.quitSafely();
+		boolean interrupted = false;
+		while (true) {
+			try {
+				mThread.join();
+				break;
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted)
+			Thread.currentThread().interrupt();
+		mThread = null;
+		mHandler = null;
+	}
+
+	/** Lines of the completed runs, any thread. */
+	String getReport() {
+		return mReport;
+	}
+
+	private final Runnable mUnregister = new Runnable() {
+		@Override
+		public void run() {
+			mSensorManager.unregisterListener(mListener);
+		}
+	};
+
+	private final Runnable mSettle = new Runnable() {
+		@Override
+		public void run() {
+			mStats.reset();
+			mSettled = true;
+		}
+	};
+
+	private final Runnable mNextRun = new Runnable() {
+		@Override
+		public void run() {
+			if (mRun >= 0) {
+				mSensorManager.unregisterListener(mListener);
+				report(mSensors.get(mRun / RATES.length), mRun % RATES.length);
+			} else {
+				mLines.setLength(0);
+			}
+			mSettled = false;
+			do
+				mRun++;
+			while (mRun < mSensors.size() * RATES.length && !applies(mRun));
+			if (mRun >= mSensors.size() * RATES.length) {
+				Log.i(TAG, "done, " + mSensors.size() + " sensors");
+				return;
+			}
+			Sensor sensor = mSensors.get(mRun / RATES.length);
+			if (!mSensorManager.registerListener(mListener, sensor, RATES[mRun % RATES.length], mHandler)) {
+				Log.w(TAG, "could not register " + sensor.getName());
+				mRun = (mRun / RATES.length + 1) * RATES.length - 1;
+				mHandler.post(this);
+				return;
+			}
+			mHandler.postDelayed(mSettle, SETTLE_MS);
+			mHandler.postDelayed(this, SETTLE_MS + RUN_MS);
+		}
+	};
+
+	/** Explicit periods the sensor cannot do would only repeat the fastest run. */
+	private boolean applies(int run) {
+		int rate = run % RATES.length;
+		return rate < RATE_NAMES.length || RATES[rate] >= mSensors.get(run / RATES.length).getMinDelay();
+	}
+
+	/** Microseconds asked for, the minimum for SENSOR_DELAY_FASTEST. */
+	private static int requestedPeriod(Sensor sensor, int rate) {
+		if (rate >= RATE_NAMES.length)
+			return RATES[rate];
+		return RATE_PERIODS[rate] == 0 ? sensor.getMinDelay() : RATE_PERIODS[rate];
+	}
+
+	private void report(Sensor sensor, int rate) {
+		StringBuilder line = new StringBuilder();
+		line.append("delivery type=").append(sensor.getType())
+			.append(" sensor=").append(sensor.getName().replace(' ', '_'))
+			.append(" rate=").append(rate < RATE_NAMES.length ? RATE_NAMES[rate] : "us")
+			.append(" requested_us=").append(requestedPeriod(sensor, rate))
+			.append(' ');
+		mStats.appendReport(line);
+		Log.i(TAG, line.toString());
+		mLines.append(line).append('\n');
+		mReport = mLines.toString();
+	}
+}
@@ -0,0 +1,113 @@
+package de.pirsoft.acceltest;
+
+import android.hardware.Sensor;
+
+/**
+ * Looks at every raw accelerometer sample for events that fall between two
+ * simulation steps and writes them to an EventLog:
+ *
+ * - shock: the magnitude above a threshold, peak is the highest magnitude
+ * - jerk: the change of the acceleration vector per time above a threshold,
+ *   peak is the highest jerk in m/s^3
+ * - free fall: the magnitude close to zero for a minimum time, peak is the
+ *   lowest magnitude
+ *
+ * Each is a small state machine with hysteresis, an event ends when its
+ * condition is clearly over. Constant work per sample.
+ *
+ * Plain java, allocation free. Runs on the sensor thread, the log is read
+ * from elsewhere.
+ */
+class ShockDetector implements SampleSink {
+	static final int EVENT_SHOCK = 1;
+	static final int EVENT_JERK = 2;
+	static final int EVENT_FREE_FALL = 3;
+
+	private static final float GRAVITY = 9.80665f;
+	static final float SHOCK_THRESHOLD = 3 * GRAVITY;
+	static final float JERK_THRESHOLD = 1000.0f;
+	static final float FREE_FALL_THRESHOLD = 0.3f * GRAVITY;
+	//a drop of about 2cm
+	static final long MIN_FREE_FALL_NS = 60000000L;
+	//an event ends below this share of its threshold, free fall above the inverse
+	private static final float HYSTERESIS = 0.8f;
+	//samples further apart than this give no jerk
+	private static final long MAX_JERK_INTERVAL_NS = 100000000L;
+
+	private final EventLog mLog;
+
+	private float mLastX;
+	private float mLastY;
+	private float mLastZ;
+	private long mLastTime = -1;
+
+	private long mShockStart = -1;
+	private float mShockPeak;
+	private long mJerkStart = -1;
+	private float mJerkPeak;
+	private long mFreeFallStart = -1;
+	private float mFreeFallPeak;
+
+	ShockDetector(EventLog log) {
+		mLog = log;
+	}
+
+	@Override
+	public void onSample(int sensorType, long timestamp, float[] values) {
+		if (sensorType != Sensor.TYPE_ACCELEROMETER)
+			return;
+		float x = values[0];
+		float y = values[1];
+		float z = values[2];
+		float magnitude = (float) Math.sqrt(x * x + y * y + z * z);
+
+		if (mShockStart < 0) {
+			if (magnitude > SHOCK_THRESHOLD) {
+				mShockStart = timestamp;
+				mShockPeak = magnitude;
+			}
+		} else if (magnitude < SHOCK_THRESHOLD * HYSTERESIS) {
+			mLog.add(EVENT_SHOCK, mShockStart, mShockPeak, timestamp - mShockStart);
+			mShockStart = -1;
+		} else if (magnitude > mShockPeak) {
+			mShockPeak = magnitude;
+		}
+
+		long dt = timestamp - mLastTime;
+		if (mLastTime >= 0 && dt > 0 && dt < MAX_JERK_INTERVAL_NS) {
+			float dx = x - mLastX;
+			float dy = y - mLastY;
+			float dz = z - mLastZ;
+			float jerk = (float) (Math.sqrt(dx * dx + dy * dy + dz * dz) * 1e9 / dt);
+			if (mJerkStart < 0) {
+				if (jerk > JERK_THRESHOLD) {
+					mJerkStart = mLastTime;
+					mJerkPeak = jerk;
+				}
+			} else if (jerk < JERK_THRESHOLD * HYSTERESIS) {
+				mLog.add(EVENT_JERK, mJerkStart, mJerkPeak, mLastTime - mJerkStart);
+				mJerkStart = -1;
+			} else if (jerk > mJerkPeak) {
+				mJerkPeak = jerk;
+			}
+		}
+		mLastX = x;
+		mLastY = y;
+		mLastZ = z;
+		mLastTime = timestamp;
+
+		if (mFreeFallStart < 0) {
+			if (magnitude < FREE_FALL_THRESHOLD) {
+				mFreeFallStart = timestamp;
+				mFreeFallPeak = magnitude;
+			}
+		} else if (magnitude > FREE_FALL_THRESHOLD / HYSTERESIS) {
+			long duration = timestamp - mFreeFallStart;
+			if (duration >= MIN_FREE_FALL_NS)
+				mLog.add(EVENT_FREE_FALL, mFreeFallStart, mFreeFallPeak, duration);
+			mFreeFallStart = -1;
+		} else if (magnitude < mFreeFallPeak) {
+			mFreeFallPeak = magnitude;
+		}
+	}
+}
@@ -0,0 +1,203 @@
+package de.pirsoft.acceltest;
+
+import android.hardware.Sensor;
+
+/**
+ * Averaged power spectra of the three accelerometer axes over a sliding
+ * window: every hop samples the last size samples are windowed and
+ * transformed, and the result is folded into an exponential average.
+ *
+ * The mean of each window is removed first, so gravity does not leak into
+ * the low bins. x and y go through one complex FFT as real and imaginary
+ * part, z through a second one.
+ *
+ * Plain java, allocation free after construction. Not thread safe,
+ * samples and reads are expected on the same thread.
+ */
+class SpectrumAnalyzer implements SampleSink {
+	static final int WINDOW_RECTANGULAR = 0;
+	static final int WINDOW_HANN = 1;
+	static final int WINDOW_HAMMING = 2;
+	static final int WINDOW_BLACKMAN_HARRIS = 3;
+
+	private final Fft mFft;
+	private final int mSize;
+	private final int mHop;
+	private final int mAverages;
+	private final float[] mWindow;
+	//one sided scaling, 2/(sum w)^2
+	private float mScale;
+
+	//ring of the last mSize samples
+	private final float[][] mHistory = new float[3][];
+	private final long[] mTimes;
+	private int mPos = 0;
+	private int mCount = 0;
+	private int mSinceFrame = 0;
+
+	private final float[] mRe;
+	private final float[] mIm;
+	private final float[][] mPower = new float[3][];
+	private int mFrames = 0;
+	private float mSampleRate = 0;
+
+	/**
+	 * @param size     samples per transform, a power of two
+	 * @param hop      new samples between transforms, size/4 gives 75% overlap
+	 * @param window   one of the WINDOW_ constants
+	 * @param averages time constant of the average, in transforms
+	 */
+	SpectrumAnalyzer(int size, int hop, int window, int averages) {
+		mFft = new Fft(size);
+		mSize = size;
+		mHop = hop;
+		mAverages = averages;
+		mWindow = new float[size];
+		mTimes = new long[size];
+		mRe = new float[size];
+		mIm = new float[size];
+		for (int axis = 0; axis < 3; axis++) {
+			mHistory[axis] = new float[size];
+			mPower[axis] = new float[size / 2 + 1];
+		}
+		setWindow(window);
+	}
+
+	/** Switches the window function, restarts the average. */
+	void setWindow(int window) {
+		double sum = 0;
+		for (int n = 0; n < mSize; n++) {
+			double a = 2 * Math.PI * n / mSize;
+			double w;
+			switch (window) {
+				case WINDOW_RECTANGULAR:
+					w = 1;
+					break;
+				case WINDOW_HANN:
+					w = 0.5 - 0.5 * Math.cos(a);
+					break;
+				case WINDOW_HAMMING:
+					w = 0.54 - 0.46 * Math.cos(a);
+					break;
+				case WINDOW_BLACKMAN_HARRIS:
+					w = 0.35875 - 0.48829 * Math.cos(a) + 0.14128 * Math.cos(2 * a) - 0.01168 * Math.cos(3 * a);
+					break;
+				default:
+					throw new IllegalArgumentException("Unknown window " + window);
+			}
+			mWindow[n] = (float) w;
+			sum += w;
+		}
+		mScale = (float) (2 / (sum * sum));
+		mFrames = 0;
+	}
+
+	@Override
+	public void onSample(int sensorType, long timestamp, float[] values) {
+		if (sensorType != Sensor.TYPE_ACCELEROMETER)
+			return;
+		mHistory[0][mPos] = values[0];
+		mHistory[1][mPos] = values[1];
+		mHistory[2][mPos] = values[2];
+		mTimes[mPos] = timestamp;
+		mPos = (mPos + 1) % mSize;
+		if (mCount < mSize) {
+			if (++mCount < mSize)
+				return;
+			//first transform as soon as the window is full
+			mSinceFrame = mHop;
+		} else {
+			mSinceFrame++;
+		}
+		if (mSinceFrame >= mHop) {
+			mSinceFrame = 0;
+			analyze();
+		}
+	}
+
+	private void analyze() {
+		//mPos is the oldest sample now
+		long span = mTimes[(mPos + mSize - 1) % mSize] - mTimes[mPos];
+		if (span > 0)
+			mSampleRate = (float) ((mSize - 1) * 1e9 / span);
+
+		float weight = mFrames < mAverages ? 1.0f / (mFrames + 1) : 1.0f / mAverages;
+		load(mHistory[0], mRe);
+		load(mHistory[1], mIm);
+		mFft.transform(mRe, mIm);
+		float[] px = mPower[0];
+		float[] py = mPower[1];
+		int half = mSize / 2;
+		for (int k = 0; k <= half; k++) {
+			//separate the two real signals: X = (Z[k] + conj Z[N-k]) / 2, Y = (Z[k] - conj Z[N-k]) / 2i
+			int m = (mSize - k) % mSize;
+			float a = mRe[k], b = mIm[k], c = mRe[m], d = mIm[m];
+			float scale = k == 0 || k == half ? mScale * 0.5f : mScale;
+			float x = ((a + c) * (a + c) + (b - d) * (b - d)) * 0.25f * scale;
+			float y = ((b + d) * (b + d) + (a - c) * (a - c)) * 0.25f * scale;
+			px[k] += weight * (x - px[k]);
+			py[k] += weight * (y - py[k]);
+		}
+
+		load(mHistory[2], mRe);
+		for (int i = 0; i < mSize; i++)
+			mIm[i] = 0;
+		mFft.transform(mRe, mIm);
+		float[] pz = mPower[2];
+		for (int k = 0; k <= half; k++) {
+			float scale = k == 0 || k == half ? mScale * 0.5f : mScale;
+			float z = (mRe[k] * mRe[k] + mIm[k] * mIm[k]) * scale;
+			pz[k] += weight * (z - pz[k]);
+		}
+		mFrames++;
+	}
+
+	//oldest first, mean removed, windowed
+	private void load(float[] history, float[] out) {
+		float mean = 0;
+		for (int i = 0; i < mSize; i++)
+			mean += history[i];
+		mean /= mSize;
+		int first = mSize - mPos;
+		for (int i = 0; i < first; i++)
+			out[i] = (history[mPos + i] - mean) * mWindow[i];
+		for (int i = first; i < mSize; i++)
+			out[i] = (history[i - first] - mean) * mWindow[i];
+	}
+
+	int getBinCount() {
+		return mSize / 2 + 1;
+	}
+
+	/** Sample rate measured over the last window, 0 before the first transform. */
+	float getSampleRate() {
+		return mSampleRate;
+	}
+
+	float getFrequency(int bin) {
+		return bin * mSampleRate / mSize;
+	}
+
+	/** Transforms since the start or the last window change. */
+	int getFrames() {
+		return mFrames;
+	}
+
+	/**
+	 * Averaged power of one bin in (m/s^2)^2, a sine of amplitude A shows up
+	 * as A^2/2, spread over the main lobe of the window.
+	 */
+	float getPower(int axis, int bin) {
+		return mPower[axis][bin];
+	}
+
+	/** Strongest bin above DC. */
+	int peakBin(int axis) {
+		float[] p = mPower[axis];
+		int peak = 1;
+		for (int k = 2; k < p.length; k++)
+			if (p[k] > p[peak])
+				peak = k;
+		return peak;
+	}
+}
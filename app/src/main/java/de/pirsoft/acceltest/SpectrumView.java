@@ -0,0 +1,102 @@
+package de.pirsoft.acceltest;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.util.AttributeSet;
+import android.view.View;
+
+/**
+ * Draws the averaged power spectra of a SpectrumAnalyzer, x red, y green
+ * and z blue, in dB over a linear frequency axis up to half the sample
+ * rate. Reads the analyzer on the UI thread, so it has to be fed there too.
+ */
+class SpectrumView extends View {
+	private static final float MIN_DB = -100.0f;
+	private static final float MAX_DB = 20.0f;
+	private static final int[] COLORS = { 0xffff4040, 0xff40ff40, 0xff4080ff };
+
+	private SpectrumAnalyzer mAnalyzer;
+	private int mDrawnFrames = -1;
+	private final Paint[] mPaints = new Paint[3];
+	//x0,y0,x1,y1 per segment, one point per pixel column at most
+	private float[] mLines = new float[0];
+
+	public SpectrumView(Context context) {
+		super(context);
+		init();
+	}
+
+	public SpectrumView(Context context, AttributeSet attrs) {
+		super(context, attrs);
+		init();
+	}
+
+	private void init() {
+		for (int axis = 0; axis < 3; axis++) {
+			mPaints[axis] = new Paint(Paint.ANTI_ALIAS_FLAG);
+			mPaints[axis].setColor(COLORS[axis]);
+			mPaints[axis].setStrokeWidth(2.0f);
+		}
+	}
+
+	void setAnalyzer(SpectrumAnalyzer analyzer) {
+		mAnalyzer = analyzer;
+		mDrawnFrames = -1;
+	}
+
+	/** Invalidates if there was a transform since the last draw, call once per UI tick. */
+	void update() {
+		if (mAnalyzer != null && mAnalyzer.getFrames() != mDrawnFrames)
+			invalidate();
+	}
+
+	@Override
+	protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+		super.onSizeChanged(w, h, oldw, oldh);
+		mLines = new float[Math.max(0, w - 1) * 4];
+	}
+
+	@Override
+	protected void onDraw(Canvas canvas) {
+		super.onDraw(canvas);
+		SpectrumAnalyzer analyzer = mAnalyzer;
+		if (analyzer == null || analyzer.getFrames() == 0)
+			return;
+		mDrawnFrames = analyzer.getFrames();
+		int width = getWidth();
+		float height = getHeight();
+		int bins = analyzer.getBinCount();
+		// with more bins than pixels, every column shows the strongest of its bins
+		int columns = Math.min(width, bins);
+		if (columns < 2 || mLines.length < (columns - 1) * 4)
+			return;
+		float xScale = (float) (width - 1) / (columns - 1);
+		float yScale = height / (MAX_DB - MIN_DB);
+		for (int axis = 0; axis < 3; axis++) {
+			float lastX = 0;
+			float lastY = 0;
+			for (int c = 0; c < columns; c++) {
+				int from = (int) ((long) c * bins / columns);
+				int to = (int) ((long) (c + 1) * bins / columns);
+				float power = 0;
+				for (int bin = from; bin < to; bin++)
+					power = Math.max(power, analyzer.getPower(axis, bin));
+				float db = power > 0 ? (float) (10 * Math.log10(power)) : MIN_DB;
+				db = Math.max(MIN_DB, Math.min(MAX_DB, db));
+				float x = c * xScale;
+				float y = (MAX_DB - db) * yScale;
+				if (c > 0) {
+					int i = (c - 1) * 4;
+					mLines[i] = lastX;
+					mLines[i + 1] = lastY;
+					mLines[i + 2] = x;
+					mLines[i + 3] = y;
+				}
+				lastX = x;
+				lastY = y;
+			}
+			canvas.drawLines(mLines, 0, (columns - 1) * 4, mPaints[axis]);
+		}
+	}
+}
@@ -0,0 +1,173 @@
+package de.pirsoft.acceltest;
+
+import android.opengl.GLES20;
+
+/**
+ * The navball: a cube-sphere mesh with the navball texture, either the 2D
+ * cross layout or a cube map, depending on the mesh layout.
+ */
+class Sphere {
+
+	private static final String vertexShaderCode =
+		// This matrix member variable provides a hook to manipulate
+		// the coordinates of the objects that use this vertex shader
+		"uniform mat4 uMVPMatrix;" +
+			"attribute vec4 aPosition;" +
+			"attribute vec2 aTexCoord;" +
+			"varying vec2 vTexCoord;" +
+			"void main() {" +
+			// the matrix must be included as a modifier of gl_Position
+			// Note that the uMVPMatrix factor *must be first* in order
+			// for the matrix multiplication product to be correct.
+			"  gl_Position = uMVPMatrix * aPosition;" +
+			"  vTexCoord = aTexCoord;" +
+			"}";
+
+	private static final String fragmentShaderCode =
+		"precision mediump float;" +
+			"uniform sampler2D uTexture;" +
+			"varying vec2 vTexCoord;" +
+			"void main() {" +
+			"  gl_FragColor = texture2D(uTexture, vTexCoord);" +
+			"}";
+
+	// cube map: the object space position is the lookup direction
+	private static final String cubeMapVertexShaderCode =
+		"uniform mat4 uMVPMatrix;" +
+			"attribute vec4 aPosition;" +
+			"varying vec3 vDirection;" +
+			"void main() {" +
+			"  gl_Position = uMVPMatrix * aPosition;" +
+			"  vDirection = aPosition.xyz;" +
+			"}";
+
+	private static final String cubeMapFragmentShaderCode =
+		"precision mediump float;" +
+			"uniform samplerCube uTexture;" +
+			"varying vec3 vDirection;" +
+			"void main() {" +
+			"  gl_FragColor = textureCube(uTexture, vDirection);" +
+			"}";
+
+	// Set color with red, green, blue and alpha (opacity) values
+	float color[] = { 0.63671875f, 0.76953125f, 0.22265625f, 1.0f };
+
+	private final int mStride;
+	private final boolean mCubeMap;
+	//GL_TEXTURE_2D or GL_TEXTURE_CUBE_MAP
+	private final int mTextureTarget;
+	private final int mIndexCount;
+
+	private final Gles mGl;
+	private final int mProgram;
+	private final int maPositionHandle;
+	private final int maTexCoordHandle;
+	private final int muMVPMatrixHandle;
+	private final int muTextureHandle;
+	private final int mVertexBuffer;
+	private final int mIndexBuffer;
+	private final int mTexture;
+	//vertex array object, 0 if not supported
+	private final int vao[] = new int[1];
+
+	/**
+	 * Program of the navball, the sources depend on the mesh layout.
+	 * Created along with the other resources by GlResources.createAll().
+	 */
+	static GlResources.Program addProgram(GlResources resources, boolean cubeMap) {
+		return cubeMap ? resources.addProgram(cubeMapVertexShaderCode, cubeMapFragmentShaderCode)
+			: resources.addProgram(vertexShaderCode, fragmentShaderCode);
+	}
+
+	/**
+	 * Looks up the attribute locations and records the vertex array object,
+	 * needs the resources created in the current context.
+	 *
+	 * @param gl                  all GL calls go through here
+	 * @param mesh                vertex and index buffers
+	 * @param texture             2D texture for the textured mesh, cube map
+	 *                            for the positions only one
+	 * @param program             from addProgram() with the mesh layout
+	 * @param useVertexArrayObject whether the context supports GLES30
+	 *                            vertex array objects
+	 */
+	Sphere(Gles gl, GlResources.Mesh mesh, GlResources.Texture texture, GlResources.Program program,
+			boolean useVertexArrayObject) {
+		mGl = gl;
+		mStride = mesh.stride;
+		mCubeMap = mesh.cubeMap;
+		mTextureTarget = texture.target;
+		mIndexCount = mesh.indexCount;
+		mVertexBuffer = mesh.vertexBuffer;
+		mIndexBuffer = mesh.indexBuffer;
+		mTexture = texture.name;
+		mProgram = program.name;
+
+		// get handle to vertex shader's vPosition member
+		maPositionHandle = mGl.glGetAttribLocation(mProgram, "aPosition");
+		// get handle to vertex shader's aTexCoord member, -1 for the cube map
+		maTexCoordHandle = mCubeMap ? -1 : mGl.glGetAttribLocation(mProgram, "aTexCoord");
+		// get handle to shape's transformation matrix
+		muMVPMatrixHandle = mGl.glGetUniformLocation(mProgram, "uMVPMatrix");
+		// get handle to fragment shader's uTexture member
+		muTextureHandle = mGl.glGetUniformLocation(mProgram, "uTexture");
+
+		if (useVertexArrayObject) {
+			// record the attribute setup once, draw() then only binds the vao
+			mGl.glGenVertexArrays(1, vao, 0);
+			mGl.glBindVertexArray(vao[0]);
+			bindAttributes();
+			mGl.glBindVertexArray(0);
+		}
+	}
+
+	private void bindAttributes() {
+		mGl.glBindBuffer(GLES20.GL_ARRAY_BUFFER, mVertexBuffer);
+
+		// Prepare the triangle position data
+		mGl.glVertexAttribPointer(maPositionHandle, 3,
+			GLES20.GL_FLOAT, false,
+			mStride*4, 0);
+		// Enable a handle to the triangle vertices
+		mGl.glEnableVertexAttribArray(maPositionHandle);
+
+		if (!mCubeMap) {
+			// Prepare the triangle texture coordinate data
+			mGl.glVertexAttribPointer(maTexCoordHandle, 2,
+				GLES20.GL_FLOAT, false,
+				mStride*4, 3*4);
+			// Enable a handle to the triangle vertices
+			mGl.glEnableVertexAttribArray(maTexCoordHandle);
+		}
+
+		mGl.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, mIndexBuffer);
+	}
+
+	/**
+	 * Draws the sphere. Leaves program, buffers, attributes and texture
+	 * bound, so with a GlStateCache the next frame only issues the calls
+	 * whose state changed.
+	 */
+	void draw(float[] mvpMatrix) {
+		// Add program to OpenGL ES environment
+		mGl.glUseProgram(mProgram);
+
+		if (vao[0] != 0)
+			mGl.glBindVertexArray(vao[0]);
+		else
+			bindAttributes();
+
+		// Pass the projection and view transformation to the shader
+		mGl.glUniformMatrix4fv(muMVPMatrixHandle, 1, false, mvpMatrix, 0);
+
+		//make texture unit 0 active
+		mGl.glActiveTexture(GLES20.GL_TEXTURE0);
+		//bind our texture to unit 0
+		mGl.glBindTexture(mTextureTarget, mTexture);
+		//map muTextureHandle to use unit 0
+		mGl.glUniform1i(muTextureHandle, 0);
+
+		// Draw the triangle
+		mGl.glDrawElements(GLES20.GL_TRIANGLE_STRIP, mIndexCount, GLES20.GL_UNSIGNED_SHORT, 0);
+	}
+}
@@ -0,0 +1,173 @@
+package de.pirsoft.acceltest;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Records when each step of a cold start began and ended, on the monotonic
+ * System.nanoTime() clock, from whichever thread runs it, and formats them
+ * into one report once the first frame is out.
+ *
+ * Every phase is recorded once: the first begin() and the first end() after
+ * it count, later ones are ignored, as is everything after finish(). So
+ * code that also runs after startup, like GlResources.createAll() after a
+ * context loss, can stay instrumented. Without locks and allocations, any
+ * thread.
+ */
+class StartupPhases {
+	static final int ACTIVITY_CREATE = 0;
+	static final int CONTENT_VIEW = 1;
+	static final int MESH_BUILD = 2;
+	static final int TEXTURE_DECODE = 3;
+	static final int GL_CONTEXT = 4;
+	static final int SURFACE_CREATED = 5;
+	static final int ASSET_WAIT = 6;
+	static final int BUFFER_UPLOAD = 7;
+	static final int TEXTURE_UPLOAD = 8;
+	static final int SHADER_COMPILE = 9;
+	static final int FIRST_FRAME = 10;
+	static final int PHASES = 11;
+
+	private static final String[] NAMES = {
+		"activity_create", "content_view", "mesh_build", "texture_decode", "gl_context",
+		"surface_created", "asset_wait", "buffer_upload", "texture_upload", "shader_compile",
+		"first_frame",
+	};
+	private static final long NOT_SET = Long.MIN_VALUE;
+
+	/** Mirrors the phases somewhere else, i.E. into android.os.Trace. */
+	interface Tracer {
+		/** Same thread as the endSection() that follows. */
+		void beginSection(String name);
+
+		void endSection();
+	}
+
+	private final long mOrigin;
+	private final AtomicLongArray mBegin = new AtomicLongArray(PHASES);
+	private final AtomicLongArray mEnd = new AtomicLongArray(PHASES);
+	private final AtomicReferenceArray<String> mThreads = new AtomicReferenceArray<>(PHASES);
+	private final AtomicBoolean mFinished = new AtomicBoolean(false);
+	private volatile Tracer mTracer;
+
+	/** @param origin nanoTime() the report counts from, i.E. when the process started */
+	StartupPhases(long origin) {
+		mOrigin = origin;
+		for (int i = 0; i < PHASES; i++) {
+			mBegin.set(i, NOT_SET);
+			mEnd.set(i, NOT_SET);
+		}
+	}
+
+	void setTracer(Tracer tracer) {
+		mTracer = tracer;
+	}
+
+	void begin(int phase) {
+		//no clock read once finished, the first frame check stays cheap
+		if (!mFinished.get())
+			begin(phase, System.nanoTime());
+	}
+
+	void end(int phase) {
+		if (!mFinished.get())
+			end(phase, System.nanoTime());
+	}
+
+	void begin(int phase, long time) {
+		if (mFinished.get() || !mBegin.compareAndSet(phase, NOT_SET, time))
+			return;
+		mThreads.set(phase, Thread.currentThread().getName());
+		Tracer tracer = mTracer;
+		if (tracer != null)
+			tracer.beginSection(NAMES[phase]);
+	}
+
+	void end(int phase, long time) {
+		//a begin() that was ignored has no end either, keeps the trace sections balanced
+		if (mFinished.get() || mBegin.get(phase) == NOT_SET || !mEnd.compareAndSet(phase, NOT_SET, time))
+			return;
+		Tracer tracer = mTracer;
+		if (tracer != null)
+			tracer.endSection();
+	}
+
+	/**
+	 * Stops recording.
+	 *
+	 * @return true for the call that stopped it, which should then report
+	 */
+	boolean finish() {
+		return mFinished.compareAndSet(false, true);
+	}
+
+	boolean isFinished() {
+		return mFinished.get();
+	}
+
+	/** Nanoseconds from the origin, -1 if the phase did not begin. */
+	long getStart(int phase) {
+		long begin = mBegin.get(phase);
+		return begin == NOT_SET ? -1 : begin - mOrigin;
+	}
+
+	/** -1 if the phase did not end. */
+	long getDuration(int phase) {
+		long begin = mBegin.get(phase);
+		long end = mEnd.get(phase);
+		return begin == NOT_SET || end == NOT_SET ? -1 : end - begin;
+	}
+
+	/**
+	 * One line for the time to the end of the first frame, then one per
+	 * phase in the order they began, phases that never began last:
+	 *
+	 *   startup first_frame_end_ms=612.4
+	 *   phase=activity_create thread=main start_ms=85.1 duration_ms=40.2
+	 *
+	 * @param prefix put before every line
+	 */
+	String report(String prefix) {
+		int[] order = new int[PHASES];
+		for (int i = 0; i < PHASES; i++) {
+			//insertion sort by start, -1 sorts last
+			int j = i;
+			while (j > 0 && startsBefore(i, order[j - 1])) {
+				order[j] = order[j - 1];
+				j--;
+			}
+			order[j] = i;
+		}
+		StringBuilder out = new StringBuilder();
+		out.append(prefix).append("startup first_frame_end_ms=");
+		long firstFrame = getDuration(FIRST_FRAME);
+		appendMs(out, firstFrame < 0 ? -1 : getStart(FIRST_FRAME) + firstFrame);
+		out.append('\n');
+		for (int phase : order) {
+			String thread = mThreads.get(phase);
+			out.append(prefix).append("phase=").append(NAMES[phase])
+				.append(" thread=").append(thread == null ? "-" : thread.replace(' ', '_'))
+				.append(" start_ms=");
+			appendMs(out, getStart(phase));
+			out.append(" duration_ms=");
+			appendMs(out, getDuration(phase));
+			out.append('\n');
+		}
+		return out.toString();
+	}
+
+	private boolean startsBefore(int a, int b) {
+		long startA = getStart(a);
+		long startB = getStart(b);
+		return startA >= 0 && (startB < 0 || startA < startB);
+	}
+
+	private static void appendMs(StringBuilder out, long ns) {
+		if (ns < 0)
+			out.append('-');
+		else
+			out.append(String.format(Locale.US, "%.1f", ns * 1e-6));
+	}
+}
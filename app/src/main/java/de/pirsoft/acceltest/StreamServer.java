@@ -0,0 +1,335 @@
+package de.pirsoft.acceltest;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+
+/**
+ * Streams raw sensor samples and sim poses to desktop tools over a TCP
+ * socket on the loopback interface, reachable through
+ * "adb forward tcp:PORT tcp:PORT".
+ *
+ * Clients get length prefixed frames, big endian:
+ *
+ *   int32   length of the rest of the frame
+ *   int8    FRAME_SAMPLES or FRAME_POSES
+ *   int32   record count
+ *   records:
+ *     FRAME_SAMPLES: int32 sensor type, int64 timestamp, 3 float32 values
+ *     FRAME_POSES:   int64 elapsedRealtimeNanos, 16 float32 transform
+ *
+ * One thread runs a selector over non-blocking channels. Samples come in
+ * through onSample(), from one thread, into a ring; poses from a PoseRing
+ * subscriber. Every client has its own cursors and a direct buffer that is
+ * reused across connections. The next frames for a client are only built
+ * once the last ones left its buffer completely, so a client reading
+ * quickly gets small batches right away and a slow one fewer, larger
+ * batches. What falls out of the rings meanwhile is counted as dropped.
+ */
+class StreamServer implements SampleSink {
+	static final int FRAME_SAMPLES = 1;
+	static final int FRAME_POSES = 2;
+	static final int FRAME_HEADER_SIZE = 4 + 1 + 4;
+	static final int SAMPLE_SIZE = 4 + 8 + 3 * 4;
+	static final int POSE_SIZE = 8 + PoseRing.FLOATS * 4;
+	private static final int SAMPLE_RING = 8192;
+	private static final int POSE_RING = 64;
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final int MAX_CLIENTS = 4;
+	//selector timeout, how long new samples wait for a client that is idle
+	private static final long POLL_MS = 5;
+
+	//samples, written by onSample(), read by the server thread
+	private final int[] mTypes = new int[SAMPLE_RING];
+	private final long[] mTimes = new long[SAMPLE_RING];
+	private final float[] mValues = new float[SAMPLE_RING * 3];
+	private volatile long mWritten = 0;
+	//server thread, keeps the ring copy before the mWritten re-check, see EventLog
+	private volatile long mFence = 0;
+
+	//poses, server thread only
+	private final PoseRing.Subscriber mPoses;
+	private final float[] mPose = new float[PoseRing.FLOATS];
+	private final long[] mPoseTimes = new long[POSE_RING];
+	private final float[] mPoseData = new float[POSE_RING * PoseRing.FLOATS];
+	private long mPoseCount = 0;
+
+	private final int mPort;
+	private final ArrayList<Client> mClients = new ArrayList<>();
+	private final ArrayDeque<ByteBuffer> mFreeBuffers = new ArrayDeque<>();
+	private final ByteBuffer mDiscard = ByteBuffer.allocateDirect(256);
+	private Selector mSelector;
+	private ServerSocketChannel mServer;
+	private Thread mThread;
+	private volatile boolean mRunning;
+	private volatile int mClientCount = 0;
+
+	//totals over all clients
+	private volatile long mSent = 0;
+	private volatile long mDropped = 0;
+
+	/**
+	 * @param port  0 for any free port, see getPort()
+	 * @param poses subscriber of the sim poses, POLICY_DROP_OLDEST, may be null
+	 */
+	StreamServer(int port, PoseRing.Subscriber poses) {
+		mPort = port;
+		mPoses = poses;
+	}
+
+	/** Opens the socket and starts the server thread. */
+	void start() throws IOException {
+		mSelector = Selector.open();
+		try {
+			mServer = ServerSocketChannel.open();
+			mServer.socket().bind(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), mPort));
+			mServer.configureBlocking(false);
+			mServer.register(mSelector, SelectionKey.OP_ACCEPT);
+		} catch (IOException e) {
+			close(mServer);
+			close(mSelector);
+			throw e;
+		}
+		mRunning = true;
+		mThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				serve();
+			}
+		}, "StreamServer");
+		mThread.start();
+	}
+
+	/** Disconnects all clients and stops the server thread. */
+	void stop() {
+		if (mThread == null)
+			return;
+		mRunning = false;
+		mSelector.wakeup();
+		try {
+			mThread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		mThread = null;
+	}
+
+	/** The bound port, once started. */
+	int getPort() {
+		return mServer.socket().getLocalPort();
+	}
+
+	/** Connected clients, any thread. */
+	int getClientCount() {
+		return mClientCount;
+	}
+
+	/** Samples sent to clients, summed over all clients. */
+	long getSent() {
+		return mSent;
+	}
+
+	/** Samples that were overwritten before a client could take them. */
+	long getDropped() {
+		return mDropped;
+	}
+
+	/** From one thread at a time, never blocks. */
+	@Override
+	public void onSample(int sensorType, long timestamp, float[] values) {
+		long n = mWritten;
+		int slot = (int) (n & (SAMPLE_RING - 1));
+		mTypes[slot] = sensorType;
+		mTimes[slot] = timestamp;
+		for (int i = 0; i < 3; i++)
+			mValues[slot * 3 + i] = i < values.length ? values[i] : 0.f;
+		mWritten = n + 1;
+	}
+
+	private void serve() {
+		try {
+			while (mRunning) {
+				mSelector.select(POLL_MS);
+				Iterator<SelectionKey> keys = mSelector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					if (!key.isValid())
+						continue;
+					if (key.isAcceptable())
+						accept();
+					else if (key.isReadable())
+						discardInput((Client) key.attachment());
+				}
+				takePoses();
+				for (int i = mClients.size() - 1; i >= 0; i--)
+					send(mClients.get(i));
+			}
+		} catch (IOException e) {
+			//selector or server socket broke, the clients go with it
+		} finally {
+			for (int i = mClients.size() - 1; i >= 0; i--)
+				disconnect(mClients.get(i));
+			close(mServer);
+			close(mSelector);
+		}
+	}
+
+	private void accept() throws IOException {
+		SocketChannel channel = mServer.accept();
+		if (channel == null)
+			return;
+		if (mClients.size() == MAX_CLIENTS) {
+			close(channel);
+			return;
+		}
+		channel.configureBlocking(false);
+		channel.socket().setTcpNoDelay(true);
+		ByteBuffer buffer = mFreeBuffers.poll();
+		if (buffer == null)
+			buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		Client client = new Client(channel, buffer, mWritten, mPoseCount);
+		client.mKey = channel.register(mSelector, SelectionKey.OP_READ, client);
+		mClients.add(client);
+		mClientCount = mClients.size();
+	}
+
+	/** Clients have nothing to say, reading only notices when they hang up. */
+	private void discardInput(Client client) {
+		try {
+			mDiscard.clear();
+			if (client.mChannel.read(mDiscard) < 0)
+				disconnect(client);
+		} catch (IOException e) {
+			disconnect(client);
+		}
+	}
+
+	private void takePoses() {
+		if (mPoses == null)
+			return;
+		while (mPoses.poll(mPose)) {
+			int slot = (int) (mPoseCount % POSE_RING);
+			mPoseTimes[slot] = mPoses.getTime();
+			System.arraycopy(mPose, 0, mPoseData, slot * PoseRing.FLOATS, PoseRing.FLOATS);
+			mPoseCount++;
+		}
+	}
+
+	/** Writes as much as the client takes, refilling its buffer whenever it ran empty. */
+	private void send(Client client) {
+		ByteBuffer out = client.mOut;
+		try {
+			while (true) {
+				if (!client.mPending) {
+					out.clear();
+					appendPoses(client);
+					appendSamples(client);
+					out.flip();
+					if (!out.hasRemaining())
+						break;
+					client.mPending = true;
+				}
+				client.mChannel.write(out);
+				if (out.hasRemaining())
+					break;
+				client.mPending = false;
+			}
+		} catch (IOException e) {
+			disconnect(client);
+			return;
+		}
+		//wake up as soon as a slow client can take more
+		int ops = client.mPending ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ;
+		if (client.mKey.interestOps() != ops)
+			client.mKey.interestOps(ops);
+	}
+
+	private void appendPoses(Client client) {
+		ByteBuffer out = client.mOut;
+		long first = Math.max(client.mPoseCursor, mPoseCount - POSE_RING);
+		int count = (int) Math.min(mPoseCount - first, (out.remaining() - FRAME_HEADER_SIZE) / POSE_SIZE);
+		if (count <= 0)
+			return;
+		out.putInt(1 + 4 + count * POSE_SIZE).put((byte) FRAME_POSES).putInt(count);
+		for (long seq = first; seq < first + count; seq++) {
+			int slot = (int) (seq % POSE_RING);
+			out.putLong(mPoseTimes[slot]);
+			for (int i = 0; i < PoseRing.FLOATS; i++)
+				out.putFloat(mPoseData[slot * PoseRing.FLOATS + i]);
+		}
+		client.mPoseCursor = first + count;
+	}
+
+	private void appendSamples(Client client) {
+		ByteBuffer out = client.mOut;
+		int start = out.position();
+		while (true) {
+			long written = mWritten;
+			//the slot of written - SAMPLE_RING may be being written right now
+			long first = Math.max(client.mSampleCursor, written - SAMPLE_RING + 1);
+			int count = (int) Math.min(written - first, (out.remaining() - FRAME_HEADER_SIZE) / SAMPLE_SIZE);
+			if (count <= 0)
+				return;
+			out.putInt(1 + 4 + count * SAMPLE_SIZE).put((byte) FRAME_SAMPLES).putInt(count);
+			for (long seq = first; seq < first + count; seq++) {
+				int slot = (int) (seq & (SAMPLE_RING - 1));
+				out.putInt(mTypes[slot]).putLong(mTimes[slot])
+					.putFloat(mValues[slot * 3]).putFloat(mValues[slot * 3 + 1]).putFloat(mValues[slot * 3 + 2]);
+			}
+			mFence = first;
+			if (mWritten - SAMPLE_RING >= first) {
+				//overwritten while copying, start over from what is left
+				out.position(start);
+				continue;
+			}
+			mDropped += first - client.mSampleCursor;
+			mSent += count;
+			client.mSampleCursor = first + count;
+			return;
+		}
+	}
+
+	private void disconnect(Client client) {
+		client.mKey.cancel();
+		close(client.mChannel);
+		mClients.remove(client);
+		mClientCount = mClients.size();
+		mFreeBuffers.add(client.mOut);
+	}
+
+	private static void close(Closeable closeable) {
+		try {
+			if (closeable != null)
+				closeable.close();
+		} catch (IOException e) {
+			//nothing left to do
+		}
+	}
+
+	private static final class Client {
+		final SocketChannel mChannel;
+		final ByteBuffer mOut;
+		SelectionKey mKey;
+		//mOut holds frames not fully written yet
+		boolean mPending = false;
+		long mSampleCursor;
+		long mPoseCursor;
+
+		Client(SocketChannel channel, ByteBuffer out, long sampleCursor, long poseCursor) {
+			mChannel = channel;
+			mOut = out;
+			mSampleCursor = sampleCursor;
+			mPoseCursor = poseCursor;
+		}
+	}
+}
@@ -0,0 +1,42 @@
+package de.pirsoft.acceltest;
+
+import android.opengl.GLSurfaceView;
+
+import javax.microedition.khronos.egl.EGL10;
+import javax.microedition.khronos.egl.EGLConfig;
+import javax.microedition.khronos.egl.EGLContext;
+import javax.microedition.khronos.egl.EGLDisplay;
+
+/**
+ * Creates an ES2 context like the default factory of GLSurfaceView, which
+ * setEGLContextClientVersion() no longer applies to once this is set, and
+ * records how long that took as StartupPhases.GL_CONTEXT.
+ */
+class TimedContextFactory implements GLSurfaceView.EGLContextFactory {
+	private static final int EGL_CONTEXT_CLIENT_VERSION = 0x3098;
+
+	private volatile StartupPhases mPhases;
+
+	/** Before the GL thread creates the context, may be left unset. */
+	void setStartupPhases(StartupPhases phases) {
+		mPhases = phases;
+	}
+
+	@Override
+	public EGLContext createContext(EGL10 egl, EGLDisplay display, EGLConfig config) {
+		StartupPhases phases = mPhases;
+		if (phases != null)
+			phases.begin(StartupPhases.GL_CONTEXT);
+		int[] attribs = { EGL_CONTEXT_CLIENT_VERSION, 2, EGL10.EGL_NONE };
+		EGLContext context = egl.eglCreateContext(display, config, EGL10.EGL_NO_CONTEXT, attribs);
+		if (phases != null)
+			phases.end(StartupPhases.GL_CONTEXT);
+		return context;
+	}
+
+	@Override
+	public void destroyContext(EGL10 egl, EGLDisplay display, EGLContext context) {
+		if (!egl.eglDestroyContext(display, context))
+			throw new RuntimeException("eglDestroyContext failed: 0x" + Integer.toHexString(egl.eglGetError()));
+	}
+}
@@ -0,0 +1,106 @@
+package de.pirsoft.acceltest;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * TraceStats over a whole trace file, in parallel.
+ *
+ * The block index splits the file into chunks of whole blocks, about
+ * CHUNK_BYTES each. A fork/join pool maps every chunk into memory on its
+ * own, so files beyond 2GB work and no thread copies through a shared
+ * channel, decodes it into its own TraceStats and merges the results on
+ * the way back up.
+ */
+class TraceAnalyzer implements Closeable {
+	static final long CHUNK_BYTES = 8 << 20;
+
+	private final FileChannel mChannel;
+	private final TraceReader mReader;
+
+	TraceAnalyzer(FileChannel channel) throws IOException {
+		mChannel = channel;
+		mReader = new TraceReader(channel);
+	}
+
+	TraceReader getReader() {
+		return mReader;
+	}
+
+	/**
+	 * @param window length of the rate windows in nanoseconds
+	 */
+	TraceStats analyze(ForkJoinPool pool, int sensorType, long window) throws IOException {
+		return analyze(pool, sensorType, window, CHUNK_BYTES);
+	}
+
+	TraceStats analyze(ForkJoinPool pool, int sensorType, long window, long chunkBytes)
+		throws IOException {
+		TraceStats empty = new TraceStats(sensorType, mReader.startTime(), mReader.endTime(), window);
+		if (mReader.blockCount() == 0)
+			return empty;
+		try {
+			return pool.invoke(new Chunk(empty, 0, mReader.blockCount(), chunkBytes));
+		} catch (RuntimeException e) {
+			//the pool may rethrow a copy, with the one from the chunk as cause
+			for (Throwable t = e; t != null; t = t.getCause())
+				if (t instanceof IOException)
+					throw (IOException) t;
+			throw e;
+		}
+	}
+
+	/** Offset of a block, or the end of the data for blockCount(). */
+	private long offset(int block) {
+		return block < mReader.blockCount() ? mReader.blockOffset(block) : mReader.dataEnd();
+	}
+
+	@Override
+	public void close() throws IOException {
+		mReader.close();
+	}
+
+	private final class Chunk extends RecursiveTask<TraceStats> {
+		private static final long serialVersionUID = 1L;
+
+		private final TraceStats mLike;
+		private final int mFrom;
+		private final int mTo;
+		private final long mChunkBytes;
+
+		Chunk(TraceStats like, int from, int to, long chunkBytes) {
+			mLike = like;
+			mFrom = from;
+			mTo = to;
+			mChunkBytes = chunkBytes;
+		}
+
+		@Override
+		protected TraceStats compute() {
+			if (mTo - mFrom > 1 && offset(mTo) - offset(mFrom) > mChunkBytes) {
+				int mid = (mFrom + mTo) >>> 1;
+				Chunk right = new Chunk(mLike, mid, mTo, mChunkBytes);
+				right.fork();
+				TraceStats stats = new Chunk(mLike, mFrom, mid, mChunkBytes).compute();
+				stats.merge(right.join());
+				return stats;
+			}
+			TraceStats stats = new TraceStats(mLike);
+			try {
+				long start = offset(mFrom);
+				MappedByteBuffer map = mChannel.map(FileChannel.MapMode.READ_ONLY, start, offset(mTo) - start);
+				TraceDecoder decoder = new TraceDecoder();
+				while (decoder.readBlock(map, stats) >= 0) {
+					//stats is the sink
+				}
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+			return stats;
+		}
+	}
+}
@@ -0,0 +1,184 @@
+package de.pirsoft.acceltest;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Streaming decoder for sensor traces written by TraceEncoder.
+ *
+ * Decodes one block at a time, so memory use is bounded by the largest
+ * block in the file. Not thread safe.
+ */
+class TraceDecoder {
+	private final ReadableByteChannel mIn;
+	private final ByteBuffer mHeader = ByteBuffer.allocate(TraceFormat.BLOCK_HEADER_SIZE);
+	private ByteBuffer mPayload = ByteBuffer.allocate(0);
+
+	private final int[] mTypes = new int[TraceFormat.MAX_TYPES];
+	private final long[] mPrevTimestamp = new long[TraceFormat.MAX_TYPES];
+	private final long[] mPrevDelta = new long[TraceFormat.MAX_TYPES];
+	private final TraceEncoder.XorState mXor = new TraceEncoder.XorState();
+	private final TraceEncoder.BitReader mBits = new TraceEncoder.BitReader();
+	private final float[] mValues = new float[TraceFormat.CHANNELS];
+
+	/** Decoder for readBlock(ByteBuffer, SampleSink) only. */
+	TraceDecoder() {
+		mIn = null;
+	}
+
+	/** Reads and checks the file header. */
+	TraceDecoder(ReadableByteChannel in) throws IOException {
+		this(in, true);
+	}
+
+	/**
+	 * @param readHeader false if the channel is already positioned at a
+	 *                   block boundary, i.E. after seeking.
+	 */
+	TraceDecoder(ReadableByteChannel in, boolean readHeader) throws IOException {
+		mIn = in;
+		if (readHeader) {
+			ByteBuffer header = ByteBuffer.allocate(TraceFormat.FILE_HEADER_SIZE);
+			if (!readFully(header))
+				throw new EOFException("empty trace");
+			if (header.getInt(0) != TraceFormat.FILE_MAGIC)
+				throw new IOException("not a sensor trace");
+			if (header.getInt(4) != TraceFormat.FILE_VERSION)
+				throw new IOException("unsupported trace version " + header.getInt(4));
+		}
+	}
+
+	/**
+	 * Decodes the next block into the sink.
+	 *
+	 * @return number of records decoded, -1 at the end of the trace
+	 */
+	int readBlock(SampleSink sink) throws IOException {
+		mHeader.clear();
+		if (!readFully(mHeader))
+			return -1;
+		int payloadLength = mHeader.getInt(0);
+		int count = mHeader.getInt(4);
+		if (payloadLength == 0 && count == 0)
+			return -1;//end marker, the time index follows
+		preparePayload(payloadLength, count);
+		if (!readFully(mPayload))
+			throw new EOFException("truncated block");
+		decodeBlock(mPayload, count, sink);
+		return count;
+	}
+
+	/**
+	 * Decodes the block at the position of the buffer, i.E. a memory mapped
+	 * part of the file, and moves the position past it.
+	 *
+	 * @return number of records decoded, -1 at the end marker or the end of the buffer
+	 */
+	int readBlock(ByteBuffer in, SampleSink sink) throws IOException {
+		if (in.remaining() < TraceFormat.BLOCK_HEADER_SIZE) {
+			if (in.hasRemaining())
+				throw new EOFException("truncated trace");
+			return -1;
+		}
+		int payloadLength = in.getInt();
+		int count = in.getInt();
+		if (payloadLength == 0 && count == 0)
+			return -1;
+		preparePayload(payloadLength, count);
+		if (in.remaining() < payloadLength)
+			throw new EOFException("truncated block");
+		//the bit reader wants an array, one bulk copy per block
+		int limit = in.limit();
+		in.limit(in.position() + payloadLength);
+		mPayload.put(in);
+		in.limit(limit);
+		mPayload.flip();
+		decodeBlock(mPayload, count, sink);
+		return count;
+	}
+
+	private void preparePayload(int payloadLength, int count) throws IOException {
+		if (count <= 0 || payloadLength <= 0 || payloadLength > TraceFormat.maxPayloadSize(count))
+			throw new IOException("corrupt block header");
+		if (mPayload.capacity() < payloadLength)
+			mPayload = ByteBuffer.allocate(payloadLength);
+		mPayload.clear();
+		mPayload.limit(payloadLength);
+	}
+
+	/** Decodes all remaining blocks, returns the number of records. */
+	long readAll(SampleSink sink) throws IOException {
+		long total = 0;
+		int n;
+		while ((n = readBlock(sink)) >= 0)
+			total += n;
+		return total;
+	}
+
+	private void decodeBlock(ByteBuffer b, int count, SampleSink sink) throws IOException {
+		long first = b.getLong(0);
+		int typeCount = b.get(8);
+		if (typeCount <= 0 || typeCount > TraceFormat.MAX_TYPES)
+			throw new IOException("corrupt block");
+		int pos = 9;
+		for (int i = 0; i < typeCount; i++) {
+			mTypes[i] = b.getInt(pos);
+			mPrevTimestamp[i] = first;
+			mPrevDelta[i] = 0;
+			pos += 4;
+		}
+		int tsLength = b.getInt(pos);
+		pos += 4;
+		int tsPos = pos;
+		int bitsStart = pos + tsLength;
+		if (tsLength < 0 || bitsStart > b.limit())
+			throw new IOException("corrupt block");
+		int typeBits = typeCount > 1 ? 32 - Integer.numberOfLeadingZeros(typeCount - 1) : 0;
+		mXor.reset();
+		mBits.reset(b.array(), b.arrayOffset() + bitsStart, b.arrayOffset() + b.limit());
+
+		for (int r = 0; r < count; r++) {
+			//timestamp: zigzag varint delta-of-delta
+			long raw = 0;
+			int shift = 0;
+			int v;
+			do {
+				if (tsPos >= bitsStart)
+					throw new IOException("corrupt block");
+				v = b.get(tsPos++);
+				raw |= (long) (v & 0x7f) << shift;
+				shift += 7;
+			} while ((v & 0x80) != 0);
+			long dod = (raw >>> 1) ^ -(raw & 1);
+
+			int t = typeBits > 0 ? mBits.read(typeBits) : 0;
+			if (t >= typeCount)
+				throw new IOException("corrupt block");
+			long delta = mPrevDelta[t] + dod;
+			long timestamp = mPrevTimestamp[t] + delta;
+			mPrevTimestamp[t] = timestamp;
+			mPrevDelta[t] = delta;
+
+			for (int c = 0; c < TraceFormat.CHANNELS; c++)
+				mValues[c] = Float.intBitsToFloat(mXor.decode(mBits, t * TraceFormat.CHANNELS + c));
+			sink.onSample(mTypes[t], timestamp, mValues);
+		}
+	}
+
+	private boolean readFully(ByteBuffer b) throws IOException {
+		boolean any = false;
+		while (b.hasRemaining()) {
+			int n = mIn.read(b);
+			if (n < 0) {
+				if (any)
+					throw new EOFException("truncated trace");
+				return false;
+			}
+			if (n > 0)
+				any = true;
+		}
+		return true;
+	}
+}
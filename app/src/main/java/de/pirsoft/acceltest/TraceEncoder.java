@@ -0,0 +1,400 @@
+package de.pirsoft.acceltest;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+/**
+ * Streaming encoder for sensor traces, see TraceFormat for the layout.
+ *
+ * Samples are buffered until a block is full, then compressed and written
+ * to the channel. Memory use is bounded by the block size, plus the time
+ * index which grows by one entry per block and is written as footer on
+ * close(). Not thread safe.
+ */
+class TraceEncoder implements SampleSink {
+	static final int DEFAULT_BLOCK_RECORDS = 1024;
+
+	private final WritableByteChannel mOut;
+	private final int mBlockRecords;
+
+	//buffered records of the current block
+	private final long[] mTimestamps;
+	private final int[] mTypeIndex;
+	private final float[] mValues;
+	private final int[] mTypes = new int[TraceFormat.MAX_TYPES];
+	private int mTypeCount = 0;
+	private int mCount = 0;
+
+	//encoder state, reset per block
+	private final long[] mPrevTimestamp = new long[TraceFormat.MAX_TYPES];
+	private final long[] mPrevDelta = new long[TraceFormat.MAX_TYPES];
+	private final XorState mXor = new XorState();
+
+	private final ByteBuffer mBlock;
+	private final byte[] mBits;
+	private final BitWriter mBitWriter;
+	private long mBytesWritten = 0;
+	private long mRecordsWritten = 0;
+	private IOException mError;
+
+	//time index, one entry per written block
+	private long[] mIndexOffset = new long[64];
+	private long[] mIndexMin = new long[64];
+	private long[] mIndexMax = new long[64];
+	private int[] mIndexCount = new int[64];
+	private int mIndexSize = 0;
+
+	TraceEncoder(WritableByteChannel out) throws IOException {
+		this(out, DEFAULT_BLOCK_RECORDS);
+	}
+
+	TraceEncoder(WritableByteChannel out, int blockRecords) throws IOException {
+		mOut = out;
+		mBlockRecords = blockRecords;
+		mTimestamps = new long[blockRecords];
+		mTypeIndex = new int[blockRecords];
+		mValues = new float[blockRecords * TraceFormat.CHANNELS];
+		mBlock = ByteBuffer.allocateDirect(TraceFormat.BLOCK_HEADER_SIZE
+			+ TraceFormat.maxPayloadSize(blockRecords));
+		mBits = new byte[(blockRecords * (3 + TraceFormat.CHANNELS * 44) + 7) / 8 + 8];
+		mBitWriter = new BitWriter(mBits);
+
+		mBlock.clear();
+		mBlock.putInt(TraceFormat.FILE_MAGIC);
+		mBlock.putInt(TraceFormat.FILE_VERSION);
+		mBlock.flip();
+		writeFully(mBlock);
+	}
+
+	/**
+	 * Records one sample. Only the first TraceFormat.CHANNELS values are kept,
+	 * missing values are stored as 0.
+	 *
+	 * SampleSink cannot throw, so write errors are kept and reported by
+	 * flush() or close().
+	 */
+	@Override
+	public void onSample(int sensorType, long timestamp, float[] values) {
+		if (mError != null)
+			return;
+		try {
+			write(sensorType, timestamp, values);
+		} catch (IOException e) {
+			mError = e;
+		}
+	}
+
+	void write(int sensorType, long timestamp, float[] values) throws IOException {
+		int typeIndex = typeIndex(sensorType);
+		if (typeIndex < 0) {
+			//too many types for one block
+			flush();
+			typeIndex = typeIndex(sensorType);
+		}
+		mTimestamps[mCount] = timestamp;
+		mTypeIndex[mCount] = typeIndex;
+		int n = Math.min(values.length, TraceFormat.CHANNELS);
+		int base = mCount * TraceFormat.CHANNELS;
+		for (int i = 0; i < n; i++)
+			mValues[base + i] = values[i];
+		for (int i = n; i < TraceFormat.CHANNELS; i++)
+			mValues[base + i] = 0.f;
+		mCount++;
+		if (mCount == mBlockRecords)
+			flush();
+	}
+
+	private int typeIndex(int sensorType) {
+		for (int i = 0; i < mTypeCount; i++) {
+			if (mTypes[i] == sensorType)
+				return i;
+		}
+		if (mTypeCount == TraceFormat.MAX_TYPES)
+			return -1;
+		mTypes[mTypeCount] = sensorType;
+		return mTypeCount++;
+	}
+
+	/** Compresses and writes the buffered records as a (possibly short) block. */
+	void flush() throws IOException {
+		if (mError != null)
+			throw mError;
+		if (mCount == 0)
+			return;
+		encodeBlock();
+		addIndexEntry();
+		writeFully(mBlock);
+		mRecordsWritten += mCount;
+		mCount = 0;
+		mTypeCount = 0;
+	}
+
+	/** Flushes, writes end marker and time index, and closes the channel. */
+	void close() throws IOException {
+		flush();
+		writeIndex();
+		mOut.close();
+	}
+
+	private void addIndexEntry() {
+		if (mIndexSize == mIndexOffset.length) {
+			int size = mIndexSize * 2;
+			mIndexOffset = Arrays.copyOf(mIndexOffset, size);
+			mIndexMin = Arrays.copyOf(mIndexMin, size);
+			mIndexMax = Arrays.copyOf(mIndexMax, size);
+			mIndexCount = Arrays.copyOf(mIndexCount, size);
+		}
+		long min = mTimestamps[0];
+		long max = mTimestamps[0];
+		for (int r = 1; r < mCount; r++) {
+			if (mTimestamps[r] < min)
+				min = mTimestamps[r];
+			if (mTimestamps[r] > max)
+				max = mTimestamps[r];
+		}
+		mIndexOffset[mIndexSize] = mBytesWritten;
+		mIndexMin[mIndexSize] = min;
+		mIndexMax[mIndexSize] = max;
+		mIndexCount[mIndexSize] = mCount;
+		mIndexSize++;
+	}
+
+	private void writeIndex() throws IOException {
+		//reuse the block buffer, in chunks of entries that fit
+		mBlock.clear();
+		mBlock.putInt(0);
+		mBlock.putInt(0);
+		long indexOffset = mBytesWritten + TraceFormat.BLOCK_HEADER_SIZE;
+		for (int i = 0; i < mIndexSize; i++) {
+			if (mBlock.remaining() < TraceFormat.INDEX_ENTRY_SIZE) {
+				mBlock.flip();
+				writeFully(mBlock);
+				mBlock.clear();
+			}
+			mBlock.putLong(mIndexOffset[i]);
+			mBlock.putLong(mIndexMin[i]);
+			mBlock.putLong(mIndexMax[i]);
+			mBlock.putInt(mIndexCount[i]);
+		}
+		if (mBlock.remaining() < TraceFormat.INDEX_TRAILER_SIZE) {
+			mBlock.flip();
+			writeFully(mBlock);
+			mBlock.clear();
+		}
+		mBlock.putLong(indexOffset);
+		mBlock.putInt(mIndexSize);
+		mBlock.putInt(TraceFormat.INDEX_MAGIC);
+		mBlock.flip();
+		writeFully(mBlock);
+	}
+
+	/** Bytes written to the channel so far, including the file header. */
+	long bytesWritten() {
+		return mBytesWritten;
+	}
+
+	/** Records written to the channel so far, not counting buffered ones. */
+	long recordsWritten() {
+		return mRecordsWritten;
+	}
+
+	private void encodeBlock() {
+		long first = mTimestamps[0];
+		boolean multiType = mTypeCount > 1;
+		int typeBits = multiType ? 32 - Integer.numberOfLeadingZeros(mTypeCount - 1) : 0;
+		for (int i = 0; i < mTypeCount; i++) {
+			mPrevTimestamp[i] = first;
+			mPrevDelta[i] = 0;
+		}
+		mXor.reset();
+		mBitWriter.reset();
+
+		mBlock.clear();
+		mBlock.position(TraceFormat.BLOCK_HEADER_SIZE);
+		mBlock.putLong(first);
+		mBlock.put((byte) mTypeCount);
+		for (int i = 0; i < mTypeCount; i++)
+			mBlock.putInt(mTypes[i]);
+		int tsLengthPos = mBlock.position();
+		mBlock.putInt(0);
+		int tsStart = mBlock.position();
+		for (int r = 0; r < mCount; r++) {
+			int t = mTypeIndex[r];
+			long delta = mTimestamps[r] - mPrevTimestamp[t];
+			putVarLong(mBlock, zigzag(delta - mPrevDelta[t]));
+			mPrevTimestamp[t] = mTimestamps[r];
+			mPrevDelta[t] = delta;
+
+			if (typeBits > 0)
+				mBitWriter.write(t, typeBits);
+			for (int c = 0; c < TraceFormat.CHANNELS; c++)
+				mXor.encode(mBitWriter, t * TraceFormat.CHANNELS + c,
+					Float.floatToRawIntBits(mValues[r * TraceFormat.CHANNELS + c]));
+		}
+		mBlock.putInt(tsLengthPos, mBlock.position() - tsStart);
+		mBlock.put(mBits, 0, mBitWriter.finish());
+
+		int payload = mBlock.position() - TraceFormat.BLOCK_HEADER_SIZE;
+		mBlock.putInt(0, payload);
+		mBlock.putInt(4, mCount);
+		mBlock.flip();
+	}
+
+	private void writeFully(ByteBuffer b) throws IOException {
+		while (b.hasRemaining())
+			mBytesWritten += mOut.write(b);
+	}
+
+	static long zigzag(long v) {
+		return (v << 1) ^ (v >> 63);
+	}
+
+	static void putVarLong(ByteBuffer b, long v) {
+		while ((v & ~0x7fL) != 0) {
+			b.put((byte) ((v & 0x7f) | 0x80));
+			v >>>= 7;
+		}
+		b.put((byte) v);
+	}
+
+	/** Previous value and bit window per type and channel. */
+	static final class XorState {
+		private final int[] mPrev = new int[TraceFormat.MAX_TYPES * TraceFormat.CHANNELS];
+		private final int[] mLeading = new int[TraceFormat.MAX_TYPES * TraceFormat.CHANNELS];
+		private final int[] mTrailing = new int[TraceFormat.MAX_TYPES * TraceFormat.CHANNELS];
+		private final boolean[] mSeen = new boolean[TraceFormat.MAX_TYPES * TraceFormat.CHANNELS];
+
+		void reset() {
+			for (int i = 0; i < mSeen.length; i++) {
+				mSeen[i] = false;
+				mLeading[i] = -1;
+			}
+		}
+
+		/*
+		 * first value: 32 raw bits
+		 * same as previous: '0'
+		 * otherwise '1' and
+		 *   '0' + meaningful bits, if they fit into the previous window
+		 *   '1' + 5 bits leading zeros + 5 bits (length - 1) + meaningful bits
+		 */
+		void encode(BitWriter w, int slot, int bits) {
+			if (!mSeen[slot]) {
+				mSeen[slot] = true;
+				mPrev[slot] = bits;
+				w.write(bits, 32);
+				return;
+			}
+			int xor = bits ^ mPrev[slot];
+			mPrev[slot] = bits;
+			if (xor == 0) {
+				w.write(0, 1);
+				return;
+			}
+			int leading = Integer.numberOfLeadingZeros(xor);
+			int trailing = Integer.numberOfTrailingZeros(xor);
+			if (mLeading[slot] >= 0 && leading >= mLeading[slot] && trailing >= mTrailing[slot]) {
+				w.write(2, 2);
+				w.write(xor >>> mTrailing[slot], 32 - mLeading[slot] - mTrailing[slot]);
+			} else {
+				int length = 32 - leading - trailing;
+				w.write(3, 2);
+				w.write(leading, 5);
+				w.write(length - 1, 5);
+				w.write(xor >>> trailing, length);
+				mLeading[slot] = leading;
+				mTrailing[slot] = trailing;
+			}
+		}
+
+		int decode(BitReader r, int slot) {
+			if (!mSeen[slot]) {
+				mSeen[slot] = true;
+				mPrev[slot] = r.read(32);
+				return mPrev[slot];
+			}
+			if (r.read(1) == 0)
+				return mPrev[slot];
+			if (r.read(1) == 1) {
+				mLeading[slot] = r.read(5);
+				int length = r.read(5) + 1;
+				mTrailing[slot] = 32 - mLeading[slot] - length;
+			}
+			int length = 32 - mLeading[slot] - mTrailing[slot];
+			mPrev[slot] ^= r.read(length) << mTrailing[slot];
+			return mPrev[slot];
+		}
+	}
+
+	/** MSB first bit packing into a byte array. */
+	static final class BitWriter {
+		private final byte[] mBuf;
+		private int mPos;
+		private long mAcc;
+		private int mAccBits;
+
+		BitWriter(byte[] buf) {
+			mBuf = buf;
+		}
+
+		void reset() {
+			mPos = 0;
+			mAcc = 0;
+			mAccBits = 0;
+		}
+
+		/** Writes the lowest count bits of value, count 0..32. */
+		void write(int value, int count) {
+			if (count == 0)
+				return;
+			mAcc = (mAcc << count) | (value & (0xffffffffL >>> (32 - count)));
+			mAccBits += count;
+			while (mAccBits >= 8) {
+				mAccBits -= 8;
+				mBuf[mPos++] = (byte) (mAcc >>> mAccBits);
+			}
+		}
+
+		/** Pads to a full byte, returns the number of bytes used. */
+		int finish() {
+			if (mAccBits > 0) {
+				mBuf[mPos++] = (byte) (mAcc << (8 - mAccBits));
+				mAccBits = 0;
+			}
+			return mPos;
+		}
+	}
+
+	/** Counterpart of BitWriter. */
+	static final class BitReader {
+		private byte[] mBuf;
+		private int mPos;
+		private int mEnd;
+		private long mAcc;
+		private int mAccBits;
+
+		void reset(byte[] buf, int offset, int end) {
+			mBuf = buf;
+			mPos = offset;
+			mEnd = end;
+			mAcc = 0;
+			mAccBits = 0;
+		}
+
+		/** Reads count bits, count 0..32. Reading past the end yields zeros. */
+		int read(int count) {
+			if (count == 0)
+				return 0;
+			while (mAccBits < count) {
+				int b = mPos < mEnd ? mBuf[mPos] & 0xff : 0;
+				mPos++;
+				mAcc = (mAcc << 8) | b;
+				mAccBits += 8;
+			}
+			mAccBits -= count;
+			return (int) ((mAcc >>> mAccBits) & (0xffffffffL >>> (32 - count)));
+		}
+	}
+}
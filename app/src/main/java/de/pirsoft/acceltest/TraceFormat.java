@@ -0,0 +1,61 @@
+package de.pirsoft.acceltest;
+
+/**
+ * Layout of compressed sensor trace files, shared by TraceEncoder and TraceDecoder.
+ *
+ * A file starts with FILE_MAGIC and FILE_VERSION (int32 each, big endian),
+ * followed by independently decodable blocks:
+ *
+ *   int32   payload length in bytes
+ *   int32   record count
+ *   payload:
+ *     int64   timestamp of the first record
+ *     int8    number of distinct sensor types in the block
+ *     int32   sensor type, per distinct type
+ *     int32   length of the timestamp section
+ *     timestamp section: per record, zigzag varint of the delta-of-delta
+ *                        against the previous record of the same type
+ *     bit stream: per record, the type index (if more than one type) and
+ *                 CHANNELS float values, XOR compressed against the previous
+ *                 value of the same type and channel (Gorilla style)
+ *
+ * Every block starts with fresh predictor state, so a reader can start
+ * decoding at any block boundary.
+ *
+ * The last block is followed by an end marker (a block header with length
+ * and count 0) and the time index footer:
+ *
+ *   per block:  int64 file offset, int64 min timestamp, int64 max timestamp,
+ *               int32 record count
+ *   int64   file offset of the first index entry
+ *   int32   number of index entries
+ *   int32   INDEX_MAGIC
+ *
+ * A file without footer (recording was interrupted) can still be read
+ * sequentially, TraceReader rebuilds the index by scanning it.
+ */
+final class TraceFormat {
+	static final int FILE_MAGIC = 0x41435452;//"ACTR"
+	static final int FILE_VERSION = 1;
+	static final int FILE_HEADER_SIZE = 8;
+	static final int BLOCK_HEADER_SIZE = 8;
+	static final int INDEX_MAGIC = 0x41435849;//"ACXI"
+	static final int INDEX_ENTRY_SIZE = 8 + 8 + 8 + 4;
+	static final int INDEX_TRAILER_SIZE = 8 + 4 + 4;
+
+	/** Float values stored per record. */
+	static final int CHANNELS = 3;
+	/** Distinct sensor types per block, the encoder flushes early if exceeded. */
+	static final int MAX_TYPES = 8;
+	/** Raw size of a record: int64 timestamp, int32 type, CHANNELS floats. */
+	static final int RAW_RECORD_SIZE = 8 + 4 + CHANNELS * 4;
+
+	/** Upper bound for a block payload, used to reject corrupt files. */
+	static int maxPayloadSize(int records) {
+		//varint: 10 bytes, bits: 3 type bits + per channel 2+5+5+32
+		return 8 + 1 + 4 * MAX_TYPES + 4 + records * 10 + (records * (3 + CHANNELS * 44) + 7) / 8 + 8;
+	}
+
+	private TraceFormat() {
+	}
+}
@@ -0,0 +1,222 @@
+package de.pirsoft.acceltest;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Random access to a sensor trace file through its time index.
+ *
+ * Opening reads only the footer, reading a time window binary-searches the
+ * index and decodes just the blocks overlapping the window. Files without
+ * footer are scanned once on open to rebuild the index.
+ */
+class TraceReader implements Closeable {
+	private final FileChannel mChannel;
+	private final TraceDecoder mDecoder;
+
+	private long[] mOffset;
+	private long[] mMin;
+	private long[] mMax;
+	private int[] mCount;
+	private int mBlocks;
+	//end of the last block
+	private long mDataEnd;
+	//max timestamp of all blocks up to i, never decreasing, so it can be binary-searched
+	private long[] mRunningMax;
+	//min timestamp of all blocks from i on
+	private long[] mSuffixMin;
+
+	private final WindowFilter mFilter = new WindowFilter();
+
+	TraceReader(FileChannel channel) throws IOException {
+		mChannel = channel;
+		mChannel.position(0);
+		//checks the file header
+		mDecoder = new TraceDecoder(mChannel);
+		if (!readFooter())
+			scanBlocks();
+		mRunningMax = new long[mBlocks];
+		mSuffixMin = new long[mBlocks];
+		for (int i = 0; i < mBlocks; i++)
+			mRunningMax[i] = i == 0 ? mMax[i] : Math.max(mRunningMax[i - 1], mMax[i]);
+		for (int i = mBlocks - 1; i >= 0; i--)
+			mSuffixMin[i] = i == mBlocks - 1 ? mMin[i] : Math.min(mSuffixMin[i + 1], mMin[i]);
+	}
+
+	int blockCount() {
+		return mBlocks;
+	}
+
+	long recordCount() {
+		long n = 0;
+		for (int i = 0; i < mBlocks; i++)
+			n += mCount[i];
+		return n;
+	}
+
+	/** File offset of a block header. */
+	long blockOffset(int block) {
+		return mOffset[block];
+	}
+
+	/** File offset right after the last block. */
+	long dataEnd() {
+		return mDataEnd;
+	}
+
+	/** Smallest timestamp in the trace, Long.MAX_VALUE if empty. */
+	long startTime() {
+		return mBlocks == 0 ? Long.MAX_VALUE : mSuffixMin[0];
+	}
+
+	/** Largest timestamp in the trace, Long.MIN_VALUE if empty. */
+	long endTime() {
+		return mBlocks == 0 ? Long.MIN_VALUE : mRunningMax[mBlocks - 1];
+	}
+
+	/**
+	 * Hands all records with from <= timestamp <= to to the sink.
+	 *
+	 * @return number of records handed over
+	 */
+	long read(long from, long to, SampleSink sink) throws IOException {
+		//first block that may contain timestamps >= from
+		int lo = 0;
+		int hi = mBlocks;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (mRunningMax[mid] < from)
+				lo = mid + 1;
+			else
+				hi = mid;
+		}
+		mFilter.set(from, to, sink);
+		for (int i = lo; i < mBlocks && mSuffixMin[i] <= to; i++) {
+			if (mMax[i] < from || mMin[i] > to)
+				continue;
+			mChannel.position(mOffset[i]);
+			mDecoder.readBlock(mFilter);
+		}
+		mFilter.set(0, 0, null);
+		return mFilter.mPassed;
+	}
+
+	@Override
+	public void close() throws IOException {
+		mChannel.close();
+	}
+
+	private boolean readFooter() throws IOException {
+		long size = mChannel.size();
+		if (size < TraceFormat.FILE_HEADER_SIZE + TraceFormat.INDEX_TRAILER_SIZE)
+			return false;
+		ByteBuffer trailer = ByteBuffer.allocate(TraceFormat.INDEX_TRAILER_SIZE);
+		readAt(trailer, size - TraceFormat.INDEX_TRAILER_SIZE);
+		long indexOffset = trailer.getLong(0);
+		int entries = trailer.getInt(8);
+		if (trailer.getInt(12) != TraceFormat.INDEX_MAGIC || entries < 0
+			|| indexOffset + (long) entries * TraceFormat.INDEX_ENTRY_SIZE
+				!= size - TraceFormat.INDEX_TRAILER_SIZE)
+			return false;
+
+		ByteBuffer index = ByteBuffer.allocate(entries * TraceFormat.INDEX_ENTRY_SIZE);
+		readAt(index, indexOffset);
+		allocate(entries);
+		for (int i = 0; i < entries; i++) {
+			mOffset[i] = index.getLong();
+			mMin[i] = index.getLong();
+			mMax[i] = index.getLong();
+			mCount[i] = index.getInt();
+		}
+		mBlocks = entries;
+		//the end marker sits right before the index
+		mDataEnd = indexOffset - TraceFormat.BLOCK_HEADER_SIZE;
+		return true;
+	}
+
+	/** Decodes every block once to rebuild the index of a file without footer. */
+	private void scanBlocks() throws IOException {
+		allocate(64);
+		final long[] minMax = new long[2];
+		SampleSink range = new SampleSink() {
+			@Override
+			public void onSample(int sensorType, long timestamp, float[] values) {
+				minMax[0] = Math.min(minMax[0], timestamp);
+				minMax[1] = Math.max(minMax[1], timestamp);
+			}
+		};
+		mChannel.position(TraceFormat.FILE_HEADER_SIZE);
+		mDataEnd = TraceFormat.FILE_HEADER_SIZE;
+		while (true) {
+			long offset = mChannel.position();
+			minMax[0] = Long.MAX_VALUE;
+			minMax[1] = Long.MIN_VALUE;
+			int n;
+			try {
+				n = mDecoder.readBlock(range);
+			} catch (IOException e) {
+				//truncated last block of an interrupted recording
+				break;
+			}
+			if (n < 0)
+				break;
+			if (mBlocks == mOffset.length)
+				grow(mBlocks * 2);
+			mOffset[mBlocks] = offset;
+			mMin[mBlocks] = minMax[0];
+			mMax[mBlocks] = minMax[1];
+			mCount[mBlocks] = n;
+			mBlocks++;
+			mDataEnd = mChannel.position();
+		}
+	}
+
+	private void allocate(int size) {
+		mOffset = new long[size];
+		mMin = new long[size];
+		mMax = new long[size];
+		mCount = new int[size];
+	}
+
+	private void grow(int size) {
+		mOffset = Arrays.copyOf(mOffset, size);
+		mMin = Arrays.copyOf(mMin, size);
+		mMax = Arrays.copyOf(mMax, size);
+		mCount = Arrays.copyOf(mCount, size);
+	}
+
+	private void readAt(ByteBuffer b, long position) throws IOException {
+		while (b.hasRemaining()) {
+			int n = mChannel.read(b, position + b.position());
+			if (n < 0)
+				throw new IOException("truncated trace index");
+		}
+		b.flip();
+	}
+
+	private static final class WindowFilter implements SampleSink {
+		private long mFrom;
+		private long mTo;
+		private SampleSink mSink;
+		private long mPassed;
+
+		void set(long from, long to, SampleSink sink) {
+			mFrom = from;
+			mTo = to;
+			mSink = sink;
+			if (sink != null)
+				mPassed = 0;
+		}
+
+		@Override
+		public void onSample(int sensorType, long timestamp, float[] values) {
+			if (timestamp >= mFrom && timestamp <= mTo) {
+				mPassed++;
+				mSink.onSample(sensorType, timestamp, values);
+			}
+		}
+	}
+}
@@ -0,0 +1,204 @@
+package de.pirsoft.acceltest;
+
+/**
+ * Statistics of one sensor type in a trace, kept as sketches that can be
+ * merged, so parts of a trace can be summarized independently and combined
+ * in any order:
+ *
+ * - per axis min, max, sum and sum of squares, for mean and RMS
+ * - per axis histogram over +-HISTOGRAM_RANGE, outliers go to the edge bins
+ * - magnitude histogram with logarithmic bins, percentiles come out within
+ *   RELATIVE_ACCURACY of the exact value (same idea as DDSketch)
+ * - sample counts per time window, for the rate over time
+ *
+ * Not thread safe, every part gets its own instance.
+ */
+class TraceStats implements SampleSink {
+	static final int AXES = TraceFormat.CHANNELS;
+	static final int HISTOGRAM_BINS = 64;
+	static final float HISTOGRAM_RANGE = 32.0f;
+	static final double RELATIVE_ACCURACY = 0.01;
+	//magnitudes at or below go to bin 0, above MAX_MAGNITUDE to the last bin
+	private static final double MIN_MAGNITUDE = 1e-3;
+	private static final double MAX_MAGNITUDE = 1e4;
+
+	private static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+	private static final double LOG_GAMMA = Math.log(GAMMA);
+	private static final int MIN_KEY = (int) Math.ceil(Math.log(MIN_MAGNITUDE) / LOG_GAMMA);
+	private static final int MAGNITUDE_BINS = (int) Math.ceil(Math.log(MAX_MAGNITUDE) / LOG_GAMMA) - MIN_KEY + 1;
+	//bin i covers (BIN_UPPER[i - 1], BIN_UPPER[i]]
+	private static final float[] BIN_UPPER = new float[MAGNITUDE_BINS];
+	//bins by the exponent and top 7 mantissa bits of a float instead of a log per sample,
+	//a table cell is narrower than a bin, so the bin is the one of its low end or the next
+	private static final int TABLE_SHIFT = 16;
+	private static final int TABLE_FIRST = Float.floatToIntBits((float) MIN_MAGNITUDE) >>> TABLE_SHIFT;
+	private static final int[] BIN_TABLE =
+		new int[(Float.floatToIntBits((float) MAX_MAGNITUDE) >>> TABLE_SHIFT) - TABLE_FIRST + 1];
+
+	static {
+		for (int i = 0; i < MAGNITUDE_BINS; i++)
+			BIN_UPPER[i] = (float) Math.pow(GAMMA, i + MIN_KEY);
+		int bin = 0;
+		for (int i = 0; i < BIN_TABLE.length; i++) {
+			float low = Float.intBitsToFloat((TABLE_FIRST + i) << TABLE_SHIFT);
+			while (bin < MAGNITUDE_BINS - 1 && low > BIN_UPPER[bin])
+				bin++;
+			BIN_TABLE[i] = bin;
+		}
+	}
+
+	private final int mSensorType;
+	private final long mStart;
+	private final long mWindow;
+
+	private long mCount = 0;
+	private final float[] mMin = new float[AXES];
+	private final float[] mMax = new float[AXES];
+	private final double[] mSum = new double[AXES];
+	private final double[] mSumSquares = new double[AXES];
+	private final long[] mHistogram = new long[AXES * HISTOGRAM_BINS];
+	private final long[] mMagnitude = new long[MAGNITUDE_BINS];
+	private final long[] mWindows;
+	//window of the last sample, samples mostly come in order
+	private int mLastWindow = -1;
+	private long mLastWindowStart = Long.MAX_VALUE;
+
+	/**
+	 * @param start  timestamp the first window starts at
+	 * @param end    last timestamp of the trace
+	 * @param window window length in nanoseconds
+	 */
+	TraceStats(int sensorType, long start, long end, long window) {
+		mSensorType = sensorType;
+		mStart = start;
+		mWindow = window;
+		mWindows = new long[end < start ? 0 : (int) ((end - start) / window + 1)];
+		for (int i = 0; i < AXES; i++) {
+			mMin[i] = Float.POSITIVE_INFINITY;
+			mMax[i] = Float.NEGATIVE_INFINITY;
+		}
+	}
+
+	/** Empty stats with the same type and windows. */
+	TraceStats(TraceStats like) {
+		this(like.mSensorType, like.mStart, like.mStart + (like.mWindows.length - 1) * like.mWindow,
+			like.mWindow);
+	}
+
+	@Override
+	public void onSample(int sensorType, long timestamp, float[] values) {
+		if (sensorType != mSensorType)
+			return;
+		mCount++;
+		double squares = 0;
+		for (int i = 0; i < AXES; i++) {
+			float v = values[i];
+			mMin[i] = Math.min(mMin[i], v);
+			mMax[i] = Math.max(mMax[i], v);
+			mSum[i] += v;
+			mSumSquares[i] += (double) v * v;
+			squares += (double) v * v;
+			float x = (v + HISTOGRAM_RANGE) * (HISTOGRAM_BINS / (2 * HISTOGRAM_RANGE));
+			//NaN goes to bin 0
+			int bin = x >= HISTOGRAM_BINS ? HISTOGRAM_BINS - 1 : x > 0 ? (int) x : 0;
+			mHistogram[i * HISTOGRAM_BINS + bin]++;
+		}
+		mMagnitude[magnitudeBin((float) Math.sqrt(squares))]++;
+		if (timestamp - mLastWindowStart >= mWindow || timestamp < mLastWindowStart) {
+			if (timestamp < mStart || (timestamp - mStart) / mWindow >= mWindows.length)
+				return;
+			mLastWindow = (int) ((timestamp - mStart) / mWindow);
+			mLastWindowStart = mStart + mLastWindow * mWindow;
+		}
+		mWindows[mLastWindow]++;
+	}
+
+	private static int magnitudeBin(float magnitude) {
+		if (!(magnitude > MIN_MAGNITUDE))
+			return 0;
+		if (magnitude >= MAX_MAGNITUDE)
+			return MAGNITUDE_BINS - 1;
+		int bin = BIN_TABLE[(Float.floatToRawIntBits(magnitude) >>> TABLE_SHIFT) - TABLE_FIRST];
+		return magnitude > BIN_UPPER[bin] ? bin + 1 : bin;
+	}
+
+	/** Adds the samples counted by other, which must cover the same type and windows. */
+	void merge(TraceStats other) {
+		if (other.mSensorType != mSensorType || other.mStart != mStart || other.mWindow != mWindow
+			|| other.mWindows.length != mWindows.length)
+			throw new IllegalArgumentException("stats of different traces");
+		mCount += other.mCount;
+		for (int i = 0; i < AXES; i++) {
+			mMin[i] = Math.min(mMin[i], other.mMin[i]);
+			mMax[i] = Math.max(mMax[i], other.mMax[i]);
+			mSum[i] += other.mSum[i];
+			mSumSquares[i] += other.mSumSquares[i];
+		}
+		for (int i = 0; i < mHistogram.length; i++)
+			mHistogram[i] += other.mHistogram[i];
+		for (int i = 0; i < mMagnitude.length; i++)
+			mMagnitude[i] += other.mMagnitude[i];
+		for (int i = 0; i < mWindows.length; i++)
+			mWindows[i] += other.mWindows[i];
+	}
+
+	long getCount() {
+		return mCount;
+	}
+
+	float getMin(int axis) {
+		return mMin[axis];
+	}
+
+	float getMax(int axis) {
+		return mMax[axis];
+	}
+
+	double getMean(int axis) {
+		return mSum[axis] / mCount;
+	}
+
+	double getRms(int axis) {
+		return Math.sqrt(mSumSquares[axis] / mCount);
+	}
+
+	long getHistogram(int axis, int bin) {
+		return mHistogram[axis * HISTOGRAM_BINS + bin];
+	}
+
+	/** Lower edge of a histogram bin. */
+	static float getBinStart(int bin) {
+		return bin * (2 * HISTOGRAM_RANGE / HISTOGRAM_BINS) - HISTOGRAM_RANGE;
+	}
+
+	/**
+	 * Magnitude below which the given fraction of the samples lies, within
+	 * RELATIVE_ACCURACY, NaN without samples.
+	 */
+	double getMagnitudePercentile(double fraction) {
+		if (mCount == 0)
+			return Double.NaN;
+		long rank = Math.max(1, (long) Math.ceil(fraction * mCount));
+		long seen = 0;
+		int bin = 0;
+		while (bin < MAGNITUDE_BINS - 1 && (seen += mMagnitude[bin]) < rank)
+			bin++;
+		if (bin == 0)
+			return 0;
+		//bin covers (gamma^(key-1), gamma^key], this is off by at most the accuracy
+		return 2 * Math.pow(GAMMA, bin + MIN_KEY) / (GAMMA + 1);
+	}
+
+	int getWindowCount() {
+		return mWindows.length;
+	}
+
+	long getWindowStart(int window) {
+		return mStart + window * mWindow;
+	}
+
+	/** Samples per second in a window. */
+	double getRate(int window) {
+		return mWindows[window] * 1e9 / mWindow;
+	}
+}
@@ -0,0 +1,72 @@
+package de.pirsoft.acceltest;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.fail;
+
+/**
+ * Measures the bytes a piece of code allocates on the current thread, using
+ * the HotSpot per-thread allocation counter.
+ *
+ * The code is run a few thousand times to get it compiled first, then
+ * measured. Anything above the noise of the counter itself fails the test.
+ */
+final class AllocationHarness {
+	private static final int WARMUP_ITERATIONS = 20000;
+	private static final int ITERATIONS = 10000;
+
+	private static final com.sun.management.ThreadMXBean THREAD_MX_BEAN = threadMXBean();
+
+	private AllocationHarness() {
+	}
+
+	private static com.sun.management.ThreadMXBean threadMXBean() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (!(bean instanceof com.sun.management.ThreadMXBean))
+			return null;
+		com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+		if (!sunBean.isThreadAllocatedMemorySupported())
+			return null;
+		sunBean.setThreadAllocatedMemoryEnabled(true);
+		return sunBean;
+	}
+
+	/** Whether this JVM can count allocations at all. */
+	static boolean isSupported() {
+		return THREAD_MX_BEAN != null;
+	}
+
+	private static long allocatedBytes() {
+		return THREAD_MX_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	/** Bytes allocated by running the code the given number of times. */
+	static long measure(Runnable code, int iterations) {
+		long before = allocatedBytes();
+		for (int i = 0; i < iterations; i++)
+			code.run();
+		return allocatedBytes() - before;
+	}
+
+	/** Fails if the code allocates after warm-up. */
+	static void assertAllocationFree(String name, Runnable code) {
+		measure(code, WARMUP_ITERATIONS);
+		//the counter query itself may allocate a little, take the
+		//smallest of a few runs against an empty loop.
+		long baseline = Long.MAX_VALUE;
+		long allocated = Long.MAX_VALUE;
+		Runnable empty = new Runnable() {
+			@Override
+			public void run() {
+			}
+		};
+		for (int round = 0; round < 3; round++) {
+			baseline = Math.min(baseline, measure(empty, ITERATIONS));
+			allocated = Math.min(allocated, measure(code, ITERATIONS));
+		}
+		long perIteration = (allocated - baseline) / ITERATIONS;
+		if (allocated > baseline)
+			fail(name + " allocated " + (allocated - baseline) + " bytes in "
+				+ ITERATIONS + " iterations (" + perIteration + " per call)");
+	}
+}
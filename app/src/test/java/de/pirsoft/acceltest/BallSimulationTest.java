@@ -0,0 +1,52 @@
+package de.pirsoft.acceltest;
+
+import android.hardware.Sensor;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BallSimulationTest {
+	private static final float[] FLAT = { 0, 0, 9.80665f };
+	private static final float[] NO_ROTATION = { 0, 0, 0 };
+
+	/** A phone lying flat long enough for the ball to come to rest. */
+	private static BallSimulation atRest(float[] transform) {
+		BallSimulation sim = new BallSimulation();
+		for (int i = 0; i < 2000; i++) {
+			sim.onSample(Sensor.TYPE_ROTATION_VECTOR, i * 15000000L, NO_ROTATION);
+			sim.onSample(Sensor.TYPE_ACCELEROMETER, i * 15000000L, FLAT);
+			sim.step(15, transform);
+		}
+		return sim;
+	}
+
+	@Test
+	public void restoredStateContinuesWithoutSamples() {
+		float[] expected = new float[16];
+		BallSimulation sim = atRest(expected);
+		float[] state = new float[BallSimulation.STATE_FLOATS];
+		sim.getState(state);
+
+		BallSimulation restored = new BallSimulation();
+		restored.setState(state);
+		float[] transform = new float[16];
+		//before the first samples arrive
+		for (int i = 0; i < 10; i++)
+			restored.step(15, transform);
+		assertArrayEquals(expected, transform, 1e-4f);
+	}
+
+	@Test
+	public void freshSimulationStartsOffRest() {
+		float[] rest = new float[16];
+		atRest(rest);
+		BallSimulation fresh = new BallSimulation();
+		float[] transform = new float[16];
+		fresh.onSample(Sensor.TYPE_ACCELEROMETER, 0, FLAT);
+		fresh.step(15, transform);
+		//the ball starts at the center and has to fall into place
+		assertTrue(Math.abs(transform[14] - rest[14]) > 0.1f);
+	}
+}
@@ -0,0 +1,115 @@
+package de.pirsoft.acceltest;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CubeSphereMeshTest {
+	@Test
+	public void verticesOnUnitSphere() {
+		CubeSphereMesh mesh = new CubeSphereMesh(10);
+		float[] v = mesh.floatAttribs;
+		assertEquals((14 + 10 * 19 + 10 * 10 * 6) * CubeSphereMesh.FLOATSTRIDE, v.length);
+		for (int i = 0; i < v.length; i += CubeSphereMesh.FLOATSTRIDE) {
+			float d = v[i] * v[i] + v[i + 1] * v[i + 1] + v[i + 2] * v[i + 2];
+			assertEquals(1.0f, d, 1e-5f);
+			assertTrue(v[i + 3] >= 0 && v[i + 3] <= 1);
+			assertTrue(v[i + 4] >= 0 && v[i + 4] <= 1);
+		}
+	}
+
+	@Test
+	public void indexesInRange() {
+		CubeSphereMesh mesh = new CubeSphereMesh(10);
+		int vertices = mesh.floatAttribs.length / CubeSphereMesh.FLOATSTRIDE;
+		for (short idx : mesh.drawOrder)
+			assertTrue(idx >= 0 && idx < vertices);
+		assertEquals(mesh.drawOrder.length, mesh.drawListBuffer.capacity());
+		assertEquals(mesh.floatAttribs.length, mesh.floatBuffer.capacity());
+	}
+
+	@Test
+	public void cubeMapMeshSharesSeamVertices() {
+		CubeSphereMesh mesh = CubeSphereMesh.forCubeMap(10);
+		assertEquals(CubeSphereMesh.CUBEMAP_FLOATSTRIDE, mesh.stride);
+		float[] v = mesh.floatAttribs;
+		//8 corners, 12 edges and 6 faces, nothing duplicated
+		assertEquals((8 + 12 * 10 + 6 * 10 * 10) * 3, v.length);
+		for (int i = 0; i < v.length; i += 3)
+			assertEquals(1.0f, v[i] * v[i] + v[i + 1] * v[i + 1] + v[i + 2] * v[i + 2], 1e-5f);
+		boolean[] used = new boolean[v.length / 3];
+		for (short idx : mesh.drawOrder)
+			used[idx] = true;
+		for (boolean u : used)
+			assertTrue(u);
+	}
+
+	//back-face culling replaces the depth test, so every triangle must face outwards
+	@Test
+	public void stripsWoundCounterClockwiseFromOutside() {
+		for (int subdivide = 0; subdivide <= 10; subdivide++) {
+			int triangles = 6 * 2 * (subdivide + 1) * (subdivide + 1);
+			assertOutwards(new CubeSphereMesh(subdivide), subdivide, triangles);
+			assertOutwards(CubeSphereMesh.forCubeMap(subdivide), subdivide, triangles);
+			if (subdivide > 0)
+				assertOutwards(CubeSphereMesh.forIcosphere(subdivide), subdivide, 20 * subdivide * subdivide);
+		}
+	}
+
+	@Test
+	public void icosphereSharesEdgeAndCornerVertices() {
+		CubeSphereMesh mesh = CubeSphereMesh.forIcosphere(7);
+		float[] v = mesh.floatAttribs;
+		assertEquals((10 * 7 * 7 + 2) * 3, v.length);
+		for (int i = 0; i < v.length; i += 3)
+			assertEquals(1.0f, v[i] * v[i] + v[i + 1] * v[i + 1] + v[i + 2] * v[i + 2], 1e-5f);
+		boolean[] used = new boolean[v.length / 3];
+		for (short idx : mesh.drawOrder)
+			used[idx] = true;
+		for (boolean u : used)
+			assertTrue(u);
+		assertEquals(20 * 7 * 7, mesh.triangleCount());
+	}
+
+	@Test
+	public void icosphereNeedsFewerTrianglesForTheSameSilhouette() {
+		CubeSphereMesh cube = CubeSphereMesh.forCubeMap(10);
+		CubeSphereMesh ico = CubeSphereMesh.forIcosphere(6);
+		assertTrue(ico.maxSilhouetteError() < cube.maxSilhouetteError());
+		assertTrue(ico.triangleCount() * 2 < cube.triangleCount());
+		//a flat cap between the corners of a cube face: 1 - cos(half the diagonal angle)
+		assertEquals(1 - Math.sqrt(1 / 3.0), CubeSphereMesh.forCubeMap(0).maxSilhouetteError(), 1e-6);
+	}
+
+	private static void assertOutwards(CubeSphereMesh mesh, int subdivide, int expectedTriangles) {
+		float[] v = mesh.floatAttribs;
+		short[] d = mesh.drawOrder;
+		int stride = mesh.stride;
+		int triangles = 0;
+		for (int i = 0; i + 2 < d.length; i++) {
+			int a = d[i] * stride;
+			int b = d[i + 1] * stride;
+			int c = d[i + 2] * stride;
+			if (a == b || b == c || a == c)
+				continue;
+			//every other strip triangle has its first two vertices swapped
+			if ((i & 1) == 1) {
+				int t = a;
+				a = b;
+				b = t;
+			}
+			float ux = v[b] - v[a], uy = v[b + 1] - v[a + 1], uz = v[b + 2] - v[a + 2];
+			float wx = v[c] - v[a], wy = v[c + 1] - v[a + 1], wz = v[c + 2] - v[a + 2];
+			float nx = uy * wz - uz * wy;
+			float ny = uz * wx - ux * wz;
+			float nz = ux * wy - uy * wx;
+			//the centroid points outwards from the center
+			float dot = nx * (v[a] + v[b] + v[c]) + ny * (v[a + 1] + v[b + 1] + v[c + 1])
+				+ nz * (v[a + 2] + v[b + 2] + v[c + 2]);
+			assertTrue("subdivide " + subdivide + " triangle " + i, dot > 0);
+			triangles++;
+		}
+		assertEquals(expectedTriangles, triangles);
+	}
+}
@@ -0,0 +1,84 @@
+package de.pirsoft.acceltest;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DeliveryStatsTest {
+	private static final long PERIOD = 5000000L;
+
+	@Test
+	public void steadyStreamWithJitter() {
+		DeliveryStats stats = new DeliveryStats(4096);
+		Random random = new Random(1);
+		for (int i = 0; i < 1000; i++) {
+			//timestamps +-20us around 200Hz, callbacks 1 to 3ms later
+			long timestamp = i * PERIOD + random.nextInt(40001) - 20000;
+			stats.onSample(timestamp, timestamp + 1000000L + random.nextInt(2000001));
+		}
+		assertEquals(1000, stats.getCount());
+		assertEquals(200.0, stats.getRate(), 0.1);
+		assertEquals(PERIOD, stats.getIntervalPercentile(0.5), 2000);
+		assertTrue(stats.getIntervalPercentile(0.01) > PERIOD - 40000);
+		assertTrue(stats.getIntervalPercentile(1) <= PERIOD + 40000);
+		assertTrue(stats.getJitterPercentile(0.99) <= 40000);
+		assertEquals(0, stats.getGaps());
+		assertEquals(2000000L, stats.getDelayPercentile(0.5), 100000);
+		assertTrue(stats.getDelayPercentile(1) <= 3000000L);
+	}
+
+	@Test
+	public void gapsCountMissingSamples() {
+		DeliveryStats stats = new DeliveryStats(4096);
+		for (int i = 0; i < 100; i++) {
+			if (i >= 40 && i < 43 || i == 70)
+				continue;
+			stats.onSample(i * PERIOD, i * PERIOD);
+		}
+		assertEquals(2, stats.getGaps());
+		assertEquals(4, stats.getMissing());
+		assertEquals(4 * PERIOD, stats.getIntervalPercentile(1));
+		//the rate is what arrived, not what was asked for
+		assertEquals(95 * 1e9 / (99 * PERIOD), stats.getRate(), 1e-9);
+	}
+
+	@Test
+	public void timestampsThatDoNotGoForward() {
+		DeliveryStats stats = new DeliveryStats(4096);
+		stats.onSample(0, 0);
+		stats.onSample(PERIOD, PERIOD);
+		stats.onSample(PERIOD, PERIOD);
+		stats.onSample(PERIOD / 2, PERIOD);
+		stats.onSample(2 * PERIOD, 2 * PERIOD);
+		assertEquals(1, stats.getDuplicates());
+		assertEquals(1, stats.getBackwards());
+		//the late sample does not turn into a long interval after it
+		assertEquals(PERIOD, stats.getIntervalPercentile(1));
+
+		StringBuilder report = new StringBuilder();
+		stats.appendReport(report);
+		assertTrue(report.toString(), report.toString().contains(" backwards=1 duplicates=1 "));
+		assertTrue(report.toString(), report.toString().contains(" interval_us=5000/5000/5000/5000 "));
+	}
+
+	@Test
+	public void countsBeyondCapacityAndResets() {
+		DeliveryStats stats = new DeliveryStats(16);
+		for (int i = 0; i < 100; i++)
+			stats.onSample(i * PERIOD, i * PERIOD);
+		assertEquals(100, stats.getCount());
+		assertEquals(200.0, stats.getRate(), 1e-9);
+		assertEquals(PERIOD, stats.getIntervalPercentile(0.5));
+
+		stats.reset();
+		assertEquals(0, stats.getCount());
+		assertEquals(-1, stats.getIntervalPercentile(0.5));
+		assertTrue(Double.isNaN(stats.getRate()));
+		StringBuilder report = new StringBuilder();
+		stats.appendReport(report);
+		assertTrue(report.toString(), report.toString().contains(" interval_us=-/-/-/- "));
+	}
+}
@@ -0,0 +1,117 @@
+package de.pirsoft.acceltest;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Runs the decoder against a stand-in for the sensor HAL, writing the same
+ * binary layout into a plain array.
+ */
+public class DirectReportDecoderTest {
+	private static final int SLOTS = 8;
+
+	private static class FakeWriter implements DirectReportDecoder.RingSource {
+		final ByteBuffer ring = ByteBuffer.allocate(SLOTS * DirectReportDecoder.REPORT_SIZE)
+			.order(ByteOrder.LITTLE_ENDIAN);
+		int slot = 0;
+		int counter = 1;
+
+		void write(int type, long timestamp, float value) {
+			int base = slot * DirectReportDecoder.REPORT_SIZE;
+			ring.putInt(base, DirectReportDecoder.REPORT_SIZE);
+			ring.putInt(base + 4, 42);
+			ring.putInt(base + 8, type);
+			ring.putLong(base + 16, timestamp);
+			for (int i = 0; i < DirectReportDecoder.VALUE_COUNT; i++)
+				ring.putFloat(base + 24 + i * 4, value + i);
+			//the counter is written last, like the HAL does
+			ring.putInt(base + 12, counter++);
+			slot = (slot + 1) % SLOTS;
+		}
+
+		@Override
+		public void read(int offset, byte[] dst, int count) {
+			System.arraycopy(ring.array(), offset, dst, 0, count);
+		}
+	}
+
+	private static class Collector implements SampleSink {
+		int count = 0;
+		long firstTimestamp = -1;
+		long lastTimestamp = -1;
+		float lastValue0;
+		float lastValue15;
+		int lastType;
+
+		@Override
+		public void onSample(int sensorType, long timestamp, float[] values) {
+			if (count++ == 0)
+				firstTimestamp = timestamp;
+			lastType = sensorType;
+			lastTimestamp = timestamp;
+			lastValue0 = values[0];
+			lastValue15 = values[15];
+		}
+	}
+
+	@Test
+	public void decodesReportsInOrder() throws IOException {
+		FakeWriter writer = new FakeWriter();
+		DirectReportDecoder decoder = new DirectReportDecoder(writer.ring.capacity());
+		Collector sink = new Collector();
+
+		assertEquals(0, decoder.poll(writer, sink));
+
+		writer.write(1, 1000L, 0.5f);
+		writer.write(11, 2000L, 1.5f);
+		assertEquals(2, decoder.poll(writer, sink));
+		assertEquals(11, sink.lastType);
+		assertEquals(2000L, sink.lastTimestamp);
+		assertEquals(1.5f, sink.lastValue0, 0.f);
+		assertEquals(16.5f, sink.lastValue15, 0.f);
+
+		assertEquals(0, decoder.poll(writer, sink));
+	}
+
+	@Test
+	public void followsTheWriterAroundTheRing() throws IOException {
+		FakeWriter writer = new FakeWriter();
+		DirectReportDecoder decoder = new DirectReportDecoder(writer.ring.capacity());
+		Collector sink = new Collector();
+
+		for (int round = 0; round < 5; round++) {
+			for (int i = 0; i < SLOTS - 1; i++)
+				writer.write(1, round * 100 + i, i);
+			assertEquals(SLOTS - 1, decoder.poll(writer, sink));
+			assertEquals(round * 100 + SLOTS - 2, sink.lastTimestamp);
+		}
+		assertEquals(5 * (SLOTS - 1), sink.count);
+		assertEquals(0, decoder.lostCount());
+	}
+
+	@Test
+	public void countsReportsLostToOverrun() throws IOException {
+		FakeWriter writer = new FakeWriter();
+		DirectReportDecoder decoder = new DirectReportDecoder(writer.ring.capacity());
+		Collector sink = new Collector();
+
+		for (int i = 0; i < SLOTS + 3; i++)
+			writer.write(1, i, i);
+		//the reader resyncs on the oldest report still in the ring, only the
+		//first 3 were overwritten
+		int decoded = decoder.poll(writer, sink);
+		assertEquals(SLOTS, decoded);
+		assertEquals(3, decoder.lostCount());
+		assertEquals(3, sink.firstTimestamp);
+		assertEquals(SLOTS + 2, sink.lastTimestamp);
+
+		writer.write(1, 100, 0);
+		assertEquals(1, decoder.poll(writer, sink));
+		assertEquals(100, sink.lastTimestamp);
+	}
+}
@@ -0,0 +1,72 @@
+package de.pirsoft.acceltest;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class EventLogTest {
+	private final int[] types = new int[16];
+	private final long[] times = new long[16];
+	private final float[] peaks = new float[16];
+	private final long[] durations = new long[16];
+
+	@Test
+	public void readsEachEntryOnce() {
+		EventLog log = new EventLog(8);
+		log.add(1, 100, 1.5f, 10);
+		log.add(2, 200, 2.5f, 20);
+		assertEquals(2, log.read(types, times, peaks, durations));
+		assertEquals(1, types[0]);
+		assertEquals(200, times[1]);
+		assertEquals(2.5f, peaks[1], 0);
+		assertEquals(20, durations[1]);
+		assertEquals(0, log.read(types, times, peaks, durations));
+		log.add(3, 300, 3.5f, 30);
+		assertEquals(1, log.read(types, times, peaks, durations));
+		assertEquals(300, times[0]);
+		assertEquals(0, log.getLost());
+	}
+
+	@Test
+	public void overwritesOldestWhenFull() {
+		EventLog log = new EventLog(4);
+		for (int i = 0; i < 10; i++)
+			log.add(1, i, i, i);
+		assertEquals(4, log.read(types, times, peaks, durations));
+		assertEquals(6, times[0]);
+		assertEquals(9, times[3]);
+		assertEquals(6, log.getLost());
+		assertEquals(10, log.getWritten());
+	}
+
+	@Test
+	public void concurrentReaderSeesConsistentEntries() throws InterruptedException {
+		final EventLog log = new EventLog(32);
+		final int total = 2000000;
+		Thread writer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				for (int i = 1; i <= total; i++)
+					log.add(i & 0xffff, i, i, i);
+			}
+		});
+		writer.start();
+		long last = 0;
+		long read = 0;
+		while (writer.isAlive() || log.getWritten() > read + log.getLost()) {
+			int n = log.read(types, times, peaks, durations);
+			for (int i = 0; i < n; i++) {
+				//all fields of an entry come from the same write, in order
+				assertTrue(times[i] > last);
+				assertEquals(times[i], durations[i]);
+				assertEquals((float) times[i], peaks[i], 0);
+				assertEquals(times[i] & 0xffff, types[i]);
+				last = times[i];
+			}
+			read += n;
+		}
+		writer.join();
+		assertEquals(total, read + log.getLost());
+	}
+}
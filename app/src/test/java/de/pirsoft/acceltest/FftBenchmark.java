@@ -0,0 +1,73 @@
+package de.pirsoft.acceltest;
+
+import java.util.Random;
+
+/**
+ * Cost of the spectrum analyzer for transform sizes 256 to 8192: time per
+ * transform, and the share of one core it takes at a given accelerometer
+ * rate with a hop of a quarter window.
+ *
+ * Not a unit test, run main() manually, optionally with the sample rate
+ * in Hz as argument (default 500).
+ */
+public class FftBenchmark {
+	private static final int ROUNDS = 5;
+	private static final long MIN_ROUND_NS = 200000000L;
+	private static final int TYPE_ACCELEROMETER = 1;
+
+	public static void main(String[] args) {
+		double rate = args.length > 0 ? Double.parseDouble(args[0]) : 500;
+		Random rnd = new Random(42);
+		for (int size = 256; size <= 8192; size *= 2) {
+			Fft fft = new Fft(size);
+			float[] re = new float[size];
+			float[] im = new float[size];
+			float[] source = new float[size];
+			for (int i = 0; i < size; i++)
+				source[i] = (float) rnd.nextGaussian();
+
+			double best = Double.MAX_VALUE;
+			for (int round = 0; round < ROUNDS; round++) {
+				long start = System.nanoTime();
+				long n = 0;
+				long elapsed;
+				do {
+					System.arraycopy(source, 0, re, 0, size);
+					System.arraycopy(source, 0, im, 0, size);
+					fft.transform(re, im);
+					n++;
+					elapsed = System.nanoTime() - start;
+				} while (elapsed < MIN_ROUND_NS);
+				best = Math.min(best, (double) elapsed / n);
+			}
+
+			//the whole analyzer, two transforms plus windowing and averaging per hop
+			SpectrumAnalyzer analyzer = new SpectrumAnalyzer(size, size / 4, SpectrumAnalyzer.WINDOW_HANN, 8);
+			float[] v = new float[3];
+			long samples = 0;
+			double perSample = Double.MAX_VALUE;
+			for (int round = 0; round < ROUNDS; round++) {
+				long start = System.nanoTime();
+				long n = 0;
+				long elapsed;
+				//a whole window, four hops, per clock read
+				do {
+					for (int i = 0; i < size; i++) {
+						v[0] = source[i];
+						v[1] = -v[0];
+						v[2] = 9.81f + v[0];
+						analyzer.onSample(TYPE_ACCELEROMETER, samples * 2000000L, v);
+						samples++;
+					}
+					n += size;
+					elapsed = System.nanoTime() - start;
+				} while (elapsed < MIN_ROUND_NS);
+				perSample = Math.min(perSample, (double) elapsed / n);
+			}
+
+			System.out.printf("size %5d: fft %8.1f us (%.2f ns/(n log n)), analyzer %6.1f ns/sample, %.3f%% of a core at %.0f Hz%n",
+				size, best / 1000, best / (size * (Math.log(size) / Math.log(2))),
+				perSample, perSample * rate / 1e7, rate);
+		}
+	}
+}
@@ -0,0 +1,42 @@
+package de.pirsoft.acceltest;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class FftTest {
+	@Test
+	public void matchesNaiveDft() {
+		for (int size = 2; size <= 512; size *= 2) {
+			Random rnd = new Random(size);
+			float[] re = new float[size];
+			float[] im = new float[size];
+			for (int i = 0; i < size; i++) {
+				re[i] = (float) rnd.nextGaussian();
+				im[i] = (float) rnd.nextGaussian();
+			}
+			double[] expectedRe = new double[size];
+			double[] expectedIm = new double[size];
+			for (int k = 0; k < size; k++) {
+				for (int n = 0; n < size; n++) {
+					double a = -2 * Math.PI * k * n / size;
+					expectedRe[k] += re[n] * Math.cos(a) - im[n] * Math.sin(a);
+					expectedIm[k] += re[n] * Math.sin(a) + im[n] * Math.cos(a);
+				}
+			}
+			new Fft(size).transform(re, im);
+			double tolerance = 1e-4 * size;
+			for (int k = 0; k < size; k++) {
+				assertEquals("size " + size + " bin " + k, expectedRe[k], re[k], tolerance);
+				assertEquals("size " + size + " bin " + k, expectedIm[k], im[k], tolerance);
+			}
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsOtherSizes() {
+		new Fft(1000);
+	}
+}
@@ -0,0 +1,99 @@
+package de.pirsoft.acceltest;
+
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class GlResourcesTest {
+	/** Gles stub that records calls with their int arguments. */
+	private static class CallRecorder implements InvocationHandler {
+		final List<String> calls = new ArrayList<>();
+		final List<Integer> bufferSizes = new ArrayList<>();
+		int nextName = 1;
+
+		Gles gles() {
+			return (Gles) Proxy.newProxyInstance(Gles.class.getClassLoader(),
+				new Class<?>[] { Gles.class }, this);
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) {
+			String name = method.getName();
+			if (name.startsWith("glGen")) {
+				calls.add(name + " " + args[0]);
+				int[] names = (int[]) args[1];
+				for (int i = 0; i < (Integer) args[0]; i++)
+					names[(Integer) args[2] + i] = nextName++;
+			} else {
+				calls.add(name);
+			}
+			if (name.equals("glBufferData"))
+				bufferSizes.add((Integer) args[1]);
+			if (method.getReturnType() == int.class)
+				return nextName++;
+			return null;
+		}
+	}
+
+	@Test
+	public void preparedCopiesAreReleasedAfterUpload() {
+		GlResources resources = new GlResources(null);
+		CubeSphereMesh built = CubeSphereMesh.forCubeMap(10);
+		GlResources.Mesh mesh = resources.addMesh(10, true, built);
+		//arrays plus their direct copies
+		assertEquals((built.floatAttribs.length * 4 + built.drawOrder.length * 2) * 2, resources.getCpuBytes());
+
+		resources.createAll(new CallRecorder().gles());
+		assertEquals(0, resources.getCpuBytes());
+		assertEquals(built.floatAttribs.length * 4 + built.drawOrder.length * 2, resources.getGpuBytes());
+		assertEquals(built.drawOrder.length, mesh.indexCount);
+		assertEquals(CubeSphereMesh.CUBEMAP_FLOATSTRIDE, mesh.stride);
+	}
+
+	@Test
+	public void contextLossRebuildsFromRecipes() {
+		GlResources resources = new GlResources(null);
+		GlResources.Mesh cubeMap = resources.addMesh(10, true, CubeSphereMesh.forCubeMap(10));
+		GlResources.Mesh textured = resources.addMesh(4, false, null);
+		GlResources.Program program = Sphere.addProgram(resources, true);
+		resources.addProgram("v", "f");
+
+		CallRecorder first = new CallRecorder();
+		resources.createAll(first.gles());
+		int firstBuffer = cubeMap.vertexBuffer;
+		int firstProgram = program.name;
+
+		CallRecorder second = new CallRecorder();
+		second.nextName = 100;
+		resources.createAll(second.gles());
+		assertEquals(2, resources.getPasses());
+		//same uploads, new names
+		assertEquals(first.bufferSizes, second.bufferSizes);
+		assertEquals(first.calls, second.calls);
+		assertTrue(firstBuffer != cubeMap.vertexBuffer);
+		assertTrue(firstProgram != program.name);
+		assertEquals(new CubeSphereMesh(4).drawOrder.length, textured.indexCount);
+
+		//one name call for all buffers, every shader compiled before the first link
+		assertEquals(1, count(second.calls, "glGenBuffers 4"));
+		assertEquals(0, count(second.calls, "glGenBuffers 1"));
+		assertEquals(4, count(second.calls, "glCompileShader"));
+		assertTrue(second.calls.lastIndexOf("glCompileShader") < second.calls.indexOf("glLinkProgram"));
+		assertEquals(4, count(second.calls, "glDeleteShader"));
+	}
+
+	private static int count(List<String> calls, String call) {
+		int n = 0;
+		for (String c : calls)
+			if (c.equals(call))
+				n++;
+		return n;
+	}
+}
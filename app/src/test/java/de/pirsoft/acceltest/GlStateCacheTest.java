@@ -0,0 +1,118 @@
+package de.pirsoft.acceltest;
+
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class GlStateCacheTest {
+	/** Gles stub that records the names of the calls reaching it. */
+	private static class CallRecorder implements InvocationHandler {
+		final List<String> calls = new ArrayList<>();
+		int nextName = 1;
+
+		Gles gles() {
+			return (Gles) Proxy.newProxyInstance(Gles.class.getClassLoader(),
+				new Class<?>[] { Gles.class }, this);
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) {
+			calls.add(method.getName());
+			if (method.getName().startsWith("glGen")) {
+				int[] names = (int[]) args[1];
+				for (int i = 0; i < (Integer) args[0]; i++)
+					names[(Integer) args[2] + i] = nextName++;
+			}
+			if (method.getReturnType() == int.class)
+				return nextName++;
+			return null;
+		}
+	}
+
+	private static final float[] MVP = new float[16];
+
+	/** Textured navball, the texture left without an image. */
+	private static Sphere sphere(Gles gl, boolean useVertexArrayObject) {
+		GlResources resources = new GlResources(null);
+		GlResources.Mesh mesh = resources.addMesh(10, false, null);
+		GlResources.Texture texture = resources.addTexture(android.opengl.GLES20.GL_TEXTURE_2D, new int[0], null);
+		GlResources.Program program = Sphere.addProgram(resources, false);
+		resources.createAll(gl);
+		return new Sphere(gl, mesh, texture, program, useVertexArrayObject);
+	}
+
+	private static int drawCalls(CallRecorder recorder, Sphere sphere) {
+		recorder.calls.clear();
+		sphere.draw(MVP);
+		return recorder.calls.size();
+	}
+
+	@Test
+	public void secondFrameOnlyIssuesChangedState() {
+		CallRecorder uncached = new CallRecorder();
+		Sphere reference = sphere(uncached.gles(), false);
+		int uncachedCalls = drawCalls(uncached, reference);
+
+		CallRecorder recorder = new CallRecorder();
+		GlStateCache cache = new GlStateCache(recorder.gles());
+		Sphere sphere = sphere(cache, false);
+		int first = drawCalls(recorder, sphere);
+		cache.resetCounters();
+		int second = drawCalls(recorder, sphere);
+
+		assertEquals(uncachedCalls, first);
+		//only the matrix upload and the draw remain
+		assertEquals(2, second);
+		assertEquals("glUniformMatrix4fv", recorder.calls.get(0));
+		assertEquals("glDrawElements", recorder.calls.get(1));
+		assertEquals(2, cache.issuedCalls());
+		assertEquals(uncachedCalls - 2, cache.skippedCalls());
+	}
+
+	@Test
+	public void vertexArrayObjectReplacesAttributeSetup() {
+		CallRecorder recorder = new CallRecorder();
+		Sphere sphere = sphere(recorder.gles(), true);
+		drawCalls(recorder, sphere);
+		assertTrue(recorder.calls.contains("glBindVertexArray"));
+		assertTrue(!recorder.calls.contains("glVertexAttribPointer"));
+		assertTrue(!recorder.calls.contains("glEnableVertexAttribArray"));
+	}
+
+	@Test
+	public void invalidateForgetsState() {
+		CallRecorder recorder = new CallRecorder();
+		GlStateCache cache = new GlStateCache(recorder.gles());
+		cache.glUseProgram(3);
+		cache.glUseProgram(3);
+		cache.glBindBuffer(android.opengl.GLES20.GL_ARRAY_BUFFER, 5);
+		cache.glBindBuffer(android.opengl.GLES20.GL_ARRAY_BUFFER, 5);
+		assertEquals(2, recorder.calls.size());
+
+		cache.invalidate();
+		cache.glUseProgram(3);
+		cache.glBindBuffer(android.opengl.GLES20.GL_ARRAY_BUFFER, 5);
+		assertEquals(4, recorder.calls.size());
+	}
+
+	@Test
+	public void uniformsAreTrackedPerProgram() {
+		CallRecorder recorder = new CallRecorder();
+		GlStateCache cache = new GlStateCache(recorder.gles());
+		cache.glUseProgram(1);
+		cache.glUniform1i(7, 0);
+		cache.glUseProgram(2);
+		cache.glUniform1i(7, 0);
+		cache.glUseProgram(1);
+		cache.glUniform1i(7, 0);
+		cache.glUniform1i(7, 1);
+		assertEquals(6, recorder.calls.size());
+	}
+}
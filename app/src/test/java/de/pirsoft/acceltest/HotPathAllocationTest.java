@@ -0,0 +1,285 @@
+package de.pirsoft.acceltest;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Keeps the per-sample and per-frame code paths free of allocations, so a
+ * stray boxing or temporary array breaks the build instead of causing GC
+ * jank on devices.
+ */
+public class HotPathAllocationTest {
+	private static final int TYPE_ACCELEROMETER = 1;
+	private static final int TYPE_GYROSCOPE = 4;
+	private static final int TYPE_ROTATION_VECTOR = 11;
+
+	@Before
+	public void checkSupport() {
+		assumeTrue(AllocationHarness.isSupported());
+	}
+
+	@Test
+	public void harnessCatchesBoxing() {
+		final Object[] sink = new Object[1];
+		try {
+			AllocationHarness.assertAllocationFree("boxing", new Runnable() {
+				long time = 1000;
+
+				@Override
+				public void run() {
+					//out of the Long cache, and escapes so it cannot be scalar replaced
+					sink[0] = time++;
+				}
+			});
+		} catch (AssertionError e) {
+			return;
+		}
+		fail("boxing was not caught");
+	}
+
+	@Test
+	public void onSensorChanged() {
+		//the same fan-out as MainActivity.mSensorSink with every feature on
+		final BallSimulation sim = new BallSimulation();
+		final PosePredictor predictor = new PosePredictor();
+		final SpectrumAnalyzer spectrum = new SpectrumAnalyzer(1024, 256, SpectrumAnalyzer.WINDOW_HANN, 8);
+		final ShockDetector detector = new ShockDetector(new EventLog(64));
+		final StreamServer server = new StreamServer(0, null);
+		final ScopeHistory scope = new ScopeHistory(TYPE_ACCELEROMETER, 1024, 10000000L);
+		final SampleSink sink = new SampleSink() {
+			float gForce;
+
+			@Override
+			public void onSample(int sensorType, long timestamp, float[] values) {
+				sim.onSample(sensorType, timestamp, values);
+				predictor.onSample(sensorType, timestamp, values);
+				spectrum.onSample(sensorType, timestamp, values);
+				detector.onSample(sensorType, timestamp, values);
+				server.onSample(sensorType, timestamp, values);
+				scope.onSample(sensorType, timestamp, values);
+				if (sensorType == TYPE_ACCELEROMETER)
+					gForce = (float) Math.sqrt(values[0] * values[0] + values[1] * values[1]
+						+ values[2] * values[2]) / 9.80665f;
+			}
+		};
+		final float[] values = {0.1f, 9.7f, 0.3f, 0.f, 0.f};
+		final float[] rotation = {0.1f, 0.2f, 0.3f};
+		final float[] gyro = {0.5f, 0.1f, 0.f};
+		AllocationHarness.assertAllocationFree("MainActivity.mSensorSink", new Runnable() {
+			long time = 0;
+
+			@Override
+			public void run() {
+				//every sample waits for the next rotation and gets slerped
+				time += 2500000;
+				values[0] = -values[0];
+				sink.onSample(TYPE_ACCELEROMETER, time, values);
+				time += 2500000;
+				rotation[2] = -rotation[2];
+				sink.onSample(TYPE_ROTATION_VECTOR, time, rotation);
+				time += 2500000;
+				sink.onSample(TYPE_GYROSCOPE, time, gyro);
+			}
+		});
+	}
+
+	@Test
+	public void simulationStep() {
+		final BallSimulation sim = new BallSimulation();
+		final float[] transform = new float[16];
+		sim.onSample(TYPE_ACCELEROMETER, 0, new float[] {0.5f, 9.7f, 0.3f});
+		sim.onSample(TYPE_ROTATION_VECTOR, 0, new float[] {0.1f, 0.2f, 0.3f});
+		final PosePredictor predictor = new PosePredictor();
+		final float[] rotation = new float[4];
+		predictor.onSample(TYPE_ROTATION_VECTOR, 0, new float[] {0.1f, 0.2f, 0.3f});
+		predictor.onSample(TYPE_GYROSCOPE, 0, new float[] {1.0f, 0.5f, 0.f});
+		final NavballTransform navball = new NavballTransform();
+		AllocationHarness.assertAllocationFree("mSimRunnable", new Runnable() {
+			@Override
+			public void run() {
+				sim.step(30, transform);
+				predictor.addLatency(20000000L);
+				if (predictor.predictRotation(predictor.getLatency(), rotation))
+					sim.predictTransform(rotation, predictor.getLatency() * 1e-9f, transform);
+				navball.setTransform(transform);
+			}
+		});
+	}
+
+	@Test
+	public void spectrumAnalyzer() {
+		final SpectrumAnalyzer spectrum = new SpectrumAnalyzer(256, 64, SpectrumAnalyzer.WINDOW_HANN, 8);
+		final float[] values = {0.1f, 9.7f, 0.3f};
+		AllocationHarness.assertAllocationFree("SpectrumAnalyzer.onSample", new Runnable() {
+			long time = 0;
+
+			@Override
+			public void run() {
+				//enough samples for a transform on every run
+				for (int i = 0; i < 256; i++) {
+					time += 2500000;
+					values[0] = -values[0];
+					spectrum.onSample(TYPE_ACCELEROMETER, time, values);
+				}
+			}
+		});
+	}
+
+	@Test
+	public void shockDetector() {
+		final ShockDetector detector = new ShockDetector(new EventLog(16));
+		final float[] values = {0.1f, 9.7f, 0.3f};
+		AllocationHarness.assertAllocationFree("ShockDetector.onSample", new Runnable() {
+			long time = 0;
+
+			@Override
+			public void run() {
+				//alternating shocks and free falls, so every event gets logged
+				for (int i = 0; i < 200; i++) {
+					time += 2500000;
+					values[1] = i < 50 ? 40.0f : i < 100 ? 9.7f : i < 150 ? 0.0f : 9.7f;
+					detector.onSample(TYPE_ACCELEROMETER, time, values);
+				}
+			}
+		});
+	}
+
+	@Test
+	public void hudText() {
+		final HudText text = new HudText(Hud.MAX_GLYPHS);
+		AllocationHarness.assertAllocationFree("HudText formatting", new Runnable() {
+			float fps = 58.3f;
+
+			@Override
+			public void run() {
+				fps += 0.1f;
+				text.clear()
+					.append("FPS ").append(fps, 1)
+					.append("\nLAT ").append(23456789L / 1e6f, 1).append("ms")
+					.append("\nACC ").append(401.7f, 0).append("Hz")
+					.append("\nG   ").append(-1.02f, 2);
+			}
+		});
+	}
+
+	@Test
+	public void poseRing() {
+		final PoseRing ring = new PoseRing(16);
+		final PoseRing.Subscriber blocking = ring.subscribe(PoseRing.POLICY_BLOCK);
+		final PoseRing.Subscriber sampling = ring.subscribe(PoseRing.POLICY_SAMPLE);
+		final float[] transform = new float[PoseRing.FLOATS];
+		final float[] out = new float[PoseRing.FLOATS];
+		AllocationHarness.assertAllocationFree("PoseRing publish and poll", new Runnable() {
+			long time = 0;
+
+			@Override
+			public void run() {
+				ring.tryPublish(time += 15000000, transform);
+				blocking.poll(out);
+				sampling.poll(out);
+			}
+		});
+	}
+
+	@Test
+	public void drawFrameMatrices() {
+		final NavballTransform navball = new NavballTransform();
+		final float[] viewProjection = new float[16];
+		final float[] mvp = new float[16];
+		Mat4.setIdentityM(viewProjection);
+		AllocationHarness.assertAllocationFree("onDrawFrame transform", new Runnable() {
+			@Override
+			public void run() {
+				navball.getMvp(viewProjection, mvp);
+			}
+		});
+	}
+
+	@Test
+	public void drawFrame() {
+		final RecordingGles gl = new RecordingGles(true, false);
+		final MyGLRenderer renderer = new MyGLRenderer(null, gl, true, false);
+		renderer.onSurfaceCreated(null, null);
+		renderer.onSurfaceChanged(null, 1080, 1920);
+		AllocationHarness.assertAllocationFree("MyGLRenderer.onDrawFrame", new Runnable() {
+			@Override
+			public void run() {
+				gl.reset();
+				renderer.onDrawFrame(null);
+			}
+		});
+	}
+
+	@Test
+	public void drawFrameWithScope() {
+		final RecordingGles gl = new RecordingGles(true, false);
+		final ScopeHistory history = new ScopeHistory(1, 1024, 1000000L);
+		final MyGLRenderer renderer = new MyGLRenderer(null, gl, true, false);
+		renderer.setScope(history);
+		renderer.onSurfaceCreated(null, null);
+		renderer.onSurfaceChanged(null, 1080, 1920);
+		final float[] values = { 0.1f, 9.7f, 0.3f };
+		AllocationHarness.assertAllocationFree("MyGLRenderer.onDrawFrame with scope", new Runnable() {
+			long time = 0;
+
+			@Override
+			public void run() {
+				//about a frame of 400Hz samples, and a wrap every 1024 columns
+				for (int i = 0; i < 7; i++)
+					history.onSample(1, time += 2500000L, values);
+				gl.reset();
+				renderer.onDrawFrame(null);
+			}
+		});
+	}
+
+	@Test
+	public void directChannelPoll() {
+		final DirectReportDecoder decoder = new DirectReportDecoder(64 * DirectReportDecoder.REPORT_SIZE);
+		final BallSimulation sim = new BallSimulation();
+		final byte[] ring = new byte[64 * DirectReportDecoder.REPORT_SIZE];
+		final DirectReportDecoder.RingSource source = new DirectReportDecoder.RingSource() {
+			int counter = 1;
+
+			@Override
+			public void read(int offset, byte[] dst, int count) {
+				//pretend the writer is always one report ahead of the reader
+				int slot = offset / DirectReportDecoder.REPORT_SIZE;
+				int base = slot * DirectReportDecoder.REPORT_SIZE;
+				if (ring[base + 12] == 0 || readCounter(ring, base) < counter) {
+					ring[base] = (byte) DirectReportDecoder.REPORT_SIZE;
+					ring[base + 8] = TYPE_ACCELEROMETER;
+					writeCounter(ring, base, counter++);
+				}
+				System.arraycopy(ring, offset, dst, 0, count);
+			}
+		};
+		AllocationHarness.assertAllocationFree("DirectReportDecoder.poll", new Runnable() {
+			@Override
+			public void run() {
+				try {
+					decoder.poll(source, sim);
+				} catch (IOException e) {
+					throw new AssertionError(e);
+				}
+			}
+		});
+	}
+
+	private static int readCounter(byte[] b, int base) {
+		return (b[base + 12] & 0xff) | (b[base + 13] & 0xff) << 8
+			| (b[base + 14] & 0xff) << 16 | (b[base + 15] & 0xff) << 24;
+	}
+
+	private static void writeCounter(byte[] b, int base, int counter) {
+		b[base + 12] = (byte) counter;
+		b[base + 13] = (byte) (counter >> 8);
+		b[base + 14] = (byte) (counter >> 16);
+		b[base + 15] = (byte) (counter >> 24);
+	}
+}
@@ -0,0 +1,99 @@
+package de.pirsoft.acceltest;
+
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HudTest {
+	private static class CallRecorder implements InvocationHandler {
+		final List<String> calls = new ArrayList<>();
+		int nextName = 1;
+
+		Gles gles() {
+			return (Gles) Proxy.newProxyInstance(Gles.class.getClassLoader(),
+				new Class<?>[] { Gles.class }, this);
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) {
+			calls.add(method.getName());
+			if (method.getName().startsWith("glGen")) {
+				int[] names = (int[]) args[1];
+				for (int i = 0; i < (Integer) args[0]; i++)
+					names[(Integer) args[2] + i] = nextName++;
+			}
+			if (method.getReturnType() == int.class)
+				return nextName++;
+			return null;
+		}
+	}
+
+	private static Hud hud(CallRecorder recorder) {
+		GlResources resources = new GlResources(null);
+		GlResources.Texture atlas = resources.addTexture(android.opengl.GLES20.GL_TEXTURE_2D, new int[0], null);
+		GlResources.Program program = Hud.addProgram(resources);
+		resources.createAll(recorder.gles());
+		return new Hud(recorder.gles(), atlas, program, true, false);
+	}
+
+	@Test
+	public void allTextInOneDrawCall() {
+		CallRecorder recorder = new CallRecorder();
+		Hud hud = hud(recorder);
+		HudText text = new HudText(Hud.MAX_GLYPHS);
+		text.append("FPS ").append(60.0f, 1).append("\nLAT ").append(21.5f, 1).append("ms");
+		recorder.calls.clear();
+		hud.draw(text, 1080, 1920, 0, 48);
+		int draws = 0;
+		int uploads = 0;
+		for (String call : recorder.calls) {
+			if (call.startsWith("glDraw"))
+				draws++;
+			if (call.equals("glBufferData") || call.equals("glBufferSubData"))
+				uploads++;
+		}
+		assertEquals(1, draws);
+		assertEquals(1, uploads);
+		//the depth test is back on afterwards, blending off
+		assertEquals("glEnable", recorder.calls.get(recorder.calls.size() - 1));
+	}
+
+	@Test
+	public void layoutInPixels() {
+		Hud hud = hud(new CallRecorder());
+		HudText text = new HudText(16).append("A B\nC");
+		//spaces take room but no quad
+		assertEquals(3, hud.layout(text, 200, 400, 0, 40));
+		float[] v = hud.getVertices();
+		//first vertex: bottom left of 'A', 20px margin, 20x40 cell
+		assertEquals(20 * 2.0f / 200 - 1, v[0], 1e-6f);
+		assertEquals(1 - 60 * 2.0f / 400, v[1], 1e-6f);
+		assertEquals((float) ('A' % Hud.COLUMNS) / Hud.COLUMNS, v[2], 1e-6f);
+		assertEquals((float) ('A' / Hud.COLUMNS + 1) / Hud.ROWS, v[3], 1e-6f);
+		//'B' two cells to the right
+		assertEquals(60 * 2.0f / 200 - 1, v[24], 1e-6f);
+		//'C' on the next line
+		assertEquals(20 * 2.0f / 200 - 1, v[48], 1e-6f);
+		assertEquals(1 - 100 * 2.0f / 400, v[49], 1e-6f);
+		//counter clockwise
+		float cross = (v[4] - v[0]) * (v[9] - v[1]) - (v[5] - v[1]) * (v[8] - v[0]);
+		assertTrue(cross > 0);
+	}
+
+	@Test
+	public void layoutBelowTop() {
+		Hud hud = hud(new CallRecorder());
+		hud.layout(new HudText(16).append("A"), 200, 400, 100, 40);
+		float[] v = hud.getVertices();
+		//bottom left of 'A' moved down by the 100px kept clear
+		assertEquals(20 * 2.0f / 200 - 1, v[0], 1e-6f);
+		assertEquals(1 - 160 * 2.0f / 400, v[1], 1e-6f);
+	}
+}
@@ -0,0 +1,42 @@
+package de.pirsoft.acceltest;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class HudTextTest {
+	private static String format(float value, int decimals) {
+		return new HudText(32).append(value, decimals).toString();
+	}
+
+	@Test
+	public void formatsLikeStringFormat() {
+		float[] values = { 0, 1, -1, 0.05f, 59.94f, -0.004f, 123456.7f, 9.995f, 0.5f };
+		for (float v : values) {
+			for (int decimals = 0; decimals <= 3; decimals++) {
+				String expected = String.format(java.util.Locale.US, "%." + decimals + "f", (double) v);
+				if (expected.matches("-0(\\.0*)?"))
+					expected = expected.substring(1);
+				assertEquals(v + " " + decimals, expected, format(v, decimals));
+			}
+		}
+		assertEquals("-", format(Float.NaN, 1));
+		assertEquals("-", format(Float.POSITIVE_INFINITY, 1));
+	}
+
+	@Test
+	public void appendsIntegers() {
+		HudText text = new HudText(64);
+		text.append(0L).append(' ').append(-42L).append(' ').append(Long.MIN_VALUE);
+		assertEquals("0 -42 -9223372036854775808", text.toString());
+	}
+
+	@Test
+	public void dropsWhatDoesNotFit() {
+		HudText text = new HudText(6);
+		text.append("FPS ").append(59.9f, 1);
+		assertEquals("FPS 59", text.toString());
+		text.clear().append("G");
+		assertEquals("G", text.toString());
+	}
+}
@@ -0,0 +1,159 @@
+package de.pirsoft.acceltest;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Replays a recorded trace of a fast swinging rotation and compares the
+ * predicted pose against the true pose one horizon later.
+ */
+public class PosePredictorTest {
+	private static final int TYPE_GYROSCOPE = 4;
+	private static final int TYPE_ROTATION_VECTOR = 11;
+	private static final long START = 1000000000L;
+	private static final long HORIZON = 50000000L;
+	//swing around a tilted axis, peaks at about 11 rad/s
+	private static final double AMPLITUDE = 1.2;
+	private static final double FREQUENCY = 1.5;
+	private static final double[] AXIS = { 0.6, 0.0, 0.8 };
+	private static final double[] BASE = { Math.sin(0.2), 0, 0, Math.cos(0.2) };
+
+	private static double angle(long t) {
+		return AMPLITUDE * Math.sin(2 * Math.PI * FREQUENCY * (t - START) * 1e-9);
+	}
+
+	private static double rate(long t) {
+		return AMPLITUDE * 2 * Math.PI * FREQUENCY * Math.cos(2 * Math.PI * FREQUENCY * (t - START) * 1e-9);
+	}
+
+	private static double[] multiply(double[] a, double[] b) {
+		return new double[] {
+			a[3] * b[0] + a[0] * b[3] + a[1] * b[2] - a[2] * b[1],
+			a[3] * b[1] - a[0] * b[2] + a[1] * b[3] + a[2] * b[0],
+			a[3] * b[2] + a[0] * b[1] - a[1] * b[0] + a[2] * b[3],
+			a[3] * b[3] - a[0] * b[0] - a[1] * b[1] - a[2] * b[2] };
+	}
+
+	/** True rotation, x, y, z, w. */
+	private static double[] truth(long t) {
+		double half = angle(t) / 2;
+		double s = Math.sin(half);
+		return multiply(BASE, new double[] { AXIS[0] * s, AXIS[1] * s, AXIS[2] * s, Math.cos(half) });
+	}
+
+	private static double error(float[] q, double[] expected) {
+		double dot = Math.abs(q[0] * expected[0] + q[1] * expected[1] + q[2] * expected[2] + q[3] * expected[3]);
+		return 2 * Math.acos(Math.min(1, dot));
+	}
+
+	/** Rotation vector at 100Hz, noisy gyroscope at 200Hz, through the trace codec. */
+	private static byte[] record(long duration) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		TraceEncoder encoder = new TraceEncoder(Channels.newChannel(bytes));
+		Random noise = new Random(3);
+		float[] v = new float[3];
+		for (long t = START; t < START + duration; t += 5000000) {
+			double r = rate(t);
+			for (int i = 0; i < 3; i++)
+				v[i] = (float) (AXIS[i] * r + noise.nextGaussian() * 0.02);
+			encoder.write(TYPE_GYROSCOPE, t, v);
+			if ((t - START) % 10000000 == 0) {
+				double[] q = truth(t);
+				for (int i = 0; i < 3; i++)
+					v[i] = (float) q[i];
+				encoder.write(TYPE_ROTATION_VECTOR, t, v);
+			}
+		}
+		encoder.close();
+		return bytes.toByteArray();
+	}
+
+	private static class Replay implements SampleSink {
+		final PosePredictor predictor = new PosePredictor();
+		final float[] predicted = new float[4];
+		final float[] stale = new float[4];
+		double predictedError = 0;
+		double staleError = 0;
+		int count = 0;
+
+		@Override
+		public void onSample(int sensorType, long timestamp, float[] values) {
+			predictor.onSample(sensorType, timestamp, values);
+			if (sensorType != TYPE_ROTATION_VECTOR)
+				return;
+			double[] expected = truth(timestamp + HORIZON);
+			assertTrue(predictor.predictRotation(timestamp + HORIZON, predicted));
+			assertTrue(predictor.predictRotation(timestamp, stale));
+			predictedError += error(predicted, expected);
+			staleError += error(stale, expected);
+			count++;
+		}
+	}
+
+	@Test
+	public void predictionReducesLagOnRecordedTrace() throws IOException {
+		Replay replay = new Replay();
+		new TraceDecoder(Channels.newChannel(new ByteArrayInputStream(record(4000000000L)))).readAll(replay);
+		assertEquals(400, replay.count);
+		double predicted = replay.predictedError / replay.count;
+		double stale = replay.staleError / replay.count;
+		//about 0.35 rad behind on average without prediction
+		assertTrue("stale " + stale, stale > 0.2);
+		assertTrue("predicted " + predicted + " stale " + stale, predicted < stale * 0.25);
+	}
+
+	@Test
+	public void withoutGyroscopeReturnsLastRotation() {
+		PosePredictor predictor = new PosePredictor();
+		float[] out = new float[4];
+		assertFalse(predictor.predictRotation(START, out));
+		predictor.onSample(TYPE_ROTATION_VECTOR, START, new float[] { 0.1f, 0.2f, 0.3f });
+		assertTrue(predictor.predictRotation(START + HORIZON, out));
+		assertEquals(0.1f, out[0], 0);
+		assertEquals(0.2f, out[1], 0);
+		assertEquals(0.3f, out[2], 0);
+		assertEquals((float) Math.sqrt(1 - 0.01 - 0.04 - 0.09), out[3], 1e-6f);
+
+		//a rate from long before the rotation is not used either
+		predictor.onSample(TYPE_GYROSCOPE, START - 1000000000L, new float[] { 5, 0, 0 });
+		predictor.onSample(TYPE_ROTATION_VECTOR, START, new float[] { 0.1f, 0.2f, 0.3f });
+		assertTrue(predictor.predictRotation(START + HORIZON, out));
+		assertEquals(0.1f, out[0], 0);
+	}
+
+	@Test
+	public void horizonIsClamped() {
+		PosePredictor predictor = new PosePredictor();
+		predictor.onSample(TYPE_ROTATION_VECTOR, START, new float[] { 0, 0, 0, 1 });
+		predictor.onSample(TYPE_GYROSCOPE, START, new float[] { 0, 0, 2 });
+		float[] far = new float[4];
+		float[] limit = new float[4];
+		predictor.predictRotation(START + 10 * PosePredictor.MAX_HORIZON_NS, far);
+		predictor.predictRotation(START + PosePredictor.MAX_HORIZON_NS, limit);
+		for (int i = 0; i < 4; i++)
+			assertEquals(limit[i], far[i], 0);
+		//2 rad/s for 0.1s around z
+		assertEquals(Math.sin(0.1), limit[2], 1e-6);
+		assertEquals(Math.cos(0.1), limit[3], 1e-6);
+	}
+
+	@Test
+	public void latencyIsSmoothedPlusDisplayDelay() {
+		PosePredictor predictor = new PosePredictor();
+		predictor.setDisplayDelay(16000000L);
+		predictor.addLatency(10000000L);
+		assertEquals(26000000L, predictor.getLatency());
+		for (int i = 0; i < 200; i++)
+			predictor.addLatency(i % 2 == 0 ? 18000000L : 22000000L);
+		assertEquals(36000000L, predictor.getLatency(), 500000L);
+	}
+}
@@ -0,0 +1,128 @@
+package de.pirsoft.acceltest;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PoseRingTest {
+	private static float[] pose(int n) {
+		float[] transform = new float[PoseRing.FLOATS];
+		for (int i = 0; i < transform.length; i++)
+			transform[i] = n;
+		return transform;
+	}
+
+	@Test
+	public void subscribersFollowTheirPolicies() {
+		PoseRing ring = new PoseRing(8);
+		PoseRing.Subscriber blocking = ring.subscribe(PoseRing.POLICY_BLOCK);
+		PoseRing.Subscriber oldest = ring.subscribe(PoseRing.POLICY_DROP_OLDEST);
+		PoseRing.Subscriber newest = ring.subscribe(PoseRing.POLICY_SAMPLE);
+		float[] out = new float[PoseRing.FLOATS];
+
+		for (int i = 0; i < 8; i++)
+			assertTrue(ring.tryPublish(i, pose(i)));
+		//the blocking subscriber has not read anything, the ring is full
+		assertFalse(ring.tryPublish(8, pose(8)));
+		assertEquals(1, ring.getStalls());
+		assertEquals(8, blocking.getLag());
+
+		assertTrue(newest.poll(out));
+		assertEquals(7, newest.getTime());
+		assertEquals(7, out[15], 0);
+		assertEquals(7, newest.getDropped());
+		assertFalse(newest.poll(out));
+
+		assertTrue(blocking.poll(out));
+		assertEquals(0, blocking.getTime());
+		//one record read, room for one more
+		assertTrue(ring.tryPublish(8, pose(8)));
+		assertFalse(ring.tryPublish(9, pose(9)));
+		for (int i = 1; i < 9; i++) {
+			assertTrue(blocking.poll(out));
+			assertEquals(i, out[0], 0);
+		}
+		assertEquals(0, blocking.getDropped());
+		assertEquals(8, blocking.getMaxLag());
+
+		//record 0 was overwritten, 1 may be being written over
+		assertTrue(oldest.poll(out));
+		assertEquals(2, oldest.getTime());
+		assertEquals(2, oldest.getDropped());
+		assertEquals(6, oldest.getLag());
+		assertEquals(9, oldest.getMaxLag());
+	}
+
+	@Test
+	public void withoutBlockingSubscribersTheProducerNeverStalls() {
+		PoseRing ring = new PoseRing(4);
+		PoseRing.Subscriber oldest = ring.subscribe(PoseRing.POLICY_DROP_OLDEST);
+		for (int i = 0; i < 100; i++)
+			assertTrue(ring.tryPublish(i, pose(i)));
+		assertEquals(100, ring.getPublished());
+		assertEquals(0, ring.getStalls());
+		float[] out = new float[PoseRing.FLOATS];
+		int read = 0;
+		while (oldest.poll(out))
+			read++;
+		assertEquals(3, read);
+		assertEquals(97, oldest.getDropped());
+	}
+
+	@Test
+	public void concurrentSubscribersSeeWholeRecords() throws InterruptedException {
+		final PoseRing ring = new PoseRing(16);
+		final int total = 200000;
+		final PoseRing.Subscriber[] subscribers = {
+			ring.subscribe(PoseRing.POLICY_BLOCK),
+			ring.subscribe(PoseRing.POLICY_DROP_OLDEST),
+			ring.subscribe(PoseRing.POLICY_SAMPLE),
+		};
+		final String[] errors = new String[subscribers.length];
+		final long[] read = new long[subscribers.length];
+		Thread[] threads = new Thread[subscribers.length];
+		for (int t = 0; t < threads.length; t++) {
+			final int index = t;
+			threads[t] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					PoseRing.Subscriber s = subscribers[index];
+					float[] out = new float[PoseRing.FLOATS];
+					long last = -1;
+					while (last < total - 1) {
+						if (!s.poll(out)) {
+							Thread.yield();
+							continue;
+						}
+						for (int i = 0; i < out.length; i++) {
+							if (out[i] != (float) s.getTime()) {
+								errors[index] = "torn record " + s.getTime() + " " + out[i];
+								return;
+							}
+						}
+						if (s.getTime() <= last) {
+							errors[index] = "out of order " + s.getTime();
+							return;
+						}
+						last = s.getTime();
+						read[index]++;
+					}
+				}
+			});
+			threads[t].start();
+		}
+		//values stay exact as floats below 2^24
+		for (int i = 0; i < total; i++)
+			ring.publish(i, pose(i));
+		for (Thread t : threads)
+			t.join();
+		for (String error : errors)
+			assertEquals(null, error);
+		assertEquals(total, read[0]);
+		assertEquals(0, subscribers[0].getDropped());
+		assertEquals(total, read[1] + subscribers[1].getDropped());
+		assertEquals(total, read[2] + subscribers[2].getDropped());
+	}
+}
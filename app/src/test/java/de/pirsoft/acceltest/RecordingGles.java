@@ -0,0 +1,773 @@
+package de.pirsoft.acceltest;
+
+import android.graphics.Bitmap;
+import android.opengl.GLES20;
+import android.opengl.GLES30;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Gles without a GPU, for running the render path on a plain JVM. Every
+ * call is appended to a command buffer of ints: a header with the opcode
+ * in the low byte and the number of argument words above it, then the
+ * arguments. Floats go in as their bits, strings as an index into a table
+ * that only grows for names not seen before, arrays element by element.
+ * Once the buffer is large enough nothing is allocated per call.
+ *
+ * Generated names count up from 1, every uniform or attribute name gets
+ * its own location, framebuffers are always complete and timer queries
+ * report setGpuTime().
+ */
+final class RecordingGles implements Gles {
+	static final int OP_ACTIVE_TEXTURE = 0;
+	static final int OP_ATTACH_SHADER = 1;
+	static final int OP_BIND_BUFFER = 2;
+	static final int OP_BIND_FRAMEBUFFER = 3;
+	static final int OP_BIND_RENDERBUFFER = 4;
+	static final int OP_BIND_TEXTURE = 5;
+	static final int OP_BLEND_FUNC = 6;
+	static final int OP_BUFFER_DATA = 7;
+	static final int OP_CHECK_FRAMEBUFFER_STATUS = 8;
+	static final int OP_CLEAR = 9;
+	static final int OP_CLEAR_COLOR = 10;
+	static final int OP_CLEAR_DEPTHF = 11;
+	static final int OP_COMPILE_SHADER = 12;
+	static final int OP_CREATE_PROGRAM = 13;
+	static final int OP_CREATE_SHADER = 14;
+	static final int OP_CULL_FACE = 15;
+	static final int OP_DELETE_BUFFERS = 16;
+	static final int OP_DELETE_FRAMEBUFFERS = 17;
+	static final int OP_DELETE_PROGRAM = 18;
+	static final int OP_DELETE_RENDERBUFFERS = 19;
+	static final int OP_DELETE_SHADER = 20;
+	static final int OP_DELETE_TEXTURES = 21;
+	static final int OP_DEPTH_FUNC = 22;
+	static final int OP_DEPTH_MASK = 23;
+	static final int OP_DISABLE = 24;
+	static final int OP_DISABLE_VERTEX_ATTRIB_ARRAY = 25;
+	static final int OP_DRAW_ARRAYS = 26;
+	static final int OP_DRAW_ELEMENTS = 27;
+	static final int OP_ENABLE = 28;
+	static final int OP_ENABLE_VERTEX_ATTRIB_ARRAY = 29;
+	static final int OP_FRAMEBUFFER_RENDERBUFFER = 30;
+	static final int OP_FRAMEBUFFER_TEXTURE_2D = 31;
+	static final int OP_FRONT_FACE = 32;
+	static final int OP_GEN_BUFFERS = 33;
+	static final int OP_GEN_FRAMEBUFFERS = 34;
+	static final int OP_GEN_RENDERBUFFERS = 35;
+	static final int OP_GEN_TEXTURES = 36;
+	static final int OP_GET_ATTRIB_LOCATION = 37;
+	static final int OP_GET_INTEGERV = 38;
+	static final int OP_GET_STRING = 39;
+	static final int OP_GET_UNIFORM_LOCATION = 40;
+	static final int OP_LINK_PROGRAM = 41;
+	static final int OP_RENDERBUFFER_STORAGE = 42;
+	static final int OP_SHADER_SOURCE = 43;
+	static final int OP_TEX_IMAGE_2D = 44;
+	static final int OP_TEX_PARAMETERI = 45;
+	static final int OP_UNIFORM_1I = 46;
+	static final int OP_UNIFORM_MATRIX_4FV = 47;
+	static final int OP_USE_PROGRAM = 48;
+	static final int OP_VERTEX_ATTRIB_POINTER = 49;
+	static final int OP_VIEWPORT = 50;
+	static final int OP_TEX_IMAGE_2D_BITMAP = 51;
+	static final int OP_BIND_VERTEX_ARRAY = 52;
+	static final int OP_GEN_VERTEX_ARRAYS = 53;
+	static final int OP_BEGIN_QUERY = 54;
+	static final int OP_DELETE_QUERIES = 55;
+	static final int OP_END_QUERY = 56;
+	static final int OP_GEN_QUERIES = 57;
+	static final int OP_GET_QUERY_OBJECTUIV = 58;
+	static final int OP_INVALIDATE_FRAMEBUFFER = 59;
+	static final int OP_BUFFER_SUB_DATA = 60;
+	static final int OP_UNIFORM_4F = 61;
+	static final int OPS = 62;
+
+	private static final String[] NAMES = {
+		"glActiveTexture", "glAttachShader", "glBindBuffer", "glBindFramebuffer",
+		"glBindRenderbuffer", "glBindTexture", "glBlendFunc", "glBufferData",
+		"glCheckFramebufferStatus", "glClear", "glClearColor", "glClearDepthf",
+		"glCompileShader", "glCreateProgram", "glCreateShader", "glCullFace",
+		"glDeleteBuffers", "glDeleteFramebuffers", "glDeleteProgram", "glDeleteRenderbuffers",
+		"glDeleteShader", "glDeleteTextures", "glDepthFunc", "glDepthMask",
+		"glDisable", "glDisableVertexAttribArray", "glDrawArrays", "glDrawElements",
+		"glEnable", "glEnableVertexAttribArray", "glFramebufferRenderbuffer", "glFramebufferTexture2D",
+		"glFrontFace", "glGenBuffers", "glGenFramebuffers", "glGenRenderbuffers",
+		"glGenTextures", "glGetAttribLocation", "glGetIntegerv", "glGetString",
+		"glGetUniformLocation", "glLinkProgram", "glRenderbufferStorage", "glShaderSource",
+		"glTexImage2D", "glTexParameteri", "glUniform1i", "glUniformMatrix4fv",
+		"glUseProgram", "glVertexAttribPointer", "glViewport", "texImage2D",
+		"glBindVertexArray", "glGenVertexArrays", "glBeginQuery", "glDeleteQueries",
+		"glEndQuery", "glGenQueries", "glGetQueryObjectuiv", "glInvalidateFramebuffer",
+		"glBufferSubData", "glUniform4f",
+	};
+
+	private final boolean mGles3;
+	private final boolean mTimerQueries;
+	private final String mVersion;
+	private final String mExtensions;
+	private final ArrayList<String> mStrings = new ArrayList<>();
+	private int[] mCommands = new int[4096];
+	private int mWords = 0;
+	private int mCommandCount = 0;
+	private final int[] mCalls = new int[OPS];
+	private long mUploadedBytes = 0;
+	private int mNextName = 1;
+	private long mGpuTime = 0;
+
+	/**
+	 * @param gles3        whether to claim GLES3, with vertex array objects
+	 * @param timerQueries whether to claim EXT_disjoint_timer_query, needs gles3
+	 */
+	RecordingGles(boolean gles3, boolean timerQueries) {
+		mGles3 = gles3;
+		mTimerQueries = gles3 && timerQueries;
+		mVersion = gles3 ? "OpenGL ES 3.0 RecordingGles" : "OpenGL ES 2.0 RecordingGles";
+		mExtensions = mTimerQueries ? "GL_EXT_disjoint_timer_query" : "";
+	}
+
+	static String getName(int op) {
+		return NAMES[op];
+	}
+
+	/** What the timer queries report from now on. */
+	void setGpuTime(long ns) {
+		mGpuTime = ns;
+	}
+
+	/** Drops the recorded commands and counts, generated names keep counting. */
+	void reset() {
+		mWords = 0;
+		mCommandCount = 0;
+		Arrays.fill(mCalls, 0);
+		mUploadedBytes = 0;
+	}
+
+	int getCommandCount() {
+		return mCommandCount;
+	}
+
+	int getCalls(int op) {
+		return mCalls[op];
+	}
+
+	/** Bytes handed to glBufferData() and the texture uploads. */
+	long getUploadedBytes() {
+		return mUploadedBytes;
+	}
+
+	/** Ints in the command buffer. */
+	int getWords() {
+		return mWords;
+	}
+
+	/** A copy of the command buffer, for comparing recordings. */
+	int[] copyCommands() {
+		return Arrays.copyOf(mCommands, mWords);
+	}
+
+	static int opcode(int header) {
+		return header & 0xff;
+	}
+
+	static int argumentWords(int header) {
+		return header >>> 8;
+	}
+
+	private int begin(int op) {
+		mCalls[op]++;
+		mCommandCount++;
+		int at = mWords;
+		put(op);
+		return at;
+	}
+
+	private void end(int at) {
+		mCommands[at] |= (mWords - at - 1) << 8;
+	}
+
+	private void put(int word) {
+		if (mWords == mCommands.length)
+			mCommands = Arrays.copyOf(mCommands, mCommands.length * 2);
+		mCommands[mWords++] = word;
+	}
+
+	private int intern(String string) {
+		int index = mStrings.indexOf(string);
+		if (index < 0) {
+			index = mStrings.size();
+			mStrings.add(string);
+		}
+		return index;
+	}
+
+	private static long byteCount(Buffer buffer) {
+		if (buffer == null)
+			return 0;
+		if (buffer instanceof ByteBuffer)
+			return buffer.remaining();
+		if (buffer instanceof ShortBuffer)
+			return buffer.remaining() * 2L;
+		if (buffer instanceof FloatBuffer || buffer instanceof IntBuffer)
+			return buffer.remaining() * 4L;
+		return buffer.remaining();
+	}
+
+	@Override
+	public boolean isGles3() {
+		return mGles3;
+	}
+
+	@Override
+	public boolean hasVertexArrayObjects() {
+		return mGles3;
+	}
+
+	@Override
+	public boolean hasTimerQueries() {
+		return mTimerQueries;
+	}
+
+	@Override
+	public void glActiveTexture(int texture) {
+		int at = begin(OP_ACTIVE_TEXTURE);
+		put(texture);
+		end(at);
+	}
+
+	@Override
+	public void glAttachShader(int program, int shader) {
+		int at = begin(OP_ATTACH_SHADER);
+		put(program);
+		put(shader);
+		end(at);
+	}
+
+	@Override
+	public void glBindBuffer(int target, int buffer) {
+		int at = begin(OP_BIND_BUFFER);
+		put(target);
+		put(buffer);
+		end(at);
+	}
+
+	@Override
+	public void glBindFramebuffer(int target, int framebuffer) {
+		int at = begin(OP_BIND_FRAMEBUFFER);
+		put(target);
+		put(framebuffer);
+		end(at);
+	}
+
+	@Override
+	public void glBindRenderbuffer(int target, int renderbuffer) {
+		int at = begin(OP_BIND_RENDERBUFFER);
+		put(target);
+		put(renderbuffer);
+		end(at);
+	}
+
+	@Override
+	public void glBindTexture(int target, int texture) {
+		int at = begin(OP_BIND_TEXTURE);
+		put(target);
+		put(texture);
+		end(at);
+	}
+
+	@Override
+	public void glBlendFunc(int sfactor, int dfactor) {
+		int at = begin(OP_BLEND_FUNC);
+		put(sfactor);
+		put(dfactor);
+		end(at);
+	}
+
+	@Override
+	public void glBufferData(int target, int size, Buffer data, int usage) {
+		int at = begin(OP_BUFFER_DATA);
+		put(target);
+		put(size);
+		put(usage);
+		mUploadedBytes += size;
+		end(at);
+	}
+
+	@Override
+	public void glBufferSubData(int target, int offset, int size, Buffer data) {
+		int at = begin(OP_BUFFER_SUB_DATA);
+		put(target);
+		put(offset);
+		put(size);
+		mUploadedBytes += size;
+		end(at);
+	}
+
+	@Override
+	public int glCheckFramebufferStatus(int target) {
+		int at = begin(OP_CHECK_FRAMEBUFFER_STATUS);
+		put(target);
+		end(at);
+		return GLES20.GL_FRAMEBUFFER_COMPLETE;
+	}
+
+	@Override
+	public void glClear(int mask) {
+		int at = begin(OP_CLEAR);
+		put(mask);
+		end(at);
+	}
+
+	@Override
+	public void glClearColor(float red, float green, float blue, float alpha) {
+		int at = begin(OP_CLEAR_COLOR);
+		put(Float.floatToRawIntBits(red));
+		put(Float.floatToRawIntBits(green));
+		put(Float.floatToRawIntBits(blue));
+		put(Float.floatToRawIntBits(alpha));
+		end(at);
+	}
+
+	@Override
+	public void glClearDepthf(float depth) {
+		int at = begin(OP_CLEAR_DEPTHF);
+		put(Float.floatToRawIntBits(depth));
+		end(at);
+	}
+
+	@Override
+	public void glCompileShader(int shader) {
+		int at = begin(OP_COMPILE_SHADER);
+		put(shader);
+		end(at);
+	}
+
+	@Override
+	public int glCreateProgram() {
+		int at = begin(OP_CREATE_PROGRAM);
+		int name = mNextName++;
+		put(name);
+		end(at);
+		return name;
+	}
+
+	@Override
+	public int glCreateShader(int type) {
+		int at = begin(OP_CREATE_SHADER);
+		put(type);
+		int name = mNextName++;
+		put(name);
+		end(at);
+		return name;
+	}
+
+	@Override
+	public void glCullFace(int mode) {
+		int at = begin(OP_CULL_FACE);
+		put(mode);
+		end(at);
+	}
+
+	@Override
+	public void glDeleteBuffers(int n, int[] buffers, int offset) {
+		int at = begin(OP_DELETE_BUFFERS);
+		for (int i = 0; i < n; i++)
+			put(buffers[offset + i]);
+		end(at);
+	}
+
+	@Override
+	public void glDeleteFramebuffers(int n, int[] framebuffers, int offset) {
+		int at = begin(OP_DELETE_FRAMEBUFFERS);
+		for (int i = 0; i < n; i++)
+			put(framebuffers[offset + i]);
+		end(at);
+	}
+
+	@Override
+	public void glDeleteProgram(int program) {
+		int at = begin(OP_DELETE_PROGRAM);
+		put(program);
+		end(at);
+	}
+
+	@Override
+	public void glDeleteRenderbuffers(int n, int[] renderbuffers, int offset) {
+		int at = begin(OP_DELETE_RENDERBUFFERS);
+		for (int i = 0; i < n; i++)
+			put(renderbuffers[offset + i]);
+		end(at);
+	}
+
+	@Override
+	public void glDeleteShader(int shader) {
+		int at = begin(OP_DELETE_SHADER);
+		put(shader);
+		end(at);
+	}
+
+	@Override
+	public void glDeleteTextures(int n, int[] textures, int offset) {
+		int at = begin(OP_DELETE_TEXTURES);
+		for (int i = 0; i < n; i++)
+			put(textures[offset + i]);
+		end(at);
+	}
+
+	@Override
+	public void glDepthFunc(int func) {
+		int at = begin(OP_DEPTH_FUNC);
+		put(func);
+		end(at);
+	}
+
+	@Override
+	public void glDepthMask(boolean flag) {
+		int at = begin(OP_DEPTH_MASK);
+		put(flag ? 1 : 0);
+		end(at);
+	}
+
+	@Override
+	public void glDisable(int cap) {
+		int at = begin(OP_DISABLE);
+		put(cap);
+		end(at);
+	}
+
+	@Override
+	public void glDisableVertexAttribArray(int index) {
+		int at = begin(OP_DISABLE_VERTEX_ATTRIB_ARRAY);
+		put(index);
+		end(at);
+	}
+
+	@Override
+	public void glDrawArrays(int mode, int first, int count) {
+		int at = begin(OP_DRAW_ARRAYS);
+		put(mode);
+		put(first);
+		put(count);
+		end(at);
+	}
+
+	@Override
+	public void glDrawElements(int mode, int count, int type, int offset) {
+		int at = begin(OP_DRAW_ELEMENTS);
+		put(mode);
+		put(count);
+		put(type);
+		put(offset);
+		end(at);
+	}
+
+	@Override
+	public void glEnable(int cap) {
+		int at = begin(OP_ENABLE);
+		put(cap);
+		end(at);
+	}
+
+	@Override
+	public void glEnableVertexAttribArray(int index) {
+		int at = begin(OP_ENABLE_VERTEX_ATTRIB_ARRAY);
+		put(index);
+		end(at);
+	}
+
+	@Override
+	public void glFramebufferRenderbuffer(int target, int attachment, int renderbuffertarget, int renderbuffer) {
+		int at = begin(OP_FRAMEBUFFER_RENDERBUFFER);
+		put(target);
+		put(attachment);
+		put(renderbuffertarget);
+		put(renderbuffer);
+		end(at);
+	}
+
+	@Override
+	public void glFramebufferTexture2D(int target, int attachment, int textarget, int texture, int level) {
+		int at = begin(OP_FRAMEBUFFER_TEXTURE_2D);
+		put(target);
+		put(attachment);
+		put(textarget);
+		put(texture);
+		put(level);
+		end(at);
+	}
+
+	@Override
+	public void glFrontFace(int mode) {
+		int at = begin(OP_FRONT_FACE);
+		put(mode);
+		end(at);
+	}
+
+	@Override
+	public void glGenBuffers(int n, int[] buffers, int offset) {
+		int at = begin(OP_GEN_BUFFERS);
+		for (int i = 0; i < n; i++) {
+			buffers[offset + i] = mNextName++;
+			put(buffers[offset + i]);
+		}
+		end(at);
+	}
+
+	@Override
+	public void glGenFramebuffers(int n, int[] framebuffers, int offset) {
+		int at = begin(OP_GEN_FRAMEBUFFERS);
+		for (int i = 0; i < n; i++) {
+			framebuffers[offset + i] = mNextName++;
+			put(framebuffers[offset + i]);
+		}
+		end(at);
+	}
+
+	@Override
+	public void glGenRenderbuffers(int n, int[] renderbuffers, int offset) {
+		int at = begin(OP_GEN_RENDERBUFFERS);
+		for (int i = 0; i < n; i++) {
+			renderbuffers[offset + i] = mNextName++;
+			put(renderbuffers[offset + i]);
+		}
+		end(at);
+	}
+
+	@Override
+	public void glGenTextures(int n, int[] textures, int offset) {
+		int at = begin(OP_GEN_TEXTURES);
+		for (int i = 0; i < n; i++) {
+			textures[offset + i] = mNextName++;
+			put(textures[offset + i]);
+		}
+		end(at);
+	}
+
+	@Override
+	public int glGetAttribLocation(int program, String name) {
+		int at = begin(OP_GET_ATTRIB_LOCATION);
+		put(program);
+		put(intern(name));
+		end(at);
+		//every name gets its own location, the same in all programs
+		return intern(name);
+	}
+
+	@Override
+	public void glGetIntegerv(int pname, int[] params, int offset) {
+		int at = begin(OP_GET_INTEGERV);
+		put(pname);
+		params[offset] = 0;
+		end(at);
+	}
+
+	@Override
+	public String glGetString(int name) {
+		int at = begin(OP_GET_STRING);
+		put(name);
+		end(at);
+		return name == GLES20.GL_VERSION ? mVersion : name == GLES20.GL_EXTENSIONS ? mExtensions : "";
+	}
+
+	@Override
+	public int glGetUniformLocation(int program, String name) {
+		int at = begin(OP_GET_UNIFORM_LOCATION);
+		put(program);
+		put(intern(name));
+		end(at);
+		//every name gets its own location, the same in all programs
+		return intern(name);
+	}
+
+	@Override
+	public void glLinkProgram(int program) {
+		int at = begin(OP_LINK_PROGRAM);
+		put(program);
+		end(at);
+	}
+
+	@Override
+	public void glRenderbufferStorage(int target, int internalformat, int width, int height) {
+		int at = begin(OP_RENDERBUFFER_STORAGE);
+		put(target);
+		put(internalformat);
+		put(width);
+		put(height);
+		end(at);
+	}
+
+	@Override
+	public void glShaderSource(int shader, String string) {
+		int at = begin(OP_SHADER_SOURCE);
+		put(shader);
+		put(intern(string));
+		end(at);
+	}
+
+	@Override
+	public void glTexImage2D(int target, int level, int internalformat, int width, int height, int border, int format, int type, Buffer pixels) {
+		int at = begin(OP_TEX_IMAGE_2D);
+		put(target);
+		put(level);
+		put(internalformat);
+		put(width);
+		put(height);
+		put(border);
+		put(format);
+		put(type);
+		mUploadedBytes += byteCount(pixels);
+		end(at);
+	}
+
+	@Override
+	public void glTexParameteri(int target, int pname, int param) {
+		int at = begin(OP_TEX_PARAMETERI);
+		put(target);
+		put(pname);
+		put(param);
+		end(at);
+	}
+
+	@Override
+	public void glUniform1i(int location, int x) {
+		int at = begin(OP_UNIFORM_1I);
+		put(location);
+		put(x);
+		end(at);
+	}
+
+	@Override
+	public void glUniform4f(int location, float x, float y, float z, float w) {
+		int at = begin(OP_UNIFORM_4F);
+		put(location);
+		put(Float.floatToRawIntBits(x));
+		put(Float.floatToRawIntBits(y));
+		put(Float.floatToRawIntBits(z));
+		put(Float.floatToRawIntBits(w));
+		end(at);
+	}
+
+	@Override
+	public void glUniformMatrix4fv(int location, int count, boolean transpose, float[] value, int offset) {
+		int at = begin(OP_UNIFORM_MATRIX_4FV);
+		put(location);
+		put(transpose ? 1 : 0);
+		for (int i = 0; i < count * 16; i++)
+			put(Float.floatToRawIntBits(value[offset + i]));
+		end(at);
+	}
+
+	@Override
+	public void glUseProgram(int program) {
+		int at = begin(OP_USE_PROGRAM);
+		put(program);
+		end(at);
+	}
+
+	@Override
+	public void glVertexAttribPointer(int indx, int size, int type, boolean normalized, int stride, int offset) {
+		int at = begin(OP_VERTEX_ATTRIB_POINTER);
+		put(indx);
+		put(size);
+		put(type);
+		put(normalized ? 1 : 0);
+		put(stride);
+		put(offset);
+		end(at);
+	}
+
+	@Override
+	public void glViewport(int x, int y, int width, int height) {
+		int at = begin(OP_VIEWPORT);
+		put(x);
+		put(y);
+		put(width);
+		put(height);
+		end(at);
+	}
+
+	@Override
+	public void texImage2D(int target, int level, Bitmap bitmap) {
+		int at = begin(OP_TEX_IMAGE_2D_BITMAP);
+		put(target);
+		put(level);
+		put(bitmap.getWidth());
+		put(bitmap.getHeight());
+		mUploadedBytes += bitmap.getByteCount();
+		end(at);
+	}
+
+	@Override
+	public void glBindVertexArray(int array) {
+		int at = begin(OP_BIND_VERTEX_ARRAY);
+		put(array);
+		end(at);
+	}
+
+	@Override
+	public void glGenVertexArrays(int n, int[] arrays, int offset) {
+		int at = begin(OP_GEN_VERTEX_ARRAYS);
+		for (int i = 0; i < n; i++) {
+			arrays[offset + i] = mNextName++;
+			put(arrays[offset + i]);
+		}
+		end(at);
+	}
+
+	@Override
+	public void glBeginQuery(int target, int id) {
+		int at = begin(OP_BEGIN_QUERY);
+		put(target);
+		put(id);
+		end(at);
+	}
+
+	@Override
+	public void glDeleteQueries(int n, int[] ids, int offset) {
+		int at = begin(OP_DELETE_QUERIES);
+		for (int i = 0; i < n; i++)
+			put(ids[offset + i]);
+		end(at);
+	}
+
+	@Override
+	public void glEndQuery(int target) {
+		int at = begin(OP_END_QUERY);
+		put(target);
+		end(at);
+	}
+
+	@Override
+	public void glGenQueries(int n, int[] ids, int offset) {
+		int at = begin(OP_GEN_QUERIES);
+		for (int i = 0; i < n; i++) {
+			ids[offset + i] = mNextName++;
+			put(ids[offset + i]);
+		}
+		end(at);
+	}
+
+	@Override
+	public void glGetQueryObjectuiv(int id, int pname, int[] params, int offset) {
+		int at = begin(OP_GET_QUERY_OBJECTUIV);
+		put(id);
+		put(pname);
+		params[offset] = pname == GLES30.GL_QUERY_RESULT_AVAILABLE ? 1 : (int) mGpuTime;
+		end(at);
+	}
+
+	@Override
+	public void glInvalidateFramebuffer(int target, int numAttachments, int[] attachments, int offset) {
+		int at = begin(OP_INVALIDATE_FRAMEBUFFER);
+		put(target);
+		for (int i = 0; i < numAttachments; i++)
+			put(attachments[offset + i]);
+		end(at);
+	}
+}
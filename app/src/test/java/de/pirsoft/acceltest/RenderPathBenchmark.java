@@ -0,0 +1,62 @@
+package de.pirsoft.acceltest;
+
+/**
+ * CPU side of rendering without a GPU: MyGLRenderer on a RecordingGles,
+ * time per onDrawFrame() and per onSurfaceCreated() after a context loss,
+ * with the calls and bytes that reach the GL per frame. Once at full
+ * resolution and once with the GPU timer reporting overly long frames, so
+ * the renderer scales down and blits.
+ *
+ * Not a unit test, run main() manually.
+ */
+public class RenderPathBenchmark {
+	private static final int FRAMES = 200000;
+	private static final int SURFACES = 2000;
+
+	public static void main(String[] args) {
+		for (int round = 0; round < 3; round++) {
+			run("full resolution", 0);
+			run("scaled", 40000000L);
+		}
+	}
+
+	private static void run(String name, long gpuTime) {
+		RecordingGles gl = new RecordingGles(true, gpuTime > 0);
+		gl.setGpuTime(gpuTime);
+		MyGLRenderer renderer = new MyGLRenderer(null, gl, true, false);
+		renderer.onSurfaceCreated(null, null);
+		renderer.onSurfaceChanged(null, 1080, 1920);
+		//until the resolution settled
+		for (int i = 0; i < 1000; i++) {
+			gl.reset();
+			renderer.onDrawFrame(null);
+		}
+
+		long start = System.nanoTime();
+		for (int i = 0; i < FRAMES; i++) {
+			gl.reset();
+			renderer.onDrawFrame(null);
+		}
+		long frameNs = (System.nanoTime() - start) / FRAMES;
+		int calls = gl.getCommandCount();
+		int words = gl.getWords();
+		long frameBytes = gl.getUploadedBytes();
+		StringBuilder perOp = new StringBuilder();
+		for (int op = 0; op < RecordingGles.OPS; op++) {
+			if (gl.getCalls(op) > 0)
+				perOp.append(' ').append(RecordingGles.getName(op)).append('=').append(gl.getCalls(op));
+		}
+
+		start = System.nanoTime();
+		for (int i = 0; i < SURFACES; i++) {
+			gl.reset();
+			renderer.onSurfaceCreated(null, null);
+			renderer.onSurfaceChanged(null, 1080, 1920);
+		}
+		long surfaceNs = (System.nanoTime() - start) / SURFACES;
+		System.out.printf("%s, scale %.2f: frame %.2fus, %d calls, %d words, %d bytes uploaded;"
+				+ " surface created %.0fus, %d calls, %d KiB uploaded%n  %s%n",
+			name, renderer.getRenderScale(), frameNs * 1e-3, calls, words, frameBytes,
+			surfaceNs * 1e-3, gl.getCommandCount(), gl.getUploadedBytes() / 1024, perOp.toString().trim());
+	}
+}
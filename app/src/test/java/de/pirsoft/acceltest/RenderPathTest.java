@@ -0,0 +1,73 @@
+package de.pirsoft.acceltest;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RenderPathTest {
+	private static MyGLRenderer headless(RecordingGles gl) {
+		MyGLRenderer renderer = new MyGLRenderer(null, gl, true, false);
+		renderer.onSurfaceCreated(null, null);
+		renderer.onSurfaceChanged(null, 1080, 1920);
+		return renderer;
+	}
+
+	@Test
+	public void surfaceCreationUploadsTheNavball() {
+		RecordingGles gl = new RecordingGles(true, false);
+		headless(gl);
+		CubeSphereMesh mesh = CubeSphereMesh.forIcosphere(6);
+		assertTrue(gl.getUploadedBytes() >= mesh.floatAttribs.length * 4 + mesh.drawOrder.length * 2);
+		assertEquals(gl.getCalls(RecordingGles.OP_CREATE_PROGRAM), gl.getCalls(RecordingGles.OP_LINK_PROGRAM));
+		assertEquals(2 * gl.getCalls(RecordingGles.OP_CREATE_PROGRAM), gl.getCalls(RecordingGles.OP_COMPILE_SHADER));
+	}
+
+	@Test
+	public void steadyFramesOnlyIssueWhatChanged() {
+		RecordingGles gl = new RecordingGles(true, false);
+		MyGLRenderer renderer = headless(gl);
+		gl.reset();
+		renderer.onDrawFrame(null);
+		int first = gl.getCommandCount();
+		assertEquals(2, gl.getCalls(RecordingGles.OP_DRAW_ELEMENTS) + gl.getCalls(RecordingGles.OP_DRAW_ARRAYS));
+
+		gl.reset();
+		renderer.onDrawFrame(null);
+		int[] second = gl.copyCommands();
+		assertTrue(gl.getCommandCount() < first);
+		assertEquals(gl.getCommandCount(), renderer.getCallsPerFrame());
+		gl.reset();
+		renderer.onDrawFrame(null);
+		//the HUD text may differ, the calls do not
+		assertEquals(second.length, gl.getWords());
+	}
+
+	@Test
+	public void contextLossUploadsTheSameAgain() {
+		RecordingGles gl = new RecordingGles(false, false);
+		MyGLRenderer renderer = headless(gl);
+		long uploaded = gl.getUploadedBytes();
+		int calls = gl.getCommandCount();
+		gl.reset();
+		renderer.onSurfaceCreated(null, null);
+		renderer.onSurfaceChanged(null, 1080, 1920);
+		assertEquals(uploaded, gl.getUploadedBytes());
+		assertEquals(calls, gl.getCommandCount());
+	}
+
+	@Test
+	public void commandBufferHoldsArguments() {
+		RecordingGles gl = new RecordingGles(false, false);
+		gl.glViewport(1, 2, 3, 4);
+		gl.glClearColor(0.5f, 0, 0, 1);
+		int[] commands = gl.copyCommands();
+		assertEquals(RecordingGles.OP_VIEWPORT, RecordingGles.opcode(commands[0]));
+		assertEquals(4, RecordingGles.argumentWords(commands[0]));
+		assertArrayEquals(new int[] { 1, 2, 3, 4 }, new int[] { commands[1], commands[2], commands[3], commands[4] });
+		assertEquals(RecordingGles.OP_CLEAR_COLOR, RecordingGles.opcode(commands[5]));
+		assertEquals(0.5f, Float.intBitsToFloat(commands[6]), 0);
+		assertEquals("glClearColor", RecordingGles.getName(RecordingGles.OP_CLEAR_COLOR));
+	}
+}
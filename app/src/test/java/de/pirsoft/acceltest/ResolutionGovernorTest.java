@@ -0,0 +1,78 @@
+package de.pirsoft.acceltest;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Feeds synthetic frame time traces, with a fill cost that follows the
+ * pixel count like a fill rate bound GPU would.
+ */
+public class ResolutionGovernorTest {
+	private static final long BUDGET = 12000000L;
+
+	private static long frameTime(long fixed, long fill, float scale) {
+		return fixed + (long) (fill * scale * scale);
+	}
+
+	@Test
+	public void lightLoadStaysAtFullResolution() {
+		ResolutionGovernor governor = new ResolutionGovernor(BUDGET, 0.5f, 1.0f, 0.05f);
+		for (int i = 0; i < 1000; i++)
+			assertEquals(false, governor.addFrameTime(frameTime(1000000, 4000000, governor.getScale())));
+		assertEquals(1.0f, governor.getScale(), 0);
+	}
+
+	@Test
+	public void heavyLoadScalesDownIntoBudget() {
+		ResolutionGovernor governor = new ResolutionGovernor(BUDGET, 0.5f, 1.0f, 0.05f);
+		//twice the budget at full resolution
+		int frames = 0;
+		while (frames < 100) {
+			governor.addFrameTime(frameTime(1000000, 23000000, governor.getScale()));
+			frames++;
+		}
+		float scale = governor.getScale();
+		assertTrue("scale " + scale, scale < 0.75f && scale >= 0.5f);
+		assertTrue(frameTime(1000000, 23000000, scale) <= BUDGET);
+	}
+
+	@Test
+	public void recoversWhenLoadDrops() {
+		ResolutionGovernor governor = new ResolutionGovernor(BUDGET, 0.5f, 1.0f, 0.05f);
+		for (int i = 0; i < 100; i++)
+			governor.addFrameTime(frameTime(1000000, 23000000, governor.getScale()));
+		assertTrue(governor.getScale() < 1.0f);
+		for (int i = 0; i < 2000; i++)
+			governor.addFrameTime(frameTime(1000000, 4000000, governor.getScale()));
+		assertEquals(1.0f, governor.getScale(), 1e-6);
+	}
+
+	@Test
+	public void noiseAroundBudgetDoesNotOscillate() {
+		ResolutionGovernor governor = new ResolutionGovernor(BUDGET, 0.5f, 1.0f, 0.05f);
+		Random random = new Random(1);
+		//settle first, then count changes
+		for (int i = 0; i < 200; i++)
+			governor.addFrameTime(frameTime(1000000, 15000000, governor.getScale())
+				+ (long) (random.nextGaussian() * 2000000));
+		int changes = 0;
+		for (int i = 0; i < 5000; i++) {
+			if (governor.addFrameTime(frameTime(1000000, 15000000, governor.getScale())
+				+ (long) (random.nextGaussian() * 2000000)))
+				changes++;
+		}
+		assertTrue("changes " + changes, changes <= 2);
+	}
+
+	@Test
+	public void respectsMinimumScale() {
+		ResolutionGovernor governor = new ResolutionGovernor(BUDGET, 0.5f, 1.0f, 0.05f);
+		for (int i = 0; i < 1000; i++)
+			governor.addFrameTime(frameTime(20000000, 20000000, governor.getScale()));
+		assertEquals(0.5f, governor.getScale(), 0);
+	}
+}
@@ -0,0 +1,101 @@
+package de.pirsoft.acceltest;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RotationAlignerTest {
+	//turning around z at 6 rad/s
+	private static final double RATE = 6.0;
+	private static final long ROTATION_PERIOD = 20000000L;
+	private static final long ACCELERATION_PERIOD = 2500000L;
+	private static final float[] DEVICE = { 1.0f, 0.0f, 0.0f };
+
+	private static float[] rotation(long t) {
+		double half = RATE * t * 1e-9 / 2;
+		return new float[] { 0, 0, (float) Math.sin(half), (float) Math.cos(half) };
+	}
+
+	/** Device vector in the world frame, the way BallSimulation does it. */
+	private static float[] world(float[] rotation) {
+		float[] m = new float[16];
+		float[] out = new float[4];
+		Mat4.setRotationFromVector(m, rotation);
+		Mat4.multiplyTransposedMV(out, m, new float[] { DEVICE[0], DEVICE[1], DEVICE[2], 0 });
+		return out;
+	}
+
+	private static double distance(float[] a, float[] b) {
+		double dx = a[0] - b[0], dy = a[1] - b[1], dz = a[2] - b[2];
+		return Math.sqrt(dx * dx + dy * dy + dz * dz);
+	}
+
+	@Test
+	public void followsRotationBetweenSamples() {
+		RotationAligner aligner = new RotationAligner();
+		float[] latestRotation = null;
+		float[] out = new float[4];
+		double alignedError = 0;
+		double naiveError = 0;
+		int aligned = 0;
+		long lastWorldTime = -1;
+		//rotation samples 1ms after every 8th accelerometer sample
+		for (long t = 0; t < 2000000000L; t += ACCELERATION_PERIOD) {
+			if (t % ROTATION_PERIOD == 0) {
+				latestRotation = rotation(t + 1000000L);
+				aligner.addRotation(t + 1000000L, latestRotation);
+			}
+			//before the first rotation there is nothing to interpolate from
+			if (t == 0)
+				continue;
+			aligner.addAcceleration(t, DEVICE);
+			naiveError = Math.max(naiveError, distance(world(latestRotation), world(rotation(t))));
+			if (aligner.getWorldTime() != lastWorldTime) {
+				lastWorldTime = aligner.getWorldTime();
+				assertTrue(aligner.getWorldAcceleration(out));
+				alignedError = Math.max(alignedError, distance(out, world(rotation(lastWorldTime))));
+				aligned++;
+			}
+		}
+		//one check per rotation, on the sample 19ms after the rotation before
+		assertEquals(99, aligned);
+		assertTrue("aligned error " + alignedError, alignedError < 1e-4);
+		//up to 16.5ms of turning at 6 rad/s
+		assertTrue("naive error " + naiveError, naiveError > 0.05);
+	}
+
+	@Test
+	public void waitsBoundedForTheNextRotation() {
+		RotationAligner aligner = new RotationAligner();
+		float[] out = new float[4];
+		aligner.addAcceleration(0, DEVICE);
+		assertFalse(aligner.getWorldAcceleration(out));
+
+		aligner.addRotation(0, rotation(0));
+		aligner.addAcceleration(ACCELERATION_PERIOD, DEVICE);
+		assertEquals(-1, aligner.getWorldTime());
+		//the rotation stream stalls, samples go out with the last rotation
+		long t = ACCELERATION_PERIOD;
+		while (aligner.getWorldTime() < 0)
+			aligner.addAcceleration(t += ACCELERATION_PERIOD, DEVICE);
+		assertEquals(ACCELERATION_PERIOD + RotationAligner.MAX_WAIT_NS + ACCELERATION_PERIOD, t);
+		assertTrue(aligner.getWorldAcceleration(out));
+		assertEquals(1.0f, out[0], 1e-6f);
+	}
+
+	@Test
+	public void slerpTakesTheShortWay() {
+		RotationAligner aligner = new RotationAligner();
+		float[] a = { 0, 0, (float) Math.sin(0.1), (float) Math.cos(0.1) };
+		//same kind of small step, stored with the opposite sign
+		float[] b = { 0, 0, (float) -Math.sin(0.2), (float) -Math.cos(0.2) };
+		aligner.addRotation(0, a);
+		aligner.addRotation(1000, b);
+		float[] q = new float[4];
+		aligner.rotationAt(500, q);
+		assertEquals(Math.abs(Math.sin(0.15)), Math.abs(q[2]), 1e-6);
+		assertEquals(Math.abs(Math.cos(0.15)), Math.abs(q[3]), 1e-6);
+	}
+}
@@ -0,0 +1,68 @@
+package de.pirsoft.acceltest;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class ScopeHistoryTest {
+	private static final int ACCELEROMETER = 1;
+	private static final long COLUMN_NS = 1000;
+
+	private static void sample(ScopeHistory history, long timestamp, float x, float y, float z) {
+		history.onSample(ACCELEROMETER, timestamp, new float[] { x, y, z });
+	}
+
+	@Test
+	public void columnKeepsMinimumAndMaximum() {
+		ScopeHistory history = new ScopeHistory(ACCELEROMETER, 8, COLUMN_NS);
+		sample(history, 0, 1, 5, 0);
+		sample(history, 300, -4, 2, 0);
+		sample(history, 600, 2, 9, 0);
+		float[] out = new float[8 * ScopeHistory.COLUMN_FLOATS];
+		//the column is complete only once a sample of the next one arrives
+		assertEquals(0, history.read(out));
+		sample(history, 1000, 0, 0, 0);
+		assertEquals(1, history.read(out));
+		assertArrayEquals(new float[] { -4, 2, 0, 2, 9, 0 },
+			java.util.Arrays.copyOf(out, ScopeHistory.COLUMN_FLOATS), 0);
+		assertEquals(1, history.getReadEnd());
+	}
+
+	@Test
+	public void gapRepeatsTheLastSample() {
+		ScopeHistory history = new ScopeHistory(ACCELEROMETER, 8, COLUMN_NS);
+		sample(history, 0, 1, 1, 1);
+		sample(history, 500, 3, 3, 3);
+		sample(history, 3000, 0, 0, 0);
+		float[] out = new float[8 * ScopeHistory.COLUMN_FLOATS];
+		assertEquals(3, history.read(out));
+		for (int a = 0; a < ScopeHistory.COLUMN_FLOATS; a++) {
+			assertEquals(3, out[ScopeHistory.COLUMN_FLOATS + a], 0);
+			assertEquals(3, out[2 * ScopeHistory.COLUMN_FLOATS + a], 0);
+		}
+	}
+
+	@Test
+	public void readGetsOnlyTheNewestColumns() {
+		ScopeHistory history = new ScopeHistory(ACCELEROMETER, 4, COLUMN_NS);
+		history.onSample(ACCELEROMETER + 1, 0, new float[] { 7, 7, 7 });
+		for (int i = 0; i <= 10; i++)
+			sample(history, i * COLUMN_NS, i, 0, 0);
+		assertEquals(10, history.getWritten());
+		float[] out = new float[4 * ScopeHistory.COLUMN_FLOATS];
+		assertEquals(4, history.read(out));
+		assertEquals(6, out[0], 0);
+		assertEquals(9, out[3 * ScopeHistory.COLUMN_FLOATS], 0);
+		assertEquals(0, history.read(out));
+
+		sample(history, 11 * COLUMN_NS, 11, 0, 0);
+		assertEquals(1, history.read(out));
+		assertEquals(10, out[0], 0);
+
+		history.rewind();
+		assertEquals(4, history.read(out));
+		assertEquals(7, out[0], 0);
+		assertEquals(11, history.getReadEnd());
+	}
+}
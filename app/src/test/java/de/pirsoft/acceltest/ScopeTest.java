@@ -0,0 +1,112 @@
+package de.pirsoft.acceltest;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class ScopeTest {
+	private static final int ACCELEROMETER = 1;
+	private static final int COLUMNS = 64;
+	//x, y, z and slot of the minimum and maximum vertex
+	private static final int COLUMN_BYTES = 2 * 4 * 4;
+
+	private static Scope scope(RecordingGles gl, ScopeHistory history) {
+		GlResources resources = new GlResources(null);
+		GlResources.Program program = Scope.addProgram(resources);
+		resources.createAll(gl);
+		return new Scope(gl, history, program, true, gl.hasVertexArrayObjects());
+	}
+
+	private static void columns(ScopeHistory history, int from, int to) {
+		float[] values = { 0, 9.8f, 0 };
+		for (int i = from; i < to; i++)
+			history.onSample(ACCELEROMETER, i * 1000L, values);
+	}
+
+	/** Draw calls of the recorded commands as first, count pairs. */
+	private static int[] draws(RecordingGles gl) {
+		int[] commands = gl.copyCommands();
+		int[] draws = new int[2 * gl.getCalls(RecordingGles.OP_DRAW_ARRAYS)];
+		int n = 0;
+		for (int i = 0; i < commands.length; i += 1 + RecordingGles.argumentWords(commands[i])) {
+			if (RecordingGles.opcode(commands[i]) == RecordingGles.OP_DRAW_ARRAYS) {
+				draws[n++] = commands[i + 2];
+				draws[n++] = commands[i + 3];
+			}
+		}
+		return draws;
+	}
+
+	@Test
+	public void uploadsOnlyNewColumns() {
+		RecordingGles gl = new RecordingGles(true, false);
+		ScopeHistory history = new ScopeHistory(ACCELEROMETER, COLUMNS, 1000);
+		Scope scope = scope(gl, history);
+		columns(history, 0, 11);
+		scope.draw(1080, 1920);
+		//slot 0 and its copy behind the last slot
+		assertEquals(11 * COLUMN_BYTES, scope.getUploadedBytes());
+
+		gl.reset();
+		scope.draw(1080, 1920);
+		assertEquals(0, gl.getCalls(RecordingGles.OP_BUFFER_SUB_DATA));
+		assertEquals(3, gl.getCalls(RecordingGles.OP_DRAW_ARRAYS));
+
+		gl.reset();
+		columns(history, 11, 14);
+		scope.draw(1080, 1920);
+		assertEquals(1, gl.getCalls(RecordingGles.OP_BUFFER_SUB_DATA));
+		assertEquals(3 * COLUMN_BYTES, gl.getUploadedBytes());
+	}
+
+	@Test
+	public void wrappedRingDrawsInTwoPieces() {
+		RecordingGles gl = new RecordingGles(false, false);
+		ScopeHistory history = new ScopeHistory(ACCELEROMETER, COLUMNS, 1000);
+		Scope scope = scope(gl, history);
+		columns(history, 0, COLUMNS + 11);
+		scope.draw(1080, 1920);
+
+		gl.reset();
+		//columns 74 and 75 complete, wrapping into slots 10 and 11
+		columns(history, COLUMNS + 11, COLUMNS + 13);
+		scope.draw(1080, 1920);
+		assertEquals(2 * COLUMN_BYTES, gl.getUploadedBytes());
+		int[] draws = draws(gl);
+		assertEquals(12, draws.length);
+		//oldest from slot 12 through the copy of slot 0, then slots 0 to 11
+		assertEquals(2 * 12, draws[0]);
+		assertEquals(2 * (COLUMNS + 1 - 12), draws[1]);
+		assertEquals(0, draws[6]);
+		assertEquals(2 * 12, draws[7]);
+	}
+
+	@Test
+	public void wrapAcrossTheEndUploadsTwoRanges() {
+		RecordingGles gl = new RecordingGles(false, false);
+		ScopeHistory history = new ScopeHistory(ACCELEROMETER, COLUMNS, 1000);
+		Scope scope = scope(gl, history);
+		columns(history, 0, COLUMNS - 2);
+		scope.draw(1080, 1920);
+
+		gl.reset();
+		columns(history, COLUMNS - 2, COLUMNS + 3);
+		scope.draw(1080, 1920);
+		//3 at the end, 2 at the start and the copy of slot 0
+		assertEquals(3, gl.getCalls(RecordingGles.OP_BUFFER_SUB_DATA));
+		assertEquals(6 * COLUMN_BYTES, gl.getUploadedBytes());
+	}
+
+	@Test
+	public void newBufferGetsTheWholeHistory() {
+		RecordingGles gl = new RecordingGles(true, false);
+		ScopeHistory history = new ScopeHistory(ACCELEROMETER, COLUMNS, 1000);
+		Scope scope = scope(gl, history);
+		columns(history, 0, 3 * COLUMNS);
+		scope.draw(1080, 1920);
+		//as after a context loss
+		scope = scope(gl, history);
+		scope.draw(1080, 1920);
+		assertEquals((COLUMNS + 1) * COLUMN_BYTES, scope.getUploadedBytes());
+	}
+}
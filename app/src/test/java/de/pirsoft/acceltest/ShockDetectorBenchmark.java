@@ -0,0 +1,51 @@
+package de.pirsoft.acceltest;
+
+import java.util.Random;
+
+/**
+ * Per sample cost of the shock detector, on a resting phone and on a
+ * stream that keeps crossing every threshold, to show the work does not
+ * depend on what happens.
+ *
+ * Not a unit test, run main() manually.
+ */
+public class ShockDetectorBenchmark {
+	private static final int SAMPLES = 1 << 20;
+	private static final int ROUNDS = 5;
+	private static final int TYPE_ACCELEROMETER = 1;
+
+	public static void main(String[] args) {
+		Random rnd = new Random(42);
+		float[] quiet = new float[SAMPLES * 3];
+		float[] busy = new float[SAMPLES * 3];
+		for (int i = 0; i < SAMPLES; i++) {
+			for (int axis = 0; axis < 3; axis++)
+				quiet[i * 3 + axis] = (axis == 2 ? 9.81f : 0) + (float) (rnd.nextGaussian() * 0.05);
+			//40 samples each of rest, free fall and impact
+			int phase = i / 40 % 3;
+			busy[i * 3] = quiet[i * 3];
+			busy[i * 3 + 1] = quiet[i * 3 + 1];
+			busy[i * 3 + 2] = phase == 0 ? quiet[i * 3 + 2] : phase == 1 ? 0.0f : 60.0f;
+		}
+		for (int round = 0; round < ROUNDS; round++)
+			System.out.printf("round %d: quiet %.1f ns/sample, busy %.1f ns/sample%n",
+				round, run(quiet), run(busy));
+	}
+
+	private static double run(float[] data) {
+		EventLog log = new EventLog(64);
+		ShockDetector detector = new ShockDetector(log);
+		float[] v = new float[3];
+		long start = System.nanoTime();
+		for (int i = 0; i < SAMPLES; i++) {
+			v[0] = data[i * 3];
+			v[1] = data[i * 3 + 1];
+			v[2] = data[i * 3 + 2];
+			detector.onSample(TYPE_ACCELEROMETER, i * 2500000L, v);
+		}
+		long elapsed = System.nanoTime() - start;
+		if (log.getWritten() < 0)
+			throw new AssertionError();
+		return (double) elapsed / SAMPLES;
+	}
+}
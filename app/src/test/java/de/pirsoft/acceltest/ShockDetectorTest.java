@@ -0,0 +1,90 @@
+package de.pirsoft.acceltest;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ShockDetectorTest {
+	private static final int TYPE_ACCELEROMETER = 1;
+	private static final float G = 9.80665f;
+	//400Hz
+	private static final long PERIOD = 2500000L;
+
+	private final EventLog log = new EventLog(16);
+	private final ShockDetector detector = new ShockDetector(log);
+	private final Random noise = new Random(5);
+	private final float[] v = new float[3];
+	private long time = 0;
+
+	private void hold(float z, long duration) {
+		for (long end = time + duration; time < end; time += PERIOD) {
+			v[0] = (float) (noise.nextGaussian() * 0.05);
+			v[1] = (float) (noise.nextGaussian() * 0.05);
+			v[2] = z + (float) (noise.nextGaussian() * 0.05);
+			detector.onSample(TYPE_ACCELEROMETER, time, v);
+		}
+	}
+
+	@Test
+	public void restingPhoneIsQuiet() {
+		hold(G, 5000000000L);
+		assertEquals(0, log.getWritten());
+	}
+
+	@Test
+	public void dropOntoTable() {
+		hold(G, 500000000L);
+		long fallStart = time;
+		hold(0.0f, 200000000L);
+		long impact = time;
+		//a single sample spike between two simulation steps
+		hold(8 * G, PERIOD);
+		hold(G, 500000000L);
+
+		int[] types = new int[16];
+		long[] times = new long[16];
+		float[] peaks = new float[16];
+		long[] durations = new long[16];
+		int n = log.read(types, times, peaks, durations);
+		boolean freeFall = false;
+		boolean shock = false;
+		boolean jerk = false;
+		for (int i = 0; i < n; i++) {
+			switch (types[i]) {
+				case ShockDetector.EVENT_FREE_FALL:
+					freeFall = true;
+					assertEquals(fallStart, times[i]);
+					assertEquals(200000000L, durations[i]);
+					assertTrue(peaks[i] < 0.2f);
+					break;
+				case ShockDetector.EVENT_SHOCK:
+					shock = true;
+					assertEquals(impact, times[i]);
+					assertEquals(PERIOD, durations[i]);
+					assertEquals(8 * G, peaks[i], 0.2f);
+					break;
+				case ShockDetector.EVENT_JERK:
+					jerk = true;
+					assertTrue(peaks[i] > ShockDetector.JERK_THRESHOLD);
+					break;
+			}
+		}
+		assertTrue(freeFall && shock && jerk);
+	}
+
+	@Test
+	public void shortWeightlessnessIsNoFall() {
+		hold(G, 100000000L);
+		hold(0.0f, ShockDetector.MIN_FREE_FALL_NS - 2 * PERIOD);
+		hold(G, 100000000L);
+		int[] types = new int[16];
+		int n = log.read(types, new long[16], new float[16], new long[16]);
+		//the steps in and out are jerks, but no fall
+		assertTrue(n > 0);
+		for (int i = 0; i < n; i++)
+			assertEquals(ShockDetector.EVENT_JERK, types[i]);
+	}
+}
@@ -0,0 +1,74 @@
+package de.pirsoft.acceltest;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SpectrumAnalyzerTest {
+	private static final int TYPE_ACCELEROMETER = 1;
+	private static final int TYPE_GYROSCOPE = 4;
+	private static final long PERIOD = 2500000L;
+
+	/** 400Hz accelerometer: gravity on z, 31Hz vibration on x, 120Hz on y. */
+	private static void feed(SpectrumAnalyzer analyzer, int samples) {
+		float[] v = new float[3];
+		for (int i = 0; i < samples; i++) {
+			double t = i * PERIOD * 1e-9;
+			v[0] = (float) (0.5 * Math.sin(2 * Math.PI * 31 * t));
+			v[1] = (float) (0.1 * Math.sin(2 * Math.PI * 120 * t));
+			v[2] = 9.81f;
+			analyzer.onSample(TYPE_ACCELEROMETER, i * PERIOD, v);
+			analyzer.onSample(TYPE_GYROSCOPE, i * PERIOD, v);
+		}
+	}
+
+	@Test
+	public void findsVibrationPerAxis() {
+		SpectrumAnalyzer analyzer = new SpectrumAnalyzer(1024, 256, SpectrumAnalyzer.WINDOW_HANN, 8);
+		feed(analyzer, 4096);
+		assertEquals(13, analyzer.getFrames());
+		assertEquals(400.0f, analyzer.getSampleRate(), 0.01f);
+		assertEquals(31.0f, analyzer.getFrequency(analyzer.peakBin(0)), 400.0f / 1024);
+		assertEquals(120.0f, analyzer.getFrequency(analyzer.peakBin(1)), 400.0f / 1024);
+
+		//total power over the main lobe is A^2/2
+		assertEquals(0.125, lobePower(analyzer, 0), 0.01);
+		assertEquals(0.005, lobePower(analyzer, 1), 0.0005);
+		//x and y share one transform without leaking into each other
+		int peakX = analyzer.peakBin(0);
+		assertTrue(analyzer.getPower(1, peakX) < 1e-6f);
+		//gravity is removed before the transform
+		assertTrue(analyzer.getPower(2, 0) < 1e-6f);
+		assertTrue(analyzer.getPower(2, analyzer.peakBin(2)) < 1e-6f);
+	}
+
+	private static double lobePower(SpectrumAnalyzer analyzer, int axis) {
+		int peak = analyzer.peakBin(axis);
+		double sum = 0;
+		for (int k = peak - 2; k <= peak + 2; k++)
+			sum += analyzer.getPower(axis, k);
+		//the Hann window spreads a sine over 1.5 bins of noise bandwidth
+		return sum / 1.5;
+	}
+
+	@Test
+	public void windowsTradeLeakageForResolution() {
+		SpectrumAnalyzer rectangular = new SpectrumAnalyzer(1024, 256, SpectrumAnalyzer.WINDOW_RECTANGULAR, 8);
+		SpectrumAnalyzer blackmanHarris = new SpectrumAnalyzer(1024, 256, SpectrumAnalyzer.WINDOW_BLACKMAN_HARRIS, 8);
+		feed(rectangular, 4096);
+		feed(blackmanHarris, 4096);
+		//31Hz is between bins, far away the rectangular window still leaks
+		int far = Math.round(80.0f * 1024 / 400);
+		assertTrue(rectangular.getPower(0, far) > 1000 * blackmanHarris.getPower(0, far));
+	}
+
+	@Test
+	public void setWindowRestartsAverage() {
+		SpectrumAnalyzer analyzer = new SpectrumAnalyzer(256, 64, SpectrumAnalyzer.WINDOW_HAMMING, 4);
+		feed(analyzer, 512);
+		assertTrue(analyzer.getFrames() > 0);
+		analyzer.setWindow(SpectrumAnalyzer.WINDOW_HANN);
+		assertEquals(0, analyzer.getFrames());
+	}
+}
@@ -0,0 +1,29 @@
+package de.pirsoft.acceltest;
+
+/**
+ * Vertices, triangles and largest silhouette error, the distance between
+ * the unit sphere and the mesh, of the cube-map navball mesh against the
+ * icosphere, and for every cube subdivision the smallest icosphere
+ * frequency that is at least as close to the sphere.
+ *
+ * Not a unit test, run main() manually.
+ */
+public class SphereMeshComparison {
+	private static final int MAX_SUBDIVIDE = 16;
+
+	public static void main(String[] args) {
+		for (int subdivide = 0; subdivide <= MAX_SUBDIVIDE; subdivide++) {
+			CubeSphereMesh cube = CubeSphereMesh.forCubeMap(subdivide);
+			double error = cube.maxSilhouetteError();
+			int frequency = 1;
+			CubeSphereMesh ico = CubeSphereMesh.forIcosphere(frequency);
+			while (ico.maxSilhouetteError() > error)
+				ico = CubeSphereMesh.forIcosphere(++frequency);
+			System.out.printf("cube %2d: %5d vertices %5d triangles error %.5f"
+					+ " | icosphere %2d: %5d vertices %5d triangles error %.5f (%.0f%% triangles)%n",
+				subdivide, cube.floatAttribs.length / cube.stride, cube.triangleCount(), error,
+				frequency, ico.floatAttribs.length / ico.stride, ico.triangleCount(), ico.maxSilhouetteError(),
+				100.0 * ico.triangleCount() / cube.triangleCount());
+		}
+	}
+}
@@ -0,0 +1,48 @@
+package de.pirsoft.acceltest;
+
+/**
+ * Cost of recording a phase, begin() and end() with the clock reads, and
+ * of formatting the report. Recording has to be cheap enough to leave in
+ * the startup path for good.
+ *
+ * Not a unit test, run main() manually.
+ */
+public class StartupPhasesBenchmark {
+	private static final int PAIRS = 1000000;
+	private static final int REPORTS = 10000;
+
+	public static void main(String[] args) {
+		for (int round = 0; round < 3; round++) {
+			StartupPhases[] recorders = new StartupPhases[PAIRS / StartupPhases.PHASES + 1];
+			for (int i = 0; i < recorders.length; i++)
+				recorders[i] = new StartupPhases(System.nanoTime());
+			long start = System.nanoTime();
+			for (StartupPhases phases : recorders) {
+				for (int phase = 0; phase < StartupPhases.PHASES; phase++) {
+					phases.begin(phase);
+					phases.end(phase);
+				}
+			}
+			long recordNs = System.nanoTime() - start;
+			long pairs = (long) recorders.length * StartupPhases.PHASES;
+
+			StartupPhases finished = recorders[0];
+			finished.finish();
+			start = System.nanoTime();
+			for (int i = 0; i < PAIRS; i++) {
+				finished.begin(StartupPhases.FIRST_FRAME);
+				finished.end(StartupPhases.FIRST_FRAME);
+			}
+			long finishedNs = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			int chars = 0;
+			for (int i = 0; i < REPORTS; i++)
+				chars += finished.report("").length();
+			long reportNs = System.nanoTime() - start;
+			System.out.printf("begin+end %.0fns, after finish %.1fns, report %.1fus (%d chars)%n",
+				recordNs / (double) pairs, finishedNs / (double) PAIRS, reportNs * 1e-3 / REPORTS,
+				chars / REPORTS);
+		}
+	}
+}
@@ -0,0 +1,84 @@
+package de.pirsoft.acceltest;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class StartupPhasesTest {
+	private static final long MS = 1000000L;
+
+	@Test
+	public void reportsPhasesInStartOrder() {
+		StartupPhases phases = new StartupPhases(1000 * MS);
+		phases.begin(StartupPhases.ACTIVITY_CREATE, 1100 * MS);
+		phases.begin(StartupPhases.CONTENT_VIEW, 1110 * MS);
+		phases.end(StartupPhases.CONTENT_VIEW, 1150 * MS);
+		phases.end(StartupPhases.ACTIVITY_CREATE, 1160 * MS);
+		phases.begin(StartupPhases.FIRST_FRAME, 1400 * MS);
+		phases.end(StartupPhases.FIRST_FRAME, 1412500000L);
+		phases.begin(StartupPhases.MESH_BUILD, 1105 * MS);
+		phases.end(StartupPhases.MESH_BUILD, 1108 * MS);
+		assertEquals(5 * MS, phases.getStart(StartupPhases.CONTENT_VIEW) - 105 * MS);
+		assertEquals(40 * MS, phases.getDuration(StartupPhases.CONTENT_VIEW));
+		assertEquals(-1, phases.getStart(StartupPhases.GL_CONTEXT));
+
+		String[] lines = phases.report("  ").split("\n");
+		assertEquals(1 + StartupPhases.PHASES, lines.length);
+		assertEquals("  startup first_frame_end_ms=412.5", lines[0]);
+		String thread = Thread.currentThread().getName().replace(' ', '_');
+		assertEquals("  phase=activity_create thread=" + thread + " start_ms=100.0 duration_ms=60.0", lines[1]);
+		assertTrue(lines[2].startsWith("  phase=mesh_build "));
+		assertTrue(lines[3].startsWith("  phase=content_view "));
+		assertTrue(lines[4].startsWith("  phase=first_frame "));
+		//never began
+		assertTrue(lines[5].endsWith(" thread=- start_ms=- duration_ms=-"));
+	}
+
+	@Test
+	public void recordsFirstOccurrenceUntilFinished() {
+		StartupPhases phases = new StartupPhases(0);
+		phases.end(StartupPhases.SHADER_COMPILE, 5);
+		phases.begin(StartupPhases.SHADER_COMPILE, 10);
+		phases.end(StartupPhases.SHADER_COMPILE, 20);
+		//a second context before the first frame
+		phases.begin(StartupPhases.SHADER_COMPILE, 30);
+		phases.end(StartupPhases.SHADER_COMPILE, 50);
+		assertEquals(10, phases.getStart(StartupPhases.SHADER_COMPILE));
+		assertEquals(10, phases.getDuration(StartupPhases.SHADER_COMPILE));
+
+		assertTrue(phases.finish());
+		assertFalse(phases.finish());
+		assertTrue(phases.isFinished());
+		phases.begin(StartupPhases.GL_CONTEXT, 60);
+		assertEquals(-1, phases.getStart(StartupPhases.GL_CONTEXT));
+	}
+
+	@Test
+	public void tracerSectionsStayBalanced() {
+		final StringBuilder trace = new StringBuilder();
+		StartupPhases phases = new StartupPhases(0);
+		phases.setTracer(new StartupPhases.Tracer() {
+			@Override
+			public void beginSection(String name) {
+				trace.append('<').append(name);
+			}
+
+			@Override
+			public void endSection() {
+				trace.append('>');
+			}
+		});
+		phases.begin(StartupPhases.SURFACE_CREATED, 1);
+		phases.begin(StartupPhases.BUFFER_UPLOAD, 2);
+		phases.end(StartupPhases.BUFFER_UPLOAD, 3);
+		phases.end(StartupPhases.SURFACE_CREATED, 4);
+		phases.begin(StartupPhases.SURFACE_CREATED, 5);
+		phases.begin(StartupPhases.BUFFER_UPLOAD, 6);
+		phases.end(StartupPhases.BUFFER_UPLOAD, 7);
+		phases.end(StartupPhases.SURFACE_CREATED, 8);
+		phases.end(StartupPhases.FIRST_FRAME, 9);
+		assertEquals("<surface_created<buffer_upload>>", trace.toString());
+	}
+}
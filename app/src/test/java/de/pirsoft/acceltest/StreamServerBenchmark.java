@@ -0,0 +1,69 @@
+package de.pirsoft.acceltest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+
+/**
+ * Samples per second StreamServer gets to a loopback client, with a
+ * producer thread feeding it as fast as it can and one pacing it to
+ * 100000 samples/s, about what all sensors of a phone at their fastest
+ * rates would give.
+ *
+ * Not a unit test, run main() manually.
+ */
+public class StreamServerBenchmark {
+	private static final long SECONDS = 3;
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		for (int round = 0; round < 3; round++) {
+			run("unpaced", 0);
+			run("100k/s", 100000);
+		}
+	}
+
+	private static void run(String name, final int rate) throws IOException, InterruptedException {
+		final StreamServer server = new StreamServer(0, null);
+		server.start();
+		Socket socket = new Socket("127.0.0.1", server.getPort());
+		InputStream in = socket.getInputStream();
+		while (server.getClientCount() == 0)
+			Thread.sleep(1);
+
+		final long end = System.nanoTime() + SECONDS * 1000000000L;
+		final long[] produced = new long[1];
+		Thread producer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				float[] v = { 0.1f, 9.7f, 0.3f };
+				long start = System.nanoTime();
+				long n = 0;
+				long now;
+				while ((now = System.nanoTime()) < end) {
+					if (rate > 0 && n >= (now - start) * rate / 1000000000L) {
+						Thread.yield();
+						continue;
+					}
+					server.onSample(1, n++, v);
+				}
+				produced[0] = n;
+			}
+		});
+		long start = System.nanoTime();
+		producer.start();
+		byte[] buffer = new byte[64 * 1024];
+		long bytes = 0;
+		while (System.nanoTime() < end) {
+			int n = in.read(buffer);
+			if (n < 0)
+				break;
+			bytes += n;
+		}
+		long ns = System.nanoTime() - start;
+		producer.join();
+		socket.close();
+		server.stop();
+		System.out.printf("%s: produced %.0f/s, sent %.0f samples/s, %.1f MB/s, %d dropped%n", name,
+			produced[0] / (ns * 1e-9), server.getSent() / (ns * 1e-9), bytes * 1e3 / ns, server.getDropped());
+	}
+}
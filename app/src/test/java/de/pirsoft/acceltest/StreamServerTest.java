@@ -0,0 +1,122 @@
+package de.pirsoft.acceltest;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.Socket;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class StreamServerTest {
+	private PoseRing mPoses;
+	private StreamServer mServer;
+	private Socket mSocket;
+	private DataInputStream mIn;
+
+	//what the client read so far
+	private long mSamples = 0;
+	private long mLastSample = -1;
+	private long mPoseCount = 0;
+	private int mLargestFrame = 0;
+
+	@Before
+	public void connect() throws IOException, InterruptedException {
+		mPoses = new PoseRing(64);
+		mServer = new StreamServer(0, mPoses.subscribe(PoseRing.POLICY_DROP_OLDEST));
+		mServer.start();
+		mSocket = new Socket("127.0.0.1", mServer.getPort());
+		mIn = new DataInputStream(mSocket.getInputStream());
+		//samples before the server took the connection are not for this client
+		while (mServer.getClientCount() == 0)
+			Thread.sleep(1);
+	}
+
+	@After
+	public void disconnect() throws IOException {
+		mSocket.close();
+		mServer.stop();
+	}
+
+	private void readFrame() throws IOException {
+		int length = mIn.readInt();
+		int kind = mIn.readByte();
+		int count = mIn.readInt();
+		mLargestFrame = Math.max(mLargestFrame, count);
+		if (kind == StreamServer.FRAME_SAMPLES) {
+			assertEquals(1 + 4 + count * StreamServer.SAMPLE_SIZE, length);
+			for (int i = 0; i < count; i++) {
+				int type = mIn.readInt();
+				long time = mIn.readLong();
+				float x = mIn.readFloat();
+				float y = mIn.readFloat();
+				float z = mIn.readFloat();
+				assertTrue("out of order " + time, time > mLastSample);
+				assertEquals(1, type);
+				assertEquals((float) time, x, 0);
+				assertEquals(-(float) time, y, 0);
+				assertEquals(0, z, 0);
+				mLastSample = time;
+				mSamples++;
+			}
+		} else {
+			assertEquals(StreamServer.FRAME_POSES, kind);
+			assertEquals(1 + 4 + count * StreamServer.POSE_SIZE, length);
+			for (int i = 0; i < count; i++) {
+				assertEquals(mPoseCount, mIn.readLong());
+				for (int f = 0; f < PoseRing.FLOATS; f++)
+					assertEquals(mPoseCount + f, mIn.readFloat(), 0);
+				mPoseCount++;
+			}
+		}
+	}
+
+	private static float[] sample(long n) {
+		return new float[] { n, -n };
+	}
+
+	@Test
+	public void streamsSamplesAndPoses() throws IOException {
+		float[] transform = new float[PoseRing.FLOATS];
+		for (int i = 0; i < 1000; i++) {
+			mServer.onSample(1, i, sample(i));
+			if (i % 100 == 0) {
+				for (int f = 0; f < transform.length; f++)
+					transform[f] = i / 100 + f;
+				assertTrue(mPoses.tryPublish(i / 100, transform));
+			}
+		}
+		while (mSamples < 1000 || mPoseCount < 10)
+			readFrame();
+		assertEquals(999, mLastSample);
+		assertEquals(0, mServer.getDropped());
+	}
+
+	@Test
+	public void slowClientGetsLargerBatchesAndDrops() throws IOException, InterruptedException {
+		int total = 200000;
+		for (int i = 0; i < total; i++) {
+			mServer.onSample(1, i, sample(i));
+			//let the server fill the socket buffers now and then
+			if (i % 1000 == 0)
+				Thread.sleep(1);
+		}
+		while (mServer.getSent() + mServer.getDropped() < total)
+			readFrame();
+		while (mSamples < mServer.getSent())
+			readFrame();
+		assertEquals(total - 1, mLastSample);
+		assertTrue("dropped " + mServer.getDropped(), mServer.getDropped() > 0);
+		assertTrue("largest frame " + mLargestFrame, mLargestFrame > 1000);
+	}
+
+	@Test
+	public void stopDisconnects() throws IOException {
+		mServer.stop();
+		assertEquals(-1, mIn.read());
+		assertEquals(0, mServer.getClientCount());
+	}
+}
@@ -0,0 +1,76 @@
+package de.pirsoft.acceltest;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Throughput of TraceAnalyzer with 1 to availableProcessors() threads,
+ * against plainly reading the file, on synthetic 200Hz accelerometer data.
+ * Pass a trace file to analyze that one instead. The page cache is warm
+ * after the first round, for cold numbers drop it between runs.
+ *
+ * Not a unit test, run main() manually.
+ */
+public class TraceAnalyzerBenchmark {
+	private static final int RECORDS = 20000000;
+	private static final int ROUNDS = 3;
+
+	public static void main(String[] args) throws IOException {
+		File file;
+		if (args.length > 0) {
+			file = new File(args[0]);
+		} else {
+			file = File.createTempFile("trace", ".bin");
+			file.deleteOnExit();
+			writeTrace(file);
+		}
+		double fileMB = file.length() / 1e6;
+
+		for (int round = 0; round < ROUNDS; round++) {
+			FileChannel channel = new RandomAccessFile(file, "r").getChannel();
+			ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+			long start = System.nanoTime();
+			while (channel.read(buffer) >= 0)
+				buffer.clear();
+			long readNs = System.nanoTime() - start;
+			channel.close();
+			System.out.printf("round %d: read %.0f MB/s%n", round, fileMB / (readNs * 1e-9));
+
+			for (int threads = 1; threads <= Runtime.getRuntime().availableProcessors(); threads *= 2) {
+				ForkJoinPool pool = new ForkJoinPool(threads);
+				TraceAnalyzer analyzer = new TraceAnalyzer(new RandomAccessFile(file, "r").getChannel());
+				start = System.nanoTime();
+				TraceStats stats = analyzer.analyze(pool, 1, 1000000000L);
+				long ns = System.nanoTime() - start;
+				analyzer.close();
+				pool.shutdown();
+				System.out.printf("  %d threads: %.0f MB/s, %.1f M records/s, p99 |a| %.3f%n",
+					threads, fileMB / (ns * 1e-9), stats.getCount() / (ns * 1e-3),
+					stats.getMagnitudePercentile(0.99));
+			}
+		}
+		System.out.printf("%.1f MB trace%n", fileMB);
+	}
+
+	private static void writeTrace(File file) throws IOException {
+		Random rnd = new Random(42);
+		float lsb = 9.80665f * 8 / 65536;
+		float[] v = new float[3];
+		TraceEncoder encoder = new TraceEncoder(new RandomAccessFile(file, "rw").getChannel());
+		long t = 0;
+		for (int i = 0; i < RECORDS; i++) {
+			t += 5000000 + (long) (rnd.nextGaussian() * 20000);
+			double s = t * 1e-9;
+			v[0] = Math.round((0.3 * Math.sin(s * 0.1) + rnd.nextGaussian() * 0.02) / lsb) * lsb;
+			v[1] = Math.round((9.7 + 0.05 * Math.sin(s * 2 * Math.PI * 31) + rnd.nextGaussian() * 0.02) / lsb) * lsb;
+			v[2] = Math.round((1.2 + rnd.nextGaussian() * 0.02) / lsb) * lsb;
+			encoder.write(1, t, v);
+		}
+		encoder.close();
+	}
+}
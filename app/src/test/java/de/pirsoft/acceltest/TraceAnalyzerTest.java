@@ -0,0 +1,118 @@
+package de.pirsoft.acceltest;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+
+public class TraceAnalyzerTest {
+	private static final long PERIOD = 5000000;
+	private static final int RECORDS = 20000;
+	private static final long SECOND = 1000000000L;
+
+	private static File writeTrace(float[] magnitudes, boolean close) throws IOException {
+		File file = File.createTempFile("trace", ".bin");
+		file.deleteOnExit();
+		FileChannel out = new RandomAccessFile(file, "rw").getChannel();
+		TraceEncoder encoder = new TraceEncoder(out, 100);
+		Random rnd = new Random(7);
+		float[] v = new float[3];
+		float[] other = { 0.1f, 0.2f, 0.3f };
+		for (int i = 0; i < RECORDS; i++) {
+			v[0] = (float) rnd.nextGaussian();
+			v[1] = 9.8f + (float) rnd.nextGaussian() * 5;
+			v[2] = (float) rnd.nextGaussian() * 0.1f;
+			magnitudes[i] = (float) Math.sqrt((double) v[0] * v[0] + (double) v[1] * v[1] + (double) v[2] * v[2]);
+			encoder.write(1, i * PERIOD, v);
+			//a second sensor the stats have to skip
+			if (i % 4 == 0)
+				encoder.write(4, i * PERIOD + 1, other);
+		}
+		if (close) {
+			encoder.close();
+		} else {
+			encoder.flush();
+			out.close();
+		}
+		return file;
+	}
+
+	private static FileChannel open(File file) throws IOException {
+		return new RandomAccessFile(file, "r").getChannel();
+	}
+
+	private static void assertSame(TraceStats expected, TraceStats actual) {
+		assertEquals(expected.getCount(), actual.getCount());
+		for (int axis = 0; axis < TraceStats.AXES; axis++) {
+			assertEquals(expected.getMin(axis), actual.getMin(axis), 0);
+			assertEquals(expected.getMax(axis), actual.getMax(axis), 0);
+			assertEquals(expected.getMean(axis), actual.getMean(axis), 1e-9);
+			assertEquals(expected.getRms(axis), actual.getRms(axis), 1e-9);
+			for (int bin = 0; bin < TraceStats.HISTOGRAM_BINS; bin++)
+				assertEquals(expected.getHistogram(axis, bin), actual.getHistogram(axis, bin));
+		}
+		for (double p = 0.01; p < 1; p += 0.01)
+			assertEquals(expected.getMagnitudePercentile(p), actual.getMagnitudePercentile(p), 0);
+		assertEquals(expected.getWindowCount(), actual.getWindowCount());
+		for (int i = 0; i < expected.getWindowCount(); i++)
+			assertEquals(expected.getRate(i), actual.getRate(i), 0);
+	}
+
+	@Test
+	public void chunksMergeToTheSequentialResult() throws IOException {
+		float[] magnitudes = new float[RECORDS];
+		File file = writeTrace(magnitudes, true);
+
+		TraceStats sequential = new TraceStats(1, 0, (RECORDS - 1) * PERIOD + 1, SECOND);
+		new TraceDecoder(open(file)).readAll(sequential);
+		assertEquals(RECORDS, sequential.getCount());
+
+		TraceAnalyzer analyzer = new TraceAnalyzer(open(file));
+		ForkJoinPool pool = new ForkJoinPool(4);
+		//one block per chunk, and one chunk for the whole file
+		assertSame(sequential, analyzer.analyze(pool, 1, SECOND, 1));
+		assertSame(sequential, analyzer.analyze(pool, 1, SECOND));
+		analyzer.close();
+		pool.shutdown();
+
+		assertEquals(100, sequential.getWindowCount());
+		assertEquals(200, sequential.getRate(50), 0);
+		assertEquals(9.8, sequential.getMean(1), 0.1);
+		assertEquals(1.0, sequential.getRms(0), 0.05);
+
+		Arrays.sort(magnitudes);
+		for (double p : new double[] { 0.01, 0.5, 0.9, 0.99, 0.999 }) {
+			double exact = magnitudes[(int) Math.ceil(p * RECORDS) - 1];
+			assertEquals(exact, sequential.getMagnitudePercentile(p), exact * TraceStats.RELATIVE_ACCURACY);
+		}
+	}
+
+	@Test
+	public void analyzesTraceWithoutFooter() throws IOException {
+		File file = writeTrace(new float[RECORDS], false);
+		TraceAnalyzer analyzer = new TraceAnalyzer(open(file));
+		ForkJoinPool pool = new ForkJoinPool(2);
+		TraceStats stats = analyzer.analyze(pool, 1, SECOND, 1000);
+		assertEquals(RECORDS, stats.getCount());
+		assertEquals(0, analyzer.analyze(pool, 99, SECOND).getCount());
+		analyzer.close();
+		pool.shutdown();
+	}
+
+	@Test
+	public void histogramClampsOutliers() {
+		TraceStats stats = new TraceStats(1, 0, 0, SECOND);
+		stats.onSample(1, 0, new float[] { -1000, 0, 1000 });
+		assertEquals(1, stats.getHistogram(0, 0));
+		assertEquals(1, stats.getHistogram(1, TraceStats.HISTOGRAM_BINS / 2));
+		assertEquals(1, stats.getHistogram(2, TraceStats.HISTOGRAM_BINS - 1));
+		assertEquals(0, TraceStats.getBinStart(TraceStats.HISTOGRAM_BINS / 2), 0);
+	}
+}
@@ -0,0 +1,71 @@
+package de.pirsoft.acceltest;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.Random;
+
+/**
+ * Compression ratio and throughput of the trace codec on synthetic
+ * accelerometer data: 200Hz with timestamp jitter, gravity plus a little
+ * vibration and noise, quantized to a 16 bit +-4g sensor.
+ *
+ * Not a unit test, run main() manually.
+ */
+public class TraceCodecBenchmark {
+	private static final int RECORDS = 2000000;
+	private static final int ROUNDS = 5;
+
+	public static void main(String[] args) throws IOException {
+		final long[] timestamps = new long[RECORDS];
+		final float[] values = new float[RECORDS * 3];
+		Random rnd = new Random(42);
+		float lsb = 9.80665f * 8 / 65536;
+		long t = 0;
+		for (int i = 0; i < RECORDS; i++) {
+			t += 5000000 + (long) (rnd.nextGaussian() * 20000);
+			timestamps[i] = t;
+			double s = t * 1e-9;
+			values[i * 3] = Math.round((0.3 * Math.sin(s * 0.1) + 0.05 * Math.sin(s * 2 * Math.PI * 31) + rnd.nextGaussian() * 0.02) / lsb) * lsb;
+			values[i * 3 + 1] = Math.round((9.7 + 0.05 * Math.sin(s * 2 * Math.PI * 31) + rnd.nextGaussian() * 0.02) / lsb) * lsb;
+			values[i * 3 + 2] = Math.round((1.2 + rnd.nextGaussian() * 0.02) / lsb) * lsb;
+		}
+
+		double rawMB = (double) RECORDS * TraceFormat.RAW_RECORD_SIZE / 1e6;
+		byte[] encoded = null;
+		float[] v = new float[3];
+		for (int round = 0; round < ROUNDS; round++) {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(RECORDS * 8);
+			long start = System.nanoTime();
+			TraceEncoder encoder = new TraceEncoder(Channels.newChannel(bytes));
+			for (int i = 0; i < RECORDS; i++) {
+				v[0] = values[i * 3];
+				v[1] = values[i * 3 + 1];
+				v[2] = values[i * 3 + 2];
+				encoder.write(1, timestamps[i], v);
+			}
+			encoder.close();
+			long encodeNs = System.nanoTime() - start;
+			encoded = bytes.toByteArray();
+
+			final long[] count = new long[1];
+			start = System.nanoTime();
+			TraceDecoder decoder = new TraceDecoder(Channels.newChannel(new ByteArrayInputStream(encoded)));
+			decoder.readAll(new SampleSink() {
+				@Override
+				public void onSample(int sensorType, long timestamp, float[] values) {
+					count[0] += timestamp;
+				}
+			});
+			long decodeNs = System.nanoTime() - start;
+
+			System.out.printf("round %d: encode %.1f MB/s, decode %.1f MB/s (raw MB per second)%n",
+				round, rawMB / (encodeNs * 1e-9), rawMB / (decodeNs * 1e-9));
+		}
+		System.out.printf("%d records, %d raw bytes, %d encoded bytes, ratio %.2f, %.2f bytes/record%n",
+			RECORDS, (long) RECORDS * TraceFormat.RAW_RECORD_SIZE, encoded.length,
+			(double) RECORDS * TraceFormat.RAW_RECORD_SIZE / encoded.length,
+			(double) encoded.length / RECORDS);
+	}
+}
@@ -0,0 +1,111 @@
+package de.pirsoft.acceltest;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class TraceCodecTest {
+	private static final int TYPE_ACCEL = 1;
+	private static final int TYPE_ROTATION = 11;
+
+	private static class Collector implements SampleSink {
+		final int[] types;
+		final long[] timestamps;
+		final float[] values;
+		int count = 0;
+
+		Collector(int capacity) {
+			types = new int[capacity];
+			timestamps = new long[capacity];
+			values = new float[capacity * 3];
+		}
+
+		@Override
+		public void onSample(int sensorType, long timestamp, float[] v) {
+			types[count] = sensorType;
+			timestamps[count] = timestamp;
+			System.arraycopy(v, 0, values, count * 3, 3);
+			count++;
+		}
+	}
+
+	private static byte[] encode(Collector input, int blockRecords) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		TraceEncoder encoder = new TraceEncoder(Channels.newChannel(bytes), blockRecords);
+		float[] v = new float[3];
+		for (int i = 0; i < input.count; i++) {
+			System.arraycopy(input.values, i * 3, v, 0, 3);
+			encoder.write(input.types[i], input.timestamps[i], v);
+		}
+		encoder.close();
+		return bytes.toByteArray();
+	}
+
+	private static Collector decode(byte[] data, int capacity) throws IOException {
+		Collector out = new Collector(capacity);
+		TraceDecoder decoder = new TraceDecoder(Channels.newChannel(new ByteArrayInputStream(data)));
+		decoder.readAll(out);
+		return out;
+	}
+
+	private static void assertSame(Collector expected, Collector actual) {
+		assertEquals(expected.count, actual.count);
+		for (int i = 0; i < expected.count; i++) {
+			assertEquals(expected.types[i], actual.types[i]);
+			assertEquals(expected.timestamps[i], actual.timestamps[i]);
+		}
+		for (int i = 0; i < expected.count * 3; i++) {
+			//bit exact, including NaN and -0
+			assertEquals(Float.floatToRawIntBits(expected.values[i]),
+				Float.floatToRawIntBits(actual.values[i]));
+		}
+	}
+
+	@Test
+	public void roundTripsInterleavedStreams() throws IOException {
+		Random rnd = new Random(1);
+		Collector input = new Collector(5000);
+		long tAccel = 1000000000L;
+		long tRot = 1000300000L;
+		for (int i = 0; i < 2500; i++) {
+			tAccel += 5000000 + rnd.nextInt(100000) - 50000;
+			input.onSample(TYPE_ACCEL, tAccel, new float[] {
+				rnd.nextFloat(), 9.81f + rnd.nextFloat() * 0.01f, 0.f });
+			tRot += 5000000 + rnd.nextInt(100000) - 50000;
+			input.onSample(TYPE_ROTATION, tRot, new float[] {
+				rnd.nextFloat(), -0.f, Float.NaN });
+		}
+		assertSame(input, decode(encode(input, 333), 5000));
+	}
+
+	@Test
+	public void handlesExtremeValues() throws IOException {
+		Collector input = new Collector(16);
+		long[] ts = { Long.MIN_VALUE / 2, 0, Long.MAX_VALUE / 2, -5, 7, 7, 7 };
+		float[] vals = { Float.MAX_VALUE, Float.MIN_VALUE, Float.NEGATIVE_INFINITY,
+			0.f, -0.f, 1.f, -1.f };
+		for (int i = 0; i < ts.length; i++)
+			input.onSample(i, ts[i], new float[] { vals[i], vals[(i + 1) % 7], vals[(i + 2) % 7] });
+		assertSame(input, decode(encode(input, 4), 16));
+	}
+
+	@Test
+	public void shortValuesArePadded() throws IOException {
+		Collector input = new Collector(1);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		TraceEncoder encoder = new TraceEncoder(Channels.newChannel(bytes), 8);
+		encoder.onSample(TYPE_ACCEL, 5, new float[] { 2.f });
+		encoder.close();
+		Collector out = decode(bytes.toByteArray(), 1);
+		assertEquals(1, out.count);
+		assertEquals(2.f, out.values[0], 0.f);
+		assertEquals(0.f, out.values[1], 0.f);
+		assertEquals(0.f, out.values[2], 0.f);
+	}
+}
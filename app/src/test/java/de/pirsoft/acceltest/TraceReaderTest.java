@@ -0,0 +1,95 @@
+package de.pirsoft.acceltest;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TraceReaderTest {
+	private static final long PERIOD = 5000000;
+
+	private static class Window implements SampleSink {
+		long count = 0;
+		long min = Long.MAX_VALUE;
+		long max = Long.MIN_VALUE;
+
+		@Override
+		public void onSample(int sensorType, long timestamp, float[] values) {
+			count++;
+			min = Math.min(min, timestamp);
+			max = Math.max(max, timestamp);
+			//values carry the record number
+			assertEquals(timestamp / PERIOD, (long) values[0]);
+		}
+	}
+
+	private static File writeTrace(int records, boolean close) throws IOException {
+		File file = File.createTempFile("trace", ".bin");
+		file.deleteOnExit();
+		FileChannel out = new RandomAccessFile(file, "rw").getChannel();
+		TraceEncoder encoder = new TraceEncoder(out, 100);
+		float[] v = new float[3];
+		for (int i = 0; i < records; i++) {
+			v[0] = i;
+			encoder.write(i % 2 == 0 ? 1 : 11, i * PERIOD, v);
+		}
+		if (close) {
+			encoder.close();
+		} else {
+			//interrupted recording: blocks so far, no footer
+			encoder.flush();
+			out.close();
+		}
+		return file;
+	}
+
+	private static FileChannel open(File file) throws IOException {
+		return new RandomAccessFile(file, "r").getChannel();
+	}
+
+	@Test
+	public void readsWindowsThroughTheIndex() throws IOException {
+		TraceReader reader = new TraceReader(open(writeTrace(10000, true)));
+		assertEquals(100, reader.blockCount());
+		assertEquals(10000, reader.recordCount());
+		assertEquals(0, reader.startTime());
+		assertEquals(9999 * PERIOD, reader.endTime());
+
+		Window w = new Window();
+		assertEquals(501, reader.read(4321 * PERIOD, 4821 * PERIOD, w));
+		assertEquals(501, w.count);
+		assertEquals(4321 * PERIOD, w.min);
+		assertEquals(4821 * PERIOD, w.max);
+
+		w = new Window();
+		assertEquals(0, reader.read(-10, -1, w));
+		assertEquals(0, reader.read(10000 * PERIOD, Long.MAX_VALUE, w));
+		assertEquals(10000, reader.read(Long.MIN_VALUE, Long.MAX_VALUE, w));
+		reader.close();
+	}
+
+	@Test
+	public void rebuildsIndexWithoutFooter() throws IOException {
+		TraceReader reader = new TraceReader(open(writeTrace(1050, false)));
+		assertEquals(11, reader.blockCount());
+		Window w = new Window();
+		assertEquals(50, reader.read(1000 * PERIOD, 2000 * PERIOD, w));
+		assertEquals(1049 * PERIOD, w.max);
+		reader.close();
+	}
+
+	@Test
+	public void sequentialDecoderStopsAtIndex() throws IOException {
+		File file = writeTrace(250, true);
+		FileChannel in = open(file);
+		Window w = new Window();
+		assertEquals(250, new TraceDecoder(in).readAll(w));
+		assertTrue(in.position() < in.size());
+		in.close();
+	}
+}
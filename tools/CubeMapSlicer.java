@@ -0,0 +1,103 @@
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Slices the cross shaped navball texture into the six faces of a GL cube
+ * map.
+ *
+ * Usage, from the repository root:
+ *   java tools/CubeMapSlicer.java app/src/main/res/drawable/navball.png app/src/main/res/drawable
+ *
+ * Writes navball_px.png, navball_nx.png, navball_py.png, navball_ny.png,
+ * navball_pz.png and navball_nz.png. Every face texel is turned into the
+ * direction GL samples it for (OpenGL ES 2.0 spec, table 3.21), and that
+ * direction is looked up in the cross layout the 2D mesh uses (see the face
+ * table in CubeSphereMesh.genVerticesAndIndexes()).
+ */
+public class CubeMapSlicer {
+	private static final String[] NAMES = { "px", "nx", "py", "ny", "pz", "nz" };
+
+	public static void main(String[] args) throws IOException {
+		if (args.length != 2) {
+			System.err.println("usage: CubeMapSlicer <navball.png> <output directory>");
+			System.exit(1);
+		}
+		BufferedImage cross = ImageIO.read(new File(args[0]));
+		if (cross.getWidth() % 4 != 0 || cross.getHeight() != cross.getWidth())
+			throw new IOException("expected a square image with a width divisible by 4");
+		int size = cross.getWidth() / 4;
+		float[] r = new float[3];
+		float[] st = new float[2];
+		for (int face = 0; face < 6; face++) {
+			BufferedImage out = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+			for (int j = 0; j < size; j++) {
+				for (int i = 0; i < size; i++) {
+					float sc = 2 * (i + 0.5f) / size - 1;
+					float tc = 2 * (j + 0.5f) / size - 1;
+					direction(face, sc, tc, r);
+					crossCoordinates(face, r, st);
+					out.setRGB(i, j, sample(cross, st[0], st[1], size));
+				}
+			}
+			File file = new File(args[1], "navball_" + NAMES[face] + ".png");
+			ImageIO.write(out, "png", file);
+			System.out.println("wrote " + file);
+		}
+	}
+
+	/** Direction GL samples face texel sc, tc (both -1..1) of face at. */
+	private static void direction(int face, float sc, float tc, float[] r) {
+		switch (face) {
+			case 0: r[0] = 1; r[1] = -tc; r[2] = -sc; break;
+			case 1: r[0] = -1; r[1] = -tc; r[2] = sc; break;
+			case 2: r[0] = sc; r[1] = 1; r[2] = tc; break;
+			case 3: r[0] = sc; r[1] = -1; r[2] = -tc; break;
+			case 4: r[0] = sc; r[1] = -tc; r[2] = 1; break;
+			default: r[0] = -sc; r[1] = -tc; r[2] = -1; break;
+		}
+	}
+
+	/** Where the cube surface point r lies in the cross layout, s and t 0..1. */
+	private static void crossCoordinates(int face, float[] r, float[] st) {
+		float x = r[0];
+		float y = r[1];
+		float z = r[2];
+		switch (face) {
+			case 0: st[0] = 2f / 4 + (1 - z) / 8; st[1] = 3f / 8 + (1 - y) / 8; break;
+			case 1: st[0] = (z + 1) / 8; st[1] = 3f / 8 + (1 - y) / 8; break;
+			case 2: st[0] = 1f / 4 + (x + 1) / 8; st[1] = 1f / 8 + (z + 1) / 8; break;
+			case 3: st[0] = 1f / 4 + (x + 1) / 8; st[1] = 5f / 8 + (1 - z) / 8; break;
+			case 4: st[0] = 1f / 4 + (x + 1) / 8; st[1] = 3f / 8 + (1 - y) / 8; break;
+			default: st[0] = 3f / 4 + (1 - x) / 8; st[1] = 3f / 8 + (1 - y) / 8; break;
+		}
+	}
+
+	/** Bilinear sample, clamped to the face containing s, t so neighbours do not bleed in. */
+	private static int sample(BufferedImage cross, float s, float t, int size) {
+		float px = s * cross.getWidth() - 0.5f;
+		float py = t * cross.getHeight() - 0.5f;
+		int x0 = Math.min((int) (s * 4), 3) * size;
+		int y0 = (int) ((t * 8 - 1) / 2) * size + size / 2;
+		px = Math.max(x0, Math.min(x0 + size - 1, px));
+		py = Math.max(y0, Math.min(y0 + size - 1, py));
+		int ix = (int) px;
+		int iy = (int) py;
+		int ix1 = Math.min(ix + 1, x0 + size - 1);
+		int iy1 = Math.min(iy + 1, y0 + size - 1);
+		float fx = px - ix;
+		float fy = py - iy;
+		int result = 0;
+		for (int shift = 0; shift < 32; shift += 8) {
+			float c00 = (cross.getRGB(ix, iy) >>> shift) & 0xff;
+			float c10 = (cross.getRGB(ix1, iy) >>> shift) & 0xff;
+			float c01 = (cross.getRGB(ix, iy1) >>> shift) & 0xff;
+			float c11 = (cross.getRGB(ix1, iy1) >>> shift) & 0xff;
+			float c = (c00 * (1 - fx) + c10 * fx) * (1 - fy) + (c01 * (1 - fx) + c11 * fx) * fy;
+			result |= Math.round(c) << shift;
+		}
+		return result;
+	}
+}
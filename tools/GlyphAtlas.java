@@ -0,0 +1,74 @@
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Renders the glyph atlas for the GL HUD: ASCII 32 to 126 in a monospaced
+ * font, white with a dark outline, on a transparent 16 x 8 grid of equal
+ * cells. The glyph for character c sits in column c % 16, row c / 16, so
+ * the HUD needs no metrics file (see Hud.COLUMNS and Hud.ROWS).
+ *
+ * Usage, from the repository root:
+ *   java -Djava.awt.headless=true tools/GlyphAtlas.java app/src/main/res/drawable/glyphs.png
+ */
+public class GlyphAtlas {
+	private static final int COLUMNS = 16;
+	private static final int ROWS = 8;
+	private static final int CELL_WIDTH = 32;
+	private static final int CELL_HEIGHT = 64;
+	private static final float OUTLINE = 4.0f;
+
+	public static void main(String[] args) throws IOException {
+		if (args.length != 1) {
+			System.err.println("usage: GlyphAtlas <glyphs.png>");
+			System.exit(1);
+		}
+		BufferedImage atlas = new BufferedImage(COLUMNS * CELL_WIDTH, ROWS * CELL_HEIGHT,
+			BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = atlas.createGraphics();
+		g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+		g.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+
+		// largest font whose advance and height fit a cell with room for the outline
+		Font font = null;
+		FontMetrics metrics = null;
+		for (int size = CELL_HEIGHT; size > 4; size--) {
+			font = new Font(Font.MONOSPACED, Font.BOLD, size);
+			metrics = g.getFontMetrics(font);
+			if (metrics.charWidth('W') + OUTLINE * 2 <= CELL_WIDTH
+				&& metrics.getAscent() + metrics.getDescent() + OUTLINE * 2 <= CELL_HEIGHT)
+				break;
+		}
+		FontRenderContext context = g.getFontRenderContext();
+		float baseline = (CELL_HEIGHT - metrics.getAscent() - metrics.getDescent()) / 2.0f + metrics.getAscent();
+
+		for (char c = 32; c < 127; c++) {
+			int x = c % COLUMNS * CELL_WIDTH;
+			int y = c / COLUMNS * CELL_HEIGHT;
+			GlyphVector glyph = font.createGlyphVector(context, String.valueOf(c));
+			float left = (CELL_WIDTH - metrics.charWidth(c)) / 2.0f;
+			Shape outline = glyph.getOutline();
+			Shape placed = AffineTransform.getTranslateInstance(x + left, y + baseline)
+				.createTransformedShape(outline);
+			g.setColor(new Color(0, 0, 0, 200));
+			g.setStroke(new BasicStroke(OUTLINE, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
+			g.draw(placed);
+			g.setColor(Color.WHITE);
+			g.fill(placed);
+		}
+		g.dispose();
+		ImageIO.write(atlas, "png", new File(args[0]));
+	}
+}